@@ -46,6 +46,9 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
+import org.hsqldb.lib.InflaterFrameInputStream;
+import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RowSetNavigatorClient;
 import org.hsqldb.persist.HsqlProperties;
@@ -89,8 +92,9 @@ public class ClientConnection implements SessionInterface, Cloneable {
     public static final int    NETWORK_COMPATIBILITY_VERSION_INT = -2030400;
 
     //
-    static final int             BUFFER_SIZE = 0x1000;
-    final byte[]                 mainBuffer  = new byte[BUFFER_SIZE];
+    static final int             BUFFER_SIZE          = 0x1000;
+    static final int             maxAsyncPendingBytes = 0x8000;
+    final byte[]                 mainBuffer           = new byte[BUFFER_SIZE];
     private boolean              isClosed;
     private Socket               socket;
     protected DataOutputStream   dataOutput;
@@ -102,6 +106,12 @@ public class ClientConnection implements SessionInterface, Cloneable {
     private long                 lobIDSequence = -1;
     protected int                randomID;
 
+    // requests sent by executeAsync() and their results
+    private long           asyncRequestCount;
+    private long           asyncResultCount;
+    private int            asyncPendingBytes;
+    private LongKeyHashMap asyncResults = new LongKeyHashMap();
+
     //
     private boolean  isReadOnlyDefault = false;
     private boolean  isAutoCommit      = true;
@@ -120,6 +130,8 @@ public class ClientConnection implements SessionInterface, Cloneable {
     String         database;
     boolean        isTLS;
     boolean        isTLSWrapper;
+    boolean        isCompress;
+    boolean        isCompressed;
     int            databaseID;
     String         clientPropertiesString;
     HsqlProperties clientProperties;
@@ -132,6 +144,19 @@ public class ClientConnection implements SessionInterface, Cloneable {
                             String database, boolean isTLS,
                             boolean isTLSWrapper, String user,
                             String password, int timeZoneSeconds) {
+        this(host, port, path, database, isTLS, isTLSWrapper, false, user,
+             password, timeZoneSeconds);
+    }
+
+    /**
+     * Establishes a connection to the server. With isCompress, compression
+     * is requested and used if the server accepts it.
+     */
+    public ClientConnection(String host, int port, String path,
+                            String database, boolean isTLS,
+                            boolean isTLSWrapper, boolean isCompress,
+                            String user, String password,
+                            int timeZoneSeconds) {
 
         this.host         = host;
         this.port         = port;
@@ -139,6 +164,7 @@ public class ClientConnection implements SessionInterface, Cloneable {
         this.database     = database;
         this.isTLS        = isTLS;
         this.isTLSWrapper = isTLSWrapper;
+        this.isCompress   = isCompress;
         this.zoneSeconds  = timeZoneSeconds;
         this.zoneString   = TimeZone.getDefault().getID();
 
@@ -147,6 +173,12 @@ public class ClientConnection implements SessionInterface, Cloneable {
 
         Result login = Result.newConnectionAttemptRequest(user, password,
             database, zoneString, timeZoneSeconds);
+
+        if (isCompress) {
+            login.setConnectionOptions(
+                ResultConstants.CONNECT_OPTION_COMPRESS);
+        }
+
         Result resultIn = execute(login);
 
         if (resultIn.isError()) {
@@ -158,6 +190,12 @@ public class ClientConnection implements SessionInterface, Cloneable {
         databaseUniqueName     = resultIn.getDatabaseName();
         clientPropertiesString = resultIn.getMainString();
         randomID               = resultIn.getSessionRandomID();
+
+        if (isCompress
+                && (resultIn.getConnectionOptions()
+                    & ResultConstants.CONNECT_OPTION_COMPRESS) != 0) {
+            startCompression();
+        }
     }
 
     protected ClientConnection(ClientConnection other) {
@@ -199,6 +237,19 @@ public class ClientConnection implements SessionInterface, Cloneable {
         openConnection(host, port, isTLS);
     }
 
+    /**
+     * Called when the server has accepted compression. All later messages
+     * in both directions are written as frames.
+     */
+    protected void startCompression() {
+
+        isCompressed = true;
+        dataInput    = new DataInputStream(
+            new InflaterFrameInputStream(dataInput));
+        dataOutput = new DataOutputStream(
+            new DeflaterFrameOutputStream(dataOutput));
+    }
+
     protected void openConnection(String host, int port, boolean isTLS) {
 
         try {
@@ -245,6 +296,10 @@ public class ClientConnection implements SessionInterface, Cloneable {
         }
 
         try {
+            if (asyncResultCount < asyncRequestCount) {
+                readAsyncResults(asyncRequestCount);
+            }
+
             r.setSessionId(sessionID);
             r.setDatabaseId(databaseID);
             write(r);
@@ -255,21 +310,122 @@ public class ClientConnection implements SessionInterface, Cloneable {
         }
     }
 
+    /**
+     * Sends the request without waiting for the result. The server executes
+     * the requests of a session in the order they are sent, so several
+     * requests can be sent before the first result is read. The result is
+     * returned by getAsyncResult() with the returned id, or is read and kept
+     * when the connection is next used. When the requests not yet answered
+     * could fill the socket buffers, the pending results are read before
+     * sending more.
+     *
+     * @param r the request
+     * @return the id of the request
+     */
+    public synchronized long executeAsync(Result r) {
+
+        if (isClosed) {
+            throw Error.error(ErrorCode.X_08503);
+        }
+
+        try {
+            if (asyncPendingBytes > maxAsyncPendingBytes) {
+                readAsyncResults(asyncRequestCount);
+            }
+
+            r.setSessionId(sessionID);
+            r.setDatabaseId(databaseID);
+            write(r);
+
+            asyncPendingBytes += rowOut.size();
+
+            rowOut.reset(mainBuffer);
+
+            return asyncRequestCount++;
+        } catch (Throwable e) {
+            throw Error.error(ErrorCode.X_08006, e.toString());
+        }
+    }
+
+    /**
+     * Returns the result of the request sent by executeAsync() with the
+     * given id, reading it and the results of earlier requests if they have
+     * not yet been read. Returns null if the result has already been
+     * returned.
+     *
+     * @param id the id of the request
+     * @return the result
+     */
+    public synchronized Result getAsyncResult(long id) {
+
+        if (asyncResultCount <= id) {
+            try {
+                readAsyncResults(id + 1);
+            } catch (Throwable e) {
+                throw Error.error(ErrorCode.X_08006, e.toString());
+            }
+        }
+
+        return (Result) asyncResults.remove(id);
+    }
+
+    /**
+     * Returns true if the result of the request sent by executeAsync() with
+     * the given id has been read.
+     */
+    public synchronized boolean isAsyncResultRead(long id) {
+        return id < asyncResultCount;
+    }
+
+    /**
+     * Adds the result of a request that was executed in full.
+     */
+    protected long addAsyncResult(Result result) {
+
+        asyncResults.put(asyncRequestCount, result);
+
+        asyncResultCount++;
+
+        return asyncRequestCount++;
+    }
+
+    private void readAsyncResults(long count) throws IOException {
+
+        while (asyncResultCount < count) {
+            Result result = read();
+
+            asyncResults.put(asyncResultCount, result);
+
+            asyncResultCount++;
+        }
+
+        if (asyncResultCount == asyncRequestCount) {
+            asyncPendingBytes = 0;
+        }
+    }
+
     public synchronized RowSetNavigatorClient getRows(long navigatorId,
             int offset, int size) {
 
+        Result result;
+
         try {
             resultOut.setResultType(ResultConstants.REQUESTDATA);
             resultOut.setResultId(navigatorId);
             resultOut.setUpdateCount(offset);
             resultOut.setFetchSize(size);
 
-            Result result = execute(resultOut);
-
-            return (RowSetNavigatorClient) result.getNavigator();
+            result = execute(resultOut);
         } catch (Throwable e) {
             throw Error.error(ErrorCode.X_08006, e.toString());
         }
+
+        // a streamed result can fail while its rows are produced
+        if (result.mode == ResultConstants.ERROR) {
+            throw Error.error(result);
+        }
+
+        return (RowSetNavigatorClient) result.getNavigator();
     }
 
     public synchronized void closeNavigator(long navigatorId) {
@@ -675,6 +831,14 @@ public class ClientConnection implements SessionInterface, Cloneable {
         return databaseUniqueName;
     }
 
+    /**
+     * Returns true if the server has accepted compression for this
+     * connection.
+     */
+    public boolean isCompressed() {
+        return isCompressed;
+    }
+
     /**
      * Converts specified encoded integer to a Network Compatibility Version
      * String. The transmitted integer is negative to distinguish it from
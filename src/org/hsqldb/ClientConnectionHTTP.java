@@ -34,10 +34,13 @@ package org.hsqldb;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.InflaterInputStream;
 
 import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
 import org.hsqldb.lib.HsqlByteArrayOutputStream;
 import org.hsqldb.result.Result;
 
@@ -65,6 +68,15 @@ public class ClientConnectionHTTP extends ClientConnection {
               timeZoneSeconds);
     }
 
+    public ClientConnectionHTTP(String host, int port, String path,
+                                String database, boolean isTLS,
+                                boolean isTLSWrapper, boolean isCompress,
+                                String user, String password,
+                                int timeZoneSeconds) {
+        super(host, port, path, database, isTLS, isTLSWrapper, isCompress,
+              user, password, timeZoneSeconds);
+    }
+
     public ClientConnectionHTTP(ClientConnectionHTTP other) {
         super(other);
     }
@@ -73,6 +85,15 @@ public class ClientConnectionHTTP extends ClientConnection {
     // when it needs to
     protected void initConnection(String host, int port, boolean isTLS) {}
 
+    /**
+     * Request bodies are compressed with the deflate content coding once
+     * the server has accepted compression. Response bodies are compressed
+     * by the server when the request accepts the deflate coding.
+     */
+    protected void startCompression() {
+        isCompressed = true;
+    }
+
     /**
      * This just opens (a new or re-uses a connection) Keep-Alive.
      *
@@ -123,6 +144,13 @@ public class ClientConnectionHTTP extends ClientConnection {
         return result;
     }
 
+    /**
+     * HTTP requests cannot be pipelined, so the request is executed in full.
+     */
+    public synchronized long executeAsync(Result r) {
+        return addAsyncResult(execute(r));
+    }
+
     public Result cancel(Result result) {
 
         ClientConnectionHTTP connection = new ClientConnectionHTTP(this);
@@ -140,9 +168,39 @@ public class ClientConnectionHTTP extends ClientConnection {
         httpConnection.setDoOutput(true);
         httpConnection.setUseCaches(false);
 
-        //httpConnection.setRequestProperty("Accept-Encoding", "gzip");
+        if (isCompress) {
+            httpConnection.setRequestProperty("Accept-Encoding", "deflate");
+        }
+
         httpConnection.setRequestProperty("Content-Type",
                                           "application/octet-stream");
+
+        if (isCompressed
+                && memStream.size()
+                   >= DeflaterFrameOutputStream.compressThreshold) {
+            HsqlByteArrayOutputStream bodyStream =
+                new HsqlByteArrayOutputStream(IDLENGTH + memStream.size());
+
+            bodyStream.writeInt(r.getDatabaseId());
+            bodyStream.writeLong(r.getSessionId());
+            memStream.writeTo(bodyStream);
+
+            memStream = DeflaterFrameOutputStream.deflate(bodyStream);
+
+            httpConnection.setRequestProperty("Content-Encoding", "deflate");
+            httpConnection.setRequestProperty("Content-Length",
+                                              String.valueOf(
+                                                  memStream.size()));
+
+            dataOutput =
+                new DataOutputStream(httpConnection.getOutputStream());
+
+            memStream.writeTo(dataOutput);
+            dataOutput.flush();
+
+            return;
+        }
+
         httpConnection.setRequestProperty("Content-Length",
                                           String.valueOf(IDLENGTH
                                               + memStream.size()));
@@ -157,8 +215,13 @@ public class ClientConnectionHTTP extends ClientConnection {
 
     protected Result read() throws IOException, HsqlException {
 
-        dataInput = new DataInputStream(
-            new BufferedInputStream(httpConnection.getInputStream()));
+        InputStream in = httpConnection.getInputStream();
+
+        if ("deflate".equals(httpConnection.getContentEncoding())) {
+            in = new InflaterInputStream(in);
+        }
+
+        dataInput = new DataInputStream(new BufferedInputStream(in));
 
         rowOut.reset();
 
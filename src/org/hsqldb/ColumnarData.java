@@ -0,0 +1,468 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.IntValueHashMap;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Column store for the rows of a COLUMNAR table.<p>
+ *
+ * Each row occupies a slot and the slots are grouped in segments of 4096.
+ * In each segment the values of INTEGER types and BIGINT columns are held
+ * in a long[], REAL, FLOAT and DOUBLE values in a double[], CHARACTER and
+ * VARCHAR values as int codes into a dictionary of the distinct values of
+ * the column, and the values of other columns in an Object[].<p>
+ *
+ * Each segment has a zone map with the minimum and maximum of the numeric
+ * columns and flags for the presence of null and non-null values in each
+ * column. The zone map is only widened when values are added, so it remains
+ * a valid bound after rows are deleted.<p>
+ *
+ * The segment also references the Row of each slot while the row is linked
+ * in the indexes of the table. Scans read these references together with
+ * the arrays of the columns used in the query.<p>
+ *
+ * All changes are made under the write lock of the row store.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public final class ColumnarData {
+
+    static final int segmentShift = 12;
+    static final int segmentSize  = 1 << segmentShift;
+    static final int segmentMask  = segmentSize - 1;
+
+    /** new values are not added to a dictionary of this size */
+    static final int maxDictionarySize = 1 << 16;
+
+    //
+    static final int KIND_LONG       = 0;
+    static final int KIND_DOUBLE     = 1;
+    static final int KIND_DICTIONARY = 2;
+    static final int KIND_OBJECT     = 3;
+
+    // dictionary codes for null and for values kept in the Object[]
+    static final int CODE_NULL     = -1;
+    static final int CODE_OVERFLOW = -2;
+
+    //
+    final Type[]       types;
+    final int[]        kinds;
+    final boolean[]    isInteger;
+    final Dictionary[] dictionaries;
+
+    //
+    volatile Segment[] segments = new Segment[0];
+    private int        slotCount;
+    private int[]      freeSlots = new int[64];
+    private int        freeCount;
+
+    public ColumnarData(Type[] types) {
+
+        this.types   = types;
+        kinds        = new int[types.length];
+        isInteger    = new boolean[types.length];
+        dictionaries = new Dictionary[types.length];
+
+        for (int i = 0; i < types.length; i++) {
+            kinds[i] = getKind(types[i]);
+
+            switch (types[i].typeCode) {
+
+                case Types.TINYINT :
+                case Types.SQL_SMALLINT :
+                case Types.SQL_INTEGER :
+                    isInteger[i] = true;
+                    break;
+            }
+
+            if (kinds[i] == KIND_DICTIONARY) {
+                dictionaries[i] = new Dictionary();
+            }
+        }
+    }
+
+    private static int getKind(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT :
+                return KIND_LONG;
+
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+                return KIND_DOUBLE;
+
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR :
+                return KIND_DICTIONARY;
+
+            default :
+                return KIND_OBJECT;
+        }
+    }
+
+    /**
+     * Stores the values in a free slot and returns the slot.
+     */
+    int add(Object[] data) {
+
+        int slot;
+
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount;
+
+            if ((slot & segmentMask) == 0) {
+                Segment[] newSegments =
+                    (Segment[]) ArrayUtil.resizeArray(segments,
+                                                      segments.length + 1);
+
+                newSegments[segments.length] = new Segment(kinds);
+                segments                     = newSegments;
+            }
+
+            slotCount++;
+        }
+
+        Segment segment = segments[slot >> segmentShift];
+        int     index   = slot & segmentMask;
+
+        for (int i = 0; i < kinds.length; i++) {
+            setValue(segment, index, i, data[i]);
+        }
+
+        return slot;
+    }
+
+    /**
+     * Sets or clears the Row that is visible to scans in the slot.
+     */
+    public void setRow(int slot, Row row) {
+        segments[slot >> segmentShift].rows[slot & segmentMask] = row;
+    }
+
+    /**
+     * Makes the slot available for reuse.
+     */
+    void free(int slot) {
+
+        Segment segment = segments[slot >> segmentShift];
+        int     index   = slot & segmentMask;
+
+        segment.rows[index] = null;
+
+        for (int i = 0; i < kinds.length; i++) {
+            if (segment.objects[i] != null) {
+                segment.objects[i][index] = null;
+            }
+        }
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = (int[]) ArrayUtil.resizeArray(freeSlots,
+                    freeCount * 2);
+        }
+
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void setValue(Segment segment, int index, int col,
+                          Object value) {
+
+        long[] nulls = segment.nulls[col];
+        long   bit   = 1L << index;
+
+        if (value == null) {
+            nulls[index >> 6]    |= bit;
+            segment.hasNull[col] = true;
+
+            switch (kinds[col]) {
+
+                case KIND_DICTIONARY :
+                    segment.codes[col][index] = CODE_NULL;
+                    break;
+
+                case KIND_OBJECT :
+                    segment.objects[col][index] = null;
+                    break;
+            }
+
+            return;
+        }
+
+        nulls[index >> 6] &= ~bit;
+
+        boolean first = !segment.hasValue[col];
+
+        segment.hasValue[col] = true;
+
+        switch (kinds[col]) {
+
+            case KIND_LONG : {
+                long v = ((Number) value).longValue();
+
+                segment.longs[col][index] = v;
+
+                if (first || v < segment.minLong[col]) {
+                    segment.minLong[col] = v;
+                }
+
+                if (first || v > segment.maxLong[col]) {
+                    segment.maxLong[col] = v;
+                }
+
+                return;
+            }
+            case KIND_DOUBLE : {
+                double v = ((Number) value).doubleValue();
+
+                segment.doubles[col][index] = v;
+
+                if (first || compareDouble(v, segment.minDouble[col]) < 0) {
+                    segment.minDouble[col] = v;
+                }
+
+                if (first || compareDouble(v, segment.maxDouble[col]) > 0) {
+                    segment.maxDouble[col] = v;
+                }
+
+                return;
+            }
+            case KIND_DICTIONARY : {
+                int code = dictionaries[col].getCode(value);
+
+                if (code == CODE_OVERFLOW) {
+                    if (segment.objects[col] == null) {
+                        segment.objects[col] = new Object[segmentSize];
+                    }
+
+                    segment.objects[col][index] = value;
+                }
+
+                segment.codes[col][index] = code;
+
+                return;
+            }
+            default :
+                segment.objects[col][index] = value;
+        }
+    }
+
+    /**
+     * Returns the value of a column in the slot.
+     */
+    Object getValue(int slot, int col) {
+        return getValue(segments[slot >> segmentShift], slot & segmentMask,
+                        col);
+    }
+
+    Object getValue(Segment segment, int index, int col) {
+
+        switch (kinds[col]) {
+
+            case KIND_LONG : {
+                if ((segment.nulls[col][index >> 6] & (1L << index)) != 0) {
+                    return null;
+                }
+
+                long v = segment.longs[col][index];
+
+                if (isInteger[col]) {
+                    return Integer.valueOf((int) v);
+                }
+
+                return Long.valueOf(v);
+            }
+            case KIND_DOUBLE : {
+                if ((segment.nulls[col][index >> 6] & (1L << index)) != 0) {
+                    return null;
+                }
+
+                return Double.valueOf(segment.doubles[col][index]);
+            }
+            case KIND_DICTIONARY : {
+                int code = segment.codes[col][index];
+
+                if (code == CODE_NULL) {
+                    return null;
+                }
+
+                if (code == CODE_OVERFLOW) {
+                    return segment.objects[col][index];
+                }
+
+                return dictionaries[col].values[code];
+            }
+            default :
+                return segment.objects[col][index];
+        }
+    }
+
+    /**
+     * Same ordering as NumberType for DOUBLE, with NaN before all other
+     * values.
+     */
+    static int compareDouble(double a, double b) {
+
+        if (Double.isNaN(a)) {
+            return Double.isNaN(b) ? 0
+                                   : -1;
+        }
+
+        if (Double.isNaN(b)) {
+            return 1;
+        }
+
+        int result = Double.compare(a, b);
+
+        return result < 0 ? -1
+                          : result > 0 ? 1
+                                       : 0;
+    }
+
+    static int compareLong(long a, long b) {
+        return a > b ? 1
+                     : a < b ? -1
+                             : 0;
+    }
+
+    /**
+     * Distinct values of a CHARACTER or VARCHAR column.
+     */
+    static final class Dictionary {
+
+        private final IntValueHashMap codeMap = new IntValueHashMap();
+        volatile Object[]             values  = new Object[16];
+        volatile int                  size;
+
+        int getCode(Object value) {
+
+            int code = codeMap.get(value, -1);
+
+            if (code >= 0) {
+                return code;
+            }
+
+            if (size == maxDictionarySize) {
+                return CODE_OVERFLOW;
+            }
+
+            Object[] newValues = values;
+
+            if (size == newValues.length) {
+                newValues = (Object[]) ArrayUtil.resizeArray(newValues,
+                        size * 2);
+            }
+
+            newValues[size] = value;
+            values          = newValues;
+
+            codeMap.put(value, size);
+
+            return size++;
+        }
+    }
+
+    /**
+     * Column arrays and zone map for a range of slots.
+     */
+    static final class Segment {
+
+        final long[][]   longs;
+        final double[][] doubles;
+        final int[][]    codes;
+        final Object[][] objects;
+        final long[][]   nulls;
+        final Row[]      rows = new Row[segmentSize];
+
+        //
+        final long[]    minLong;
+        final long[]    maxLong;
+        final double[]  minDouble;
+        final double[]  maxDouble;
+        final boolean[] hasValue;
+        final boolean[] hasNull;
+
+        Segment(int[] kinds) {
+
+            int count = kinds.length;
+
+            longs     = new long[count][];
+            doubles   = new double[count][];
+            codes     = new int[count][];
+            objects   = new Object[count][];
+            nulls     = new long[count][segmentSize >> 6];
+            minLong   = new long[count];
+            maxLong   = new long[count];
+            minDouble = new double[count];
+            maxDouble = new double[count];
+            hasValue  = new boolean[count];
+            hasNull   = new boolean[count];
+
+            for (int i = 0; i < count; i++) {
+                switch (kinds[i]) {
+
+                    case KIND_LONG :
+                        longs[i] = new long[segmentSize];
+                        break;
+
+                    case KIND_DOUBLE :
+                        doubles[i] = new double[segmentSize];
+                        break;
+
+                    case KIND_DICTIONARY :
+                        codes[i] = new int[segmentSize];
+                        break;
+
+                    default :
+                        objects[i] = new Object[segmentSize];
+                }
+            }
+        }
+
+        boolean isNull(int col, int index) {
+            return (nulls[col][index >> 6] & (1L << index)) != 0;
+        }
+    }
+}
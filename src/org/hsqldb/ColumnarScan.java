@@ -0,0 +1,969 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.ColumnarData.Segment;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreColumnar;
+import org.hsqldb.types.Type;
+
+/**
+ * Full scan of a COLUMNAR table that reads one segment of the column store
+ * at a time.<p>
+ *
+ * The conjuncts of the non-index conditions of the range that compare a
+ * column with a constant or a parameter, or test a column for null, are
+ * evaluated over the column arrays of each segment before any row is
+ * accessed. Segments that cannot contain a matching value according to
+ * their zone map are skipped. Numeric comparisons use the primitive values
+ * and comparisons on dictionary encoded columns are evaluated once for
+ * each entry of the dictionary.<p>
+ *
+ * The rows are returned in slot order, not in the order of an index. The
+ * conditions of the range are still checked for each row returned. When
+ * all the conditions are handled by the scan, an ungrouped aggregate query
+ * computes COUNT, SUM, AVG, MIN and MAX directly from the column arrays.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class ColumnarScan {
+
+    // bits for comparison results -1, 0, +1
+    private static final int LESS    = 1;
+    private static final int EQUAL   = 2;
+    private static final int GREATER = 4;
+
+    //
+    final RangeVariable rangeVar;
+    final Predicate[]   predicates;
+
+    /** all the conditions of the range are in the predicates */
+    final boolean isExact;
+
+    private ColumnarScan(RangeVariable rangeVar, Predicate[] predicates,
+                         boolean isExact) {
+
+        this.rangeVar   = rangeVar;
+        this.predicates = predicates;
+        this.isExact    = isExact;
+    }
+
+    /**
+     * Returns a scan for a range that is read with a full scan of a
+     * COLUMNAR table, or null.
+     */
+    static ColumnarScan newColumnarScan(RangeVariable rangeVar) {
+
+        if (rangeVar.rangeType != RangeVariable.TABLE_RANGE
+                || rangeVar.rangeTable.getTableType()
+                   != TableBase.COLUMNAR_TABLE) {
+            return null;
+        }
+
+        if (rangeVar.isLeftJoin || rangeVar.isRightJoin
+                || rangeVar.indexDistinctCount > 0
+                || rangeVar.joinConditions.length != 1
+                || rangeVar.whereConditions.length != 1) {
+            return null;
+        }
+
+        RangeVariableConditions join  = rangeVar.joinConditions[0];
+        RangeVariableConditions where = rangeVar.whereConditions[0];
+
+        if (join.hasIndexCondition() || where.hasIndexCondition()
+                || join.hashCond != null || join.reversed || join.isFalse) {
+            return null;
+        }
+
+        HsqlArrayList list    = new HsqlArrayList();
+        boolean       isExact = join.terminalCondition == null
+                                && join.indexEndCondition == null
+                                && join.excludeConditions == null;
+
+        isExact &= addPredicates(rangeVar, join.nonIndexCondition, list);
+        isExact &= addPredicates(rangeVar, where.nonIndexCondition, list);
+
+        Predicate[] predicates = new Predicate[list.size()];
+
+        list.toArray(predicates);
+
+        return new ColumnarScan(rangeVar, predicates, isExact);
+    }
+
+    /**
+     * Adds the predicates for the conjuncts of the condition and returns
+     * true if all the conjuncts were added.
+     */
+    private static boolean addPredicates(RangeVariable rangeVar,
+                                         Expression e, HsqlArrayList list) {
+
+        if (e == null) {
+            return true;
+        }
+
+        if (e.getType() == OpTypes.AND) {
+            boolean left  = addPredicates(rangeVar, e.getLeftNode(), list);
+            boolean right = addPredicates(rangeVar, e.getRightNode(), list);
+
+            return left && right;
+        }
+
+        Predicate p = getPredicate(rangeVar, e);
+
+        if (p == null) {
+            return false;
+        }
+
+        list.add(p);
+
+        return true;
+    }
+
+    private static Predicate getPredicate(RangeVariable rangeVar,
+                                          Expression e) {
+
+        if (!(e instanceof ExpressionLogical)) {
+            return null;
+        }
+
+        int opType = e.getType();
+
+        switch (opType) {
+
+            case OpTypes.IS_NULL :
+                if (isPlainColumn(rangeVar, e.getLeftNode())) {
+                    return new Predicate(e.getLeftNode(), opType, null);
+                }
+
+                return null;
+
+            case OpTypes.NOT : {
+                Expression test = e.getLeftNode();
+
+                if (test.getType() == OpTypes.IS_NULL
+                        && isPlainColumn(rangeVar, test.getLeftNode())) {
+                    return new Predicate(test.getLeftNode(), opType, null);
+                }
+
+                return null;
+            }
+            case OpTypes.EQUAL :
+            case OpTypes.NOT_EQUAL :
+            case OpTypes.GREATER :
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+            case OpTypes.SMALLER :
+            case OpTypes.SMALLER_EQUAL : {
+                if (e.getSubType() == OpTypes.ANY_QUANTIFIED
+                        || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                    return null;
+                }
+
+                Expression left  = e.getLeftNode();
+                Expression right = e.getRightNode();
+
+                if (!isPlainColumn(rangeVar, left)) {
+                    return null;
+                }
+
+                switch (right.getType()) {
+
+                    case OpTypes.VALUE :
+                    case OpTypes.DYNAMIC_PARAM :
+                        break;
+
+                    default :
+                        return null;
+                }
+
+                if (right.getDegree() != 1) {
+                    return null;
+                }
+
+                if (opType == OpTypes.GREATER_EQUAL_PRE) {
+                    opType = OpTypes.GREATER_EQUAL;
+                }
+
+                return new Predicate(left, opType, right);
+            }
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * A column of the range that is read without type conversion.
+     */
+    private static boolean isPlainColumn(RangeVariable rangeVar,
+                                         Expression e) {
+
+        if (e.getType() != OpTypes.COLUMN
+                || e.getRangeVariable() != rangeVar) {
+            return false;
+        }
+
+        return e.getDataType() == e.getColumn().getDataType();
+    }
+
+    /**
+     * Returns true if the aggregate can be computed from the column arrays.
+     */
+    static boolean isSupportedAggregate(RangeVariable rangeVar,
+                                        Expression e) {
+
+        if (!(e instanceof ExpressionAggregate)) {
+            return false;
+        }
+
+        switch (e.getType()) {
+
+            case OpTypes.COUNT :
+            case OpTypes.SUM :
+            case OpTypes.AVG :
+            case OpTypes.MIN :
+            case OpTypes.MAX :
+                break;
+
+            default :
+                return false;
+        }
+
+        if (e.isDistinctAggregate()
+                || ((ExpressionAggregate) e).hasCondition()) {
+            return false;
+        }
+
+        Expression arg = e.getLeftNode();
+
+        if (arg.getType() == OpTypes.ASTERISK) {
+            return e.getType() == OpTypes.COUNT;
+        }
+
+        return isPlainColumn(rangeVar, arg);
+    }
+
+    /**
+     * Returns an iterator over the visible rows of the table that satisfy
+     * the predicates.
+     */
+    RowIterator getIterator(Session session, PersistentStore store) {
+
+        Filter[] filters = getFilters(session, store);
+
+        if (filters == null) {
+            return rangeVar.rangeTable.getPrimaryIndex().emptyIterator();
+        }
+
+        return new ColumnarIterator(session, store, filters);
+    }
+
+    /**
+     * Computes the aggregates in the given range of positions. The values
+     * are left null if no row satisfies the predicates.
+     */
+    void aggregate(Session session, PersistentStore store, Expression[] exprs,
+                   int start, int end, Object[] data) {
+
+        Filter[] filters = getFilters(session, store);
+
+        if (filters == null) {
+            return;
+        }
+
+        ColumnarData columnarData =
+            ((RowStoreColumnar) store).getColumnarData();
+        Segment[] segments = columnarData.segments;
+        int[]     selected = new int[ColumnarData.segmentSize];
+
+        for (int s = 0; s < segments.length; s++) {
+            int count = select(session, store, columnarData, segments[s],
+                               filters, selected, null);
+
+            if (count == 0) {
+                continue;
+            }
+
+            for (int i = start; i < end; i++) {
+                ExpressionAggregate e = (ExpressionAggregate) exprs[i];
+
+                if (data[i] == null) {
+                    data[i] = e.newSetFunction(session);
+                }
+
+                aggregate(session, columnarData, segments[s], selected,
+                          count, e, (SetFunction) data[i]);
+            }
+        }
+    }
+
+    private static void aggregate(Session session, ColumnarData columnarData,
+                                  Segment segment, int[] selected, int count,
+                                  ExpressionAggregate e,
+                                  SetFunction function) {
+
+        Expression arg = e.getLeftNode();
+
+        if (arg.getType() == OpTypes.ASTERISK) {
+            function.addCount(count);
+
+            return;
+        }
+
+        int col    = arg.getColumnIndex();
+        int kind   = columnarData.kinds[col];
+        int opType = e.getType();
+
+        if (opType == OpTypes.COUNT) {
+            int nonNull = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (!segment.isNull(col, selected[i])) {
+                    nonNull++;
+                }
+            }
+
+            function.addCount(nonNull);
+
+            if (nonNull < count) {
+                function.addNull();
+            }
+
+            return;
+        }
+
+        if (kind == ColumnarData.KIND_LONG) {
+            long[]  values  = segment.longs[col];
+            long    min     = Long.MAX_VALUE;
+            long    max     = Long.MIN_VALUE;
+            boolean hasNull = false;
+            int     nonNull = 0;
+
+            for (int i = 0; i < count; i++) {
+                int index = selected[i];
+
+                if (segment.isNull(col, index)) {
+                    hasNull = true;
+
+                    continue;
+                }
+
+                long value = values[index];
+
+                nonNull++;
+
+                switch (opType) {
+
+                    case OpTypes.SUM :
+                    case OpTypes.AVG :
+                        function.addLongValue(value);
+                        break;
+
+                    case OpTypes.MIN :
+                        if (value < min) {
+                            min = value;
+                        }
+                        break;
+
+                    case OpTypes.MAX :
+                        if (value > max) {
+                            max = value;
+                        }
+                        break;
+                }
+            }
+
+            if (hasNull) {
+                function.addNull();
+            }
+
+            if (nonNull > 0) {
+                long value = opType == OpTypes.MIN ? min
+                                                   : max;
+
+                switch (opType) {
+
+                    case OpTypes.MIN :
+                    case OpTypes.MAX :
+                        function.add(session, columnarData.isInteger[col]
+                                              ? (Object) Integer.valueOf(
+                                                  (int) value)
+                                              : (Object) Long.valueOf(value));
+                        break;
+                }
+            }
+
+            return;
+        }
+
+        if (kind == ColumnarData.KIND_DOUBLE) {
+            double[] values  = segment.doubles[col];
+            double   min     = 0;
+            double   max     = 0;
+            boolean  hasNull = false;
+            int      nonNull = 0;
+
+            for (int i = 0; i < count; i++) {
+                int index = selected[i];
+
+                if (segment.isNull(col, index)) {
+                    hasNull = true;
+
+                    continue;
+                }
+
+                double value = values[index];
+
+                switch (opType) {
+
+                    case OpTypes.SUM :
+                    case OpTypes.AVG :
+                        function.addDoubleValue(value);
+                        break;
+
+                    case OpTypes.MIN :
+                        if (nonNull == 0
+                                || ColumnarData.compareDouble(value, min)
+                                   < 0) {
+                            min = value;
+                        }
+                        break;
+
+                    case OpTypes.MAX :
+                        if (nonNull == 0
+                                || ColumnarData.compareDouble(value, max)
+                                   > 0) {
+                            max = value;
+                        }
+                        break;
+                }
+
+                nonNull++;
+            }
+
+            if (hasNull) {
+                function.addNull();
+            }
+
+            if (nonNull > 0) {
+                switch (opType) {
+
+                    case OpTypes.MIN :
+                        function.add(session, Double.valueOf(min));
+                        break;
+
+                    case OpTypes.MAX :
+                        function.add(session, Double.valueOf(max));
+                        break;
+                }
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            function.add(session,
+                         columnarData.getValue(segment, selected[i], col));
+        }
+    }
+
+    /**
+     * Returns the filters with the values for this execution, or null if
+     * no row can satisfy the predicates.
+     */
+    private Filter[] getFilters(Session session, PersistentStore store) {
+
+        ColumnarData columnarData =
+            ((RowStoreColumnar) store).getColumnarData();
+        Filter[] filters = new Filter[predicates.length];
+
+        for (int i = 0; i < predicates.length; i++) {
+            filters[i] = predicates[i].getFilter(session, columnarData);
+
+            if (filters[i] == null) {
+                return null;
+            }
+        }
+
+        return filters;
+    }
+
+    /**
+     * Sets the indexes of the visible rows of the segment that satisfy the
+     * filters and returns the count. The rows are also copied when an
+     * array is given.
+     */
+    private static int select(Session session, PersistentStore store,
+                              ColumnarData columnarData, Segment segment,
+                              Filter[] filters, int[] selected, Row[] rows) {
+
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i].canSkip(segment)) {
+                return 0;
+            }
+        }
+
+        store.readLock();
+
+        try {
+            Row[] segmentRows = segment.rows;
+            int   count       = 0;
+
+            for (int i = 0; i < segmentRows.length; i++) {
+                if (segmentRows[i] != null) {
+                    selected[count++] = i;
+                }
+            }
+
+            for (int i = 0; i < filters.length && count > 0; i++) {
+                count = filters[i].filter(session, columnarData, segment,
+                                          selected, count);
+            }
+
+            int visible = 0;
+
+            for (int i = 0; i < count; i++) {
+                int index = selected[i];
+                Row row   = segmentRows[index];
+
+                if (row.rowAction == null || session == null
+                        || store.canRead(session, row,
+                                         TransactionManager.ACTION_READ,
+                                         null)) {
+                    if (rows != null) {
+                        rows[visible] = row;
+                    }
+
+                    selected[visible++] = index;
+                }
+            }
+
+            return visible;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * A predicate on a column that is part of the compiled statement.
+     */
+    static final class Predicate {
+
+        final int        column;
+        final int        opType;
+        final Type       type;
+        final Expression valueExpression;
+
+        Predicate(Expression column, int opType, Expression value) {
+
+            this.column     = column.getColumnIndex();
+            this.opType     = opType;
+            this.type       = column.getDataType();
+            valueExpression = value;
+        }
+
+        /**
+         * Returns the filter for the current value, or null if the value is
+         * null and no row can satisfy the predicate.
+         */
+        Filter getFilter(Session session, ColumnarData columnarData) {
+
+            Filter filter = new Filter(this, columnarData.kinds[column]);
+
+            switch (opType) {
+
+                case OpTypes.IS_NULL :
+                case OpTypes.NOT :
+                    return filter;
+
+                case OpTypes.EQUAL :
+                    filter.accept = EQUAL;
+                    break;
+
+                case OpTypes.NOT_EQUAL :
+                    filter.accept = LESS | GREATER;
+                    break;
+
+                case OpTypes.GREATER :
+                    filter.accept = GREATER;
+                    break;
+
+                case OpTypes.GREATER_EQUAL :
+                    filter.accept = GREATER | EQUAL;
+                    break;
+
+                case OpTypes.SMALLER :
+                    filter.accept = LESS;
+                    break;
+
+                case OpTypes.SMALLER_EQUAL :
+                    filter.accept = LESS | EQUAL;
+                    break;
+            }
+
+            Object value = valueExpression.getValue(session);
+
+            if (value instanceof Object[]) {
+                value = ((Object[]) value)[0];
+            }
+
+            if (value == null) {
+                return null;
+            }
+
+            filter.value = value;
+
+            switch (filter.kind) {
+
+                case ColumnarData.KIND_LONG :
+                    if (value instanceof Integer || value instanceof Long) {
+                        filter.longValue = ((Number) value).longValue();
+                        filter.mode      = Filter.MODE_LONG;
+                    }
+                    break;
+
+                case ColumnarData.KIND_DOUBLE :
+                    if (value instanceof Number) {
+                        filter.doubleValue = ((Number) value).doubleValue();
+                        filter.mode        = Filter.MODE_DOUBLE;
+                    }
+                    break;
+
+                case ColumnarData.KIND_DICTIONARY : {
+                    ColumnarData.Dictionary dictionary =
+                        columnarData.dictionaries[column];
+                    int       size   = dictionary.size;
+                    Object[]  values = dictionary.values;
+                    boolean[] match  = new boolean[size];
+
+                    for (int i = 0; i < size; i++) {
+                        match[i] = filter.test(session, values[i]);
+                    }
+
+                    filter.dictionaryMatch = match;
+                    filter.mode            = Filter.MODE_DICTIONARY;
+
+                    break;
+                }
+            }
+
+            return filter;
+        }
+    }
+
+    /**
+     * A predicate with the value for one execution.
+     */
+    static final class Filter {
+
+        static final int MODE_OBJECT     = 0;
+        static final int MODE_LONG       = 1;
+        static final int MODE_DOUBLE     = 2;
+        static final int MODE_DICTIONARY = 3;
+
+        //
+        final Predicate predicate;
+        final int       column;
+        final int       kind;
+        int             mode;
+        int             accept;
+        Object          value;
+        long            longValue;
+        double          doubleValue;
+        boolean[]       dictionaryMatch;
+
+        Filter(Predicate predicate, int kind) {
+
+            this.predicate = predicate;
+            this.column    = predicate.column;
+            this.kind      = kind;
+        }
+
+        boolean test(Session session, Object columnValue) {
+
+            int result = predicate.type.compare(session, columnValue, value,
+                                                predicate.opType);
+
+            return isAccepted(result);
+        }
+
+        private boolean isAccepted(int result) {
+
+            int bit = result < 0 ? LESS
+                                 : result > 0 ? GREATER
+                                              : EQUAL;
+
+            return (accept & bit) != 0;
+        }
+
+        /**
+         * Returns true if the zone map of the segment excludes all rows.
+         */
+        boolean canSkip(Segment segment) {
+
+            switch (predicate.opType) {
+
+                case OpTypes.IS_NULL :
+                    return !segment.hasNull[column];
+
+                case OpTypes.NOT :
+                    return !segment.hasValue[column];
+            }
+
+            if (!segment.hasValue[column]) {
+                return true;
+            }
+
+            int low;
+            int high;
+
+            switch (mode) {
+
+                case MODE_LONG :
+                    low = ColumnarData.compareLong(segment.minLong[column],
+                                                   longValue);
+                    high = ColumnarData.compareLong(segment.maxLong[column],
+                                                    longValue);
+                    break;
+
+                case MODE_DOUBLE :
+                    low = ColumnarData.compareDouble(
+                        segment.minDouble[column], doubleValue);
+                    high = ColumnarData.compareDouble(
+                        segment.maxDouble[column], doubleValue);
+                    break;
+
+                default :
+                    return false;
+            }
+
+            // bits for the comparison results between low and high
+            int possible = ((1 << (high + 2)) - 1) & ~((1 << (low + 1)) - 1);
+
+            return (accept & possible) == 0;
+        }
+
+        /**
+         * Removes the indexes that fail the predicate from the selection and
+         * returns the new count.
+         */
+        int filter(Session session, ColumnarData columnarData,
+                   Segment segment, int[] selected, int count) {
+
+            long[] nulls    = segment.nulls[column];
+            int    newCount = 0;
+
+            switch (predicate.opType) {
+
+                case OpTypes.IS_NULL :
+                case OpTypes.NOT : {
+                    boolean isNull = predicate.opType == OpTypes.IS_NULL;
+
+                    for (int i = 0; i < count; i++) {
+                        int index = selected[i];
+
+                        if (((nulls[index >> 6] & (1L << index)) != 0)
+                                == isNull) {
+                            selected[newCount++] = index;
+                        }
+                    }
+
+                    return newCount;
+                }
+            }
+
+            switch (mode) {
+
+                case MODE_LONG : {
+                    long[] values = segment.longs[column];
+
+                    for (int i = 0; i < count; i++) {
+                        int index = selected[i];
+
+                        if ((nulls[index >> 6] & (1L << index)) != 0) {
+                            continue;
+                        }
+
+                        long a = values[index];
+                        int bit = a < longValue ? LESS
+                                                : a > longValue ? GREATER
+                                                                : EQUAL;
+
+                        if ((accept & bit) != 0) {
+                            selected[newCount++] = index;
+                        }
+                    }
+
+                    return newCount;
+                }
+                case MODE_DOUBLE : {
+                    double[] values = segment.doubles[column];
+
+                    for (int i = 0; i < count; i++) {
+                        int index = selected[i];
+
+                        if ((nulls[index >> 6] & (1L << index)) != 0) {
+                            continue;
+                        }
+
+                        int result = ColumnarData.compareDouble(
+                            values[index], doubleValue);
+
+                        if (isAccepted(result)) {
+                            selected[newCount++] = index;
+                        }
+                    }
+
+                    return newCount;
+                }
+                case MODE_DICTIONARY : {
+                    int[]     codes = segment.codes[column];
+                    boolean[] match = dictionaryMatch;
+
+                    for (int i = 0; i < count; i++) {
+                        int index = selected[i];
+                        int code  = codes[index];
+
+                        if (code == ColumnarData.CODE_NULL) {
+                            continue;
+                        }
+
+                        boolean result;
+
+                        if (code >= 0 && code < match.length) {
+                            result = match[code];
+                        } else {
+                            result = test(session,
+                                          columnarData.getValue(segment,
+                                              index, column));
+                        }
+
+                        if (result) {
+                            selected[newCount++] = index;
+                        }
+                    }
+
+                    return newCount;
+                }
+                default : {
+                    for (int i = 0; i < count; i++) {
+                        int    index = selected[i];
+                        Object a = columnarData.getValue(segment, index,
+                                                         column);
+
+                        if (a != null && test(session, a)) {
+                            selected[newCount++] = index;
+                        }
+                    }
+
+                    return newCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the selected rows of one segment at a time.
+     */
+    private final class ColumnarIterator implements RowIterator {
+
+        final Session         session;
+        final PersistentStore store;
+        final Filter[]        filters;
+        final ColumnarData    columnarData;
+        final Segment[]       segments;
+        final int[]           selected = new int[ColumnarData.segmentSize];
+        final Row[]           rows     = new Row[ColumnarData.segmentSize];
+        int                   segmentIndex;
+        int                   rowCount;
+        int                   rowIndex;
+        Row                   currentRow;
+
+        ColumnarIterator(Session session, PersistentStore store,
+                         Filter[] filters) {
+
+            this.session = session;
+            this.store   = store;
+            this.filters = filters;
+            columnarData = ((RowStoreColumnar) store).getColumnarData();
+            segments     = columnarData.segments;
+        }
+
+        public Object getField(int col) {
+            return currentRow.getField(col);
+        }
+
+        public boolean next() {
+
+            while (rowIndex == rowCount) {
+                if (segmentIndex == segments.length) {
+                    currentRow = null;
+
+                    return false;
+                }
+
+                rowIndex = 0;
+                rowCount = select(session, store, columnarData,
+                                  segments[segmentIndex++], filters,
+                                  selected, rows);
+            }
+
+            currentRow = rows[rowIndex];
+
+            rows[rowIndex++] = null;
+
+            return true;
+        }
+
+        public Row getCurrentRow() {
+            return currentRow;
+        }
+
+        public Object[] getCurrent() {
+            return currentRow.getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return currentRow.getId();
+        }
+    }
+}
@@ -0,0 +1,921 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import java.math.BigDecimal;
+
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Compiled form of a condition or a numeric expression of a statement that
+ * has been executed many times.<p>
+ *
+ * The expression is compiled into a tree of nodes that mirrors the tree of
+ * the expression. Comparisons, IS NULL and arithmetic over numeric columns,
+ * constants and parameters of the types supported by VectorFilter are
+ * evaluated with primitive values, without the type dispatch of the
+ * interpreted evaluation and without the boxing of intermediate results.
+ * Any other operand of AND, OR and NOT is evaluated with the expression
+ * itself. The order of evaluation is the same as in the interpreted form.<p>
+ *
+ * Where a compiled comparison or arithmetic expression would raise an
+ * exception or produce a value that does not fit a long, for example for
+ * an integer division by zero, the expression itself is evaluated instead.
+ * A null operand does not stop the evaluation of the other operand in the
+ * interpreted form, so the expression itself is also evaluated when an
+ * operand is null and the other operand may raise an exception.<p>
+ *
+ * The nodes are immutable and are shared by all the sessions that execute
+ * the statement.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class CompiledExpression {
+
+    // results of a condition
+    static final int FALSE   = 0;
+    static final int TRUE    = 1;
+    static final int UNKNOWN = 2;
+
+    // representation of numeric values
+    private static final int MODE_INT    = 0;
+    private static final int MODE_LONG   = 1;
+    private static final int MODE_EXACT  = 2;
+    private static final int MODE_DOUBLE = 3;
+
+    /** signals an evaluation that is left to the expression */
+    private static final UnsureException unsure = new UnsureException();
+
+    //
+    final Expression     expression;
+    private final Node   condition;
+    private final Value  value;
+
+    private CompiledExpression(Expression expression, Node condition,
+                               Value value) {
+
+        this.expression = expression;
+        this.condition  = condition;
+        this.value      = value;
+    }
+
+    /**
+     * Returns the compiled form of a condition, or null if no part of the
+     * condition can be compiled.
+     */
+    static CompiledExpression compileCondition(Expression e) {
+
+        if (e == null) {
+            return null;
+        }
+
+        Node node = compileNode(e);
+
+        if (node == null || node instanceof GenericNode) {
+            return null;
+        }
+
+        return new CompiledExpression(e, node, null);
+    }
+
+    /**
+     * Returns the compiled form of an arithmetic expression, or null if it
+     * cannot be compiled.
+     */
+    static CompiledExpression compileValue(Expression e) {
+
+        if (!(e instanceof ExpressionArithmetic)) {
+            return null;
+        }
+
+        switch (e.getType()) {
+
+            case OpTypes.NEGATE :
+            case OpTypes.ADD :
+            case OpTypes.SUBTRACT :
+            case OpTypes.MULTIPLY :
+            case OpTypes.DIVIDE :
+                break;
+
+            default :
+                return null;
+        }
+
+        Value node = compileValueNode(e);
+
+        if (node == null) {
+            return null;
+        }
+
+        return new CompiledExpression(e, null, node);
+    }
+
+    boolean testCondition(Session session) {
+        return condition.test(session) == TRUE;
+    }
+
+    Object getValue(Session session) {
+
+        try {
+            if (value.isNull(session)) {
+                return value.canFail ? expression.getValue(session)
+                                     : null;
+            }
+
+            switch (value.mode) {
+
+                case MODE_INT :
+                    return Integer.valueOf((int) value.getLong(session));
+
+                case MODE_LONG :
+                    return Long.valueOf(value.getLong(session));
+
+                case MODE_EXACT :
+                    return BigDecimal.valueOf(value.getLong(session));
+
+                default :
+                    return new Double(value.getDouble(session));
+            }
+        } catch (UnsureException ex) {
+            return expression.getValue(session);
+        }
+    }
+
+    private static Node compileNode(Expression e) {
+
+        if (!(e instanceof ExpressionLogical)) {
+            return new GenericNode(e);
+        }
+
+        int opType = e.getType();
+
+        switch (opType) {
+
+            case OpTypes.AND :
+            case OpTypes.OR : {
+                Node left  = compileNode(e.getLeftNode());
+                Node right = compileNode(e.getRightNode());
+
+                if (left instanceof GenericNode
+                        && right instanceof GenericNode) {
+                    return new GenericNode(e);
+                }
+
+                return new LogicalNode(e, opType == OpTypes.AND, left, right);
+            }
+            case OpTypes.NOT : {
+                Node left = compileNode(e.getLeftNode());
+
+                if (left instanceof GenericNode) {
+                    return new GenericNode(e);
+                }
+
+                return new NotNode(e, left);
+            }
+            case OpTypes.IS_NULL :
+            case OpTypes.IS_NOT_NULL : {
+                Value left = compileValueNode(e.getLeftNode());
+
+                if (left == null || left.canFail) {
+                    return new GenericNode(e);
+                }
+
+                return new NullTestNode(e, opType == OpTypes.IS_NULL, left);
+            }
+            case OpTypes.EQUAL :
+            case OpTypes.NOT_EQUAL :
+            case OpTypes.GREATER :
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+            case OpTypes.SMALLER :
+            case OpTypes.SMALLER_EQUAL : {
+                if (e.getSubType() == OpTypes.ANY_QUANTIFIED
+                        || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                    return new GenericNode(e);
+                }
+
+                Value left  = compileValueNode(e.getLeftNode());
+                Value right = compileValueNode(e.getRightNode());
+
+                if (left == null || right == null) {
+                    return new GenericNode(e);
+                }
+
+                int compareMode;
+
+                if (left.mode == MODE_DOUBLE) {
+                    compareMode = VectorFilter.COMPARE_DOUBLE;
+                    right       = toDouble(right);
+                } else if (right.mode != MODE_DOUBLE) {
+                    compareMode = VectorFilter.COMPARE_LONG;
+                } else if (left.mode == MODE_INT) {
+                    compareMode = VectorFilter.COMPARE_INTEGER_DOUBLE;
+                } else {
+                    compareMode = VectorFilter.COMPARE_EXACT_DOUBLE;
+                }
+
+                return new ComparisonNode(e, compareMode,
+                                          VectorFilter.getAcceptBits(opType),
+                                          left, right);
+            }
+            default :
+                return new GenericNode(e);
+        }
+    }
+
+    private static Value compileValueNode(Expression e) {
+
+        Type type = e.getDataType();
+
+        if (type == null || !VectorFilter.isSupportedType(type)) {
+            return null;
+        }
+
+        int mode = getMode(type);
+
+        switch (e.getType()) {
+
+            case OpTypes.COLUMN :
+                if (type != e.getColumn().getDataType()) {
+                    return null;
+                }
+
+                return new ColumnNode(mode, e.getRangeVariable().rangePosition,
+                                      e.getColumnIndex());
+
+            case OpTypes.VALUE : {
+                Object value = e.getValue(null);
+
+                if (value == null) {
+                    return new ConstantNode(mode, true, 0, 0);
+                }
+
+                try {
+                    if (mode == MODE_DOUBLE) {
+                        return new ConstantNode(mode, false, 0,
+                                                toDouble(value));
+                    }
+
+                    return new ConstantNode(mode, false, toLong(value), 0);
+                } catch (UnsureException ex) {
+                    return null;
+                }
+            }
+            case OpTypes.DYNAMIC_PARAM :
+                return new ParameterNode(mode, e);
+
+            case OpTypes.NEGATE : {
+                if (!(e instanceof ExpressionArithmetic)) {
+                    return null;
+                }
+
+                Value left = compileValueNode(e.getLeftNode());
+
+                if (left == null
+                        || (left.mode == MODE_DOUBLE)
+                           != (mode == MODE_DOUBLE)) {
+                    return null;
+                }
+
+                return new ArithmeticNode(OpTypes.NEGATE, type, mode, left,
+                                          null);
+            }
+            case OpTypes.ADD :
+            case OpTypes.SUBTRACT :
+            case OpTypes.MULTIPLY :
+            case OpTypes.DIVIDE : {
+                if (!(e instanceof ExpressionArithmetic)) {
+                    return null;
+                }
+
+                Value left  = compileValueNode(e.getLeftNode());
+                Value right = compileValueNode(e.getRightNode());
+
+                if (left == null || right == null) {
+                    return null;
+                }
+
+                if (mode == MODE_DOUBLE) {
+                    left  = toDouble(left);
+                    right = toDouble(right);
+                } else if (left.mode == MODE_DOUBLE
+                           || right.mode == MODE_DOUBLE) {
+                    return null;
+                } else if (mode == MODE_INT) {
+                    if (left.mode != MODE_INT || right.mode != MODE_INT) {
+                        return null;
+                    }
+                } else if (mode == MODE_LONG) {
+                    if (left.mode == MODE_EXACT || right.mode == MODE_EXACT) {
+                        return null;
+                    }
+                }
+
+                return new ArithmeticNode(e.getType(), type, mode, left,
+                                          right);
+            }
+            default :
+                return null;
+        }
+    }
+
+    private static int getMode(Type type) {
+
+        if (VectorFilter.isIntType(type)) {
+            return MODE_INT;
+        }
+
+        if (VectorFilter.isDoubleType(type)) {
+            return MODE_DOUBLE;
+        }
+
+        if (type.typeCode == Types.SQL_BIGINT) {
+            return MODE_LONG;
+        }
+
+        return MODE_EXACT;
+    }
+
+    private static Value toDouble(Value node) {
+
+        if (node.mode == MODE_DOUBLE) {
+            return node;
+        }
+
+        return new CastNode(node);
+    }
+
+    /**
+     * Returns a non-null integral value as a long. A DECIMAL value that may
+     * not fit in a long is unsure.
+     */
+    static long toLong(Object value) {
+
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal) value;
+
+            if (bd.scale() == 0 && bd.precision() < 19) {
+                return bd.longValue();
+            }
+        }
+
+        throw unsure;
+    }
+
+    static double toDouble(Object value) {
+
+        if (value instanceof Double) {
+            return ((Double) value).doubleValue();
+        }
+
+        throw unsure;
+    }
+
+    static int getResult(Object value) {
+
+        if (value == null) {
+            return UNKNOWN;
+        }
+
+        return ((Boolean) value).booleanValue() ? TRUE
+                                                : FALSE;
+    }
+
+    /**
+     * Thrown without a stack trace when a compiled node cannot produce the
+     * same result as the expression.
+     */
+    private static final class UnsureException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * A compiled condition.
+     */
+    private abstract static class Node {
+
+        /** returns TRUE, FALSE or UNKNOWN */
+        abstract int test(Session session);
+    }
+
+    /**
+     * A condition that is evaluated with the expression.
+     */
+    private static final class GenericNode extends Node {
+
+        final Expression expression;
+
+        GenericNode(Expression expression) {
+            this.expression = expression;
+        }
+
+        int test(Session session) {
+            return getResult(expression.getValue(session));
+        }
+    }
+
+    private static final class LogicalNode extends Node {
+
+        final Expression expression;
+        final boolean    isAnd;
+        final Node       left;
+        final Node       right;
+
+        LogicalNode(Expression expression, boolean isAnd, Node left,
+                    Node right) {
+
+            this.expression = expression;
+            this.isAnd      = isAnd;
+            this.left       = left;
+            this.right      = right;
+        }
+
+        int test(Session session) {
+
+            int decisive = isAnd ? FALSE
+                                 : TRUE;
+            int a        = left.test(session);
+
+            if (a == decisive) {
+                return a;
+            }
+
+            int b = right.test(session);
+
+            if (b == decisive) {
+                return b;
+            }
+
+            if (a == UNKNOWN || b == UNKNOWN) {
+                return UNKNOWN;
+            }
+
+            return a;
+        }
+    }
+
+    private static final class NotNode extends Node {
+
+        final Expression expression;
+        final Node       left;
+
+        NotNode(Expression expression, Node left) {
+            this.expression = expression;
+            this.left       = left;
+        }
+
+        int test(Session session) {
+
+            int a = left.test(session);
+
+            return a == TRUE ? FALSE
+                             : a == FALSE ? TRUE
+                                          : UNKNOWN;
+        }
+    }
+
+    private static final class NullTestNode extends Node {
+
+        final Expression expression;
+        final boolean    isNull;
+        final Value      left;
+
+        NullTestNode(Expression expression, boolean isNull, Value left) {
+
+            this.expression = expression;
+            this.isNull     = isNull;
+            this.left       = left;
+        }
+
+        int test(Session session) {
+            return left.isNull(session) == isNull ? TRUE
+                                                  : FALSE;
+        }
+    }
+
+    /**
+     * Comparison of two values according to NumberType.compare().
+     */
+    private static final class ComparisonNode extends Node {
+
+        final Expression expression;
+        final int        compareMode;
+        final int        accept;
+        final Value      left;
+        final Value      right;
+        final boolean    canFail;
+
+        ComparisonNode(Expression expression, int compareMode, int accept,
+                       Value left, Value right) {
+
+            this.expression  = expression;
+            this.compareMode = compareMode;
+            this.accept      = accept;
+            this.left        = left;
+            this.right       = right;
+            canFail          = left.canFail || right.canFail;
+        }
+
+        int test(Session session) {
+
+            boolean leftNull  = left.isNull(session);
+            boolean rightNull = right.isNull(session);
+
+            if (leftNull || rightNull) {
+                return canFail ? getResult(expression.getValue(session))
+                               : UNKNOWN;
+            }
+
+            int bit;
+
+            try {
+                bit = compare(session);
+            } catch (UnsureException ex) {
+                return getResult(expression.getValue(session));
+            }
+
+            return (accept & bit) == 0 ? FALSE
+                                       : TRUE;
+        }
+
+        private int compare(Session session) {
+
+            switch (compareMode) {
+
+                case VectorFilter.COMPARE_LONG : {
+                    long a = left.getLong(session);
+                    long b = right.getLong(session);
+
+                    return a > b ? VectorFilter.GREATER
+                                 : a < b ? VectorFilter.LESS
+                                         : VectorFilter.EQUAL;
+                }
+                case VectorFilter.COMPARE_DOUBLE : {
+                    double a = left.getDouble(session);
+                    double b = right.getDouble(session);
+
+                    return 1 << (ColumnarData.compareDouble(a, b) + 1);
+                }
+                default : {
+                    long   a  = left.getLong(session);
+                    double bd = right.getDouble(session);
+                    double ad = a;
+
+                    // the exact comparison fails for NaN and infinity
+                    if (compareMode == VectorFilter.COMPARE_EXACT_DOUBLE
+                            && (a > VectorFilter.maxExactLong
+                                || a < -VectorFilter.maxExactLong
+                                || Double.isNaN(bd)
+                                || Double.isInfinite(bd))) {
+                        throw unsure;
+                    }
+
+                    return ad > bd ? VectorFilter.GREATER
+                                   : bd > ad ? VectorFilter.LESS
+                                             : VectorFilter.EQUAL;
+                }
+            }
+        }
+    }
+
+    /**
+     * A compiled numeric value. The value is read only when it is not null.
+     */
+    private abstract static class Value {
+
+        final int     mode;
+        final boolean canFail;
+
+        Value(int mode, boolean canFail) {
+            this.mode    = mode;
+            this.canFail = canFail;
+        }
+
+        abstract boolean isNull(Session session);
+
+        long getLong(Session session) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CompiledExpression");
+        }
+
+        double getDouble(Session session) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "CompiledExpression");
+        }
+    }
+
+    private static final class ColumnNode extends Value {
+
+        final int rangePosition;
+        final int columnIndex;
+
+        ColumnNode(int mode, int rangePosition, int columnIndex) {
+
+            super(mode, false);
+
+            this.rangePosition = rangePosition;
+            this.columnIndex   = columnIndex;
+        }
+
+        private Object getField(Session session) {
+            return session.sessionContext.rangeIterators[rangePosition]
+                .getField(columnIndex);
+        }
+
+        boolean isNull(Session session) {
+            return getField(session) == null;
+        }
+
+        long getLong(Session session) {
+            return toLong(getField(session));
+        }
+
+        double getDouble(Session session) {
+            return toDouble(getField(session));
+        }
+    }
+
+    private static final class ConstantNode extends Value {
+
+        final boolean isNull;
+        final long    longValue;
+        final double  doubleValue;
+
+        ConstantNode(int mode, boolean isNull, long longValue,
+                     double doubleValue) {
+
+            super(mode, false);
+
+            this.isNull      = isNull;
+            this.longValue   = longValue;
+            this.doubleValue = doubleValue;
+        }
+
+        boolean isNull(Session session) {
+            return isNull;
+        }
+
+        long getLong(Session session) {
+            return longValue;
+        }
+
+        double getDouble(Session session) {
+            return doubleValue;
+        }
+    }
+
+    private static final class ParameterNode extends Value {
+
+        final Expression expression;
+
+        ParameterNode(int mode, Expression expression) {
+
+            super(mode, false);
+
+            this.expression = expression;
+        }
+
+        boolean isNull(Session session) {
+            return expression.getValue(session) == null;
+        }
+
+        long getLong(Session session) {
+            return toLong(expression.getValue(session));
+        }
+
+        double getDouble(Session session) {
+            return toDouble(expression.getValue(session));
+        }
+    }
+
+    /**
+     * Converts an integral value to double.
+     */
+    private static final class CastNode extends Value {
+
+        final Value left;
+
+        CastNode(Value left) {
+
+            super(MODE_DOUBLE, left.canFail);
+
+            this.left = left;
+        }
+
+        boolean isNull(Session session) {
+            return left.isNull(session);
+        }
+
+        double getDouble(Session session) {
+            return left.getLong(session);
+        }
+    }
+
+    /**
+     * Arithmetic as in NumberType. The result is truncated to int for the
+     * types smaller than BIGINT and is exact for DECIMAL. Division by zero,
+     * negation of the smallest value of the type and DECIMAL values out of
+     * range are unsure.
+     */
+    private static final class ArithmeticNode extends Value {
+
+        final int   opType;
+        final Value left;
+        final Value right;
+        final long  minValue;
+
+        /** absolute limit of DECIMAL values with less than 19 digits */
+        final long limit;
+
+        ArithmeticNode(int opType, Type type, int mode, Value left,
+                       Value right) {
+
+            super(mode, getCanFail(opType, mode, left, right));
+
+            this.opType = opType;
+            this.left   = left;
+            this.right  = right;
+            minValue    = VectorFilter.getMinValue(type);
+
+            long limit = 0;
+
+            if (mode == MODE_EXACT && type.precision < 19) {
+                limit = 1;
+
+                for (int i = 0; i < type.precision; i++) {
+                    limit *= 10;
+                }
+            }
+
+            this.limit = limit;
+        }
+
+        private static boolean getCanFail(int opType, int mode, Value left,
+                                          Value right) {
+
+            if (left.canFail || (right != null && right.canFail)) {
+                return true;
+            }
+
+            switch (opType) {
+
+                case OpTypes.NEGATE :
+                    return mode != MODE_DOUBLE;
+
+                case OpTypes.DIVIDE :
+                    return true;
+
+                default :
+                    return mode == MODE_EXACT;
+            }
+        }
+
+        boolean isNull(Session session) {
+            return left.isNull(session)
+                   || (right != null && right.isNull(session));
+        }
+
+        long getLong(Session session) {
+
+            long a = left.getLong(session);
+            long r;
+
+            if (opType == OpTypes.NEGATE) {
+                if (a == minValue) {
+                    throw unsure;
+                }
+
+                r = -a;
+            } else {
+                long    b       = right.getLong(session);
+                boolean isExact = mode == MODE_EXACT;
+
+                switch (opType) {
+
+                    case OpTypes.ADD :
+                        r = a + b;
+
+                        if (isExact && ((a ^ r) & (b ^ r)) < 0) {
+                            throw unsure;
+                        }
+                        break;
+
+                    case OpTypes.SUBTRACT :
+                        r = a - b;
+
+                        if (isExact && ((a ^ b) & (a ^ r)) < 0) {
+                            throw unsure;
+                        }
+                        break;
+
+                    case OpTypes.MULTIPLY :
+                        r = a * b;
+
+                        if (isExact
+                                && !VectorFilter.isExactProduct(a, b, r)) {
+                            throw unsure;
+                        }
+                        break;
+
+                    case OpTypes.DIVIDE :
+                        if (b == 0
+                                || (isExact && b == -1
+                                    && a == Long.MIN_VALUE)) {
+                            throw unsure;
+                        }
+
+                        r = a / b;
+                        break;
+
+                    default :
+                        throw Error.runtimeError(ErrorCode.U_S0500,
+                                                 "CompiledExpression");
+                }
+            }
+
+            if (mode == MODE_INT) {
+                return (int) r;
+            }
+
+            if (limit != 0 && (r >= limit || r <= -limit)) {
+                throw unsure;
+            }
+
+            return r;
+        }
+
+        double getDouble(Session session) {
+
+            double a = left.getDouble(session);
+
+            switch (opType) {
+
+                case OpTypes.NEGATE :
+                    return -a;
+
+                case OpTypes.ADD :
+                    return a + right.getDouble(session);
+
+                case OpTypes.SUBTRACT :
+                    return a - right.getDouble(session);
+
+                case OpTypes.MULTIPLY :
+                    return a * right.getDouble(session);
+
+                case OpTypes.DIVIDE : {
+                    double b = right.getDouble(session);
+
+                    if (b == 0 && session.database.sqlDoubleNaN) {
+                        throw unsure;
+                    }
+
+                    return a / b;
+                }
+                default :
+                    throw Error.runtimeError(ErrorCode.U_S0500,
+                                             "CompiledExpression");
+            }
+        }
+    }
+}
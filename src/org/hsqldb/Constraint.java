@@ -783,8 +783,8 @@ public final class Constraint implements SchemaObject {
                     }
 
                     // core.matchType == OpTypes.MATCH_FULL
-                } else if (core.mainIndex.existsParent(session, store, data,
-                                                       core.refCols)) {
+                } else if (core.mainTable.getLookupIndex(core.mainIndex)
+                        .existsParent(session, store, data, core.refCols)) {
                     return;
                 }
 
@@ -910,8 +910,9 @@ public final class Constraint implements SchemaObject {
         }
 
         PersistentStore store = core.refTable.getRowStore(session);
+        Index           index = core.refTable.getLookupIndex(core.refIndex);
 
-        return core.refIndex.findFirstRow(session, store, row, core.mainCols);
+        return index.findFirstRow(session, store, row, core.mainCols);
     }
 
     /**
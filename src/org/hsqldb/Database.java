@@ -844,6 +844,9 @@ public class Database {
             Session sysSession = sessionManager.newSysSession();
 
             try {
+
+                // most of the modified rows are written before the wait
+                logger.saveChangedRows();
                 sysSession.executeCompiledStatement(checkpoint,
                                                     ValuePool.emptyObjectArray,
                                                     0);
@@ -278,9 +278,7 @@ public class ExpressionAggregate extends Expression {
         }
 
         if (currValue == null) {
-            currValue = new SetFunction(session, opType, nodes[LEFT].dataType,
-                                        dataType, isDistinctAggregate,
-                                        arrayType);
+            currValue = newSetFunction(session);
         }
 
         Object newValue = nodes[LEFT].opType == OpTypes.ASTERISK
@@ -292,6 +290,11 @@ public class ExpressionAggregate extends Expression {
         return currValue;
     }
 
+    SetFunction newSetFunction(Session session) {
+        return new SetFunction(session, opType, nodes[LEFT].dataType,
+                               dataType, isDistinctAggregate, arrayType);
+    }
+
     /**
      * Get the result of a SetFunction or an ordinary value
      *
@@ -0,0 +1,512 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.map.ValuePool;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreAVLHybrid;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Build and probe table for an equi-join on columns of a range variable
+ * that have no usable index.<p>
+ *
+ * The build side is read once with a full scan and each row is linked
+ * into a bucket chain for the hash of its join columns. If the number of
+ * rows exceeds the result memory row count of the session, or the maximum
+ * number of rows in the cache when the session has no such limit, the rows
+ * are moved to a statement scope table indexed on the hash, which is stored
+ * in the session data file. If there is no temp directory for the session
+ * data file, the hash table is dropped and the range is scanned for each
+ * outer row instead, as in a nested loop join.<p>
+ *
+ * The hash is only used to find candidate rows. The join conditions remain
+ * in the non-index condition of the range and are checked for each row.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class HashJoinTable {
+
+    private static final int initialCapacity = 64;
+
+    //
+    final RangeVariable   rangeVar;
+    final Index           rangeIndex;
+    final Expression[]    keyExpressions;
+    final int[]           keyColumns;
+    final boolean[]       isCharacterKey;
+    final int             maxMemoryRowCount;
+    private final int     hashColumn;
+    private final Object[] hashData = new Object[1];
+
+    //
+    private int[]    hashTable;
+    private int[]    linkTable;
+    private int[]    hashValues;
+    private Object[] rowTable;
+    private int      size;
+
+    //
+    private TableBase       spillTable;
+    private PersistentStore spillStore;
+    private Index           spillIndex;
+
+    //
+    private PersistentStore store;
+    private boolean         isNestedLoop;
+
+    HashJoinTable(Session session, RangeVariable rangeVar,
+                  RangeVariableConditions conditions) {
+
+        Expression[] hashCond = conditions.hashCond;
+
+        this.rangeVar     = rangeVar;
+        this.rangeIndex   = conditions.rangeIndex;
+        keyExpressions    = new Expression[hashCond.length];
+        keyColumns        = new int[hashCond.length];
+        isCharacterKey    = new boolean[hashCond.length];
+        maxMemoryRowCount = getMaxMemoryRowCount(session);
+        hashColumn        = rangeVar.rangeTable.getColumnCount();
+
+        for (int i = 0; i < hashCond.length; i++) {
+            Expression e = hashCond[i];
+
+            keyColumns[i]     = e.getLeftNode().getColumnIndex();
+            keyExpressions[i] = e.getRightNode();
+            isCharacterKey[i] = e.getLeftNode().getDataType().isCharacterType();
+        }
+
+        hashTable  = new int[initialCapacity];
+        linkTable  = new int[initialCapacity];
+        hashValues = new int[initialCapacity];
+        rowTable   = new Object[initialCapacity];
+
+        ArrayUtil.fillArray(hashTable, -1);
+    }
+
+    /**
+     * Returns the result memory row count of the session, or the maximum
+     * number of rows in the cache if the session has no limit.
+     */
+    private static int getMaxMemoryRowCount(Session session) {
+
+        int count = session.getResultMemoryRowCount();
+
+        if (count <= 0) {
+            count = session.database.logger.getCacheMaxRows();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns true if an equality condition with a column on the left
+     * has operands for which SQL equality implies equal hash values.
+     */
+    static boolean isHashable(Expression e) {
+
+        Type left  = e.getLeftNode().getDataType();
+        Type right = e.getRightNode().getDataType();
+
+        if (left == null || right == null) {
+            return false;
+        }
+
+        if (isIntegerType(left)) {
+            return isIntegerType(right);
+        }
+
+        if (isStringType(left)) {
+            return isStringType(right);
+        }
+
+        return false;
+    }
+
+    private static boolean isIntegerType(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    private static boolean isStringType(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR :
+                return !type.getCollation().hasCollator();
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Reads all the visible rows of the table into the hash table.
+     */
+    void build(Session session, PersistentStore store) {
+
+        RowIterator it = rangeIndex.firstRow(session, store, 0, null);
+
+        this.store = store;
+
+        try {
+            while (it.next() && !isNestedLoop) {
+                Object[] data = it.getCurrent();
+                boolean  hasNull = false;
+                int      hash    = 0;
+
+                for (int i = 0; i < keyColumns.length; i++) {
+                    Object value = data[keyColumns[i]];
+
+                    if (value == null) {
+                        hasNull = true;
+
+                        break;
+                    }
+
+                    hash = 31 * hash + getHash(value, isCharacterKey[i]);
+                }
+
+                // a null never satisfies the equality
+                if (hasNull) {
+                    continue;
+                }
+
+                add(session, it.getCurrentRow(), hash);
+            }
+        } finally {
+            it.release();
+        }
+    }
+
+    /**
+     * Returns the rows with the same hash as the current values of the
+     * expressions for the outer ranges.
+     */
+    RowIterator findRows(Session session) {
+
+        int hash = 0;
+
+        for (int i = 0; i < keyExpressions.length; i++) {
+            Object value = keyExpressions[i].getValue(session);
+
+            if (value == null) {
+                return rangeIndex.emptyIterator();
+            }
+
+            hash = 31 * hash + getHash(value, isCharacterKey[i]);
+        }
+
+        if (isNestedLoop) {
+            return rangeIndex.firstRow(session, store, 0, null);
+        }
+
+        if (spillTable == null) {
+            return new BucketIterator(hash);
+        }
+
+        hashData[0] = ValuePool.getInt(hash);
+
+        RowIterator it = spillIndex.findFirstRow(session, spillStore,
+            hashData, 1, 0, OpTypes.EQUAL, false, null);
+
+        return new SpillIterator(it, hash);
+    }
+
+    /**
+     * Trailing spaces and case are ignored for strings, so values that are
+     * equal under any collation without a Collator have the same hash.
+     */
+    private static int getHash(Object value, boolean isString) {
+
+        if (isString) {
+            String s   = (String) value;
+            int    end = s.length();
+            int    h   = 0;
+
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+
+            for (int i = 0; i < end; i++) {
+                char c = Character.toLowerCase(
+                    Character.toUpperCase(s.charAt(i)));
+
+                h = 31 * h + c;
+            }
+
+            return h;
+        }
+
+        long v = ((Number) value).longValue();
+
+        return (int) (v ^ (v >>> 32));
+    }
+
+    private void add(Session session, Row row, int hash) {
+
+        if (spillTable != null) {
+            addSpillRow(session, row.getData(), hash);
+
+            return;
+        }
+
+        if (size >= maxMemoryRowCount) {
+            if (spill(session)) {
+                addSpillRow(session, row.getData(), hash);
+            }
+
+            return;
+        }
+
+        if (size == rowTable.length) {
+            resize(rowTable.length * 2);
+        }
+
+        int bucket = hash & (hashTable.length - 1);
+
+        rowTable[size]   = row;
+        hashValues[size] = hash;
+        linkTable[size]  = hashTable[bucket];
+        hashTable[bucket] = size;
+
+        size++;
+    }
+
+    private void resize(int newCapacity) {
+
+        rowTable   = (Object[]) ArrayUtil.resizeArray(rowTable, newCapacity);
+        hashValues = (int[]) ArrayUtil.resizeArray(hashValues, newCapacity);
+        linkTable  = new int[newCapacity];
+        hashTable  = new int[newCapacity];
+
+        ArrayUtil.fillArray(hashTable, -1);
+
+        for (int i = 0; i < size; i++) {
+            int bucket = hashValues[i] & (newCapacity - 1);
+
+            linkTable[i]      = hashTable[bucket];
+            hashTable[bucket] = i;
+        }
+    }
+
+    /**
+     * Moves the rows to a table in the session store. The table has the
+     * columns of the range table and an extra INTEGER column for the hash.
+     * Returns false if the table cannot be stored in the session data file,
+     * in which case the rows are discarded and the nested loop is used.
+     */
+    private boolean spill(Session session) {
+
+        Type[] types = new Type[hashColumn + 1];
+
+        ArrayUtil.copyArray(rangeVar.rangeTable.getColumnTypes(), types,
+                            hashColumn);
+
+        types[hashColumn] = Type.SQL_INTEGER;
+        spillTable = new TableBase(session, session.database,
+                                   TableBase.SCOPE_STATEMENT,
+                                   TableBase.SYSTEM_SUBQUERY, types);
+        spillIndex = spillTable.createAndAddIndexStructure(session, null,
+                new int[]{ hashColumn }, null, null, false, false, false);
+        spillStore = session.sessionData.getNewResultRowStore(spillTable,
+                true);
+        spillTable.store = spillStore;
+
+        if (spillStore instanceof RowStoreAVLHybrid) {
+            ((RowStoreAVLHybrid) spillStore).changeToDiskTable(session);
+        }
+
+        if (spillStore.isMemory()) {
+            spillStore.release();
+
+            spillTable   = null;
+            spillStore   = null;
+            spillIndex   = null;
+            isNestedLoop = true;
+        }
+
+        for (int i = 0; i < size && !isNestedLoop; i++) {
+            addSpillRow(session, ((Row) rowTable[i]).getData(),
+                        hashValues[i]);
+        }
+
+        hashTable  = null;
+        linkTable  = null;
+        hashValues = null;
+        rowTable   = null;
+        size       = 0;
+
+        return !isNestedLoop;
+    }
+
+    private void addSpillRow(Session session, Object[] data, int hash) {
+
+        Object[] newData = new Object[hashColumn + 1];
+
+        ArrayUtil.copyArray(data, newData, hashColumn);
+
+        newData[hashColumn] = ValuePool.getInt(hash);
+
+        Row row = (Row) spillStore.getNewCachedObject(session, newData,
+            false);
+
+        spillStore.indexRow(session, row);
+    }
+
+    /**
+     * Iterates over the bucket chain of the in-memory table.
+     */
+    private class BucketIterator implements RowIterator {
+
+        final int hash;
+        int       lookup;
+        Row       currentRow;
+
+        BucketIterator(int hash) {
+
+            this.hash = hash;
+            lookup    = hashTable[hash & (hashTable.length - 1)];
+        }
+
+        public Object getField(int col) {
+            return currentRow.getData()[col];
+        }
+
+        public boolean next() {
+
+            while (lookup != -1) {
+                int current = lookup;
+
+                lookup = linkTable[current];
+
+                if (hashValues[current] == hash) {
+                    currentRow = (Row) rowTable[current];
+
+                    return true;
+                }
+            }
+
+            currentRow = null;
+
+            return false;
+        }
+
+        public Row getCurrentRow() {
+            return currentRow;
+        }
+
+        public Object[] getCurrent() {
+            return currentRow.getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return currentRow.getId();
+        }
+    }
+
+    /**
+     * Iterates over the index of the spill table while the hash matches.
+     */
+    private class SpillIterator implements RowIterator {
+
+        final RowIterator it;
+        final Integer     hash;
+        boolean           isEnd;
+
+        SpillIterator(RowIterator it, int hash) {
+            this.it   = it;
+            this.hash = ValuePool.getInt(hash);
+        }
+
+        public Object getField(int col) {
+            return it.getField(col);
+        }
+
+        public boolean next() {
+
+            if (isEnd) {
+                return false;
+            }
+
+            if (it.next() && hash.equals(it.getField(hashColumn))) {
+                return true;
+            }
+
+            isEnd = true;
+
+            it.release();
+
+            return false;
+        }
+
+        public Row getCurrentRow() {
+            return it.getCurrentRow();
+        }
+
+        public Object[] getCurrent() {
+            return it.getCurrent();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {
+            it.release();
+        }
+
+        public long getRowId() {
+            return it.getRowId();
+        }
+    }
+}
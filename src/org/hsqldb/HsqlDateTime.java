@@ -60,7 +60,7 @@ import org.hsqldb.types.Types;
  * timezone.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 1.7.0
  */
 public class HsqlDateTime {
@@ -103,6 +103,12 @@ public class HsqlDateTime {
 
     public static long getDateSeconds(String s) {
 
+        long seconds = getGregorianSeconds(s, false);
+
+        if (seconds != Long.MIN_VALUE) {
+            return seconds;
+        }
+
         try {
             synchronized (sdfd) {
                 java.util.Date d = sdfd.parse(s);
@@ -125,6 +131,12 @@ public class HsqlDateTime {
 
     public static long getTimestampSeconds(String s) {
 
+        long seconds = getGregorianSeconds(s, true);
+
+        if (seconds != Long.MIN_VALUE) {
+            return seconds;
+        }
+
         try {
             synchronized (sdfts) {
                 java.util.Date d = sdfts.parse(s);
@@ -136,6 +148,93 @@ public class HsqlDateTime {
         }
     }
 
+    /**
+     * Computes the GMT seconds for a string in the exact form yyyy-MM-dd or
+     * yyyy-MM-dd HH:mm:ss without the shared, synchronized date formats.
+     * Used when many values are converted, as when text table rows are
+     * read.<p>
+     *
+     * Returns Long.MIN_VALUE if the string has a different form, is not a
+     * valid date and time, or is before 1583, when the Julian calendar
+     * rules of the date formats apply. The caller then uses the date format.
+     */
+    private static long getGregorianSeconds(String s, boolean hasTime) {
+
+        int length = hasTime ? 19
+                             : 10;
+
+        if (s.length() != length || s.charAt(4) != '-'
+                || s.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+
+        int year  = getDigits(s, 0, 4);
+        int month = getDigits(s, 5, 2);
+        int day   = getDigits(s, 8, 2);
+
+        if (year < 1583 || month < 1 || month > 12 || day < 1) {
+            return Long.MIN_VALUE;
+        }
+
+        boolean isLeap = (year % 4 == 0 && year % 100 != 0)
+                         || year % 400 == 0;
+        int     maxDay = month == 2 ? (isLeap ? 29
+                                              : 28)
+                                    : 30 + ((month + month / 8) & 1);
+
+        if (day > maxDay) {
+            return Long.MIN_VALUE;
+        }
+
+        int seconds = 0;
+
+        if (hasTime) {
+            if (s.charAt(10) != ' ' || s.charAt(13) != ':'
+                    || s.charAt(16) != ':') {
+                return Long.MIN_VALUE;
+            }
+
+            int hour   = getDigits(s, 11, 2);
+            int minute = getDigits(s, 14, 2);
+            int second = getDigits(s, 17, 2);
+
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59
+                    || second < 0 || second > 59) {
+                return Long.MIN_VALUE;
+            }
+
+            seconds = hour * 3600 + minute * 60 + second;
+        }
+
+        // days from 1970-01-01 in the Gregorian calendar, with the year
+        // starting in March
+        int  y    = month > 2 ? year
+                              : year - 1;
+        int  m    = month > 2 ? month - 3
+                              : month + 9;
+        long days = 365L * y + y / 4 - y / 100 + y / 400
+                    + (153 * m + 2) / 5 + day - 1 - 719468;
+
+        return days * 86400 + seconds;
+    }
+
+    private static int getDigits(String s, int offset, int count) {
+
+        int value = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
     public static void getTimestampString(StringBuffer sb, long seconds,
                                           int nanos, int scale) {
 
@@ -930,6 +930,10 @@ public class ParserCommand extends ParserDDL {
                         newType = TableBase.CACHED_TABLE;
                         break;
 
+                    case Tokens.COLUMNAR :
+                        newType = TableBase.COLUMNAR_TABLE;
+                        break;
+
                     default :
                         throw unexpectedToken();
                 }
@@ -937,6 +941,7 @@ public class ParserCommand extends ParserDDL {
                 switch (table.getTableType()) {
 
                     case TableBase.MEMORY_TABLE :
+                    case TableBase.COLUMNAR_TABLE :
                     case TableBase.CACHED_TABLE :
                     case TableBase.TEXT_TABLE :
                         break;
@@ -2275,6 +2280,25 @@ public class ParserCommand extends ParserDDL {
                 return new StatementCommand(StatementTypes.CHECK_INDEX, args,
                                             null, names);
             }
+            case Tokens.IMPORT : {
+                read();
+                readThis(Tokens.DATA);
+                readThis(Tokens.INTO);
+
+                Table table = readTableName();
+
+                readThis(Tokens.FROM);
+
+                String source = readQuotedString();
+                Object[] args = new Object[] {
+                    table.getName(), source
+                };
+                HsqlName[] names =
+                    database.schemaManager.getCatalogAndBaseTableNames();
+
+                return new StatementCommand(StatementTypes.IMPORT_DATA, args,
+                                            null, names);
+            }
             default :
                 throw unexpectedToken();
         }
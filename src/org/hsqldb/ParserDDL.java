@@ -123,6 +123,14 @@ public class ParserDDL extends ParserRoutine {
                 tableType = TableBase.MEMORY_TABLE;
                 break;
 
+            case Tokens.COLUMNAR :
+                read();
+                readThis(Tokens.TABLE);
+
+                isTable   = true;
+                tableType = TableBase.COLUMNAR_TABLE;
+                break;
+
             case Tokens.CACHED :
                 read();
                 readThis(Tokens.TABLE);
@@ -1314,6 +1322,7 @@ public class ParserDDL extends ParserRoutine {
 
         Table    table;
         HsqlName indexHsqlName;
+        int      structure = Index.STRUCTURE_AVL;
 
         read();
 
@@ -1323,9 +1332,7 @@ public class ParserDDL extends ParserRoutine {
 
         if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
-                    readThis("BTREE");
-                }
+                structure = readIndexStructure();
             }
         }
 
@@ -1347,13 +1354,11 @@ public class ParserDDL extends ParserRoutine {
 
         int[] indexColumns = readColumnList(table, true);
 
-        if (database.sqlSyntaxMys) {
-            if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
-                    readThis("BTREE");
-                }
-            }
+        if (readIfThis(Tokens.USING)) {
+            structure = readIndexStructure();
+        }
 
+        if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.COMMENT)) {
                 String comment = readQuotedString();
 
@@ -1364,7 +1369,7 @@ public class ParserDDL extends ParserRoutine {
         String   sql  = getLastPart();
         Object[] args = new Object[] {
             table, indexColumns, indexHsqlName, Boolean.valueOf(unique), null,
-            ifNotExists
+            ifNotExists, ValuePool.getInt(structure)
         };
 
         return new StatementSchema(sql, StatementTypes.CREATE_INDEX, args,
@@ -1373,6 +1378,20 @@ public class ParserDDL extends ParserRoutine {
         });
     }
 
+    /**
+     * Reads the kind of index after USING.
+     */
+    private int readIndexStructure() {
+
+        if (readIfThis(Tokens.T_HASH)) {
+            return Index.STRUCTURE_HASH;
+        }
+
+        readThis(Tokens.T_BTREE);
+
+        return Index.STRUCTURE_BTREE;
+    }
+
     StatementSchema compileCreateSchema() {
 
         HsqlName schemaName       = null;
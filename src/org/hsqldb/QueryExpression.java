@@ -577,6 +577,14 @@ public class QueryExpression implements RangeGroup {
         return values[0];
     }
 
+    /**
+     * Returns a result with rows that are produced as they are read, or
+     * null if the rows must be produced in full before they are read.
+     */
+    Result getStreamResult(Session session, int maxRows) {
+        return null;
+    }
+
     Result getResult(Session session, int maxRows) {
 
         if (isRecursive) {
@@ -905,6 +913,18 @@ public class QueryExpression implements RangeGroup {
         return set;
     }
 
+    /**
+     * Compiles the expressions of a statement that is executed often.
+     */
+    void compileExpressions() {
+
+        leftQueryExpression.compileExpressions();
+
+        if (rightQueryExpression != null) {
+            rightQueryExpression.compileExpressions();
+        }
+    }
+
     public void collectObjectNames(Set set) {
 
         leftQueryExpression.collectObjectNames(set);
@@ -52,7 +52,9 @@ import org.hsqldb.lib.Set;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RangeIterator;
 import org.hsqldb.navigator.RowSetNavigatorData;
+import org.hsqldb.navigator.RowSetNavigatorDataSort;
 import org.hsqldb.navigator.RowSetNavigatorDataTable;
+import org.hsqldb.navigator.RowSetNavigatorStream;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.result.Result;
 import org.hsqldb.result.ResultMetaData;
@@ -99,6 +101,10 @@ public class QuerySpecification extends QueryExpression {
     private boolean       hasRowID;
     private boolean       isSimpleCount;
     private boolean       isSingleMemoryTable;
+    private ColumnarScan  columnarAggregate;
+
+    // compiled select list expressions of a statement executed often
+    private volatile CompiledExpression[] compiledColumns;
 
     //
     public boolean isUniqueResultRows;
@@ -424,6 +430,8 @@ public class QuerySpecification extends QueryExpression {
         setDistinctConditions(session);
         setAggregateConditions(session);
         sortAndSlice.setSortRange(this);
+        setColumnarConditions();
+        setVectorConditions(session);
 
         for (int i = 0; i < rangeVariables.length; i++) {
             rangeVariables[i].resolveRangeTableTypes(session, rangeVariables);
@@ -1184,6 +1192,87 @@ public class QuerySpecification extends QueryExpression {
         }
     }
 
+    /**
+     * Uses columnar scans for COLUMNAR tables when the order of rows is not
+     * relevant. An ungrouped aggregate over a single range is computed from
+     * the column arrays when the scan handles all the conditions.
+     */
+    private void setColumnarConditions() {
+
+        if (sortAndSlice.hasOrder() || sortAndSlice.hasLimit()
+                || isSimpleDistinct || isOrderSensitive) {
+            return;
+        }
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVariables[i].columnarScan =
+                ColumnarScan.newColumnarScan(rangeVariables[i]);
+        }
+
+        if (!isAggregated || isGrouped || isDistinctSelect || isSimpleCount
+                || havingCondition != null || rangeVariables.length != 1) {
+            return;
+        }
+
+        ColumnarScan scan = rangeVariables[0].columnarScan;
+
+        if (scan == null || !scan.isExact) {
+            return;
+        }
+
+        for (int i = indexStartAggregates; i < indexLimitExpressions; i++) {
+            if (!ColumnarScan.isSupportedAggregate(rangeVariables[0],
+                                                   exprColumns[i])) {
+                return;
+            }
+        }
+
+        columnarAggregate = scan;
+    }
+
+    /**
+     * Uses vectorized evaluation of the conditions of full scans when the
+     * hsqldb.vector_filter property is true.
+     */
+    private void setVectorConditions(Session session) {
+
+        if (!session.database.logger.isVectorFilter()) {
+            return;
+        }
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVariables[i].vectorFilter =
+                VectorFilter.newVectorFilter(rangeVariables[i]);
+        }
+    }
+
+    void compileExpressions() {
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVariables[i].compileConditions();
+        }
+
+        if (compiledColumns != null) {
+            return;
+        }
+
+        CompiledExpression[] compiled =
+            new CompiledExpression[indexStartAggregates];
+        boolean hasCompiled = false;
+
+        for (int i = 0; i < indexStartAggregates; i++) {
+            compiled[i] = CompiledExpression.compileValue(exprColumns[i]);
+
+            if (compiled[i] != null) {
+                hasCompiled = true;
+            }
+        }
+
+        if (hasCompiled) {
+            compiledColumns = compiled;
+        }
+    }
+
     private void setGroupedAggregateConditions(Session session) {
 
         //
@@ -1487,6 +1576,180 @@ public class QuerySpecification extends QueryExpression {
         return r;
     }
 
+    /**
+     * Only queries without grouping, aggregates, DISTINCT or a sort that is
+     * not provided by an index can be streamed. The LIMIT and OFFSET must
+     * not need a full result. RIGHT and FULL joins, which read the
+     * unmatched rows after all the other rows, are not streamed.
+     */
+    Result getStreamResult(Session session, int maxRows) {
+
+        if (isAggregated || isGrouped || isDistinctSelect || isUpdatable) {
+            return null;
+        }
+
+        if (sortAndSlice.hasOrder() && !sortAndSlice.skipSort) {
+            return null;
+        }
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            if (rangeVariables[i].isRightJoin) {
+                return null;
+            }
+        }
+
+        int[] limits     = sortAndSlice.getLimits(session, this, maxRows);
+        int   skipCount  = 0;
+        int   limitCount = limits[2];
+
+        if (sortAndSlice.skipFullResult) {
+            skipCount  = limits[0];
+            limitCount = limits[1];
+        } else if (limits[0] != 0 || limits[1] != Integer.MAX_VALUE) {
+            return null;
+        }
+
+        StreamNavigator navigator = new StreamNavigator(session, skipCount,
+            limitCount);
+        Result result = Result.newResult(navigator);
+
+        result.metaData = resultMetaData;
+
+        navigator.initialise();
+
+        return result;
+    }
+
+    /**
+     * Produces the rows of the query as they are read. The range iterators
+     * are set in the session context only while a row is produced, as the
+     * session context is cleared at the end of the statement.
+     */
+    private class StreamNavigator extends RowSetNavigatorStream {
+
+        final Session              session;
+        final RangeIterator[]      rangeIterators;
+        final CompiledExpression[] compiled = compiledColumns;
+        int                        currentIndex;
+        int                        skipCount;
+        int                        limitCount;
+        int                        rowCount;
+        int                        rownum;
+
+        StreamNavigator(Session session, int skipCount, int limitCount) {
+
+            super(session);
+
+            this.session    = session;
+            this.skipCount  = skipCount;
+            this.limitCount = limitCount;
+            rangeIterators  = new RangeIterator[rangeVariables.length];
+            rownum          = 1;
+
+            for (int i = 0; i < rangeVariables.length; i++) {
+                rangeIterators[i] = rangeVariables[i].getIterator(session);
+
+                session.sessionContext.unsetRangeIterator(rangeIterators[i]);
+            }
+        }
+
+        protected Object[] readNextData() {
+
+            if (rowCount >= limitCount) {
+                return null;
+            }
+
+            for (int i = 0; i < rangeIterators.length; i++) {
+                session.sessionContext.setRangeIterator(rangeIterators[i]);
+            }
+
+            session.sessionContext.rownum = rownum;
+
+            try {
+                while (currentIndex >= 0) {
+                    RangeIterator it = rangeIterators[currentIndex];
+
+                    if (it.next()) {
+                        if (currentIndex < rangeIterators.length - 1) {
+                            currentIndex++;
+
+                            continue;
+                        }
+                    } else {
+                        it.reset();
+
+                        currentIndex--;
+
+                        continue;
+                    }
+
+                    session.sessionData.startRowProcessing();
+
+                    Object[] data = new Object[indexLimitData];
+
+                    for (int i = 0; i < indexStartAggregates; i++) {
+                        data[i] = getColumnValue(session, compiled, i);
+                    }
+
+                    session.sessionContext.rownum++;
+
+                    if (skipCount > 0) {
+                        skipCount--;
+
+                        continue;
+                    }
+
+                    rowCount++;
+
+                    return data;
+                }
+
+                return null;
+            } finally {
+                rownum = session.sessionContext.rownum;
+
+                for (int i = 0; i < rangeIterators.length; i++) {
+                    session.sessionContext.unsetRangeIterator(
+                        rangeIterators[i]);
+                }
+            }
+        }
+
+        protected void releaseSource() {
+
+            for (int i = 0; i < rangeIterators.length; i++) {
+                rangeIterators[i].release();
+            }
+        }
+    }
+
+    /**
+     * Results of plain ORDER BY queries that exceed the memory row count
+     * are sorted with sorted runs written to files and merged on reading.
+     * The result table indexes are needed for other types of query, and
+     * for results that are used in set operations or subqueries, which are
+     * sorted again or searched after they are built. Scrollable and
+     * updatable cursors also use the result table, which supports moving
+     * back to earlier rows and updating the rows.
+     */
+    private boolean isExternalSort(Session session, boolean resultGrouped) {
+
+        return isTopLevel && sortAndSlice.hasOrder()
+               && !sortAndSlice.skipSort && orderIndex != null
+               && idIndex == null && !resultGrouped && !isDistinctSelect
+               && !isUpdatable && !session.sessionData.isScrollRequest;
+    }
+
+    private Object getColumnValue(Session session,
+                                  CompiledExpression[] compiled, int i) {
+
+        if (compiled == null || compiled[i] == null) {
+            return exprColumns[i].getValue(session);
+        }
+
+        return compiled[i].getValue(session);
+    }
+
     private Result buildResult(Session session, int[] limits) {
 
         RowSetNavigatorData navigator = new RowSetNavigatorData(session, this);
@@ -1505,6 +1768,16 @@ public class QuerySpecification extends QueryExpression {
         if (sortAndSlice.skipFullResult) {
             skipCount  = limits[0];
             limitCount = limits[1];
+        } else if (sortAndSlice.hasOrder() && limits[1] != Integer.MAX_VALUE
+                   && !isAggregated && !resultGrouped && !isDistinctSelect) {
+
+            // keep only the rows up to the end of the slice
+            long topCount = (long) limits[0] + limits[1];
+
+            if (topCount < session.resultMaxMemoryRows
+                    || session.resultMaxMemoryRows == 0) {
+                navigator.setTopCount((int) topCount);
+            }
         }
 
         if (this.isSimpleCount) {
@@ -1535,7 +1808,48 @@ public class QuerySpecification extends QueryExpression {
             return result;
         }
 
-        int fullJoinIndex = 0;
+        if (columnarAggregate != null) {
+            Object[]        data  = new Object[indexLimitData];
+            Table           table = rangeVariables[0].getTable();
+            PersistentStore store = table.getRowStore(session);
+
+            for (int i = 0; i < indexStartAggregates; i++) {
+                if (!aggregateCheck[i]) {
+                    data[i] = exprColumns[i].getValue(session);
+                }
+            }
+
+            columnarAggregate.aggregate(session, store, exprColumns,
+                                        indexStartAggregates,
+                                        indexLimitExpressions, data);
+            navigator.add(data);
+            navigator.reset();
+            session.sessionContext.setRangeIterator(navigator);
+
+            if (navigator.next()) {
+                data = navigator.getCurrent();
+
+                for (int i = indexStartAggregates; i < indexLimitExpressions;
+                        i++) {
+                    data[i] = exprColumns[i].getAggregatedValue(session,
+                            data[i]);
+                }
+
+                for (int i = 0; i < indexStartAggregates; i++) {
+                    if (aggregateCheck[i]) {
+                        data[i] = exprColumns[i].getValue(session);
+                    }
+                }
+            }
+
+            session.sessionContext.unsetRangeIterator(navigator);
+            navigator.reset();
+
+            return result;
+        }
+
+        int                  fullJoinIndex = 0;
+        CompiledExpression[] compiled      = compiledColumns;
         RangeIterator[] rangeIterators =
             new RangeIterator[rangeVariables.length];
 
@@ -1599,7 +1913,7 @@ public class QuerySpecification extends QueryExpression {
                 if (isAggregated && aggregateCheck[i]) {
                     continue;
                 } else {
-                    data[i] = exprColumns[i].getValue(session);
+                    data[i] = getColumnValue(session, compiled, i);
                 }
             }
 
@@ -1627,6 +1941,10 @@ public class QuerySpecification extends QueryExpression {
                 if (groupData != null) {
                     data = groupData;
                 }
+            } else if (isDistinctSelect) {
+                if (navigator.hasDistinctRow(data)) {
+                    continue;
+                }
             }
 
             for (int i = indexStartAggregates; i < indexLimitExpressions;
@@ -1653,8 +1971,13 @@ public class QuerySpecification extends QueryExpression {
 
             if (rowCount == session.resultMaxMemoryRows && !isAggregated
                     && !isSingleMemoryTable) {
-                navigator = new RowSetNavigatorDataTable(session, this,
-                        navigator);
+                if (isExternalSort(session, resultGrouped)) {
+                    navigator = new RowSetNavigatorDataSort(session, this,
+                            navigator);
+                } else {
+                    navigator = new RowSetNavigatorDataTable(session, this,
+                            navigator);
+                }
 
                 result.setNavigator(navigator);
             }
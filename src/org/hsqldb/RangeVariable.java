@@ -110,6 +110,12 @@ public class RangeVariable {
     //
     int indexDistinctCount;
 
+    // full scan of a COLUMNAR table in no particular order
+    ColumnarScan columnarScan;
+
+    // vectorized evaluation of the conditions of a full scan
+    VectorFilter vectorFilter;
+
     //
     int rangePositionInJoin;
 
@@ -654,6 +660,21 @@ public class RangeVariable {
         joinCondition = ExpressionLogical.andExpressions(joinCondition, e);
     }
 
+    /**
+     * Compiles the non-index conditions for a statement that is executed
+     * often.
+     */
+    void compileConditions() {
+
+        for (int i = 0; i < joinConditions.length; i++) {
+            joinConditions[i].compileCondition();
+        }
+
+        for (int i = 0; i < whereConditions.length; i++) {
+            whereConditions[i].compileCondition();
+        }
+    }
+
     public void resetConditions() {
 
         Index index = joinConditions[0].rangeIndex;
@@ -992,7 +1013,13 @@ public class RangeVariable {
         sb.append(b).append("cardinality=");
         sb.append(rangeTable.getRowStore(session).elementCount()).append("\n");
 
-        boolean fullScan = !conditions[0].hasIndexCondition();
+        String access = "INDEX PRED";
+
+        if (conditions[0].hasHashCondition()) {
+            access = "HASH JOIN";
+        } else if (!conditions[0].hasIndexCondition()) {
+            access = "FULL SCAN";
+        }
 
         sb.append(b);
 
@@ -1006,8 +1033,7 @@ public class RangeVariable {
             }
         }
 
-        sb.append("access=").append(fullScan ? "FULL SCAN"
-                                             : "INDEX PRED").append("\n");
+        sb.append("access=").append(access).append("\n");
 
         for (int i = 0; i < conditions.length; i++) {
             if (i > 0) {
@@ -1177,6 +1203,12 @@ public class RangeVariable {
         //
         Object[] currentJoinData = null;
 
+        //
+        HashJoinTable hashTable;
+
+        //
+        VectorFilter.VectorIterator vectorIterator;
+
         RangeIteratorMain() {
             super();
         }
@@ -1271,14 +1303,35 @@ public class RangeVariable {
 
             rangeVar.rangeTable.materialiseCorrelated(session);
 
+            if (conditions[condIndex].hashCond != null) {
+                if (hashTable == null) {
+                    hashTable = new HashJoinTable(session, rangeVar,
+                                                  conditions[condIndex]);
+
+                    hashTable.build(session, store);
+                }
+
+                it = hashTable.findRows(session);
+
+                return;
+            }
+
             if (conditions[condIndex].indexCond == null) {
                 if (conditions[condIndex].reversed) {
                     it = conditions[condIndex].rangeIndex.lastRow(session,
                             store, rangeVar.indexDistinctCount, null);
+                } else if (rangeVar.columnarScan != null) {
+                    it = rangeVar.columnarScan.getIterator(session, store);
                 } else {
                     it = conditions[condIndex].rangeIndex.firstRow(session,
                             store, rangeVar.indexDistinctCount, null);
                 }
+
+                if (rangeVar.vectorFilter != null && store.isMemory()) {
+                    vectorIterator = rangeVar.vectorFilter.getIterator(session,
+                            it);
+                    it = vectorIterator;
+                }
             } else {
                 getFirstRow();
 
@@ -1435,16 +1488,30 @@ public class RangeVariable {
                     }
                 }
 
-                if (joinConditions[condIndex].nonIndexCondition != null) {
-                    if (!joinConditions[condIndex].nonIndexCondition
-                            .testCondition(session)) {
+                Expression joinCondition =
+                    joinConditions[condIndex].nonIndexCondition;
+                Expression whereCondition =
+                    whereConditions[condIndex].nonIndexCondition;
+                CompiledExpression compiledJoin =
+                    joinConditions[condIndex].compiledCondition;
+                CompiledExpression compiledWhere =
+                    whereConditions[condIndex].compiledCondition;
+
+                if (it == vectorIterator && vectorIterator.isChecked()) {
+                    joinCondition  = rangeVar.vectorFilter.joinCondition;
+                    whereCondition = rangeVar.vectorFilter.whereCondition;
+                    compiledJoin   = null;
+                    compiledWhere  = null;
+                }
+
+                if (joinCondition != null) {
+                    if (!testCondition(joinCondition, compiledJoin)) {
                         continue;
                     }
                 }
 
-                if (whereConditions[condIndex].nonIndexCondition != null) {
-                    if (!whereConditions[condIndex].nonIndexCondition
-                            .testCondition(session)) {
+                if (whereCondition != null) {
+                    if (!testCondition(whereCondition, compiledWhere)) {
                         hasLeftOuterRow = false;
 
                         addFoundRow();
@@ -1481,6 +1548,16 @@ public class RangeVariable {
             return result;
         }
 
+        private boolean testCondition(Expression e,
+                                      CompiledExpression compiled) {
+
+            if (compiled == null) {
+                return e.testCondition(session);
+            }
+
+            return compiled.testCondition(session);
+        }
+
         private void addFoundRow() {
 
             if (rangeVar.isRightJoin) {
@@ -1779,6 +1856,10 @@ public class RangeVariable {
         boolean             isFalse;
         boolean             reversed;
         boolean             hasIndex;
+        Expression[]        hashCond;
+
+        // published to the other sessions when compiled
+        volatile CompiledExpression compiledCondition;
 
         RangeVariableConditions(RangeVariable rangeVar, boolean isJoin) {
             this.rangeVar = rangeVar;
@@ -1796,10 +1877,22 @@ public class RangeVariable {
             return indexedColumnCount > 0;
         }
 
+        void compileCondition() {
+
+            if (compiledCondition == null) {
+                compiledCondition =
+                    CompiledExpression.compileCondition(nonIndexCondition);
+            }
+        }
+
         boolean hasIndex() {
             return hasIndex;
         }
 
+        boolean hasHashCondition() {
+            return hashCond != null;
+        }
+
         void addCondition(Expression e) {
 
             if (e == null) {
@@ -2087,6 +2180,16 @@ public class RangeVariable {
 
             sb.append("index=").append(rangeIndex.getName().name).append("\n");
 
+            if (hashCond != null) {
+                sb.append(b).append("hash conditions=[");
+
+                for (int j = 0; j < hashCond.length; j++) {
+                    sb.append(hashCond[j].describe(session, blanks));
+                }
+
+                sb.append("]\n");
+            }
+
             if (hasIndexCondition()) {
                 if (indexedColumnCount > 0) {
                     sb.append(b).append("start conditions=[");
@@ -2146,6 +2249,13 @@ public class RangeVariable {
                     indexEndCondition.replaceColumnReferences(range, list);
             }
 
+            if (hashCond != null) {
+                for (int i = 0; i < hashCond.length; i++) {
+                    hashCond[i] = hashCond[i].replaceColumnReferences(range,
+                            list);
+                }
+            }
+
             if (excludeConditions != null) {
                 excludeConditions =
                     excludeConditions.replaceColumnReferences(range, list);
@@ -53,7 +53,7 @@ import org.hsqldb.persist.PersistentStore;
  * processing and which indexes are used for table access.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.9.0
  */
 public class RangeVariableResolver {
@@ -246,6 +246,7 @@ public class RangeVariableResolver {
         reorder();
         assignToLists();
         assignToRangeVariables();
+        setHashJoinConditions();
 
         // rangePositionInJoin and the two bounds are used only together, regardless of any IN ranges added
         if (select != null) {
@@ -931,6 +932,96 @@ public class RangeVariableResolver {
         }
     }
 
+    /**
+     * Uses a hash join for inner ranges over persistent tables that are
+     * joined only with equality conditions on columns without an index.
+     * Not used for the ranges of data change statements, which update or
+     * delete the rows returned by the range iterators.
+     */
+    void setHashJoinConditions() {
+
+        if (select == null) {
+            return;
+        }
+
+        if (firstRightJoinIndex != rangeVariables.length) {
+            return;
+        }
+
+        for (int i = 1; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+
+            if (range.rangeType != RangeVariable.TABLE_RANGE
+                    || range.isLateral || inExpressions[i] != null) {
+                continue;
+            }
+
+            switch (range.rangeTable.getTableType()) {
+
+                case TableBase.MEMORY_TABLE :
+                case TableBase.COLUMNAR_TABLE :
+                case TableBase.CACHED_TABLE :
+                case TableBase.TEXT_TABLE :
+                    break;
+
+                default :
+                    continue;
+            }
+
+            if (range.joinConditions.length != 1
+                    || range.whereConditions.length != 1) {
+                continue;
+            }
+
+            RangeVariableConditions conditions = range.joinConditions[0];
+
+            if (conditions.hasIndexCondition() || conditions.isFalse
+                    || range.whereConditions[0].hasIndexCondition()) {
+                continue;
+            }
+
+            tempSet.clear();
+            collectHashJoinConditions(range, conditions.nonIndexCondition,
+                                      tempSet);
+
+            if (tempSet.isEmpty()) {
+                continue;
+            }
+
+            conditions.hashCond = new Expression[tempSet.size()];
+
+            tempSet.toArray(conditions.hashCond);
+            tempSet.clear();
+        }
+    }
+
+    private void collectHashJoinConditions(RangeVariable range, Expression e,
+                                           OrderedHashSet set) {
+
+        if (e == null) {
+            return;
+        }
+
+        if (e.getType() == OpTypes.AND) {
+            collectHashJoinConditions(range, e.getLeftNode(), set);
+            collectHashJoinConditions(range, e.getRightNode(), set);
+
+            return;
+        }
+
+        if (e.getType() != OpTypes.EQUAL || e.exprSubType != 0) {
+            return;
+        }
+
+        if (e.getIndexableExpression(range) == null) {
+            return;
+        }
+
+        if (HashJoinTable.isHashable(e)) {
+            set.add(e);
+        }
+    }
+
     void assignToRangeVariable(RangeVariableConditions conditions,
                                HsqlList exprList) {
 
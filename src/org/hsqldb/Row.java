@@ -36,6 +36,7 @@ import org.hsqldb.persist.CachedObject;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
 
 /**
  * Base class for a database row object.
@@ -63,7 +64,15 @@ public class Row implements CachedObject {
     }
 
     public Object getField(int col) {
-        return rowData[col];
+        return getData()[col];
+    }
+
+    /**
+     * Compares the value of a column with a value of the column type.
+     */
+    public int compareField(Session session, Type type, int col,
+                            Object value) {
+        return type.compare(session, getData()[col], value);
     }
 
     /**
@@ -0,0 +1,355 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.TimestampData;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Row of a MEMORY table that stores the values of fixed-width columns in a
+ * long[] instead of an Object[] of boxed values.<p>
+ *
+ * INTEGER types, BIGINT, DOUBLE, BOOLEAN, DATE and TIMESTAMP columns use one
+ * slot each (two for DATE and TIMESTAMP) and one bit of a null mask. The
+ * values of other columns are kept in a shorter Object[]. getData() builds a
+ * new array each time it is called, which the index iterators keep while
+ * they are on the row. getField() and compareField() read a single column,
+ * the latter without boxing the value.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class RowAVLPacked extends RowAVL {
+
+    static final int KIND_OBJECT    = 0;
+    static final int KIND_INT       = 1;
+    static final int KIND_LONG      = 2;
+    static final int KIND_DOUBLE    = 3;
+    static final int KIND_BOOLEAN   = 4;
+    static final int KIND_TIMESTAMP = 5;
+
+    /** the null mask limits the slots */
+    static final int maxSlots = 64;
+
+    //
+    final Layout layout;
+    long[]       longData;
+    Object[]     objectData;
+    long         nullBits;
+
+    public RowAVLPacked(TableBase table, Object[] data, int position,
+                        PersistentStore store, Layout layout) {
+
+        super(table, (Object[]) null);
+
+        this.position = position;
+        this.layout   = layout;
+        longData      = new long[layout.longCount];
+
+        if (layout.objectCount > 0) {
+            objectData = new Object[layout.objectCount];
+        }
+
+        for (int i = 0; i < layout.kinds.length; i++) {
+            setField(i, data[i]);
+        }
+
+        setNewNodes(store);
+    }
+
+    /**
+     * Returns the layout for the columns of the table, or null if no column
+     * can be packed.
+     */
+    public static Layout newLayout(TableBase table) {
+
+        Type[] types       = table.getColumnTypes();
+        int[]  kinds       = new int[types.length];
+        int[]  slots       = new int[types.length];
+        int    longCount   = 0;
+        int    objectCount = 0;
+
+        for (int i = 0; i < types.length; i++) {
+            int kind  = getKind(types[i]);
+            int width = kind == KIND_TIMESTAMP ? 2
+                                               : 1;
+
+            if (kind != KIND_OBJECT && longCount + width <= maxSlots) {
+                kinds[i]  = kind;
+                slots[i]  = longCount;
+                longCount += width;
+            } else {
+                kinds[i] = KIND_OBJECT;
+                slots[i] = objectCount++;
+            }
+        }
+
+        if (longCount == 0) {
+            return null;
+        }
+
+        return new Layout(kinds, slots, longCount, objectCount);
+    }
+
+    private static int getKind(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+                return KIND_INT;
+
+            case Types.SQL_BIGINT :
+                return KIND_LONG;
+
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+                return KIND_DOUBLE;
+
+            case Types.SQL_BOOLEAN :
+                return KIND_BOOLEAN;
+
+            case Types.SQL_DATE :
+            case Types.SQL_TIMESTAMP :
+            case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                return KIND_TIMESTAMP;
+
+            default :
+                return KIND_OBJECT;
+        }
+    }
+
+    private void setField(int col, Object value) {
+
+        int kind = layout.kinds[col];
+        int slot = layout.slots[col];
+
+        if (kind == KIND_OBJECT) {
+            objectData[slot] = value;
+
+            return;
+        }
+
+        if (value == null) {
+            nullBits |= 1L << slot;
+
+            return;
+        }
+
+        switch (kind) {
+
+            case KIND_INT :
+            case KIND_LONG :
+                longData[slot] = ((Number) value).longValue();
+                break;
+
+            case KIND_DOUBLE :
+                longData[slot] = Double.doubleToRawLongBits(
+                    ((Number) value).doubleValue());
+                break;
+
+            case KIND_BOOLEAN :
+                longData[slot] = ((Boolean) value).booleanValue() ? 1
+                                                                  : 0;
+                break;
+
+            case KIND_TIMESTAMP : {
+                TimestampData ts = (TimestampData) value;
+
+                longData[slot]     = ts.getSeconds();
+                longData[slot + 1] = ((long) ts.getZone() << 32)
+                                     | (ts.getNanos() & 0xffffffffL);
+
+                break;
+            }
+        }
+    }
+
+    public Object getField(int col) {
+
+        int kind = layout.kinds[col];
+        int slot = layout.slots[col];
+
+        if (kind == KIND_OBJECT) {
+            return objectData[slot];
+        }
+
+        if ((nullBits & (1L << slot)) != 0) {
+            return null;
+        }
+
+        long value = longData[slot];
+
+        switch (kind) {
+
+            case KIND_INT :
+                return Integer.valueOf((int) value);
+
+            case KIND_LONG :
+                return Long.valueOf(value);
+
+            case KIND_DOUBLE :
+                return Double.valueOf(Double.longBitsToDouble(value));
+
+            case KIND_BOOLEAN :
+                return value == 0 ? Boolean.FALSE
+                                  : Boolean.TRUE;
+
+            case KIND_TIMESTAMP : {
+                long extra = longData[slot + 1];
+
+                return new TimestampData(value, (int) extra,
+                                         (int) (extra >> 32));
+            }
+            default :
+                return null;
+        }
+    }
+
+    /**
+     * Returns a new array. Changes to the array do not modify the row.
+     */
+    public Object[] getData() {
+
+        Object[] data = new Object[layout.kinds.length];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = getField(i);
+        }
+
+        return data;
+    }
+
+    /**
+     * Values of the same class as the packed column are compared without
+     * boxing the column value. The result is the same as Type.compare().
+     */
+    public int compareField(Session session, Type type, int col,
+                            Object value) {
+
+        int kind = layout.kinds[col];
+        int slot = layout.slots[col];
+
+        if (kind == KIND_OBJECT) {
+            return type.compare(session, objectData[slot], value);
+        }
+
+        if ((nullBits & (1L << slot)) != 0) {
+            return value == null ? 0
+                                 : -1;
+        }
+
+        if (value == null) {
+            return 1;
+        }
+
+        long a = longData[slot];
+        long b;
+
+        switch (kind) {
+
+            case KIND_INT :
+                if (value instanceof Integer || value instanceof Long) {
+                    b = ((Number) value).longValue();
+
+                    return compareLong(a, b);
+                }
+                break;
+
+            case KIND_LONG :
+                if (value instanceof Long) {
+                    b = ((Long) value).longValue();
+
+                    return compareLong(a, b);
+                }
+                break;
+
+            case KIND_BOOLEAN :
+                if (value instanceof Boolean) {
+                    b = ((Boolean) value).booleanValue() ? 1
+                                                         : 0;
+
+                    return compareLong(a, b);
+                }
+                break;
+
+            case KIND_TIMESTAMP :
+                if (value instanceof TimestampData) {
+                    TimestampData ts = (TimestampData) value;
+
+                    b = ts.getSeconds();
+
+                    if (a == b) {
+                        a = (int) longData[slot + 1];
+                        b = ts.getNanos();
+                    }
+
+                    return compareLong(a, b);
+                }
+                break;
+        }
+
+        return type.compare(session, getField(col), value);
+    }
+
+    private static int compareLong(long a, long b) {
+        return a > b ? 1
+                     : a < b ? -1
+                             : 0;
+    }
+
+    /**
+     * Column kinds and slots shared by all the packed rows of a table.
+     */
+    public static final class Layout {
+
+        final int[] kinds;
+        final int[] slots;
+        final int   longCount;
+        final int   objectCount;
+
+        Layout(int[] kinds, int[] slots, int longCount, int objectCount) {
+
+            this.kinds       = kinds;
+            this.slots       = slots;
+            this.longCount   = longCount;
+            this.objectCount = objectCount;
+        }
+    }
+}
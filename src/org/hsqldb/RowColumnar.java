@@ -0,0 +1,135 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+
+/**
+ * Row of a COLUMNAR table. The values are held in the ColumnarData of the
+ * row store at the slot of the row. getData() builds a new array each time
+ * it is called and getField() reads a single column.<p>
+ *
+ * When the slot is released for reuse, the values are copied to the row,
+ * which can still be read by any holder of a reference.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class RowColumnar extends RowAVL {
+
+    final ColumnarData columnarData;
+    volatile int       slot;
+
+    public RowColumnar(TableBase table, Object[] data, int position,
+                       PersistentStore store, ColumnarData columnarData) {
+
+        super(table, (Object[]) null);
+
+        this.position     = position;
+        this.columnarData = columnarData;
+        slot              = columnarData.add(data);
+
+        setNewNodes(store);
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Stores the values of a row that has released its slot in a new slot.
+     */
+    public void allocateSlot() {
+
+        if (slot < 0) {
+            slot    = columnarData.add(rowData);
+            rowData = null;
+        }
+    }
+
+    /**
+     * Copies the values to the row and releases the slot.
+     */
+    public void releaseSlot() {
+
+        int current = slot;
+
+        if (current < 0) {
+            return;
+        }
+
+        rowData = getData();
+        slot    = -1;
+
+        columnarData.free(current);
+    }
+
+    public Object getField(int col) {
+
+        int current = slot;
+
+        if (current < 0) {
+            return rowData[col];
+        }
+
+        return columnarData.getValue(current, col);
+    }
+
+    /**
+     * Returns a new array. Changes to the array do not modify the row.
+     */
+    public Object[] getData() {
+
+        int current = slot;
+
+        if (current < 0) {
+            return rowData;
+        }
+
+        Object[] data = new Object[columnarData.kinds.length];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = columnarData.getValue(current, i);
+        }
+
+        return data;
+    }
+
+    public int compareField(Session session, Type type, int col,
+                            Object value) {
+        return type.compare(session, getField(col), value);
+    }
+}
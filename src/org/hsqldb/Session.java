@@ -65,6 +65,7 @@ import org.hsqldb.result.ResultLob;
 import org.hsqldb.result.ResultProperties;
 import org.hsqldb.rights.Grantee;
 import org.hsqldb.rights.User;
+import org.hsqldb.scriptio.LogBuffer;
 import org.hsqldb.types.BlobDataID;
 import org.hsqldb.types.ClobDataID;
 import org.hsqldb.types.TimeData;
@@ -104,6 +105,7 @@ public class Session implements SessionInterface {
     boolean                 isPreTransaction;
     boolean                 isTransaction;
     boolean                 isBatch;
+    long                    commitLogPosition;
     volatile boolean        abortAction;
     volatile boolean        abortTransaction;
     volatile boolean        redoAction;
@@ -138,6 +140,9 @@ public class Session implements SessionInterface {
     public HsqlName currentSchema;
     public HsqlName loggedSchema;
 
+    // log records are formatted in this buffer
+    public LogBuffer logBuffer;
+
     // query processing
     ParserCommand         parser;
     boolean               isProcessingScript;
@@ -588,6 +593,15 @@ public class Session implements SessionInterface {
 
                 throw Error.error(ErrorCode.X_40001);
             }
+
+            // wait for the group commit sync after the locks are released
+            if (commitLogPosition > 0) {
+                long position = commitLogPosition;
+
+                commitLogPosition = 0;
+
+                database.logger.syncCommit(position);
+            }
         }
 
         endTransaction(true, chain);
@@ -970,6 +984,12 @@ public class Session implements SessionInterface {
 
         JavaSystem.gc();
 
+        Result streamError = sessionData.checkStreamResult(cmd);
+
+        if (streamError != null) {
+            return streamError;
+        }
+
         switch (cmd.mode) {
 
             case ResultConstants.LARGE_OBJECT_OP : {
@@ -1004,10 +1024,15 @@ public class Session implements SessionInterface {
                 }
 
                 Object[] pvals = (Object[]) cmd.valueData;
+
+                sessionData.setStreamRequest(cmd);
+
                 Result result = executeCompiledStatement(cs, pvals,
                     cmd.queryTimeout);
 
-                result = performPostExecute(cmd, result);
+                sessionData.isStreamRequest = false;
+                sessionData.isScrollRequest = false;
+                result                      = performPostExecute(cmd, result);
 
                 return result;
             }
@@ -1023,7 +1048,9 @@ public class Session implements SessionInterface {
             case ResultConstants.EXECDIRECT : {
                 Result result = executeDirectStatement(cmd);
 
-                result = performPostExecute(cmd, result);
+                sessionData.isStreamRequest = false;
+                sessionData.isScrollRequest = false;
+                result                      = performPostExecute(cmd, result);
 
                 return result;
             }
@@ -1256,6 +1283,11 @@ public class Session implements SessionInterface {
             cs.setGeneratedColumnInfo(cmd.getGeneratedResultType(),
                                       cmd.getGeneratedResultMetaData());
 
+            // only the result of the last statement is returned
+            if (i == list.size() - 1) {
+                sessionData.setStreamRequest(cmd);
+            }
+
             result = executeCompiledStatement(cs, ValuePool.emptyObjectArray,
                                               cmd.queryTimeout);
 
@@ -1427,6 +1459,10 @@ public class Session implements SessionInterface {
             try {
                 if (r.mode == ResultConstants.ERROR) {
                     rollbackNoCheck(false);
+                } else if (r == sessionData.streamResult) {
+
+                    // committed when the streamed result has been read
+                    sessionData.isStreamCommit = true;
                 } else {
                     commit(false);
                 }
@@ -51,9 +51,11 @@ import org.hsqldb.lib.LongKeyLongValueHashMap;
 import org.hsqldb.lib.ReaderInputStream;
 import org.hsqldb.navigator.RowSetNavigator;
 import org.hsqldb.navigator.RowSetNavigatorClient;
+import org.hsqldb.navigator.RowSetNavigatorStream;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.persist.PersistentStoreCollectionSession;
 import org.hsqldb.result.Result;
+import org.hsqldb.result.ResultConstants;
 import org.hsqldb.result.ResultLob;
 import org.hsqldb.result.ResultProperties;
 import org.hsqldb.types.BlobData;
@@ -78,6 +80,12 @@ public class SessionData {
     // large results
     LongKeyHashMap resultMap;
 
+    // streamed result
+    boolean isStreamRequest;
+    boolean isScrollRequest;
+    Result  streamResult;
+    boolean isStreamCommit;
+
     // VALUE
     Object currentValue;
 
@@ -206,6 +214,11 @@ public class SessionData {
             }
         }
 
+        if (result == streamResult) {
+            copy = true;
+            hold = true;
+        }
+
         if (hold) {
             if (resultMap == null) {
                 resultMap = new LongKeyHashMap();
@@ -218,7 +231,28 @@ public class SessionData {
         }
 
         if (copy) {
-            result = Result.newDataHeadResult(session, result, 0, fetchSize);
+            Result head;
+
+            try {
+                head = Result.newDataHeadResult(session, result, 0,
+                                                fetchSize);
+            } catch (RuntimeException e) {
+                if (result == streamResult) {
+                    return getStreamErrorResult(e);
+                }
+
+                throw e;
+            }
+
+            // all the rows of a streamed result fit in the first block
+            if (result == streamResult && isStreamFinished()) {
+                closeNavigator(result.getResultId());
+
+                head.rsProperties =
+                    ResultProperties.addIsHeld(head.rsProperties, false);
+            }
+
+            result = head;
         }
 
         return result;
@@ -226,14 +260,126 @@ public class SessionData {
 
     Result getDataResultSlice(long id, int offset, int count) {
 
-        Result          result = (Result) resultMap.get(id);
-        RowSetNavigator source = result.getNavigator();
+        Result result = (Result) resultMap.get(id);
+        Result slice;
 
-        if (offset + count > source.getSize()) {
-            count = source.getSize() - offset;
+        try {
+            slice = Result.newDataRowsResult(result, offset, count);
+        } catch (Throwable t) {
+            if (result == streamResult) {
+                return getStreamErrorResult(t);
+            }
+
+            return Result.newErrorResult(t);
+        }
+
+        if (result == streamResult && isStreamFinished()) {
+            closeNavigator(id);
+        }
+
+        return slice;
+    }
+
+    /**
+     * A streamed result can be returned for a forward-only, read-only
+     * result that a network client fetches in blocks. A scrollable result
+     * is not sorted with RowSetNavigatorDataSort.
+     */
+    void setStreamRequest(Result command) {
+
+        int props = command.rsProperties;
+
+        isScrollRequest = ResultProperties.isScrollable(props);
+        isStreamRequest = session.isNetwork && command.getFetchSize() > 0
+                          && ResultProperties.isStreamable(props)
+                          && !ResultProperties.isScrollable(props)
+                          && ResultProperties.isReadOnly(props);
+    }
+
+    private boolean isStreamFinished() {
+        return ((RowSetNavigatorStream) streamResult.getNavigator())
+            .isFinished();
+    }
+
+    /**
+     * Called before each command. Unless the command fetches or closes the
+     * streamed result, the remaining rows are read into memory before the
+     * command can change the session context or end the transaction.<p>
+     *
+     * Returns an error result if reading the rows fails, otherwise null.
+     */
+    Result checkStreamResult(Result command) {
+
+        if (streamResult == null) {
+            return null;
         }
 
-        return Result.newDataRowsResult(result, offset, count);
+        switch (command.mode) {
+
+            case ResultConstants.REQUESTDATA :
+            case ResultConstants.CLOSE_RESULT :
+                if (command.getResultId() == streamResult.getResultId()) {
+                    return null;
+                }
+        }
+
+        try {
+            ((RowSetNavigatorStream) streamResult.getNavigator())
+                .materialise();
+        } catch (Throwable t) {
+            return getStreamErrorResult(t);
+        }
+
+        endStreamResult();
+
+        return null;
+    }
+
+    /**
+     * Closes the streamed result when producing its rows has failed. The
+     * transaction of an auto-commit session is rolled back instead of the
+     * deferred commit.
+     */
+    private Result getStreamErrorResult(Throwable t) {
+
+        Result result = streamResult;
+
+        if (resultMap != null) {
+            resultMap.remove(result.getResultId());
+        }
+
+        streamResult = null;
+
+        try {
+            result.getNavigator().release();
+        } catch (Throwable e) {}
+
+        if (isStreamCommit) {
+            isStreamCommit = false;
+
+            session.rollbackNoCheck(false);
+        }
+
+        return Result.newErrorResult(t);
+    }
+
+    /**
+     * The commit of an auto-commit session is deferred until the streamed
+     * result has been read.
+     */
+    private void endStreamResult() {
+
+        streamResult = null;
+
+        if (isStreamCommit) {
+            isStreamCommit = false;
+
+            try {
+                session.commit(false);
+            } catch (HsqlException e) {
+                database.logger.logInfoEvent("Exception at commit");
+            }
+        }
     }
 
     Result getDataResult(long id) {
@@ -261,11 +407,18 @@ public class SessionData {
 
         if (result != null) {
             result.getNavigator().release();
+
+            if (result == streamResult) {
+                endStreamResult();
+            }
         }
     }
 
     public void closeAllNavigators() {
 
+        streamResult   = null;
+        isStreamCommit = false;
+
         if (resultMap == null) {
             return;
         }
@@ -295,6 +448,11 @@ public class SessionData {
             if (!ResultProperties.isHoldable(result.rsProperties)) {
                 result.getNavigator().release();
                 it.remove();
+
+                if (result == streamResult) {
+                    streamResult   = null;
+                    isStreamCommit = false;
+                }
             }
         }
     }
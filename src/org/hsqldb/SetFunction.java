@@ -280,6 +280,47 @@ public class SetFunction {
         }
     }
 
+    /**
+     * Adds the count of non-null values of a COUNT function without the
+     * values. Used for vectorized aggregation.
+     */
+    void addCount(long n) {
+        count += n;
+    }
+
+    /**
+     * Records that a null value was found. Used for vectorized aggregation.
+     */
+    void addNull() {
+        hasNull = true;
+    }
+
+    /**
+     * Adds a non-null value to a SUM or AVG function over an INTEGER type
+     * or BIGINT without boxing. Used for vectorized aggregation.
+     */
+    void addLongValue(long value) {
+
+        count++;
+
+        if (typeCode == Types.SQL_BIGINT) {
+            addLong(value);
+        } else {
+            currentLong += value;
+        }
+    }
+
+    /**
+     * Adds a non-null value to a SUM or AVG function over REAL, FLOAT or
+     * DOUBLE without boxing. Used for vectorized aggregation.
+     */
+    void addDoubleValue(double value) {
+
+        count++;
+
+        currentDouble += value;
+    }
+
     Object getValue(Session session) {
 
         if (hasNull) {
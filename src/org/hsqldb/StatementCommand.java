@@ -118,6 +118,11 @@ public class StatementCommand extends Statement {
 
                 break;
             }
+            case StatementTypes.IMPORT_DATA :
+                group    = StatementTypes.X_HSQLDB_DATABASE_OPERATION;
+                isLogged = false;
+                break;
+
             case StatementTypes.DATABASE_BACKUP :
                 group = StatementTypes.X_HSQLDB_DATABASE_OPERATION;
 
@@ -316,6 +321,27 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.IMPORT_DATA : {
+                HsqlName name   = (HsqlName) arguments[0];
+                String   source = (String) arguments[1];
+
+                try {
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+
+                    Table table =
+                        session.database.schemaManager.getUserTable(name);
+
+                    TextFileImport.checkTable(table);
+
+                    int count = new TextFileImport(session,
+                                                   table).load(source);
+
+                    return Result.newUpdateCountResult(count);
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_DATABASE_FILES_BACKUP_INCREMENT : {
                 try {
                     boolean mode = ((Boolean) arguments[0]).booleanValue();
@@ -31,6 +31,8 @@
 
 package org.hsqldb;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.ParserDQL.CompileContext;
 import org.hsqldb.error.Error;
@@ -133,6 +135,12 @@ public abstract class StatementDMQL extends Statement {
     Routine[]        routines;
     RangeVariable[]  rangeVariables;
 
+    /**
+     * Executions counted towards compilation of the expressions
+     */
+    final AtomicInteger executeCount = new AtomicInteger();
+    volatile boolean    isCompiled;
+
     StatementDMQL(int type, int group, HsqlName schemaName) {
 
         super(type, group);
@@ -164,6 +172,10 @@ public abstract class StatementDMQL extends Statement {
         }
 
         try {
+            if (!isCompiled) {
+                countExecution(session);
+            }
+
             if (subqueries.length > 0) {
                 materializeSubQueries(session);
             }
@@ -180,6 +192,39 @@ public abstract class StatementDMQL extends Statement {
         return result;
     }
 
+    /**
+     * Compiles the conditions and the select list expressions once the
+     * statement has been executed the number of times set by the
+     * hsqldb.compile_threshold property. When the statement is executed by
+     * several sessions at the same time, only the session that reaches the
+     * threshold compiles the expressions. The other sessions use the
+     * compiled expressions once they are published.
+     */
+    private void countExecution(Session session) {
+
+        int threshold = session.database.logger.getCompileThreshold();
+
+        if (threshold == 0 || executeCount.incrementAndGet() != threshold) {
+            return;
+        }
+
+        for (int i = 0; i < rangeVariables.length; i++) {
+            rangeVariables[i].compileConditions();
+        }
+
+        if (queryExpression != null) {
+            queryExpression.compileExpressions();
+        }
+
+        for (int i = 0; i < subqueries.length; i++) {
+            if (subqueries[i].queryExpression != null) {
+                subqueries[i].queryExpression.compileExpressions();
+            }
+        }
+
+        isCompiled = true;
+    }
+
     private Result getExplainResult(Session session) {
 
         Result result = Result.newSingleColumnStringResult("OPERATION",
@@ -66,8 +66,22 @@ public class StatementQuery extends StatementDMQL {
 
     Result getResult(Session session) {
 
-        Result result = queryExpression.getResult(session,
-            session.getMaxRows());
+        Result result = null;
+
+        if (session.sessionData.isStreamRequest
+                && type == StatementTypes.SELECT_CURSOR
+                && subqueries.length == 0
+                && session.sessionContext.depth == 0
+                && session.sessionContext.currentStatement == this) {
+            result = queryExpression.getStreamResult(session,
+                    session.getMaxRows());
+
+            session.sessionData.streamResult = result;
+        }
+
+        if (result == null) {
+            result = queryExpression.getResult(session, session.getMaxRows());
+        }
 
         result.setStatement(this);
 
@@ -1330,6 +1330,7 @@ public class StatementSchema extends Statement {
                 boolean       unique;
                 RoutineSchema routineSchema;
                 Boolean       ifNotExists;
+                int           structure;
 
                 table         = (Table) arguments[0];
                 indexColumns  = (int[]) arguments[1];
@@ -1337,6 +1338,7 @@ public class StatementSchema extends Statement {
                 unique        = ((Boolean) arguments[3]).booleanValue();
                 routineSchema = (RoutineSchema) arguments[4];
                 ifNotExists   = (Boolean) arguments[5];
+                structure     = ((Integer) arguments[6]).intValue();
 
                 /*
                         Index index        = table.getIndexForColumns(indexColumns);
@@ -1362,7 +1364,8 @@ public class StatementSchema extends Statement {
                 try {
                     TableWorks tableWorks = new TableWorks(session, table);
 
-                    tableWorks.addIndex(indexColumns, name, unique);
+                    tableWorks.addIndex(indexColumns, name, unique,
+                                        structure);
 
                     break;
                 } catch (HsqlException e) {
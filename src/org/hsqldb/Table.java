@@ -144,6 +144,7 @@ public class Table extends TableBase implements SchemaObject {
 
             // fall through
             case MEMORY_TABLE :
+            case COLUMNAR_TABLE :
                 persistenceScope = SCOPE_FULL;
                 isSchemaBased    = true;
                 isLogged         = !database.isFilesReadOnly();
@@ -357,6 +358,8 @@ public class Table extends TableBase implements SchemaObject {
             sb.append(Tokens.T_TEXT).append(' ');
         } else if (isCached()) {
             sb.append(Tokens.T_CACHED).append(' ');
+        } else if (tableType == TableBase.COLUMNAR_TABLE) {
+            sb.append(Tokens.T_COLUMNAR).append(' ');
         } else {
             sb.append(Tokens.T_MEMORY).append(' ');
         }
@@ -719,6 +722,9 @@ public class Table extends TableBase implements SchemaObject {
             case TableBase.MEMORY_TABLE :
                 return Tokens.T_MEMORY;
 
+            case TableBase.COLUMNAR_TABLE :
+                return Tokens.T_COLUMNAR;
+
             case TableBase.CACHED_TABLE :
                 return Tokens.T_CACHED;
 
@@ -749,6 +755,7 @@ public class Table extends TableBase implements SchemaObject {
         switch (tableType) {
 
             case TableBase.MEMORY_TABLE :
+            case TableBase.COLUMNAR_TABLE :
             case TableBase.CACHED_TABLE :
             case TableBase.TEXT_TABLE :
                 return true;
@@ -1301,7 +1308,8 @@ public class Table extends TableBase implements SchemaObject {
                                                    idx.getColumnDesc(), null,
                                                    idx.isUnique(),
                                                    idx.isConstraint(),
-                                                   idx.isForward());
+                                                   idx.isForward(),
+                                                   idx.getStructureType());
 
             newIdx.setClustered(idx.isClustered());
             tn.addIndexStructure(newIdx);
@@ -2549,6 +2557,14 @@ public class Table extends TableBase implements SchemaObject {
             }
 
             if (matchCount == set.size()) {
+                if (opType == OpTypes.EQUAL && hasHashIndex) {
+                    Index hashIndex = getHashIndexForColumns(set);
+
+                    if (hashIndex != null) {
+                        return hashIndex.asArray();
+                    }
+                }
+
                 return currentIndex.asArray();
             }
 
@@ -2575,6 +2591,52 @@ public class Table extends TableBase implements SchemaObject {
         return indexUse;
     }
 
+    /**
+     * Returns a hash index on exactly the columns of the set
+     */
+    Index getHashIndexForColumns(OrderedIntHashSet set) {
+
+        for (int i = 0; i < indexList.length; i++) {
+            Index index = indexList[i];
+
+            if (index.getStructureType() == Index.STRUCTURE_HASH
+                    && index.getColumnCount() == set.size()
+                    && set.getStartMatchCount(index.getColumns())
+                       == set.size()) {
+                return index;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a hash index on the same columns as the given index, or the
+     * given index if there is none. Used for lookups with all the columns.
+     */
+    Index getLookupIndex(Index index) {
+
+        if (!hasHashIndex
+                || index.getStructureType() == Index.STRUCTURE_HASH) {
+            return index;
+        }
+
+        int[] cols = index.getColumns();
+
+        for (int i = 0; i < indexList.length; i++) {
+            Index current = indexList[i];
+
+            if (current.getStructureType() == Index.STRUCTURE_HASH
+                    && current.getColumnCount() == cols.length
+                    && ArrayUtil.haveEqualArrays(current.getColumns(), cols,
+                                                 cols.length)) {
+                return current;
+            }
+        }
+
+        return index;
+    }
+
     /**
      * Returns an index on all the columns
      */
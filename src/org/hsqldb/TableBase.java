@@ -66,6 +66,7 @@ public class TableBase implements Cloneable {
     public static final int SYSTEM_TABLE      = 12;
     public static final int CHANGE_SET_TABLE  = 13;
     public static final int MODULE_TABLE      = 14;
+    public static final int COLUMNAR_TABLE    = 15;
 
     //
     public static final int SCOPE_ROUTINE     = 20;
@@ -87,6 +88,7 @@ public class TableBase implements Cloneable {
     boolean         bestRowIdentifierStrict;    // true if it has no nullable column
     int[]           bestIndexForColumn;         // index of the 'best' index for each column
     Index           bestIndex;                  // the best index overall - null if there is no user-defined index
+    boolean         hasHashIndex;               // true if there is a hash index
     Index         fullIndex;                    // index on all columns
     boolean[]     colNotNull;                   // nullability
     Type[]        colTypes;                     // types of columns
@@ -284,6 +286,7 @@ public class TableBase implements Cloneable {
 
         bestIndex          = null;
         bestIndexForColumn = new int[colTypes.length];
+        hasHashIndex       = false;
 
         ArrayUtil.fillArray(bestIndexForColumn, -1);
 
@@ -292,6 +295,10 @@ public class TableBase implements Cloneable {
             int[] cols      = index.getColumns();
             int   colsCount = index.getColumnCount();
 
+            if (index.getStructureType() == Index.STRUCTURE_HASH) {
+                hasHashIndex = true;
+            }
+
             if (colsCount == 0) {
                 continue;
             }
@@ -411,6 +418,20 @@ public class TableBase implements Cloneable {
                                      boolean[] descending,
                                      boolean[] nullsLast, boolean unique,
                                      boolean constraint, boolean forward) {
+        return createIndexStructure(name, columns, descending, nullsLast,
+                                    unique, constraint, forward,
+                                    Index.STRUCTURE_AVL);
+    }
+
+    /**
+     * Creates an index with the given kind of structure if the table
+     * supports it, otherwise an AVL index.
+     */
+    final Index createIndexStructure(HsqlName name, int[] columns,
+                                     boolean[] descending,
+                                     boolean[] nullsLast, boolean unique,
+                                     boolean constraint, boolean forward,
+                                     int structure) {
 
         int    s     = columns.length;
         int[]  cols  = new int[s];
@@ -423,7 +444,8 @@ public class TableBase implements Cloneable {
 
         long id = database.persistentStoreCollection.getNextId();
         Index newIndex = database.logger.newIndex(name, id, this, cols,
-            descending, nullsLast, types, false, unique, constraint, forward);
+            descending, nullsLast, types, false, unique, constraint, forward,
+            structure);
 
         return newIndex;
     }
@@ -538,10 +560,14 @@ public class TableBase implements Cloneable {
     public final Index createIndex(Session session, HsqlName name,
                                    int[] columns, boolean[] descending,
                                    boolean[] nullsLast, boolean unique,
-                                   boolean constraint, boolean forward) {
+                                   boolean constraint, boolean forward,
+                                   int structure) {
+
+        Index newIndex = createIndexStructure(name, columns, descending,
+                                              nullsLast, unique, constraint,
+                                              forward, structure);
 
-        Index newIndex = createAndAddIndexStructure(session, name, columns,
-            descending, nullsLast, unique, constraint, forward);
+        addIndex(session, newIndex);
 
         return newIndex;
     }
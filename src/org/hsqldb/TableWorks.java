@@ -35,6 +35,7 @@ import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexBTree;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.OrderedHashSet;
@@ -556,9 +557,13 @@ public class TableWorks {
 
         ArrayUtil.projectRow(table.getColumnTypes(), columns, colTypes);
 
+        if (index.getStructureType() == Index.STRUCTURE_BTREE) {
+            ((IndexBTree) index).releasePages(store);
+        }
+
         Index newIndex = database.logger.newIndex(index.getName(),
             index.getPersistenceId(), table, columns, modeFlags, modeFlags,
-            colTypes, false, false, false, false);
+            colTypes, false, false, false, false, index.getStructureType());
 
         newIndex.setPosition(position);
 
@@ -589,6 +594,14 @@ public class TableWorks {
      * @return new index
      */
     Index addIndex(int[] col, HsqlName name, boolean unique) {
+        return addIndex(col, name, unique, Index.STRUCTURE_AVL);
+    }
+
+    /**
+     * As above, with the kind of index structure, one of the
+     * Index.STRUCTURE_XXX constants.
+     */
+    Index addIndex(int[] col, HsqlName name, boolean unique, int structure) {
 
         Index newIndex;
 
@@ -597,10 +610,11 @@ public class TableWorks {
         if (session.isProcessingScript() || table.isEmpty(session)
                 || table.isIndexingMutable()) {
             newIndex = table.createIndex(session, name, col, null, null,
-                                         unique, false, false);
+                                         unique, false, false, structure);
         } else {
             newIndex = table.createIndexStructure(name, col, null, null,
-                                                  unique, false, false);
+                                                  unique, false, false,
+                                                  structure);
 
             Table tn = table.moveDefinition(session, table.tableType, null,
                                             null, newIndex, -1, 0, emptySet,
@@ -1266,6 +1280,9 @@ public class TableWorks {
             case TableBase.MEMORY_TABLE :
                 break;
 
+            case TableBase.COLUMNAR_TABLE :
+                break;
+
             default :
                 return false;
         }
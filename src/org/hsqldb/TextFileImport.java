@@ -0,0 +1,320 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.IndexBuilder;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.LongDeque;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreAVL;
+import org.hsqldb.persist.TextCache;
+import org.hsqldb.persist.TextFileReader;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.types.Type;
+
+/**
+ * Loads the rows of a delimited text file into a MEMORY or CACHED table for
+ * PERFORM IMPORT DATA.<p>
+ *
+ * The source string and the format of the file are the same as for the
+ * source of a TEXT table. The rows are added without transaction
+ * information and are not written to the .log file. Once all the rows have
+ * been added, a CHECKPOINT saves the table.<p>
+ *
+ * If the table is empty, the indexes are built with one sort of the keys
+ * after the rows have been added. For a CACHED table, the keys that do not
+ * fit in memory are sorted in runs in temporary files by IndexBuilder. If
+ * the table has rows, each row is indexed as it is added.<p>
+ *
+ * The rows are checked against the constraints of the table, but triggers
+ * are not fired. If a row fails a check, all the rows added so far are
+ * removed and the table is unchanged.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class TextFileImport {
+
+    final Session         session;
+    final Table           table;
+    final PersistentStore store;
+    final Type[]          colTypes;
+    final boolean         isMemory;
+
+    // rows added, as objects for MEMORY tables and positions for CACHED
+    private HsqlArrayList loadedRows;
+    private LongDeque     loadedPositions;
+    private int           loadedCount;
+    private int           indexedCount;
+
+    TextFileImport(Session session, Table table) {
+
+        this.session = session;
+        this.table   = table;
+        store        = table.getRowStore(session);
+        colTypes     = table.getColumnTypes();
+        isMemory     = store.isMemory();
+
+        if (isMemory) {
+            loadedRows = new HsqlArrayList();
+        } else {
+            loadedPositions = new LongDeque();
+        }
+    }
+
+    /**
+     * Checks that the table and its columns can be loaded from a text file.
+     */
+    static void checkTable(Table table) {
+
+        switch (table.getTableType()) {
+
+            case TableBase.MEMORY_TABLE :
+            case TableBase.CACHED_TABLE :
+            case TableBase.COLUMNAR_TABLE :
+                break;
+
+            default :
+                throw Error.error(ErrorCode.X_0A501,
+                                  table.getName().statementName);
+        }
+
+        Type[] types = table.getColumnTypes();
+
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isLobType() || types[i].isArrayType()) {
+                throw Error.error(ErrorCode.X_0A501,
+                                  table.getColumn(i).getName().statementName);
+            }
+        }
+    }
+
+    /**
+     * Adds the rows of the source file to the table and returns the row
+     * count.
+     */
+    int load(String source) {
+
+        String securePath = session.database.logger.getSecurePath(source,
+            false, true);
+
+        if (securePath == null) {
+            throw Error.error(ErrorCode.ACCESS_IS_DENIED, source);
+        }
+
+        TextCache      cache  = null;
+        TextFileReader reader = null;
+
+        try {
+            cache = session.database.logger.textTableManager
+                .openTextFileReader(table, securePath);
+            reader = cache.getTextFileReader();
+
+            if (cache.isIgnoreFirstLine()) {
+                reader.readHeaderLine();
+            }
+
+            addRows(reader);
+        } catch (Throwable t) {
+            long linenumber = reader == null ? 0
+                                             : reader.getLineNumber();
+
+            removeRows();
+
+            throw Error.error(t, ErrorCode.TEXT_FILE, 0, new Object[] {
+                Long.valueOf(linenumber), t.toString()
+            });
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+
+            if (cache != null) {
+                cache.close();
+            }
+        }
+
+        try {
+            checkSelfReferences();
+            session.database.logger.checkpoint(session, false, false);
+        } catch (HsqlException e) {
+            removeRows();
+
+            throw e;
+        }
+
+        return loadedCount;
+    }
+
+    private void addRows(TextFileReader reader) {
+
+        IndexBuilder[] builders = null;
+
+        if (store instanceof RowStoreAVL) {
+            builders = ((RowStoreAVL) store).getIndexBuilders(session);
+        }
+
+        try {
+            while (true) {
+                RowInputInterface rowIn = reader.readObject();
+
+                if (rowIn == null) {
+                    break;
+                }
+
+                Object[] data = rowIn.readData(colTypes);
+
+                table.setIdentityColumn(session, data);
+                table.generateAndCheckData(session, data);
+                checkConstraints(data);
+
+                Row row = (Row) store.getNewCachedObject(session, data,
+                    false);
+
+                // indexRow() removes the row if it fails
+                if (builders == null) {
+                    store.indexRow(session, row);
+                    addLoadedRow(row);
+
+                    indexedCount++;
+
+                    continue;
+                }
+
+                addLoadedRow(row);
+
+                for (int i = 0; i < builders.length; i++) {
+                    builders[i].add(row);
+                }
+            }
+
+            if (builders != null) {
+                ((RowStoreAVL) store).buildIndexes(session, builders,
+                                                   loadedCount);
+
+                indexedCount = loadedCount;
+            }
+        } finally {
+            RowStoreAVL.closeIndexBuilders(builders);
+        }
+    }
+
+    private void addLoadedRow(Row row) {
+
+        if (isMemory) {
+            loadedRows.add(row);
+        } else {
+            loadedPositions.add(row.getPos());
+        }
+
+        loadedCount++;
+    }
+
+    /**
+     * Checks the CHECK constraints and the FOREIGN KEY constraints that
+     * reference other tables.
+     */
+    private void checkConstraints(Object[] data) {
+
+        for (int i = 0; i < table.checkConstraints.length; i++) {
+            table.checkConstraints[i].checkInsert(session, table, data, true);
+        }
+
+        if (!session.database.isReferentialIntegrity()) {
+            return;
+        }
+
+        for (int i = 0; i < table.fkConstraints.length; i++) {
+            Constraint c = table.fkConstraints[i];
+
+            if (c.getMain() != table) {
+                c.checkInsert(session, table, data, true);
+            }
+        }
+    }
+
+    /**
+     * Checks the FOREIGN KEY constraints that reference the table itself
+     * once all the rows have been indexed.
+     */
+    private void checkSelfReferences() {
+
+        if (!session.database.isReferentialIntegrity()) {
+            return;
+        }
+
+        for (int i = 0; i < table.fkConstraints.length; i++) {
+            Constraint c = table.fkConstraints[i];
+
+            if (c.getMain() != table) {
+                continue;
+            }
+
+            for (int j = 0; j < loadedCount; j++) {
+                c.checkInsert(session, table, getRow(j).getData(), true);
+            }
+        }
+    }
+
+    private Row getRow(int i) {
+
+        if (isMemory) {
+            return (Row) loadedRows.get(i);
+        }
+
+        return (Row) store.get(loadedPositions.get(i), false);
+    }
+
+    /**
+     * Removes the rows added so far.
+     */
+    private void removeRows() {
+
+        for (int i = 0; i < loadedCount; i++) {
+            Row row = getRow(i);
+
+            if (i < indexedCount) {
+                store.delete(session, row);
+            }
+
+            store.remove(row);
+        }
+
+        loadedRows      = null;
+        loadedPositions = null;
+        loadedCount     = 0;
+        indexedCount    = 0;
+    }
+}
@@ -47,7 +47,7 @@ import org.hsqldb.rowio.RowInputInterface;
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  */
 public class TextTable extends Table {
 
@@ -163,6 +163,10 @@ public class TextTable extends Table {
             throw Error.error(t, ErrorCode.TEXT_FILE, 0, new Object[] {
                 Long.valueOf(linenumber), t.toString()
             });
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
         }
 
         isConnected = true;
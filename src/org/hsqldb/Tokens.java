@@ -666,6 +666,7 @@ public class Tokens {
     static final String        T_BINARY_DOUBLE        = "BINARY_DOUBLE";
     static final String        T_BINARY_FLOAT         = "BINARY_FLOAT";
     static final String        T_BODY                 = "BODY";
+    public static final String T_BTREE                = "BTREE";
     static final String        T_BYTE                 = "BYTE";
     public static final String T_CACHE                = "CACHE";
     public static final String T_CACHED               = "CACHED";
@@ -674,6 +675,7 @@ public class Tokens {
     static final String        T_CITEXT               = "CITEXT";
     static final String        T_CLASS                = "CLASS";
     static final String        T_CLUSTERED            = "CLUSTERED";
+    public static final String T_COLUMNAR             = "COLUMNAR";
     static final String        T_COMMENT              = "COMMENT";
     public static final String T_COMPACT              = "COMPACT";
     public static final String T_COMPRESSED           = "COMPRESSED";
@@ -701,6 +703,7 @@ public class Tokens {
     static final String        T_FOLD                 = "FOLD";
     static final String        T_FORMAT               = "FORMAT";
     static final String        T_GROUP_CONCAT         = "GROUP_CONCAT";
+    public static final String T_HASH                 = "HASH";
     static final String        T_HEADER               = "HEADER";
     static final String        T_IFNULL               = "IFNULL";
     public static final String T_IGNORECASE           = "IGNORECASE";
@@ -1609,6 +1612,7 @@ public class Tokens {
     static final int USE            = 666;
     static final int VARCHAR2       = 667;
     static final int WRITE_DELAY    = 668;
+    static final int COLUMNAR       = 669;
 
     //
     static final int        ACOS                       = 671;
@@ -2225,6 +2229,7 @@ public class Tokens {
         commandSet.put(T_CLUSTERED, CLUSTERED);
         commandSet.put(T_COLLATE, COLLATE);
         commandSet.put(T_COLLATION, COLLATION);
+        commandSet.put(T_COLUMNAR, COLUMNAR);
         commandSet.put(T_COMMENT, COMMENT);
         commandSet.put(T_COMMITTED, COMMITTED);
         commandSet.put(T_COMPACT, COMPACT);
@@ -232,7 +232,8 @@ class TransactionManagerCommon {
             session.logSequences();
 
             if (limit > 0 && writeCommit) {
-                database.logger.writeCommitStatement(session);
+                session.commitLogPosition =
+                    database.logger.writeCommitStatement(session);
             }
         } catch (HsqlException e) {
             database.logger.logWarningEvent("data commit logging failed", e);
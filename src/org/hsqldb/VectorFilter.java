@@ -0,0 +1,1312 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb;
+
+import java.math.BigDecimal;
+
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.IntKeyHashMap;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Vectorized evaluation of the conditions of a full scan.<p>
+ *
+ * The conjuncts of the non-index conditions of the range that consist of
+ * comparisons, IS NULL, NOT, AND and OR over numeric columns of the range,
+ * constants, parameters and columns of outer ranges, combined with the
+ * arithmetic operators, are compiled into a tree of nodes. The supported
+ * types are the integral types, DECIMAL and NUMERIC with scale 0 and the
+ * floating point types. The rows of the
+ * scan are read in blocks and each node is evaluated for the whole block
+ * into a primitive vector, with a state vector for the null values. The
+ * columns are read into their vectors when each row of the block is read.
+ * AND and OR evaluate their right operand only for the rows selected by
+ * their left operand.<p>
+ *
+ * Where the scalar evaluation of a row would raise an exception, for
+ * example for an integer division by zero, the row is marked unsure and
+ * all the conditions are checked for it with the scalar evaluation. Only
+ * the conjuncts that could not be compiled are checked for the other rows
+ * returned. As with the conditions used for index lookups, the compiled
+ * conjuncts are evaluated before the others.<p>
+ *
+ * The nodes are shared by all the executions of the statement. The vectors
+ * belong to the iterator.<p>
+ *
+ * The filter is used only when the hsqldb.vector_filter property is true.
+ * When a conjunct that is not compiled would raise an exception for a row
+ * that is excluded by a compiled conjunct, the statement does not raise
+ * the exception, as it does with the scalar evaluation.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class VectorFilter {
+
+    /** maximum number of rows in a block */
+    static final int blockSize = 1024;
+
+    /** number of rows in the first block, doubled for each block */
+    static final int firstBlockSize = 64;
+
+    // states of the elements of a vector, TRUE for any non-null value
+    static final byte FALSE   = 0;
+    static final byte TRUE    = 1;
+    static final byte UNKNOWN = 2;
+    static final byte UNSURE  = 3;
+
+    // bits for comparison results -1, 0, +1
+    static final int LESS    = 1;
+    static final int EQUAL   = 2;
+    static final int GREATER = 4;
+
+    // comparison of values according to NumberType.compare()
+    static final int COMPARE_LONG           = 0;
+    static final int COMPARE_DOUBLE         = 1;
+    static final int COMPARE_INTEGER_DOUBLE = 2;
+    static final int COMPARE_EXACT_DOUBLE   = 3;
+
+    /** largest magnitude of a long that is converted to double exactly */
+    static final long maxExactLong = 1L << 53;
+
+    //
+    final RangeVariable   rangeVar;
+    private Node          condition;
+    private Node[]        columns;
+    private int           nodeCount;
+    private IntKeyHashMap columnMap = new IntKeyHashMap();
+
+    /** conjuncts of the join condition that are not compiled */
+    Expression joinCondition;
+
+    /** conjuncts of the where condition that are not compiled */
+    Expression whereCondition;
+
+    private VectorFilter(RangeVariable rangeVar) {
+        this.rangeVar = rangeVar;
+    }
+
+    /**
+     * Returns a filter for a range that is read with a full scan, or null.
+     */
+    static VectorFilter newVectorFilter(RangeVariable rangeVar) {
+
+        if (rangeVar.rangeType != RangeVariable.TABLE_RANGE) {
+            return null;
+        }
+
+        if (rangeVar.isLeftJoin || rangeVar.isRightJoin
+                || rangeVar.indexDistinctCount > 0
+                || rangeVar.joinConditions.length != 1
+                || rangeVar.whereConditions.length != 1) {
+            return null;
+        }
+
+        RangeVariableConditions join  = rangeVar.joinConditions[0];
+        RangeVariableConditions where = rangeVar.whereConditions[0];
+
+        if (join.hasIndexCondition() || where.hasIndexCondition()
+                || join.hashCond != null || join.isFalse
+                || join.terminalCondition != null
+                || join.indexEndCondition != null) {
+            return null;
+        }
+
+        VectorFilter  filter = new VectorFilter(rangeVar);
+        HsqlArrayList list   = new HsqlArrayList();
+
+        filter.joinCondition = filter.addConjuncts(join.nonIndexCondition,
+                list);
+        filter.whereCondition =
+            filter.addConjuncts(where.nonIndexCondition, list);
+
+        if (list.isEmpty()) {
+            return null;
+        }
+
+        Node node = (Node) list.get(0);
+
+        for (int i = 1; i < list.size(); i++) {
+            node = filter.newNode(OpTypes.AND, null, node, (Node) list.get(i));
+        }
+
+        filter.condition = node;
+        filter.columns   = new Node[filter.columnMap.size()];
+
+        filter.columnMap.valuesToArray(filter.columns);
+
+        filter.columnMap = null;
+
+        return filter;
+    }
+
+    /**
+     * Compiles the conjuncts of the condition and returns the conjuncts
+     * that cannot be compiled.
+     */
+    private Expression addConjuncts(Expression e, HsqlArrayList list) {
+
+        if (e == null) {
+            return null;
+        }
+
+        if (e.getType() == OpTypes.AND) {
+            Expression left  = addConjuncts(e.getLeftNode(), list);
+            Expression right = addConjuncts(e.getRightNode(), list);
+
+            if (left == e.getLeftNode() && right == e.getRightNode()) {
+                return e;
+            }
+
+            return ExpressionLogical.andExpressions(left, right);
+        }
+
+        Node node = compileCondition(e);
+
+        if (node == null) {
+            return e;
+        }
+
+        list.add(node);
+
+        return null;
+    }
+
+    private Node compileCondition(Expression e) {
+
+        if (!(e instanceof ExpressionLogical)) {
+            return null;
+        }
+
+        int opType = e.getType();
+
+        switch (opType) {
+
+            case OpTypes.AND :
+            case OpTypes.OR : {
+                Node left  = compileCondition(e.getLeftNode());
+                Node right = compileCondition(e.getRightNode());
+
+                if (left == null || right == null) {
+                    return null;
+                }
+
+                return newNode(opType, null, left, right);
+            }
+            case OpTypes.NOT : {
+                Node left = compileCondition(e.getLeftNode());
+
+                if (left == null) {
+                    return null;
+                }
+
+                return newNode(opType, null, left, null);
+            }
+            case OpTypes.IS_NULL :
+            case OpTypes.IS_NOT_NULL : {
+                Node left = compileValue(e.getLeftNode());
+
+                if (left == null) {
+                    return null;
+                }
+
+                return newNode(opType, null, left, null);
+            }
+            case OpTypes.EQUAL :
+            case OpTypes.NOT_EQUAL :
+            case OpTypes.GREATER :
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+            case OpTypes.SMALLER :
+            case OpTypes.SMALLER_EQUAL : {
+                if (e.getSubType() == OpTypes.ANY_QUANTIFIED
+                        || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                    return null;
+                }
+
+                Node left  = compileValue(e.getLeftNode());
+                Node right = compileValue(e.getRightNode());
+
+                if (left == null || right == null) {
+                    return null;
+                }
+
+                int compareMode;
+
+                if (left.isDouble) {
+                    compareMode = COMPARE_DOUBLE;
+                    right       = toDouble(right);
+                } else if (!right.isDouble) {
+                    compareMode = COMPARE_LONG;
+                } else if (isIntType(left.dataType)) {
+                    compareMode = COMPARE_INTEGER_DOUBLE;
+                } else {
+                    compareMode = COMPARE_EXACT_DOUBLE;
+                }
+
+                Node node = newNode(opType, null, left, right);
+
+                node.compareMode = compareMode;
+                node.accept      = getAcceptBits(opType);
+
+                return node;
+            }
+            default :
+                return null;
+        }
+    }
+
+    private Node compileValue(Expression e) {
+
+        Type type = e.getDataType();
+
+        if (type == null || !isSupportedType(type)) {
+            return null;
+        }
+
+        int opType = e.getType();
+
+        switch (opType) {
+
+            case OpTypes.COLUMN : {
+                if (e.getRangeVariable() != rangeVar) {
+
+                    // a column of an outer range
+                    return newValueNode(e);
+                }
+
+                if (type != e.getColumn().getDataType()) {
+                    return null;
+                }
+
+                // one node for each column
+                Node node = (Node) columnMap.get(e.getColumnIndex());
+
+                if (node == null) {
+                    node             = newNode(opType, type, null, null);
+                    node.columnIndex = e.getColumnIndex();
+
+                    columnMap.put(node.columnIndex, node);
+                }
+
+                return node;
+            }
+            case OpTypes.VALUE :
+            case OpTypes.DYNAMIC_PARAM :
+                return newValueNode(e);
+
+            case OpTypes.NEGATE : {
+                if (!(e instanceof ExpressionArithmetic)) {
+                    return null;
+                }
+
+                Node left = compileValue(e.getLeftNode());
+
+                if (left == null || left.isDouble != isDoubleType(type)) {
+                    return null;
+                }
+
+                return newNode(opType, type, left, null);
+            }
+            case OpTypes.ADD :
+            case OpTypes.SUBTRACT :
+            case OpTypes.MULTIPLY :
+            case OpTypes.DIVIDE : {
+                if (!(e instanceof ExpressionArithmetic)) {
+                    return null;
+                }
+
+                Node left  = compileValue(e.getLeftNode());
+                Node right = compileValue(e.getRightNode());
+
+                if (left == null || right == null) {
+                    return null;
+                }
+
+                if (isDoubleType(type)) {
+                    left  = toDouble(left);
+                    right = toDouble(right);
+                } else if (left.isDouble || right.isDouble) {
+                    return null;
+                } else if (isIntType(type)) {
+                    if (!isIntType(left.dataType)
+                            || !isIntType(right.dataType)) {
+                        return null;
+                    }
+                } else if (type.typeCode == Types.SQL_BIGINT) {
+                    if (left.isDecimal || right.isDecimal) {
+                        return null;
+                    }
+                }
+
+                return newNode(opType, type, left, right);
+            }
+            default :
+                return null;
+        }
+    }
+
+    private Node newNode(int opType, Type type, Node left, Node right) {
+
+        Node node = new Node(opType, nodeCount++);
+
+        node.dataType  = type;
+        node.isDouble  = type != null && isDoubleType(type);
+        node.isDecimal = type != null && type.isDecimalType();
+        node.left      = left;
+        node.right     = right;
+
+        if (node.isDecimal && type.precision < 19) {
+            node.limit = 1;
+
+            for (int i = 0; i < type.precision; i++) {
+                node.limit *= 10;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns a node for an expression that has the same value for all the
+     * rows of the scan.
+     */
+    private Node newValueNode(Expression e) {
+
+        Node node = newNode(OpTypes.VALUE, e.getDataType(), null, null);
+
+        node.expression = e;
+
+        return node;
+    }
+
+    /**
+     * Converts the values of an integral node to double.
+     */
+    private Node toDouble(Node node) {
+
+        if (node.isDouble) {
+            return node;
+        }
+
+        return newNode(OpTypes.CAST, Type.SQL_DOUBLE, node, null);
+    }
+
+    static boolean isSupportedType(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT :
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+                return true;
+
+            case Types.SQL_NUMERIC :
+            case Types.SQL_DECIMAL :
+                return type.scale == 0;
+
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Types that use int arithmetic.
+     */
+    static boolean isIntType(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    static boolean isDoubleType(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    static int getAcceptBits(int opType) {
+
+        switch (opType) {
+
+            case OpTypes.EQUAL :
+                return EQUAL;
+
+            case OpTypes.NOT_EQUAL :
+                return LESS | GREATER;
+
+            case OpTypes.GREATER :
+                return GREATER;
+
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+                return GREATER | EQUAL;
+
+            case OpTypes.SMALLER :
+                return LESS;
+
+            case OpTypes.SMALLER_EQUAL :
+                return LESS | EQUAL;
+
+            default :
+                throw Error.runtimeError(ErrorCode.U_S0500, "VectorFilter");
+        }
+    }
+
+    /**
+     * Returns an iterator over the rows of the given iterator for which the
+     * compiled conjuncts are not false or unknown.
+     */
+    VectorIterator getIterator(Session session, RowIterator it) {
+        return new VectorIterator(session, it);
+    }
+
+    /**
+     * State of the result of a strict operation on two values.
+     */
+    private static byte getState(byte a, byte b) {
+
+        if (a == UNSURE || b == UNSURE) {
+            return UNSURE;
+        }
+
+        if (a == UNKNOWN || b == UNKNOWN) {
+            return UNKNOWN;
+        }
+
+        return TRUE;
+    }
+
+    /**
+     * A compiled expression. The opType is that of the expression, except
+     * for VALUE, which is used for any expression that has the same value
+     * for all the rows of the scan, and CAST, which converts an integral
+     * value to double.
+     */
+    private static final class Node {
+
+        final int  opType;
+        final int  slot;
+        Type       dataType;
+        boolean    isDouble;
+        boolean    isDecimal;
+
+        /** absolute limit of DECIMAL values with less than 19 digits */
+        long       limit;
+        Node       left;
+        Node       right;
+        int        columnIndex;
+        Expression expression;
+        int        compareMode;
+        int        accept;
+
+        Node(int opType, int slot) {
+            this.opType = opType;
+            this.slot   = slot;
+        }
+    }
+
+    /**
+     * Reads the rows of a full scan in blocks and returns the rows that
+     * may satisfy the condition.
+     */
+    final class VectorIterator implements RowIterator {
+
+        final Session     session;
+        final RowIterator it;
+        final Row[]       rows      = new Row[blockSize];
+        final int[]       selection = new int[blockSize];
+        final int[]       selected  = new int[blockSize];
+        final long[][]    longs     = new long[nodeCount][];
+        final double[][]  doubles   = new double[nodeCount][];
+        final byte[][]    states    = new byte[nodeCount][];
+        final int[][]     selections = new int[nodeCount][];
+        int               blockLimit = firstBlockSize;
+        int               selectedCount;
+        int               rowIndex;
+        boolean           isEnd;
+        Row               currentRow;
+        boolean           isChecked;
+
+        VectorIterator(Session session, RowIterator it) {
+
+            this.session = session;
+            this.it      = it;
+
+            for (int i = 0; i < columns.length; i++) {
+                getStates(columns[i]);
+
+                if (columns[i].isDouble) {
+                    getDoubles(columns[i]);
+                } else {
+                    getLongs(columns[i]);
+                }
+            }
+        }
+
+        /**
+         * Returns true if the compiled conjuncts are true for the current
+         * row, false if they must be checked with the scalar evaluation.
+         */
+        boolean isChecked() {
+            return isChecked;
+        }
+
+        public Object getField(int col) {
+            return currentRow.getField(col);
+        }
+
+        public boolean next() {
+
+            while (rowIndex == selectedCount) {
+                if (isEnd) {
+                    currentRow = null;
+
+                    return false;
+                }
+
+                readBlock();
+            }
+
+            int  index  = selected[rowIndex++];
+            byte result = states[condition.slot][index];
+
+            currentRow = rows[index];
+            isChecked  = result == TRUE;
+
+            return true;
+        }
+
+        public Row getCurrentRow() {
+            return currentRow;
+        }
+
+        public Object[] getCurrent() {
+            return currentRow.getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {
+
+            it.release();
+
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = null;
+            }
+        }
+
+        public long getRowId() {
+            return currentRow.getPos();
+        }
+
+        private void readBlock() {
+
+            int count = 0;
+
+            while (count < blockLimit) {
+                if (!it.next()) {
+                    isEnd = true;
+
+                    break;
+                }
+
+                Row row = it.getCurrentRow();
+
+                for (int i = 0; i < columns.length; i++) {
+                    Node   node  = columns[i];
+                    Object value = row.getField(node.columnIndex);
+
+                    if (node.isDouble) {
+                        states[node.slot][count] =
+                            setDouble(doubles[node.slot], count, value);
+                    } else {
+                        states[node.slot][count] =
+                            setLong(longs[node.slot], count, value);
+                    }
+                }
+
+                rows[count++] = row;
+            }
+
+            if (blockLimit < blockSize) {
+                blockLimit *= 2;
+            }
+
+            rowIndex      = 0;
+            selectedCount = 0;
+
+            if (count == 0) {
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                selection[i] = i;
+            }
+
+            evaluate(condition, selection, count);
+
+            byte[] result = states[condition.slot];
+
+            for (int i = 0; i < count; i++) {
+                if (result[i] == TRUE || result[i] == UNSURE) {
+                    selected[selectedCount++] = i;
+                }
+            }
+        }
+
+        /**
+         * Evaluates the node for the rows in the first count elements of
+         * the selection.
+         */
+        private void evaluate(Node node, int[] sel, int count) {
+
+            switch (node.opType) {
+
+                case OpTypes.COLUMN :
+                    break;
+
+                case OpTypes.VALUE :
+                    evaluateValue(node, sel, count);
+                    break;
+
+                case OpTypes.CAST : {
+                    evaluate(node.left, sel, count);
+
+                    long[]   a  = longs[node.left.slot];
+                    byte[]   sa = states[node.left.slot];
+                    double[] r  = getDoubles(node);
+                    byte[]   s  = getStates(node);
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        r[i] = a[i];
+                        s[i] = sa[i];
+                    }
+
+                    break;
+                }
+                case OpTypes.NEGATE :
+                case OpTypes.ADD :
+                case OpTypes.SUBTRACT :
+                case OpTypes.MULTIPLY :
+                case OpTypes.DIVIDE :
+                    evaluate(node.left, sel, count);
+
+                    if (node.right != null) {
+                        evaluate(node.right, sel, count);
+                    }
+
+                    if (node.isDouble) {
+                        evaluateDoubleArithmetic(node, sel, count);
+                    } else {
+                        evaluateLongArithmetic(node, sel, count);
+                    }
+                    break;
+
+                case OpTypes.EQUAL :
+                case OpTypes.NOT_EQUAL :
+                case OpTypes.GREATER :
+                case OpTypes.GREATER_EQUAL :
+                case OpTypes.GREATER_EQUAL_PRE :
+                case OpTypes.SMALLER :
+                case OpTypes.SMALLER_EQUAL :
+                    evaluate(node.left, sel, count);
+                    evaluate(node.right, sel, count);
+                    evaluateComparison(node, sel, count);
+                    break;
+
+                case OpTypes.IS_NULL :
+                case OpTypes.IS_NOT_NULL : {
+                    evaluate(node.left, sel, count);
+
+                    byte[] sa     = states[node.left.slot];
+                    byte[] s      = getStates(node);
+                    byte   isNull = node.opType == OpTypes.IS_NULL ? TRUE
+                                                                   : FALSE;
+                    byte   isNotNull = isNull == TRUE ? FALSE
+                                                      : TRUE;
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = sa[i] == UNSURE ? UNSURE
+                                               : sa[i] == UNKNOWN ? isNull
+                                                                  : isNotNull;
+                    }
+
+                    break;
+                }
+                case OpTypes.NOT : {
+                    evaluate(node.left, sel, count);
+
+                    byte[] sa = states[node.left.slot];
+                    byte[] s  = getStates(node);
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = sa[i] == TRUE ? FALSE
+                                             : sa[i] == FALSE ? TRUE
+                                                              : sa[i];
+                    }
+
+                    break;
+                }
+                case OpTypes.AND :
+                case OpTypes.OR :
+                    evaluateLogical(node, sel, count);
+                    break;
+
+                default :
+                    throw Error.runtimeError(ErrorCode.U_S0500,
+                                             "VectorFilter");
+            }
+        }
+
+        /**
+         * The expression has the same value for all the rows of the scan.
+         * It is evaluated once and stored in all the elements of the vector.
+         */
+        private void evaluateValue(Node node, int[] sel, int count) {
+
+            if (states[node.slot] != null) {
+                return;
+            }
+
+            Object  value   = null;
+            boolean isError = false;
+            byte    state;
+            byte[]  s = getStates(node);
+
+            try {
+                value = node.expression.getValue(session);
+            } catch (HsqlException e) {
+                isError = true;
+            }
+
+            if (node.isDouble) {
+                double[] r = getDoubles(node);
+
+                state = isError ? UNSURE
+                                : setDouble(r, 0, value);
+
+                for (int i = 1; i < blockSize; i++) {
+                    r[i] = r[0];
+                }
+            } else {
+                long[] r = getLongs(node);
+
+                state = isError ? UNSURE
+                                : setLong(r, 0, value);
+
+                for (int i = 1; i < blockSize; i++) {
+                    r[i] = r[0];
+                }
+            }
+
+            for (int i = 0; i < blockSize; i++) {
+                s[i] = state;
+            }
+        }
+
+        /**
+         * Integral arithmetic as in NumberType. The result is truncated to
+         * int for the types smaller than BIGINT and is exact for DECIMAL.
+         * Division by zero, negation of the smallest value of the type and
+         * DECIMAL values out of range are unsure.
+         */
+        private void evaluateLongArithmetic(Node node, int[] sel,
+                                            int count) {
+
+            long[]  a       = longs[node.left.slot];
+            byte[]  sa      = states[node.left.slot];
+            long[]  r       = getLongs(node);
+            byte[]  s       = getStates(node);
+            boolean isExact = node.isDecimal;
+
+            if (node.opType == OpTypes.NEGATE) {
+                long min = getMinValue(node.dataType);
+
+                for (int j = 0; j < count; j++) {
+                    int i = sel[j];
+
+                    s[i] = sa[i];
+
+                    if (s[i] == TRUE) {
+                        if (a[i] == min) {
+                            s[i] = UNSURE;
+                        } else {
+                            r[i] = -a[i];
+                        }
+                    }
+                }
+
+                return;
+            }
+
+            long[] b  = longs[node.right.slot];
+            byte[] sb = states[node.right.slot];
+
+            switch (node.opType) {
+
+                case OpTypes.ADD :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            long v = a[i] + b[i];
+
+                            if (isExact && ((a[i] ^ v) & (b[i] ^ v)) < 0) {
+                                s[i] = UNSURE;
+                            }
+
+                            r[i] = v;
+                        }
+                    }
+                    break;
+
+                case OpTypes.SUBTRACT :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            long v = a[i] - b[i];
+
+                            if (isExact && ((a[i] ^ b[i]) & (a[i] ^ v)) < 0) {
+                                s[i] = UNSURE;
+                            }
+
+                            r[i] = v;
+                        }
+                    }
+                    break;
+
+                case OpTypes.MULTIPLY :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            long v = a[i] * b[i];
+
+                            if (isExact && !isExactProduct(a[i], b[i], v)) {
+                                s[i] = UNSURE;
+                            }
+
+                            r[i] = v;
+                        }
+                    }
+                    break;
+
+                case OpTypes.DIVIDE :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            if (b[i] == 0) {
+                                s[i] = UNSURE;
+                            } else if (isExact && b[i] == -1
+                                       && a[i] == Long.MIN_VALUE) {
+                                s[i] = UNSURE;
+                            } else {
+                                r[i] = a[i] / b[i];
+                            }
+                        }
+                    }
+                    break;
+
+                default :
+            }
+
+            if (isIntType(node.dataType)) {
+                for (int j = 0; j < count; j++) {
+                    int i = sel[j];
+
+                    r[i] = (int) r[i];
+                }
+            } else if (node.limit != 0) {
+                long limit = node.limit;
+
+                for (int j = 0; j < count; j++) {
+                    int i = sel[j];
+
+                    if (s[i] == TRUE && (r[i] >= limit || r[i] <= -limit)) {
+                        s[i] = UNSURE;
+                    }
+                }
+            }
+        }
+
+        private void evaluateDoubleArithmetic(Node node, int[] sel,
+                                              int count) {
+
+            double[] a  = doubles[node.left.slot];
+            byte[]   sa = states[node.left.slot];
+            double[] r  = getDoubles(node);
+            byte[]   s  = getStates(node);
+
+            if (node.opType == OpTypes.NEGATE) {
+                for (int j = 0; j < count; j++) {
+                    int i = sel[j];
+
+                    s[i] = sa[i];
+                    r[i] = -a[i];
+                }
+
+                return;
+            }
+
+            double[] b  = doubles[node.right.slot];
+            byte[]   sb = states[node.right.slot];
+
+            switch (node.opType) {
+
+                case OpTypes.ADD :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = getState(sa[i], sb[i]);
+                        r[i] = a[i] + b[i];
+                    }
+                    break;
+
+                case OpTypes.SUBTRACT :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = getState(sa[i], sb[i]);
+                        r[i] = a[i] - b[i];
+                    }
+                    break;
+
+                case OpTypes.MULTIPLY :
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = getState(sa[i], sb[i]);
+                        r[i] = a[i] * b[i];
+                    }
+                    break;
+
+                case OpTypes.DIVIDE : {
+                    boolean zeroIsError = session.database.sqlDoubleNaN;
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        s[i] = getState(sa[i], sb[i]);
+
+                        if (s[i] == TRUE && b[i] == 0 && zeroIsError) {
+                            s[i] = UNSURE;
+                        }
+
+                        r[i] = a[i] / b[i];
+                    }
+
+                    break;
+                }
+                default :
+            }
+        }
+
+        private void evaluateComparison(Node node, int[] sel, int count) {
+
+            byte[] sa     = states[node.left.slot];
+            byte[] sb     = states[node.right.slot];
+            byte[] s      = getStates(node);
+            int    accept = node.accept;
+
+            switch (node.compareMode) {
+
+                case COMPARE_LONG : {
+                    long[] a = longs[node.left.slot];
+                    long[] b = longs[node.right.slot];
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            int bit = 1 << (ColumnarData.compareLong(a[i],
+                                b[i]) + 1);
+
+                            s[i] = (accept & bit) == 0 ? FALSE
+                                                       : TRUE;
+                        }
+                    }
+
+                    break;
+                }
+                case COMPARE_DOUBLE : {
+                    double[] a = doubles[node.left.slot];
+                    double[] b = doubles[node.right.slot];
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) == TRUE) {
+                            int bit = 1 << (ColumnarData.compareDouble(a[i],
+                                b[i]) + 1);
+
+                            s[i] = (accept & bit) == 0 ? FALSE
+                                                       : TRUE;
+                        }
+                    }
+
+                    break;
+                }
+                case COMPARE_INTEGER_DOUBLE :
+                case COMPARE_EXACT_DOUBLE : {
+                    long[]   a       = longs[node.left.slot];
+                    double[] b       = doubles[node.right.slot];
+                    boolean  isExact = node.compareMode
+                                       == COMPARE_EXACT_DOUBLE;
+
+                    for (int j = 0; j < count; j++) {
+                        int i = sel[j];
+
+                        if ((s[i] = getState(sa[i], sb[i])) != TRUE) {
+                            continue;
+                        }
+
+                        double ad = a[i];
+                        double bd = b[i];
+
+                        // the exact comparison fails for NaN and infinity
+                        if (isExact
+                                && (a[i] > maxExactLong
+                                    || a[i] < -maxExactLong
+                                    || Double.isNaN(bd)
+                                    || Double.isInfinite(bd))) {
+                            s[i] = UNSURE;
+
+                            continue;
+                        }
+
+                        int bit = ad > bd ? GREATER
+                                          : bd > ad ? LESS
+                                                    : EQUAL;
+
+                        s[i] = (accept & bit) == 0 ? FALSE
+                                                   : TRUE;
+                    }
+
+                    break;
+                }
+                default :
+            }
+        }
+
+        /**
+         * The right operand is evaluated only for the rows for which the
+         * left operand does not decide the result, as in the scalar
+         * evaluation.
+         */
+        private void evaluateLogical(Node node, int[] sel, int count) {
+
+            evaluate(node.left, sel, count);
+
+            byte[] sa       = states[node.left.slot];
+            byte[] s        = getStates(node);
+            int[]  rightSel = getSelection(node);
+            byte   decisive = node.opType == OpTypes.AND ? FALSE
+                                                         : TRUE;
+            int    rightCount = 0;
+
+            for (int j = 0; j < count; j++) {
+                int i = sel[j];
+
+                if (sa[i] == decisive || sa[i] == UNSURE) {
+                    s[i] = sa[i];
+                } else {
+                    rightSel[rightCount++] = i;
+                }
+            }
+
+            if (rightCount == 0) {
+                return;
+            }
+
+            evaluate(node.right, rightSel, rightCount);
+
+            byte[] sb = states[node.right.slot];
+
+            for (int j = 0; j < rightCount; j++) {
+                int i = rightSel[j];
+
+                if (sb[i] == decisive || sb[i] == UNSURE) {
+                    s[i] = sb[i];
+                } else if (sa[i] == UNKNOWN || sb[i] == UNKNOWN) {
+                    s[i] = UNKNOWN;
+                } else {
+                    s[i] = sb[i];
+                }
+            }
+        }
+
+        private long[] getLongs(Node node) {
+
+            if (longs[node.slot] == null) {
+                longs[node.slot] = new long[blockSize];
+            }
+
+            return longs[node.slot];
+        }
+
+        private double[] getDoubles(Node node) {
+
+            if (doubles[node.slot] == null) {
+                doubles[node.slot] = new double[blockSize];
+            }
+
+            return doubles[node.slot];
+        }
+
+        private byte[] getStates(Node node) {
+
+            if (states[node.slot] == null) {
+                states[node.slot] = new byte[blockSize];
+            }
+
+            return states[node.slot];
+        }
+
+        private int[] getSelection(Node node) {
+
+            if (selections[node.slot] == null) {
+                selections[node.slot] = new int[blockSize];
+            }
+
+            return selections[node.slot];
+        }
+    }
+
+    /**
+     * Stores a non-null integral value and returns its state. A DECIMAL
+     * value that may not fit in a long is unsure.
+     */
+    private static byte setLong(long[] r, int i, Object value) {
+
+        if (value instanceof Integer || value instanceof Long) {
+            r[i] = ((Number) value).longValue();
+
+            return TRUE;
+        }
+
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal) value;
+
+            if (bd.scale() == 0 && bd.precision() < 19) {
+                r[i] = bd.longValue();
+
+                return TRUE;
+            }
+
+            return UNSURE;
+        }
+
+        return value == null ? UNKNOWN
+                             : UNSURE;
+    }
+
+    private static byte setDouble(double[] r, int i, Object value) {
+
+        if (value instanceof Double) {
+            r[i] = ((Double) value).doubleValue();
+
+            return TRUE;
+        }
+
+        return value == null ? UNKNOWN
+                             : UNSURE;
+    }
+
+    /**
+     * As in Math.multiplyExact().
+     */
+    static boolean isExactProduct(long a, long b, long product) {
+
+        if (((Math.abs(a) | Math.abs(b)) >>> 31) == 0) {
+            return true;
+        }
+
+        if (b != 0 && product / b != a) {
+            return false;
+        }
+
+        return !(a == Long.MIN_VALUE && b == -1);
+    }
+
+    static long getMinValue(Type type) {
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+                return Byte.MIN_VALUE;
+
+            case Types.SQL_SMALLINT :
+                return Short.MIN_VALUE;
+
+            case Types.SQL_INTEGER :
+                return Integer.MIN_VALUE;
+
+            default :
+                return Long.MIN_VALUE;
+        }
+    }
+}
@@ -177,6 +177,9 @@ final class DITableInfo {
             case TableBase.INFO_SCHEMA_TABLE :
                 return "MEMORY";
 
+            case TableBase.COLUMNAR_TABLE :
+                return "COLUMNAR";
+
             case TableBase.CACHED_TABLE :
                 return "CACHED";
 
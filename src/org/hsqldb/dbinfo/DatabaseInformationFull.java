@@ -435,6 +435,10 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
      * FREE_BYTES          BIGINT   total bytes in available file allocation units
      * FREE_COUNT          BIGINT   total # of allocation units available
      * FREE_POS            BIGINT   largest file position allocated + 1
+     * CACHE_POLICY        CHARACTER_DATA   row replacement policy, LRU or 2Q
+     * HIT_COUNT           BIGINT   number of row reads found in the cache
+     * MISS_COUNT          BIGINT   number of row reads not found in the cache
+     * EVICTION_COUNT      BIGINT   number of rows removed to make space
      * </pre> <p>
      *
      * <b>Notes:</b> <p>
@@ -469,6 +473,10 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             addColumn(t, "CACHE_BYTES", CARDINAL_NUMBER);        // not null
             addColumn(t, "FILE_LOST_BYTES", CARDINAL_NUMBER);    // not null
             addColumn(t, "FILE_FREE_POS", CARDINAL_NUMBER);      // not null
+            addColumn(t, "CACHE_POLICY", CHARACTER_DATA);        // not null
+            addColumn(t, "HIT_COUNT", CARDINAL_NUMBER);          // not null
+            addColumn(t, "MISS_COUNT", CARDINAL_NUMBER);         // not null
+            addColumn(t, "EVICTION_COUNT", CARDINAL_NUMBER);     // not null
 
             HsqlName name = HsqlNameManager.newInfoSchemaObjectName(
                 sysTableHsqlNames[SYSTEM_CACHEINFO].name, false,
@@ -487,6 +495,10 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
         final int icache_length    = 4;
         final int ilost_bytes      = 5;
         final int ifree_pos        = 6;
+        final int icache_policy    = 7;
+        final int ihit_count       = 8;
+        final int imiss_count      = 9;
+        final int ieviction_count  = 10;
 
         //
         DataFileCache cache = null;
@@ -548,6 +560,11 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
                 ValuePool.getLong(cache.getTotalCachedBlockSize());
             row[ilost_bytes] = ValuePool.getLong(cache.getLostBlockSize());
             row[ifree_pos]   = ValuePool.getLong(cache.getFileFreePos());
+            row[icache_policy]   = cache.getCachePolicyName();
+            row[ihit_count]      = ValuePool.getLong(cache.getCacheHitCount());
+            row[imiss_count] = ValuePool.getLong(cache.getCacheMissCount());
+            row[ieviction_count] =
+                ValuePool.getLong(cache.getCacheEvictionCount());
 
             t.insertSys(session, store, row);
         }
@@ -1502,6 +1519,7 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             switch (table.getTableType()) {
 
                 case TableBase.MEMORY_TABLE :
+                case TableBase.COLUMNAR_TABLE :
                 case TableBase.CACHED_TABLE :
                 case TableBase.TEXT_TABLE :
                     break;
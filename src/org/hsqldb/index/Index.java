@@ -42,7 +42,7 @@ import org.hsqldb.types.Type;
 /**
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.2.9
+ * @version 2.3.5
  * @since 1.9.0
  */
 public interface Index extends SchemaObject {
@@ -51,6 +51,11 @@ public interface Index extends SchemaObject {
     int INDEX_NON_UNIQUE = 1;
     int INDEX_UNIQUE     = 2;
 
+    //
+    int STRUCTURE_AVL   = 0;
+    int STRUCTURE_BTREE = 1;
+    int STRUCTURE_HASH  = 2;
+
     //
     double minimumSelectivity = 16;
     double cachedFactor       = 8;
@@ -135,6 +140,12 @@ public interface Index extends SchemaObject {
 
     boolean isClustered();
 
+    /**
+     * Returns the kind of data structure used for the index, one of the
+     * STRUCTURE_XXX constants
+     */
+    int getStructureType();
+
     /**
      * Returns the node count.
      */
@@ -70,7 +70,10 @@
 
 package org.hsqldb.index;
 
+import java.util.Comparator;
+
 import org.hsqldb.Constraint;
+import org.hsqldb.HsqlException;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.OpTypes;
 import org.hsqldb.Row;
@@ -83,6 +86,7 @@ import org.hsqldb.Tokens;
 import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.navigator.RowIterator;
@@ -113,6 +117,23 @@ import org.hsqldb.types.Type;
  */
 public class IndexAVL implements Index {
 
+    /**
+     * The key of a row for IndexBuilder. The row is kept for MEMORY tables
+     * only.
+     */
+    public static final class RowKey {
+
+        final Row      row;
+        final long     pos;
+        final Object[] data;
+
+        RowKey(Row row, long pos, Object[] data) {
+            this.row  = row;
+            this.pos  = pos;
+            this.data = data;
+        }
+    }
+
     private static final IndexRowIterator emptyIterator =
         new IndexRowIterator(null, (PersistentStore) null, null, null, 0,
                              false, false);
@@ -367,6 +388,10 @@ public class IndexAVL implements Index {
         return isClustered;
     }
 
+    public int getStructureType() {
+        return Index.STRUCTURE_AVL;
+    }
+
     /**
      * Returns the node count.
      */
@@ -674,6 +699,25 @@ public class IndexAVL implements Index {
         return 0;
     }
 
+    /**
+     * As above but compares the columns of a table row without getting
+     * the array of the row data.
+     */
+    public int compareRowNonUnique(Session session, Row a, Object[] b,
+                                   int[] rowColMap, int fieldCount) {
+
+        for (int j = 0; j < fieldCount; j++) {
+            int i = a.compareField(session, colTypes[j], colIndex[j],
+                                   b[rowColMap[j]]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
     /**
      * As above but use the index column data
      */
@@ -742,21 +786,19 @@ public class IndexAVL implements Index {
      *
      * @param session Session
      * @param newRow data
+     * @param a data of newRow
      * @param existingRow data
      * @param useRowId boolean
      * @param start int
      * @return comparison result, -1,0,+1
      */
-    int compareRowForInsertOrDelete(Session session, Row newRow,
+    int compareRowForInsertOrDelete(Session session, Row newRow, Object[] a,
                                     Row existingRow, boolean useRowId,
                                     int start) {
 
-        Object[] a = newRow.getData();
-        Object[] b = existingRow.getData();
-
         for (int j = start; j < colIndex.length; j++) {
-            int i = colTypes[j].compare(session, a[colIndex[j]],
-                                        b[colIndex[j]]);
+            int i = -existingRow.compareField(session, colTypes[j],
+                                              colIndex[j], a[colIndex[j]]);
 
             if (i != 0) {
                 if (isSimpleOrder) {
@@ -764,7 +806,7 @@ public class IndexAVL implements Index {
                 }
 
                 boolean nulls = a[colIndex[j]] == null
-                                || b[colIndex[j]] == null;
+                                || existingRow.getField(colIndex[j]) == null;
 
                 if (colDesc[j] && !nulls) {
                     i = -i;
@@ -795,6 +837,16 @@ public class IndexAVL implements Index {
                                           b[rowColMap[position]], opType);
     }
 
+    /**
+     * As above but reads the single column from the row
+     */
+    int compareObject(Session session, Row a, Object[] b, int[] rowColMap,
+                      int position, int opType) {
+        return colTypes[position].compare(session,
+                                          a.getField(colIndex[position]),
+                                          b[rowColMap[position]], opType);
+    }
+
     boolean hasNulls(Session session, Object[] rowData) {
 
         boolean uniqueNulls = session == null
@@ -827,7 +879,8 @@ public class IndexAVL implements Index {
         NodeAVL x;
         boolean isleft       = true;
         int     compare      = -1;
-        boolean compareRowId = !isUnique || hasNulls(session, row.getData());
+        Object[] rowData      = row.getData();
+        boolean  compareRowId = !isUnique || hasNulls(session, rowData);
 
         n = getAccessor(store);
         x = n;
@@ -841,8 +894,8 @@ public class IndexAVL implements Index {
         while (true) {
             Row currentRow = n.getRow(store);
 
-            compare = compareRowForInsertOrDelete(session, row, currentRow,
-                                                  compareRowId, 0);
+            compare = compareRowForInsertOrDelete(session, row, rowData,
+                                                  currentRow, compareRowId, 0);
 
             // after the first match and check, all compares are with row id
             if (compare == 0 && session != null && !compareRowId
@@ -850,24 +903,14 @@ public class IndexAVL implements Index {
                 if (!isEqualReadable(session, store, n)) {
                     compareRowId = true;
                     compare = compareRowForInsertOrDelete(session, row,
-                                                          currentRow,
+                                                          rowData, currentRow,
                                                           compareRowId,
                                                           colIndex.length);
                 }
             }
 
             if (compare == 0) {
-                Constraint c = null;
-
-                if (isConstraint) {
-                    c = ((Table) table).getUniqueConstraintForIndex(this);
-                }
-
-                if (c == null) {
-                    throw Error.error(ErrorCode.X_23505, name.statementName);
-                } else {
-                    throw c.getException(row.getData());
-                }
+                throw getDuplicateException(rowData);
             }
 
             isleft = compare < 0;
@@ -884,6 +927,86 @@ public class IndexAVL implements Index {
         balance(store, x, isleft);
     }
 
+    HsqlException getDuplicateException(Object[] rowData) {
+
+        Constraint c = null;
+
+        if (isConstraint) {
+            c = ((Table) table).getUniqueConstraintForIndex(this);
+        }
+
+        if (c == null) {
+            return Error.error(ErrorCode.X_23505, name.statementName);
+        } else {
+            return c.getException(rowData);
+        }
+    }
+
+    /**
+     * Returns the key of a row for IndexBuilder. For rows of CACHED tables, only
+     * the values of the index columns are kept.
+     */
+    public RowKey getRowKey(Row row) {
+
+        Object[] rowData = row.getData();
+
+        if (row.isMemory()) {
+            return new RowKey(row, row.getPos(), rowData);
+        }
+
+        Object[] data = new Object[rowData.length];
+
+        for (int i = 0; i < colIndex.length; i++) {
+            data[colIndex[i]] = rowData[colIndex[i]];
+        }
+
+        return new RowKey(null, row.getPos(), data);
+    }
+
+    /**
+     * Sorts the keys on the index columns, then on the row position, which
+     * is the order that insert() maintains, and checks unique keys.
+     */
+    void sortKeys(final Session session, RowKey[] keys, int count) {
+
+        ArraySort.sort(keys, 0, count, new Comparator<RowKey>() {
+
+            public int compare(RowKey ka, RowKey kb) {
+
+                int compare = compareRow(session, ka.data, kb.data);
+
+                if (compare == 0) {
+                    long diff = ka.pos - kb.pos;
+
+                    compare = diff == 0L ? 0
+                                         : diff > 0L ? 1
+                                                     : -1;
+                }
+
+                return compare;
+            }
+        });
+
+        if (isUnique) {
+            for (int i = 1; i < count; i++) {
+                Object[] rowData = keys[i].data;
+
+                if (compareRow(session, keys[i - 1].data, rowData) == 0
+                        && !hasNulls(session, rowData)) {
+                    throw getDuplicateException(rowData);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the height of a balanced subtree of count nodes, which is the
+     * bit length of count.
+     */
+    static int getHeight(long count) {
+        return 64 - Long.numberOfLeadingZeros(count);
+    }
+
     public void delete(Session session, PersistentStore store, Row row) {
 
         row = (Row) store.get(row, false);
@@ -1572,8 +1695,8 @@ public class IndexAVL implements Index {
                 int i = 0;
 
                 if (fieldCount > 0) {
-                    i = compareRowNonUnique(session, currentRow.getData(),
-                                            rowdata, rowColMap, fieldCount);
+                    i = compareRowNonUnique(session, currentRow, rowdata,
+                                            rowColMap, fieldCount);
                 }
 
                 if (i == 0) {
@@ -1594,7 +1717,7 @@ public class IndexAVL implements Index {
                         }
                         case OpTypes.NOT :
                         case OpTypes.GREATER : {
-                            i = compareObject(session, currentRow.getData(),
+                            i = compareObject(session, currentRow,
                                               rowdata, rowColMap, fieldCount,
                                               compareType);
 
@@ -1609,7 +1732,7 @@ public class IndexAVL implements Index {
                         }
                         case OpTypes.GREATER_EQUAL_PRE :
                         case OpTypes.GREATER_EQUAL : {
-                            i = compareObject(session, currentRow.getData(),
+                            i = compareObject(session, currentRow,
                                               rowdata, rowColMap, fieldCount,
                                               compareType);
 
@@ -1623,7 +1746,7 @@ public class IndexAVL implements Index {
                             break;
                         }
                         case OpTypes.SMALLER : {
-                            i = compareObject(session, currentRow.getData(),
+                            i = compareObject(session, currentRow,
                                               rowdata, rowColMap, fieldCount,
                                               compareType);
 
@@ -1637,7 +1760,7 @@ public class IndexAVL implements Index {
                             break;
                         }
                         case OpTypes.SMALLER_EQUAL : {
-                            i = compareObject(session, currentRow.getData(),
+                            i = compareObject(session, currentRow,
                                               rowdata, rowColMap, fieldCount,
                                               compareType);
 
@@ -1692,7 +1815,7 @@ public class IndexAVL implements Index {
 
                 if (fieldCount > 0
                         && compareRowNonUnique(
-                            session, currentRow.getData(), rowdata, rowColMap,
+                            session, currentRow, rowdata, rowColMap,
                             fieldCount) != 0) {
                     result = null;
 
@@ -1723,8 +1846,8 @@ public class IndexAVL implements Index {
 
                 int i = 0;
 
-                i = compareRowNonUnique(session, currentRow.getData(),
-                                        rowData, colIndex, fieldCount);
+                i = compareRowNonUnique(session, currentRow, rowData,
+                                        colIndex, fieldCount);
 
                 if (reversed) {
                     if (i < 0) {
@@ -1861,6 +1984,7 @@ public class IndexAVL implements Index {
         final IndexAVL        index;
         NodeAVL               nextnode;
         Row                   lastrow;
+        Object[]              lastdata;
         int                   distinctCount;
         boolean               single;
         boolean               reversed;
@@ -1887,13 +2011,21 @@ public class IndexAVL implements Index {
             nextnode = node;
         }
 
+        /**
+         * The values of a packed row are read from the array returned by
+         * getCurrent() once it has been built for the row.
+         */
         public Object getField(int col) {
 
             if (lastrow == null) {
                 return null;
             }
 
-            return lastrow.getData()[col];
+            if (lastdata != null) {
+                return lastdata[col];
+            }
+
+            return lastrow.getField(col);
         }
 
         public boolean next() {
@@ -1913,7 +2045,12 @@ public class IndexAVL implements Index {
                 return null;
             }
 
-            return lastrow.getData();
+            // a packed row builds a new array for each call
+            if (lastdata == null) {
+                lastdata = lastrow.getData();
+            }
+
+            return lastdata;
         }
 
         public boolean hasNext() {
@@ -1922,6 +2059,8 @@ public class IndexAVL implements Index {
 
         private Row getNextRow() {
 
+            lastdata = null;
+
             if (nextnode == null) {
                 release();
 
@@ -70,16 +70,12 @@
 
 package org.hsqldb.index;
 
-import org.hsqldb.Constraint;
 import org.hsqldb.HsqlNameManager;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.Row;
 import org.hsqldb.RowAVL;
 import org.hsqldb.Session;
-import org.hsqldb.Table;
 import org.hsqldb.TableBase;
-import org.hsqldb.error.Error;
-import org.hsqldb.error.ErrorCode;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.types.Type;
 
@@ -198,17 +194,17 @@ public class IndexAVLMemory extends IndexAVL {
             compare = 0;
 
             if (compareSimple) {
-                compare =
-                    colTypes[0].compare(session, rowData[colIndex[0]],
-                                        currentRow.getData()[colIndex[0]]);
+                compare = -currentRow.compareField(session, colTypes[0],
+                                                   colIndex[0],
+                                                   rowData[colIndex[0]]);
 
                 if (compare == 0 && compareRowId) {
                     compare = compareRowForInsertOrDelete(session, row,
-                                                          currentRow,
+                                                          rowData, currentRow,
                                                           compareRowId, 1);
                 }
             } else {
-                compare = compareRowForInsertOrDelete(session, row,
+                compare = compareRowForInsertOrDelete(session, row, rowData,
                                                       currentRow,
                                                       compareRowId, 0);
             }
@@ -219,21 +215,14 @@ public class IndexAVLMemory extends IndexAVL {
                 if (!isEqualReadable(session, store, n)) {
                     compareRowId = true;
                     compare = compareRowForInsertOrDelete(session, row,
-                                                          currentRow,
+                                                          rowData, currentRow,
                                                           compareRowId,
                                                           colIndex.length);
                 }
             }
 
             if (compare == 0) {
-                if (isConstraint) {
-                    Constraint c =
-                        ((Table) table).getUniqueConstraintForIndex(this);
-
-                    throw c.getException(row.getData());
-                } else {
-                    throw Error.error(ErrorCode.X_23505, name.statementName);
-                }
+                throw getDuplicateException(rowData);
             }
 
             isleft = compare < 0;
@@ -251,6 +240,77 @@ public class IndexAVLMemory extends IndexAVL {
         balance(store, x, isleft);
     }
 
+    /**
+     * Links the rows into an empty index as a balanced tree.
+     */
+    public void build(Session session, PersistentStore store, Row[] rows,
+                      int count) {
+
+        RowKey[] keys = new RowKey[count];
+
+        for (int i = 0; i < count; i++) {
+            keys[i] = getRowKey(rows[i]);
+        }
+
+        build(session, store, keys, count);
+    }
+
+    public void build(Session session, PersistentStore store, RowKey[] keys,
+                      int count) {
+
+        if (count == 0) {
+            return;
+        }
+
+        if (hasUncommittedRows(session, keys, count)) {
+            for (int i = 0; i < count; i++) {
+                insert(session, store, keys[i].row);
+            }
+
+            return;
+        }
+
+        sortKeys(session, keys, count);
+        store.setAccessor(this, link(keys, 0, count, null));
+    }
+
+    /**
+     * With MVCC, a unique key can be shared by rows that are not visible
+     * to each other. These rows are checked by insert().
+     */
+    boolean hasUncommittedRows(Session session, RowKey[] keys, int count) {
+
+        if (!isUnique || !session.database.txManager.isMVRows()) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (keys[i].row.rowAction != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private NodeAVL link(RowKey[] keys, int start, int limit,
+                         NodeAVL parent) {
+
+        if (start == limit) {
+            return null;
+        }
+
+        int     mid  = (start + limit) >>> 1;
+        NodeAVL node = ((RowAVL) keys[mid].row).getNode(position);
+
+        node.nParent  = parent;
+        node.nLeft    = link(keys, start, mid, node);
+        node.nRight   = link(keys, mid + 1, limit, node);
+        node.iBalance = getHeight(limit - mid - 1) - getHeight(mid - start);
+
+        return node;
+    }
+
     void delete(PersistentStore store, NodeAVL x) {
 
         if (x == null) {
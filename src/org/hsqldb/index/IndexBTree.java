@@ -0,0 +1,1419 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.index;
+
+import java.util.Arrays;
+
+import org.hsqldb.Constraint;
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.TableBase;
+import org.hsqldb.Tokens;
+import org.hsqldb.TransactionManager;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.HsqlException;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.CachedObject;
+import org.hsqldb.persist.DataFileCache;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.TableSpaceManager;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Implementation of a B+tree index for CACHED tables.<p>
+ *
+ * The entries of the index are not held in nodes that are part of each row,
+ * but in pages of fixed size in the .data file, each holding many entries.
+ * A search reads a few pages from the root to a leaf, and range scans follow
+ * the links between the leaf pages. Each entry consists of the values of the
+ * index columns and the position of the row, which is used as the last key.
+ * <p>
+ *
+ * Full pages are split. Pages are not merged after deletes. When the .data
+ * file is defragmented, the index is written anew with full pages.<p>
+ *
+ * The index is used for CACHED tables when CREATE INDEX ... USING BTREE is
+ * specified and the maximum size of the index columns is bounded and small
+ * enough for several entries to fit in a page.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class IndexBTree extends IndexAVL {
+
+    /** size of each page in the .data file */
+    public static final int pageSize = 8192;
+
+    /** maximum size of an entry, so that a page holds at least four */
+    static final int maxEntrySize = (pageSize - PageBTree.headerSize) / 4;
+
+    /** number of leaf pages sampled for search cost */
+    static final int probeLeafCount = 16;
+
+    //
+    private static final RowOutputBinary sizeOut = new RowOutputBinary();
+
+    //
+    private PageStoreBTree pageStore;
+
+    /**
+     * Constructor declaration
+     *
+     * @param name HsqlName of the index
+     * @param id persistnece id
+     * @param table table of the index
+     * @param columns array of column indexes
+     * @param descending boolean[]
+     * @param nullsLast boolean[]
+     * @param colTypes array of column types
+     * @param pk if index is for a primary key
+     * @param unique is this a unique index
+     * @param constraint does this index belonging to a constraint
+     * @param forward is this an auto-index for an FK that refers to a table
+     *   defined after this table
+     */
+    public IndexBTree(HsqlName name, long id, TableBase table, int[] columns,
+                      boolean[] descending, boolean[] nullsLast,
+                      Type[] colTypes, boolean pk, boolean unique,
+                      boolean constraint, boolean forward) {
+        super(name, id, table, columns, descending, nullsLast, colTypes, pk,
+              unique, constraint, forward);
+    }
+
+    /**
+     * Returns true if the index columns can be stored in the pages of a
+     * B+tree index.
+     */
+    public static boolean isSupported(Type[] colTypes, boolean[] descending,
+                                      boolean[] nullsLast) {
+
+        int size = 2 * PersistentStore.LONG_STORE_SIZE;
+
+        if (colTypes.length == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < colTypes.length; i++) {
+            if ((descending != null && descending[i])
+                    || (nullsLast != null && nullsLast[i])) {
+                return false;
+            }
+
+            int typeSize = getMaxSize(colTypes[i]);
+
+            if (typeSize < 0) {
+                return false;
+            }
+
+            size += typeSize;
+        }
+
+        return size <= maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum stored size of a value of the type, or -1 if the
+     * size is not bounded.
+     */
+    private static int getMaxSize(Type type) {
+
+        long precision = type.precision;
+
+        switch (type.typeCode) {
+
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR :
+                return precision > maxEntrySize ? -1
+                                                : 5 + (int) precision * 3;
+
+            case Types.SQL_BINARY :
+            case Types.SQL_VARBINARY :
+                return precision > maxEntrySize ? -1
+                                                : 5 + (int) precision;
+
+            case Types.SQL_BIT :
+            case Types.SQL_BIT_VARYING :
+                return precision > maxEntrySize * 8L ? -1
+                                                     : 5 + (int) ((precision + 7) / 8);
+
+            case Types.SQL_GUID :
+                return 5 + 16;
+
+            case Types.SQL_BOOLEAN :
+                return 2;
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+                return 3;
+
+            case Types.SQL_INTEGER :
+                return 5;
+
+            case Types.SQL_BIGINT :
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE :
+            case Types.SQL_DATE :
+            case Types.SQL_TIME :
+            case Types.SQL_INTERVAL_YEAR :
+            case Types.SQL_INTERVAL_YEAR_TO_MONTH :
+            case Types.SQL_INTERVAL_MONTH :
+                return 9;
+
+            case Types.SQL_NUMERIC :
+            case Types.SQL_DECIMAL :
+                return precision > maxEntrySize ? -1
+                                                : 11 + (int) precision / 2;
+
+            case Types.SQL_TIME_WITH_TIME_ZONE :
+            case Types.SQL_TIMESTAMP :
+            case Types.SQL_INTERVAL_DAY :
+            case Types.SQL_INTERVAL_DAY_TO_HOUR :
+            case Types.SQL_INTERVAL_DAY_TO_MINUTE :
+            case Types.SQL_INTERVAL_DAY_TO_SECOND :
+            case Types.SQL_INTERVAL_HOUR :
+            case Types.SQL_INTERVAL_HOUR_TO_MINUTE :
+            case Types.SQL_INTERVAL_HOUR_TO_SECOND :
+            case Types.SQL_INTERVAL_MINUTE :
+            case Types.SQL_INTERVAL_MINUTE_TO_SECOND :
+            case Types.SQL_INTERVAL_SECOND :
+                return 13;
+
+            case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                return 17;
+
+            default :
+                return -1;
+        }
+    }
+
+    public int getStructureType() {
+        return Index.STRUCTURE_BTREE;
+    }
+
+    public String getSQL() {
+
+        StringBuffer sb = new StringBuffer(super.getSQL());
+
+        sb.append(' ').append(Tokens.T_USING).append(' ');
+        sb.append(Tokens.T_BTREE);
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the stored size of an entry
+     */
+    int getEntrySize(Object[] key, boolean isLeaf) {
+
+        int size = sizeOut.getSize(key, key.length, colTypes)
+                   + PersistentStore.LONG_STORE_SIZE;
+
+        if (!isLeaf) {
+            size += PersistentStore.LONG_STORE_SIZE;
+        }
+
+        return size;
+    }
+
+    PageStoreBTree getPageStore(PersistentStore store) {
+
+        PageStoreBTree pages = pageStore;
+
+        if (pages == null || !pages.isStoreFor(store)) {
+            pages     = new PageStoreBTree(this, store);
+            pageStore = pages;
+        }
+
+        return pages;
+    }
+
+    PageBTree getRoot(PersistentStore store) {
+        return (PageBTree) store.getAccessor(this);
+    }
+
+    PageBTree getPage(PersistentStore store, long pos, boolean keep) {
+        return (PageBTree) getPageStore(store).get(pos, keep);
+    }
+
+    /**
+     * Returns the root page at the given position, or null if pos is -1.
+     */
+    public CachedObject getRootPage(PersistentStore store, long pos) {
+
+        if (pos < 0) {
+            return null;
+        }
+
+        return getPage(store, pos, false);
+    }
+
+    private PageBTree newPage(PersistentStore store, boolean isLeaf) {
+
+        PageBTree page = new PageBTree(this, isLeaf);
+
+        getPageStore(store).add(page, true);
+
+        return page;
+    }
+
+    Object[] getKey(Object[] rowData) {
+
+        Object[] key = new Object[colIndex.length];
+
+        for (int j = 0; j < colIndex.length; j++) {
+            key[j] = rowData[colIndex[j]];
+        }
+
+        return key;
+    }
+
+    /**
+     * Compares the entry with the row data, in the same way as
+     * IndexAVL.compareRowForInsertOrDelete and compareObject. For opType
+     * other than EQUAL, IS_NULL and MAX, the last column is compared with
+     * the opType. If rowPos is not -1, it is compared with the position of
+     * the entry when all the columns are equal.
+     */
+    int compareKey(Session session, Object[] key, long keyPos,
+                   Object[] rowdata, int[] rowColMap, int fieldCount,
+                   int opType, long rowPos) {
+
+        int j = 0;
+
+        for (; j < fieldCount; j++) {
+            int i = colTypes[j].compare(session, key[j],
+                                        rowdata[rowColMap[j]]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        switch (opType) {
+
+            case OpTypes.EQUAL :
+            case OpTypes.IS_NULL :
+            case OpTypes.MAX :
+                break;
+
+            default : {
+                int i = colTypes[j].compare(session, key[j],
+                                            rowdata[rowColMap[j]], opType);
+
+                if (i != 0) {
+                    return i;
+                }
+            }
+        }
+
+        if (rowPos == -1 || keyPos == rowPos) {
+            return 0;
+        }
+
+        return keyPos > rowPos ? 1
+                               : -1;
+    }
+
+    /**
+     * Returns the first slot of the page with an entry larger than the row
+     * data, or larger or equal when strict is false. For an inner page, the
+     * child page at the slot holds the entry.
+     */
+    int findSlot(Session session, PageBTree page, Object[] rowdata,
+                 int[] rowColMap, int fieldCount, int opType, long rowPos,
+                 boolean strict) {
+
+        int low  = 0;
+        int high = page.count;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int i = compareKey(session, page.keys[mid],
+                               page.rowPositions[mid], rowdata, rowColMap,
+                               fieldCount, opType, rowPos);
+
+            if (i > 0 || (i == 0 && !strict)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    public double[] searchCost(Session session, PersistentStore store) {
+
+        double[] changes  = new double[colIndex.length];
+        int      compared = 0;
+
+        store.readLock();
+
+        try {
+            PageBTree root = getRoot(store);
+
+            if (root == null) {
+                return changes;
+            }
+
+            long lastLeaf = -1;
+
+            for (int i = 0; i < probeLeafCount; i++) {
+                PageBTree page = root;
+
+                while (!page.isLeaf) {
+                    int slot = (int) ((long) (page.count + 1) * i
+                                      / probeLeafCount);
+
+                    page = getPage(store, page.children[slot], false);
+                }
+
+                if (page.getPos() == lastLeaf) {
+                    continue;
+                }
+
+                lastLeaf = page.getPos();
+
+                for (int j = 1; j < page.count; j++) {
+                    compareKeyForChange(session, page.keys[j - 1],
+                                        page.keys[j], changes);
+
+                    compared++;
+                }
+            }
+
+            long rowCount = store.elementCount();
+
+            for (int i = 0; i < colIndex.length; i++) {
+                if (changes[i] == 0) {
+                    changes[i] = rowCount;
+                } else {
+                    changes[i] = compared / changes[i];
+                }
+
+                if (changes[i] < 2) {
+                    changes[i] = 2;
+                }
+            }
+
+            return changes;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    private void compareKeyForChange(Session session, Object[] a,
+                                     Object[] b, double[] changes) {
+
+        for (int j = 0; j < colIndex.length; j++) {
+            int i = colTypes[j].compare(session, a[j], b[j]);
+
+            if (i != 0) {
+                for (; j < colIndex.length; j++) {
+                    changes[j]++;
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty(PersistentStore store) {
+
+        store.readLock();
+
+        try {
+            BTreeRowIterator it = new BTreeRowIterator(null, store, this, 0,
+                false);
+
+            it.first();
+
+            return it.page == null;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    public void checkIndex(PersistentStore store) {
+
+        store.readLock();
+
+        try {
+            BTreeRowIterator it = new BTreeRowIterator(null, store, this, 0,
+                false);
+            int[]    map     = getDefaultColumnMap();
+            Object[] lastKey = null;
+            long     lastPos = -1;
+
+            for (it.first(); it.page != null; it.move()) {
+                if (lastKey != null) {
+                    int i = compareKey(null, it.key, it.rowPos, lastKey, map,
+                                       colIndex.length, OpTypes.EQUAL,
+                                       lastPos);
+
+                    if (i <= 0) {
+                        System.out.println("broken index - order");
+                    }
+                }
+
+                lastKey = it.key;
+                lastPos = it.rowPos;
+            }
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Insert a row into the index.
+     */
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        Object[] data   = row.getData();
+        Object[] key    = getKey(data);
+        long     rowPos = row.getPos();
+
+        if (isUnique && !hasNulls(session, data)) {
+            checkUnique(session, store, row, key);
+        }
+
+        PageBTree root = getRoot(store);
+
+        if (root == null) {
+            root = newPage(store, true);
+
+            root.keepInMemory(false);
+            store.setAccessor(this, root);
+        }
+
+        Object[][] separatorKey = new Object[1][];
+        long[]     separatorPos = new long[1];
+        PageBTree right = insert(session, store, root.getPos(), key, rowPos,
+                                 separatorKey, separatorPos);
+
+        if (right != null) {
+            PageBTree newRoot = newPage(store, false);
+
+            newRoot.children[0] = root.getPos();
+
+            newRoot.insert(0, separatorKey[0], separatorPos[0],
+                           right.getPos(),
+                           getEntrySize(separatorKey[0], false));
+            newRoot.keepInMemory(false);
+            store.setAccessor(this, newRoot);
+        }
+    }
+
+    /**
+     * Inserts the entry in the subtree of the page. Returns the new page if
+     * the page was split, with the entry for the parent in separatorKey and
+     * separatorPos.
+     */
+    private PageBTree insert(Session session, PersistentStore store,
+                             long pagePos, Object[] key, long rowPos,
+                             Object[][] separatorKey, long[] separatorPos) {
+
+        PageBTree page = getPage(store, pagePos, true);
+
+        try {
+            int slot = findSlot(session, page, key, getDefaultColumnMap(),
+                                colIndex.length, OpTypes.EQUAL, rowPos,
+                                true);
+
+            if (page.isLeaf) {
+                page.insert(slot, key, rowPos, -1, getEntrySize(key, true));
+            } else {
+                PageBTree right = insert(session, store, page.children[slot],
+                                         key, rowPos, separatorKey,
+                                         separatorPos);
+
+                if (right == null) {
+                    return null;
+                }
+
+                page.insert(slot, separatorKey[0], separatorPos[0],
+                            right.getPos(),
+                            getEntrySize(separatorKey[0], false));
+            }
+
+            if (!page.isOverflow()) {
+                return null;
+            }
+
+            return split(store, page, separatorKey, separatorPos);
+        } finally {
+            page.keepInMemory(false);
+        }
+    }
+
+    private PageBTree split(PersistentStore store, PageBTree page,
+                            Object[][] separatorKey, long[] separatorPos) {
+
+        PageBTree right = newPage(store, page.isLeaf);
+
+        try {
+            page.split(right, separatorKey, separatorPos);
+
+            if (page.isLeaf) {
+                right.setPrevPage(page.getPos());
+                right.setNextPage(page.nextPage);
+
+                if (page.nextPage != -1) {
+                    PageBTree next = getPage(store, page.nextPage, true);
+
+                    try {
+                        next.setPrevPage(right.getPos());
+                    } finally {
+                        next.keepInMemory(false);
+                    }
+                }
+
+                page.setNextPage(right.getPos());
+            }
+
+            return right;
+        } finally {
+            right.keepInMemory(false);
+        }
+    }
+
+    private void checkUnique(Session session, PersistentStore store,
+                             Row row, Object[] key) {
+
+        int[]            map = getDefaultColumnMap();
+        BTreeRowIterator it  = new BTreeRowIterator(session, store, this, 0,
+            false);
+
+        it.seek(key, map, colIndex.length, OpTypes.EQUAL, -1, false, false);
+
+        while (it.page != null) {
+            if (compareKey(session, it.key, -1, key, map, colIndex.length,
+                           OpTypes.EQUAL, -1) != 0) {
+                return;
+            }
+
+            if (session == null || !session.database.txManager.isMVRows()) {
+                throw getUniqueException(row);
+            }
+
+            Row currentRow = (Row) store.get(it.rowPos, false);
+
+            session.database.txManager.setTransactionInfo(store, currentRow);
+
+            if (session.database.txManager.canRead(
+                    session, store, currentRow,
+                    TransactionManager.ACTION_DUP, null)) {
+                throw getUniqueException(row);
+            }
+
+            it.move();
+        }
+    }
+
+    private HsqlException getUniqueException(Row row) {
+
+        Constraint c = null;
+
+        if (isConstraint) {
+            c = ((Table) table).getUniqueConstraintForIndex(this);
+        }
+
+        if (c == null) {
+            return Error.error(ErrorCode.X_23505, name.statementName);
+        }
+
+        return c.getException(row.getData());
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        PageBTree page = getRoot(store);
+
+        if (page == null) {
+            return;
+        }
+
+        row = (Row) store.get(row, false);
+
+        Object[] key    = getKey(row.getData());
+        long     rowPos = row.getPos();
+        int[]    map    = getDefaultColumnMap();
+
+        while (!page.isLeaf) {
+            int slot = findSlot(session, page, key, map, colIndex.length,
+                                OpTypes.EQUAL, rowPos, true);
+
+            page = getPage(store, page.children[slot], false);
+        }
+
+        page = getPage(store, page.getPos(), true);
+
+        try {
+            int slot = findSlot(session, page, key, map, colIndex.length,
+                                OpTypes.EQUAL, rowPos, false);
+
+            if (slot < page.count && page.rowPositions[slot] == rowPos) {
+                page.remove(slot);
+            }
+        } finally {
+            page.keepInMemory(false);
+        }
+    }
+
+    public boolean existsParent(Session session, PersistentStore store,
+                                Object[] rowdata, int[] rowColMap) {
+
+        BTreeRowIterator it = findNode(session, store, rowdata, rowColMap,
+                                       rowColMap.length, OpTypes.EQUAL,
+                                       TransactionManager.ACTION_REF, false,
+                                       0);
+
+        return it != null;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int matchCount,
+                                    int distinctCount, int compareType,
+                                    boolean reversed, boolean[] map) {
+
+        BTreeRowIterator it = findNode(session, store, rowdata,
+                                       getDefaultColumnMap(), matchCount,
+                                       compareType,
+                                       TransactionManager.ACTION_READ,
+                                       reversed, distinctCount);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata) {
+
+        BTreeRowIterator it = findNode(session, store, rowdata, colIndex,
+                                       colIndex.length, OpTypes.EQUAL,
+                                       TransactionManager.ACTION_READ, false,
+                                       0);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int[] rowColMap) {
+
+        BTreeRowIterator it = findNode(session, store, rowdata, rowColMap,
+                                       rowColMap.length, OpTypes.EQUAL,
+                                       TransactionManager.ACTION_READ, false,
+                                       0);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator findFirstRowNotNull(Session session,
+                                           PersistentStore store) {
+
+        BTreeRowIterator it = findNode(session, store, nullData,
+                                       getDefaultColumnMap(), 1, OpTypes.NOT,
+                                       TransactionManager.ACTION_READ, false,
+                                       0);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator firstRow(Session session, PersistentStore store,
+                                int distinctCount, boolean[] map) {
+
+        store.readLock();
+
+        try {
+            BTreeRowIterator it = new BTreeRowIterator(session, store, this,
+                distinctCount, false);
+
+            it.first();
+
+            if (session != null) {
+                it.skipUnreadable(TransactionManager.ACTION_READ, null, null,
+                                  null, 0);
+            }
+
+            if (it.page == null) {
+                return emptyIterator();
+            }
+
+            return it;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    public RowIterator firstRow(PersistentStore store) {
+        return firstRow(null, store, 0, null);
+    }
+
+    public RowIterator lastRow(Session session, PersistentStore store,
+                               int distinctCount, boolean[] map) {
+
+        store.readLock();
+
+        try {
+            BTreeRowIterator it = new BTreeRowIterator(session, store, this,
+                distinctCount, true);
+
+            it.last();
+
+            if (session != null) {
+                it.skipUnreadable(TransactionManager.ACTION_READ, null, null,
+                                  null, 0);
+            }
+
+            if (it.page == null) {
+                return emptyIterator();
+            }
+
+            return it;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Finds the first entry that matches the condition in the same way as
+     * IndexAVL.findNode and returns an iterator positioned on the entry, or
+     * null if there is no such entry.
+     */
+    BTreeRowIterator findNode(Session session, PersistentStore store,
+                              Object[] rowdata, int[] rowColMap,
+                              int fieldCount, int compareType, int readMode,
+                              boolean reversed, int distinctCount) {
+
+        store.readLock();
+
+        try {
+            BTreeRowIterator it = new BTreeRowIterator(session, store, this,
+                distinctCount, reversed);
+
+            if (compareType != OpTypes.EQUAL
+                    && compareType != OpTypes.IS_NULL) {
+                fieldCount--;
+
+                if (compareType == OpTypes.SMALLER
+                        || compareType == OpTypes.SMALLER_EQUAL
+                        || compareType == OpTypes.MAX) {
+                    reversed = true;
+                }
+            }
+
+            switch (compareType) {
+
+                case OpTypes.EQUAL :
+                case OpTypes.IS_NULL :
+                case OpTypes.MAX :
+                    if (reversed) {
+                        it.seek(rowdata, rowColMap, fieldCount, compareType,
+                                -1, true, true);
+                    } else {
+                        it.seek(rowdata, rowColMap, fieldCount, compareType,
+                                -1, false, false);
+                    }
+                    break;
+
+                case OpTypes.GREATER :
+                case OpTypes.NOT :
+                    it.seek(rowdata, rowColMap, fieldCount, compareType, -1,
+                            true, false);
+                    break;
+
+                case OpTypes.SMALLER :
+                    it.seek(rowdata, rowColMap, fieldCount, compareType, -1,
+                            false, true);
+                    break;
+
+                case OpTypes.SMALLER_EQUAL :
+                    it.seek(rowdata, rowColMap, fieldCount, compareType, -1,
+                            true, true);
+                    break;
+
+                default :
+                    it.seek(rowdata, rowColMap, fieldCount, compareType, -1,
+                            false, false);
+            }
+
+            if (it.page == null) {
+                return null;
+            }
+
+            if (compareKey(session, it.key, -1, rowdata, rowColMap,
+                           fieldCount, OpTypes.EQUAL, -1) != 0) {
+                return null;
+            }
+
+            if (session != null) {
+                boolean iteratorReversed = it.reversed;
+
+                it.reversed = reversed;
+
+                it.skipUnreadable(readMode, colIndex, rowdata, rowColMap,
+                                  fieldCount);
+
+                it.reversed = iteratorReversed;
+            }
+
+            if (it.page == null) {
+                return null;
+            }
+
+            return it;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Writes the index pages for the rows at their new positions in the
+     * target file and returns the position of the root page, or -1 if the
+     * index is empty. Used when the .data file is defragmented, or a table
+     * is moved to a new table space. The entries with equal values are
+     * sorted on the new positions of the rows before they are written.
+     */
+    public long writeToDataFile(PersistentStore store,
+                                DataFileCache targetCache,
+                                LongLookup pointerLookup) {
+
+        TableSpaceManager space =
+            targetCache.spaceManager.getTableSpace(table.getSpaceID());
+        PageWriter       writer  = new PageWriter(targetCache, space);
+        BTreeRowIterator it = new BTreeRowIterator(null, store, this, 0,
+            false);
+        int[]    map        = getDefaultColumnMap();
+        Object[] groupKey   = null;
+        long[]   groupPos   = new long[16];
+        int      groupCount = 0;
+
+        for (it.first(); it.page != null; it.move()) {
+            long newPos = pointerLookup.lookup(it.rowPos, -1);
+
+            if (newPos == -1) {
+                throw Error.error(ErrorCode.DATA_FILE_ERROR);
+            }
+
+            if (groupKey != null
+                    && compareKey(null, it.key, -1, groupKey, map,
+                                  colIndex.length, OpTypes.EQUAL, -1) != 0) {
+                writer.add(groupKey, groupPos, groupCount);
+
+                groupCount = 0;
+            }
+
+            if (groupCount == groupPos.length) {
+                groupPos = (long[]) ArrayUtil.resizeArray(groupPos,
+                        groupCount * 2);
+            }
+
+            groupKey               = it.key;
+            groupPos[groupCount++] = newPos;
+        }
+
+        if (groupCount > 0) {
+            writer.add(groupKey, groupPos, groupCount);
+        }
+
+        return writer.finish();
+    }
+
+    /**
+     * Releases the space used by all the pages of the index
+     */
+    public void releasePages(PersistentStore store) {
+
+        PageBTree root = getRoot(store);
+
+        if (root != null) {
+            releasePages(store, root.getPos());
+        }
+    }
+
+    private void releasePages(PersistentStore store, long pos) {
+
+        PageBTree page = getPage(store, pos, false);
+
+        if (!page.isLeaf) {
+            for (int i = 0; i <= page.count; i++) {
+                releasePages(store, page.children[i]);
+            }
+        }
+
+        getPageStore(store).remove(page);
+    }
+
+    /**
+     * Returns a writer that adds the pages of the empty index to the store
+     * from entries in index order. Used by IndexBuilder.
+     */
+    PageWriter getPageWriter(PersistentStore store) {
+        return new PageWriter(store);
+    }
+
+    /**
+     * Builds the pages from the entries in index order, with one open page
+     * for each level of the tree. The pages are either written directly to
+     * a target file, or added to the cache of a store.
+     */
+    final class PageWriter {
+
+        final DataFileCache     cache;
+        final TableSpaceManager space;
+        final PersistentStore   store;
+        final HsqlArrayList     levels = new HsqlArrayList();
+
+        PageWriter(DataFileCache cache, TableSpaceManager space) {
+
+            this.cache = cache;
+            this.space = space;
+            this.store = null;
+        }
+
+        PageWriter(PersistentStore store) {
+
+            this.cache = null;
+            this.space = null;
+            this.store = store;
+        }
+
+        /**
+         * Adds the entry for one row
+         */
+        void add(Object[] key, long rowPos) {
+
+            if (levels.isEmpty()) {
+                levels.add(newPage(true));
+            }
+
+            add(0, key, rowPos, -1);
+        }
+
+        /**
+         * Adds the entries for a group of rows with equal values
+         */
+        void add(Object[] key, long[] rowPositions, int count) {
+
+            if (levels.isEmpty()) {
+                levels.add(newPage(true));
+            }
+
+            Arrays.sort(rowPositions, 0, count);
+
+            for (int i = 0; i < count; i++) {
+                add(0, key, rowPositions[i], -1);
+            }
+        }
+
+        private void add(int level, Object[] key, long rowPos, long child) {
+
+            PageBTree page = (PageBTree) levels.get(level);
+            int       size = getEntrySize(key, page.isLeaf);
+
+            if (!page.isFull(size)) {
+                page.insert(page.count, key, rowPos, child, size);
+
+                return;
+            }
+
+            PageBTree next = newPage(page.isLeaf);
+
+            if (page.isLeaf) {
+                page.nextPage = next.getPos();
+                next.prevPage = page.getPos();
+
+                next.insert(0, key, rowPos, -1, size);
+            } else {
+                next.children[0] = child;
+            }
+
+            write(page);
+            levels.set(level, next);
+
+            if (level + 1 == levels.size()) {
+                PageBTree parent = newPage(false);
+
+                parent.children[0] = page.getPos();
+
+                levels.add(parent);
+            }
+
+            add(level + 1, key, rowPos, next.getPos());
+        }
+
+        long finish() {
+
+            if (levels.isEmpty()) {
+                return -1;
+            }
+
+            long root = ((PageBTree) levels.get(levels.size() - 1)).getPos();
+
+            release();
+
+            return root;
+        }
+
+        /**
+         * Writes or releases the open pages
+         */
+        void release() {
+
+            for (int i = 0; i < levels.size(); i++) {
+                write((PageBTree) levels.get(i));
+            }
+
+            levels.clear();
+        }
+
+        private PageBTree newPage(boolean isLeaf) {
+
+            if (store != null) {
+                return IndexBTree.this.newPage(store, isLeaf);
+            }
+
+            PageBTree page = new PageBTree(IndexBTree.this, isLeaf);
+
+            page.setStorageSize(pageSize);
+            page.setPos(space.getFilePosition(pageSize, false));
+
+            return page;
+        }
+
+        private void write(PageBTree page) {
+
+            if (store != null) {
+                page.keepInMemory(false);
+
+                return;
+            }
+
+            cache.rowOut.reset();
+            page.write(cache.rowOut);
+            cache.saveRowOutput(page.getPos());
+        }
+    }
+
+    /**
+     * Iterator over the entries of the index. The current position is held
+     * as the page and slot of the entry, together with the values and the
+     * row position of the entry. If the page is modified or is no longer in
+     * the cache when the iterator moves on, the position is found again from
+     * the values.
+     */
+    public static final class BTreeRowIterator implements RowIterator {
+
+        final Session         session;
+        final PersistentStore store;
+        final IndexBTree      index;
+        final int             distinctCount;
+        boolean               reversed;
+
+        //
+        PageBTree page;
+        int       slot;
+        int       modCount;
+        Object[]  key;
+        long      rowPos;
+        boolean   isBeforeFirst = true;
+        Row       lastrow;
+
+        BTreeRowIterator(Session session, PersistentStore store,
+                         IndexBTree index, int distinctCount,
+                         boolean reversed) {
+
+            this.session       = session;
+            this.store         = store;
+            this.index         = index;
+            this.distinctCount = distinctCount;
+            this.reversed      = reversed;
+        }
+
+        /**
+         * Positions on the first entry larger than the row data, or larger
+         * or equal when strict is false. When before is true, positions on
+         * the entry before that entry instead.
+         */
+        void seek(Object[] rowdata, int[] rowColMap, int fieldCount,
+                  int opType, long pos, boolean strict, boolean before) {
+
+            PageBTree p = index.getRoot(store);
+
+            if (p == null) {
+                page = null;
+
+                return;
+            }
+
+            while (!p.isLeaf) {
+                int i = index.findSlot(session, p, rowdata, rowColMap,
+                                       fieldCount, opType, pos, strict);
+
+                p = index.getPage(store, p.children[i], false);
+            }
+
+            int i = index.findSlot(session, p, rowdata, rowColMap,
+                                   fieldCount, opType, pos, strict);
+
+            if (before) {
+                setBackward(p, i - 1);
+            } else {
+                setForward(p, i);
+            }
+        }
+
+        void first() {
+
+            PageBTree p = index.getRoot(store);
+
+            if (p == null) {
+                page = null;
+
+                return;
+            }
+
+            while (!p.isLeaf) {
+                p = index.getPage(store, p.children[0], false);
+            }
+
+            setForward(p, 0);
+        }
+
+        void last() {
+
+            PageBTree p = index.getRoot(store);
+
+            if (p == null) {
+                page = null;
+
+                return;
+            }
+
+            while (!p.isLeaf) {
+                p = index.getPage(store, p.children[p.count], false);
+            }
+
+            setBackward(p, p.count - 1);
+        }
+
+        private void setForward(PageBTree p, int s) {
+
+            while (s >= p.count) {
+                if (p.nextPage == -1) {
+                    page = null;
+
+                    return;
+                }
+
+                p = index.getPage(store, p.nextPage, false);
+                s = 0;
+            }
+
+            setCurrent(p, s);
+        }
+
+        private void setBackward(PageBTree p, int s) {
+
+            while (s < 0) {
+                if (p.prevPage == -1) {
+                    page = null;
+
+                    return;
+                }
+
+                p = index.getPage(store, p.prevPage, false);
+                s = p.count - 1;
+            }
+
+            setCurrent(p, s);
+        }
+
+        private void setCurrent(PageBTree p, int s) {
+
+            page     = p;
+            slot     = s;
+            modCount = p.modCount;
+            key      = p.keys[s];
+            rowPos   = p.rowPositions[s];
+        }
+
+        /**
+         * Moves to the next entry in the direction of the iterator.
+         */
+        void move() {
+
+            if (page == null) {
+                return;
+            }
+
+            PageBTree p = index.getPage(store, page.getPos(), false);
+
+            if (p != page || p.modCount != modCount) {
+                seek(key, index.getDefaultColumnMap(), index.colIndex.length,
+                     OpTypes.EQUAL, rowPos, !reversed, reversed);
+
+                return;
+            }
+
+            if (reversed) {
+                setBackward(page, slot - 1);
+            } else {
+                setForward(page, slot + 1);
+            }
+        }
+
+        /**
+         * Moves to the next entry with different values in the first
+         * distinctCount columns.
+         */
+        void moveDistinct() {
+
+            if (page == null) {
+                return;
+            }
+
+            seek(key, index.getDefaultColumnMap(), distinctCount,
+                 OpTypes.EQUAL, -1, !reversed, reversed);
+        }
+
+        /**
+         * Moves past the entries for rows that the session cannot read. If
+         * fieldCount is not zero, stops when the first fieldCount columns no
+         * longer match the row data.
+         */
+        void skipUnreadable(int readMode, int[] colMap, Object[] rowdata,
+                            int[] rowColMap, int fieldCount) {
+
+            while (page != null) {
+                Row row = (Row) store.get(rowPos, false);
+
+                if (session.database.txManager.canRead(session, store, row,
+                                                       readMode, colMap)) {
+                    return;
+                }
+
+                move();
+
+                if (page != null && fieldCount > 0
+                        && index.compareKey(session, key, -1, rowdata,
+                                            rowColMap, fieldCount,
+                                            OpTypes.EQUAL, -1) != 0) {
+                    page = null;
+                }
+            }
+        }
+
+        public boolean next() {
+
+            if (isBeforeFirst) {
+                isBeforeFirst = false;
+            } else if (page != null) {
+                store.readLock();
+
+                try {
+                    if (distinctCount == 0) {
+                        move();
+                    } else {
+                        moveDistinct();
+                    }
+
+                    if (session != null) {
+                        skipUnreadable(TransactionManager.ACTION_READ, null,
+                                       null, null, 0);
+                    }
+                } finally {
+                    store.readUnlock();
+                }
+            }
+
+            if (page == null) {
+                lastrow = null;
+
+                return false;
+            }
+
+            lastrow = (Row) store.get(rowPos, false);
+
+            return true;
+        }
+
+        public Object getField(int col) {
+            return lastrow.getData()[col];
+        }
+
+        public Object[] getCurrent() {
+            return lastrow == null ? null
+                                   : lastrow.getData();
+        }
+
+        public Row getCurrentRow() {
+            return lastrow;
+        }
+
+        public void removeCurrent() {
+            store.delete(session, lastrow);
+            store.remove(lastrow);
+        }
+
+        public void release() {}
+
+        public long getRowId() {
+            return lastrow.getPos();
+        }
+    }
+}
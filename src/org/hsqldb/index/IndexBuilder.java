@@ -0,0 +1,647 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hsqldb.Row;
+import org.hsqldb.RowAVL;
+import org.hsqldb.Session;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.IndexAVL.RowKey;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.ArraySort;
+import org.hsqldb.lib.FileAccess;
+import org.hsqldb.lib.FileUtil;
+import org.hsqldb.lib.HsqlArrayHeap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Builds an empty index over the rows added to a new store, such as the
+ * copy of a table made by ALTER TABLE or the rows of PERFORM IMPORT DATA,
+ * with one sort of the keys.<p>
+ *
+ * For MEMORY tables the keys are sorted in memory and the nodes are linked
+ * in place. For CACHED tables, at most maxMemoryKeys keys are held in
+ * memory. When the limit is reached, the keys are sorted and written as a
+ * run to a file in the temp directory. Once all the rows have been added,
+ * the runs are merged.<p>
+ *
+ * For AVL indexes, the links of the balanced tree are computed from the
+ * merged keys and are themselves sorted in runs on the row position, so
+ * that each row is updated once, in the order of the .data file. For
+ * B-tree indexes, the pages are written bottom-up from the merged keys.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public final class IndexBuilder {
+
+    private static final AtomicLong fileCount = new AtomicLong();
+
+    // maximum number of run files read together
+    static final int maxMergeRuns = 64;
+
+    //
+    final Session         session;
+    final PersistentStore store;
+    final IndexAVL        index;
+    final int             maxMemoryKeys;
+    final Type[]          columnTypes;
+    final String          filePath;
+    final FileAccess      fileAccess;
+    final RowOutputBinary rowOut = new RowOutputBinary(256, 1);
+
+    //
+    RowKey[] keys;
+    KeyRuns  keyRuns;
+    LinkRuns linkRuns;
+    RowKey   lastKey;
+    int      count;
+
+    public IndexBuilder(Session session, PersistentStore store,
+                        IndexAVL index, int maxMemoryKeys) {
+
+        this.session       = session;
+        this.store         = store;
+        this.index         = index;
+        this.maxMemoryKeys = Math.max(maxMemoryKeys, 16);
+        this.columnTypes   = index.getTable().getColumnTypes();
+        this.fileAccess    = FileUtil.getFileUtil();
+
+        if (index instanceof IndexAVLMemory) {
+            keys     = new RowKey[16];
+            filePath = null;
+        } else {
+            keyRuns = new KeyRuns();
+            filePath = session.database.logger.getTempDirectoryPath()
+                       + "/session_" + Long.toString(session.getId())
+                       + "_index_";
+        }
+    }
+
+    /**
+     * Adds the key of a row that has been created in the store
+     */
+    public void add(Row row) {
+
+        RowKey key = index.getRowKey(row);
+
+        if (keyRuns != null) {
+            keyRuns.add(key);
+        } else {
+            if (count == keys.length) {
+                keys = (RowKey[]) ArrayUtil.resizeArray(keys, count * 2);
+            }
+
+            keys[count] = key;
+        }
+
+        count++;
+    }
+
+    /**
+     * Links all the added rows into the index. Throws if a unique index has
+     * duplicate keys.
+     */
+    public void build() {
+
+        if (keyRuns == null) {
+            ((IndexAVLMemory) index).build(session, store, keys, count);
+
+            keys = null;
+
+            return;
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        keyRuns.merge();
+
+        if (index instanceof IndexBTree) {
+            buildBTree();
+        } else {
+            buildAVL();
+        }
+    }
+
+    /**
+     * Deletes the run files
+     */
+    public void close() {
+
+        keys = null;
+
+        if (keyRuns != null) {
+            keyRuns.close();
+        }
+
+        if (linkRuns != null) {
+            linkRuns.close();
+        }
+    }
+
+    private void buildAVL() {
+
+        linkRuns = new LinkRuns();
+
+        long[] root = link(count);
+
+        keyRuns.close();
+        linkRuns.add(root);
+        linkRuns.merge();
+
+        int position = index.getPosition();
+
+        for (long[] link; (link = (long[]) linkRuns.next()) != null; ) {
+            RowAVL row = (RowAVL) store.get(link[0], true);
+
+            row.getNode(position).setLinks((int) link[1], link[2], link[3],
+                                           link[4]);
+            row.keepInMemory(false);
+        }
+
+        linkRuns.close();
+        store.setAccessor(index, root[0]);
+    }
+
+    /**
+     * Computes the links of a balanced subtree over the next count keys of
+     * the merge, in the same shape as IndexAVLMemory.build(), and returns
+     * the link record of its root. The records of the other nodes of the
+     * subtree are added to the link runs. A record holds the row position,
+     * balance, left, right and parent.
+     */
+    private long[] link(long count) {
+
+        if (count == 0) {
+            return null;
+        }
+
+        long   leftCount  = count >>> 1;
+        long   rightCount = count - leftCount - 1;
+        long[] left       = link(leftCount);
+        long   pos        = nextKey().pos;
+        long[] right      = link(rightCount);
+        long[] record     = new long[] {
+            pos, IndexAVL.getHeight(rightCount)
+                 - IndexAVL.getHeight(leftCount), NodeAVL.NO_POS,
+            NodeAVL.NO_POS, NodeAVL.NO_POS
+        };
+
+        if (left != null) {
+            record[2] = left[0];
+            left[4]   = pos;
+
+            linkRuns.add(left);
+        }
+
+        if (right != null) {
+            record[3] = right[0];
+            right[4]  = pos;
+
+            linkRuns.add(right);
+        }
+
+        return record;
+    }
+
+    private void buildBTree() {
+
+        IndexBTree            btree  = (IndexBTree) index;
+        IndexBTree.PageWriter writer = btree.getPageWriter(store);
+        long                  root;
+
+        try {
+            for (int i = 0; i < count; i++) {
+                RowKey key = nextKey();
+
+                writer.add(btree.getKey(key.data), key.pos);
+            }
+
+            root = writer.finish();
+        } finally {
+            writer.release();
+        }
+
+        keyRuns.close();
+        store.setAccessor(index, root);
+    }
+
+    /**
+     * Returns the next key of the merge and checks unique keys
+     */
+    private RowKey nextKey() {
+
+        RowKey key = (RowKey) keyRuns.next();
+
+        if (index.isUnique && lastKey != null
+                && index.compareRow(session, lastKey.data, key.data) == 0
+                && !index.hasNulls(session, key.data)) {
+            throw index.getDuplicateException(key.data);
+        }
+
+        lastKey = key;
+
+        return key;
+    }
+
+    /**
+     * Records sorted in runs of at most maxMemoryKeys. All runs except the
+     * last are written to files, then all are read back together in order.
+     * If there are more than maxMergeRuns files, groups of files are first
+     * merged into longer runs.
+     */
+    abstract class Runs implements Comparator<Object> {
+
+        final HsqlArrayList fileNames  = new HsqlArrayList();
+        final HsqlArrayList fileCounts = new HsqlArrayList();
+        Object[]            table      = new Object[16];
+        int                 size;
+        Run[]               runs;
+        HsqlArrayHeap       heap;
+
+        abstract void write(RowOutputBinary out, Object record);
+
+        abstract Object read(RowInputBinary in);
+
+        void add(Object record) {
+
+            if (size == maxMemoryKeys) {
+                writeRun();
+            }
+
+            if (size == table.length) {
+                table = (Object[]) ArrayUtil.resizeArray(table,
+                        (int) Math.min((long) size * 2, maxMemoryKeys));
+            }
+
+            table[size++] = record;
+        }
+
+        private void writeRun() {
+
+            ArraySort.sort(table, 0, size, this);
+            writeRun(false, size);
+
+            size = 0;
+        }
+
+        /**
+         * Writes count records to a new file, from the table, or from the
+         * open runs if merged is true.
+         */
+        private void writeRun(boolean merged, int count) {
+
+            String fileName =
+                filePath + Long.toString(fileCount.getAndIncrement());
+            DataOutputStream dataOut = null;
+
+            try {
+                dataOut = new DataOutputStream(
+                    new BufferedOutputStream(
+                        fileAccess.openOutputStreamElement(fileName),
+                        1 << 16));
+
+                fileNames.add(fileName);
+
+                for (int i = 0; i < count; i++) {
+                    Object record;
+
+                    if (merged) {
+                        record = next();
+                    } else {
+                        record   = table[i];
+                        table[i] = null;
+                    }
+
+                    rowOut.reset();
+                    write(rowOut, record);
+                    dataOut.writeInt(rowOut.size());
+                    dataOut.write(rowOut.getBuffer(), 0, rowOut.size());
+                }
+
+                dataOut.close();
+
+                dataOut = null;
+            } catch (IOException e) {
+                throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+            } finally {
+                if (dataOut != null) {
+                    try {
+                        dataOut.close();
+                    } catch (IOException e) {}
+                }
+            }
+
+            fileCounts.add(Integer.valueOf(count));
+        }
+
+        void merge() {
+
+            while (fileNames.size() > maxMergeRuns) {
+                int count = 0;
+
+                for (int i = 0; i < maxMergeRuns; i++) {
+                    count += ((Integer) fileCounts.get(i)).intValue();
+                }
+
+                openRuns(maxMergeRuns, false);
+                writeRun(true, count);
+                closeRuns(maxMergeRuns);
+            }
+
+            ArraySort.sort(table, 0, size, this);
+            openRuns(fileNames.size(), true);
+        }
+
+        /**
+         * Starts the merge of the first fileRuns files, and of the table if
+         * withTable is true.
+         */
+        private void openRuns(int fileRuns, boolean withTable) {
+
+            runs = new Run[withTable ? fileRuns + 1
+                                     : fileRuns];
+            heap = new HsqlArrayHeap(runs.length, new Comparator<Run>() {
+
+                public int compare(Run a, Run b) {
+                    return Runs.this.compare(a.current, b.current);
+                }
+            });
+
+            for (int i = 0; i < fileRuns; i++) {
+                runs[i] = new Run((String) fileNames.get(i),
+                                  ((Integer) fileCounts.get(i)).intValue());
+            }
+
+            if (withTable) {
+                runs[fileRuns] = new Run(null, size);
+            }
+
+            for (int i = 0; i < runs.length; i++) {
+                if (runs[i].next()) {
+                    heap.add(runs[i]);
+                }
+            }
+        }
+
+        /**
+         * Deletes the first fileRuns files after they have been merged.
+         */
+        private void closeRuns(int fileRuns) {
+
+            for (int i = 0; i < fileRuns; i++) {
+                runs[i].close();
+                fileAccess.removeElement((String) fileNames.get(0));
+                fileNames.remove(0);
+                fileCounts.remove(0);
+            }
+
+            runs = null;
+            heap = null;
+        }
+
+        /**
+         * Returns the next record in order, or null at the end
+         */
+        Object next() {
+
+            if (heap.isEmpty()) {
+                return null;
+            }
+
+            Run    run    = (Run) heap.remove();
+            Object record = run.current;
+
+            if (run.next()) {
+                heap.add(run);
+            }
+
+            return record;
+        }
+
+        void close() {
+
+            if (runs != null) {
+                for (int i = 0; i < runs.length; i++) {
+                    runs[i].close();
+                }
+            }
+
+            for (int i = 0; i < fileNames.size(); i++) {
+                fileAccess.removeElement((String) fileNames.get(i));
+            }
+
+            fileNames.clear();
+            fileCounts.clear();
+
+            table = null;
+            size  = 0;
+            runs  = null;
+            heap  = null;
+        }
+
+        /**
+         * A sorted run, read from its file or from the in-memory table.
+         */
+        final class Run {
+
+            final String    fileName;
+            final int       recordCount;
+            int             recordPos;
+            DataInputStream dataIn;
+            RowInputBinary  rowIn;
+            Object          current;
+
+            Run(String fileName, int recordCount) {
+
+                this.fileName    = fileName;
+                this.recordCount = recordCount;
+
+                if (fileName == null) {
+                    return;
+                }
+
+                try {
+                    dataIn = new DataInputStream(
+                        new BufferedInputStream(
+                            fileAccess.openInputStreamElement(fileName),
+                            1 << 16));
+                    rowIn = new RowInputBinary(256);
+                } catch (IOException e) {
+                    throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+                }
+            }
+
+            boolean next() {
+
+                if (recordPos == recordCount) {
+                    current = null;
+
+                    close();
+
+                    return false;
+                }
+
+                if (fileName == null) {
+                    current            = table[recordPos];
+                    table[recordPos++] = null;
+
+                    return true;
+                }
+
+                try {
+                    int length = dataIn.readInt();
+
+                    rowIn.resetBlock(0, length);
+                    dataIn.readFully(rowIn.getBuffer(), 0, length);
+
+                    current = read(rowIn);
+
+                    recordPos++;
+
+                    return true;
+                } catch (IOException e) {
+                    throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+                }
+            }
+
+            void close() {
+
+                if (dataIn != null) {
+                    try {
+                        dataIn.close();
+                    } catch (IOException e) {}
+
+                    dataIn = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keys in index order, then in row position order. Only the index
+     * columns and the row position are written.
+     */
+    final class KeyRuns extends Runs {
+
+        public int compare(Object a, Object b) {
+
+            RowKey ka      = (RowKey) a;
+            RowKey kb      = (RowKey) b;
+            int    compare = index.compareRow(session, ka.data, kb.data);
+
+            if (compare == 0) {
+                compare = ka.pos == kb.pos ? 0
+                                           : ka.pos > kb.pos ? 1
+                                                             : -1;
+            }
+
+            return compare;
+        }
+
+        void write(RowOutputBinary out, Object record) {
+
+            RowKey key = (RowKey) record;
+
+            out.writeLong(key.pos);
+            out.writeData(columnTypes.length, columnTypes, key.data, null,
+                          index.colIndex);
+        }
+
+        Object read(RowInputBinary in) {
+
+            long     pos    = in.readLong();
+            Object[] values = in.readData(index.colTypes);
+            Object[] data   = new Object[columnTypes.length];
+
+            for (int i = 0; i < values.length; i++) {
+                data[index.colIndex[i]] = values[i];
+            }
+
+            return new RowKey(null, pos, data);
+        }
+    }
+
+    /**
+     * Link records in row position order
+     */
+    final class LinkRuns extends Runs {
+
+        public int compare(Object a, Object b) {
+
+            long posA = ((long[]) a)[0];
+            long posB = ((long[]) b)[0];
+
+            return posA == posB ? 0
+                                : posA > posB ? 1
+                                              : -1;
+        }
+
+        void write(RowOutputBinary out, Object record) {
+
+            long[] link = (long[]) record;
+
+            for (int i = 0; i < link.length; i++) {
+                out.writeLong(link[i]);
+            }
+        }
+
+        Object read(RowInputBinary in) {
+
+            long[] link = new long[5];
+
+            for (int i = 0; i < link.length; i++) {
+                link[i] = in.readLong();
+            }
+
+            return link;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.Row;
+import org.hsqldb.RowAVL;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.Tokens;
+import org.hsqldb.TransactionManager;
+import org.hsqldb.map.HashIndex;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.BinaryData;
+import org.hsqldb.types.TimestampData;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Implementation of a hash index for memory tables.<p>
+ *
+ * The rows are linked in the AVL tree as with IndexAVLMemory, which is used
+ * for range conditions and ordered access. In addition, the nodes of the
+ * tree are linked in a HashIndex on the hash of the index column values.
+ * Searches with equality conditions on all the columns of the index use the
+ * hash instead of the compare chain from the root of the tree.<p>
+ *
+ * The hash of a value is computed so that equal values have the same hash,
+ * for example, trailing spaces and case are ignored for strings. The values
+ * are compared when the node is found.<p>
+ *
+ * Access is protected by the read and write locks of the row store.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class IndexHashMemory extends IndexAVLMemory {
+
+    private static final int initialCapacity = 64;
+
+    //
+    private HashIndex hashIndex;
+    private NodeAVL[] nodeTable;
+    private int[]     hashTable;
+    private int       hashSize;
+
+    /**
+     * Constructor declaration
+     *
+     * @param name HsqlName of the index
+     * @param id persistnece id
+     * @param table table of the index
+     * @param columns array of column indexes
+     * @param descending boolean[]
+     * @param nullsLast boolean[]
+     * @param colTypes array of column types
+     * @param pk if index is for a primary key
+     * @param unique is this a unique index
+     * @param constraint does this index belonging to a constraint
+     * @param forward is this an auto-index for an FK that refers to a table
+     *   defined after this table
+     */
+    public IndexHashMemory(HsqlName name, long id, TableBase table,
+                           int[] columns, boolean[] descending,
+                           boolean[] nullsLast, Type[] colTypes, boolean pk,
+                           boolean unique, boolean constraint,
+                           boolean forward) {
+
+        super(name, id, table, columns, descending, nullsLast, colTypes, pk,
+              unique, constraint, forward);
+
+        resetHash(initialCapacity);
+    }
+
+    /**
+     * Returns true if the hash of values of the types can be computed so
+     * that equal values have the same hash.
+     */
+    public static boolean isSupported(Type[] colTypes) {
+
+        if (colTypes.length == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < colTypes.length; i++) {
+            Type type = colTypes[i];
+
+            switch (type.typeCode) {
+
+                case Types.TINYINT :
+                case Types.SQL_SMALLINT :
+                case Types.SQL_INTEGER :
+                case Types.SQL_BIGINT :
+                case Types.SQL_NUMERIC :
+                case Types.SQL_DECIMAL :
+                case Types.SQL_BOOLEAN :
+                case Types.SQL_DATE :
+                case Types.SQL_TIMESTAMP :
+                case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                case Types.SQL_BINARY :
+                case Types.SQL_VARBINARY :
+                case Types.SQL_GUID :
+                    break;
+
+                case Types.SQL_CHAR :
+                case Types.SQL_VARCHAR :
+                    if (type.getCollation().hasCollator()) {
+                        return false;
+                    }
+                    break;
+
+                default :
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int getStructureType() {
+        return Index.STRUCTURE_HASH;
+    }
+
+    public String getSQL() {
+
+        StringBuffer sb = new StringBuffer(super.getSQL());
+
+        sb.append(' ').append(Tokens.T_USING).append(' ');
+        sb.append(Tokens.T_HASH);
+
+        return sb.toString();
+    }
+
+    private void resetHash(int capacity) {
+
+        hashIndex = new HashIndex(capacity, capacity, false);
+        nodeTable = new NodeAVL[capacity];
+        hashTable = new int[capacity];
+        hashSize  = 0;
+    }
+
+    private void addHash(NodeAVL node, int hash) {
+
+        if (hashSize == nodeTable.length) {
+            NodeAVL[] oldNodes  = nodeTable;
+            int[]     oldHashes = hashTable;
+
+            resetHash(oldNodes.length * 2);
+
+            for (int i = 0; i < oldNodes.length; i++) {
+                if (oldNodes[i] != null) {
+                    addHash(oldNodes[i], oldHashes[i]);
+                }
+            }
+        }
+
+        int lookup = hashIndex.linkNode(hashIndex.getHashIndex(hash), -1);
+
+        nodeTable[lookup] = node;
+        hashTable[lookup] = hash;
+
+        hashSize++;
+    }
+
+    private void removeHash(NodeAVL node, int hash) {
+
+        int lastLookup = -1;
+
+        for (int lookup = hashIndex.getLookup(hash); lookup >= 0;
+                lastLookup = lookup,
+                lookup = hashIndex.getNextLookup(lookup)) {
+            if (nodeTable[lookup] == node) {
+                hashIndex.unlinkNode(hashIndex.getHashIndex(hash),
+                                     lastLookup, lookup);
+
+                nodeTable[lookup] = null;
+
+                hashSize--;
+
+                return;
+            }
+        }
+    }
+
+    private int getHash(Object[] rowData, int[] rowColMap) {
+
+        int hash = 0;
+
+        for (int j = 0; j < colIndex.length; j++) {
+            hash = 31 * hash + getHash(rowData[rowColMap[j]]);
+        }
+
+        return hash;
+    }
+
+    private static int getHash(Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof String) {
+            String s   = (String) value;
+            int    end = s.length();
+            int    h   = 0;
+
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+
+            for (int i = 0; i < end; i++) {
+                char c = Character.toLowerCase(
+                    Character.toUpperCase(s.charAt(i)));
+
+                h = 31 * h + c;
+            }
+
+            return h;
+        }
+
+        if (value instanceof Number) {
+            long v = ((Number) value).longValue();
+
+            return (int) (v ^ (v >>> 32));
+        }
+
+        if (value instanceof TimestampData) {
+            long v = ((TimestampData) value).getSeconds();
+
+            return (int) (v ^ (v >>> 32));
+        }
+
+        if (value instanceof BinaryData) {
+            byte[] bytes = ((BinaryData) value).getBytes();
+            int    end   = bytes.length;
+            int    h     = 0;
+
+            while (end > 0 && bytes[end - 1] == 0) {
+                end--;
+            }
+
+            for (int i = 0; i < end; i++) {
+                h = 31 * h + bytes[i];
+            }
+
+            return h;
+        }
+
+        return value.hashCode();
+    }
+
+    /**
+     * Insert a node into the index
+     */
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        // the tree has been emptied or is being rebuilt
+        if (getAccessor(store) == null && hashSize > 0) {
+            resetHash(initialCapacity);
+        }
+
+        super.insert(session, store, row);
+        addHash(((RowAVL) row).getNode(position),
+                getHash(row.getData(), colIndex));
+    }
+
+    public void build(Session session, PersistentStore store, RowKey[] keys,
+                      int count) {
+
+        // insert() adds the hash of each row
+        if (hasUncommittedRows(session, keys, count)) {
+            super.build(session, store, keys, count);
+
+            return;
+        }
+
+        if (hashSize > 0) {
+            resetHash(initialCapacity);
+        }
+
+        super.build(session, store, keys, count);
+
+        for (int i = 0; i < count; i++) {
+            addHash(((RowAVL) keys[i].row).getNode(position),
+                    getHash(keys[i].data, colIndex));
+        }
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        NodeAVL node = ((RowAVL) row).getNode(position);
+
+        if (node != null) {
+            removeHash(node, getHash(row.getData(), colIndex));
+        }
+
+        super.delete(session, store, row);
+    }
+
+    public boolean existsParent(Session session, PersistentStore store,
+                                Object[] rowdata, int[] rowColMap) {
+
+        if (rowColMap.length != colIndex.length) {
+            return super.existsParent(session, store, rowdata, rowColMap);
+        }
+
+        NodeAVL node = findHashNode(session, store, rowdata, rowColMap,
+                                    TransactionManager.ACTION_REF, false);
+
+        return node != null;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int matchCount,
+                                    int distinctCount, int compareType,
+                                    boolean reversed, boolean[] map) {
+
+        if (compareType != OpTypes.EQUAL || matchCount != colIndex.length) {
+            return super.findFirstRow(session, store, rowdata, matchCount,
+                                      distinctCount, compareType, reversed,
+                                      map);
+        }
+
+        NodeAVL node = findHashNode(session, store, rowdata,
+                                    getDefaultColumnMap(),
+                                    TransactionManager.ACTION_READ, reversed);
+
+        if (node == null) {
+            return emptyIterator();
+        }
+
+        return new IndexRowIterator(session, store, this, node, distinctCount,
+                                    false, reversed);
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata) {
+
+        NodeAVL node = findHashNode(session, store, rowdata, colIndex,
+                                    TransactionManager.ACTION_READ, false);
+
+        if (node == null) {
+            return emptyIterator();
+        }
+
+        return new IndexRowIterator(session, store, this, node, 0, false,
+                                    false);
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int[] rowColMap) {
+
+        if (rowColMap.length != colIndex.length) {
+            return super.findFirstRow(session, store, rowdata, rowColMap);
+        }
+
+        NodeAVL node = findHashNode(session, store, rowdata, rowColMap,
+                                    TransactionManager.ACTION_READ, false);
+
+        if (node == null) {
+            return emptyIterator();
+        }
+
+        return new IndexRowIterator(session, store, this, node, 0, false,
+                                    false);
+    }
+
+    /**
+     * Returns the same node as IndexAVL.findNode for an EQUAL condition on
+     * all the columns of the index: the first node with equal values in
+     * index order, or the last node if reversed, that can be read by the
+     * session.
+     */
+    NodeAVL findHashNode(Session session, PersistentStore store,
+                         Object[] rowdata, int[] rowColMap, int readMode,
+                         boolean reversed) {
+
+        int fieldCount = colIndex.length;
+
+        store.readLock();
+
+        try {
+            if (getAccessor(store) == null) {
+                return null;
+            }
+
+            int     hash = getHash(rowdata, rowColMap);
+            NodeAVL x    = null;
+
+            for (int lookup = hashIndex.getLookup(hash); lookup >= 0;
+                    lookup = hashIndex.getNextLookup(lookup)) {
+                if (hashTable[lookup] != hash) {
+                    continue;
+                }
+
+                NodeAVL node = nodeTable[lookup];
+
+                if (compareRowNonUnique(session, node.row, rowdata,
+                                        rowColMap, fieldCount) == 0) {
+                    x = node;
+
+                    break;
+                }
+            }
+
+            if (x == null) {
+                return null;
+            }
+
+            // other rows with the same values
+            while (true) {
+                NodeAVL n = reversed ? next(store, x)
+                                     : last(store, x);
+
+                if (n == null
+                        || compareRowNonUnique(
+                            session, n.row, rowdata, rowColMap,
+                            fieldCount) != 0) {
+                    break;
+                }
+
+                x = n;
+            }
+
+            if (session == null) {
+                return x;
+            }
+
+            while (x != null) {
+                Row currentRow = x.row;
+
+                if (session.database.txManager.canRead(session, store,
+                                                       currentRow, readMode,
+                                                       colIndex)) {
+                    break;
+                }
+
+                x = reversed ? last(store, x)
+                             : next(store, x);
+
+                if (x == null) {
+                    break;
+                }
+
+                if (compareRowNonUnique(
+                        session, x.row, rowdata, rowColMap,
+                        fieldCount) != 0) {
+                    x = null;
+
+                    break;
+                }
+            }
+
+            return x;
+        } finally {
+            store.readUnlock();
+        }
+    }
+}
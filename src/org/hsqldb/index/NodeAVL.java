@@ -181,6 +181,12 @@ public class NodeAVL implements CachedObject {
         return this;
     }
 
+    /**
+     * Sets the balance and the positions of the linked nodes of a disk
+     * node when an index is built.
+     */
+    void setLinks(int balance, long left, long right, long parent) {}
+
     boolean isFromLeft(PersistentStore store) {
 
         if (nParent == null) {
@@ -272,6 +272,16 @@ public class NodeAVLDisk extends NodeAVL {
                       : getRight(store);
     }
 
+    void setLinks(int balance, long left, long right, long parent) {
+
+        iBalance = balance;
+        iLeft    = (int) left;
+        iRight   = (int) right;
+        iParent  = (int) parent;
+
+        ((RowAVLDisk) row).setNodesChanged();
+    }
+
     NodeAVL setParent(PersistentStore store, NodeAVL n) {
 
         NodeAVLDisk node = this;
@@ -243,6 +243,16 @@ public class NodeAVLDiskLarge extends NodeAVL {
                       : getRight(store);
     }
 
+    void setLinks(int balance, long left, long right, long parent) {
+
+        iBalance = balance;
+        iLeft    = left;
+        iRight   = right;
+        iParent  = parent;
+
+        ((RowAVLDisk) row).setNodesChanged();
+    }
+
     NodeAVL setParent(PersistentStore store, NodeAVL n) {
 
         NodeAVLDiskLarge node = this;
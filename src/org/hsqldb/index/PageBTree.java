@@ -0,0 +1,334 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.persist.CachedObjectBase;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
+
+/**
+ * Page of an IndexBTree, stored as a block of fixed size in the .data file.<p>
+ *
+ * Each entry consists of the values of the index columns and the position
+ * of the row. Entries are ordered on the values, then on the row position.
+ * A leaf page has links to the previous and next leaf pages. An inner page
+ * has one child more than the number of entries. The subtree of each child
+ * holds the entries smaller than the entry that follows the child and
+ * equal to or larger than the entry before it.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class PageBTree extends CachedObjectBase {
+
+    static final int headerSize = 1 + PersistentStore.INT_STORE_SIZE
+                                  + 3 * PersistentStore.LONG_STORE_SIZE;
+
+    //
+    final IndexBTree index;
+    boolean          isLeaf;
+    int              count;
+    Object[][]       keys;
+    long[]           rowPositions;
+    long[]           children;
+    long             prevPage = -1;
+    long             nextPage = -1;
+    int              dataSize;
+    int              modCount;
+
+    PageBTree(IndexBTree index, boolean isLeaf) {
+
+        this.index  = index;
+        this.isLeaf = isLeaf;
+
+        setCapacity(16);
+        setChanged(true);
+    }
+
+    private void setCapacity(int capacity) {
+
+        Object[][] newKeys      = new Object[capacity][];
+        long[]     newPositions = new long[capacity];
+
+        if (keys != null) {
+            System.arraycopy(keys, 0, newKeys, 0, count);
+            System.arraycopy(rowPositions, 0, newPositions, 0, count);
+        }
+
+        keys         = newKeys;
+        rowPositions = newPositions;
+
+        if (isLeaf) {
+            children = null;
+        } else {
+            long[] newChildren = new long[capacity + 1];
+
+            if (children != null) {
+                System.arraycopy(children, 0, newChildren, 0, count + 1);
+            }
+
+            children = newChildren;
+        }
+    }
+
+    /**
+     * Returns true if an entry of the given size cannot be added
+     */
+    boolean isFull(int size) {
+        return headerSize + dataSize + size > IndexBTree.pageSize;
+    }
+
+    boolean isOverflow() {
+        return headerSize + dataSize > IndexBTree.pageSize;
+    }
+
+    /**
+     * Inserts an entry at slot. For inner pages, child is the page to the
+     * right of the entry.
+     */
+    void insert(int slot, Object[] key, long rowPos, long child, int size) {
+
+        if (count == keys.length) {
+            setCapacity(count * 2);
+        }
+
+        System.arraycopy(keys, slot, keys, slot + 1, count - slot);
+        System.arraycopy(rowPositions, slot, rowPositions, slot + 1,
+                         count - slot);
+
+        keys[slot]         = key;
+        rowPositions[slot] = rowPos;
+
+        if (!isLeaf) {
+            System.arraycopy(children, slot + 1, children, slot + 2,
+                             count - slot);
+
+            children[slot + 1] = child;
+        }
+
+        count++;
+
+        dataSize += size;
+
+        modCount++;
+        setChanged(true);
+    }
+
+    /**
+     * Removes the entry at slot from a leaf page.
+     */
+    void remove(int slot) {
+
+        dataSize -= index.getEntrySize(keys[slot], true);
+
+        count--;
+
+        System.arraycopy(keys, slot + 1, keys, slot, count - slot);
+        System.arraycopy(rowPositions, slot + 1, rowPositions, slot,
+                         count - slot);
+
+        keys[count] = null;
+
+        modCount++;
+        setChanged(true);
+    }
+
+    /**
+     * Moves the upper half of the entries, in terms of stored size, to
+     * the new page. For an inner page, the middle entry is removed and
+     * returned in separator. Otherwise the first entry of the new page is
+     * the separator.
+     */
+    void split(PageBTree right, Object[][] separatorKey,
+               long[] separatorPos) {
+
+        int half  = dataSize / 2;
+        int size  = 0;
+        int m     = 0;
+        int limit = isLeaf ? count - 1
+                           : count - 2;
+
+        for (; m < limit; m++) {
+            size += index.getEntrySize(keys[m], isLeaf);
+
+            if (size >= half) {
+                break;
+            }
+        }
+
+        if (m == 0) {
+            m = 1;
+        }
+
+        if (isLeaf) {
+            for (int i = m; i < count; i++) {
+                right.insert(i - m, keys[i], rowPositions[i], -1,
+                             index.getEntrySize(keys[i], true));
+            }
+
+            separatorKey[0] = keys[m];
+            separatorPos[0] = rowPositions[m];
+        } else {
+            right.children[0] = children[m + 1];
+
+            for (int i = m + 1; i < count; i++) {
+                right.insert(i - m - 1, keys[i], rowPositions[i],
+                             children[i + 1],
+                             index.getEntrySize(keys[i], false));
+            }
+
+            separatorKey[0] = keys[m];
+            separatorPos[0] = rowPositions[m];
+        }
+
+        for (int i = m; i < count; i++) {
+            keys[i] = null;
+        }
+
+        count    = m;
+        dataSize = 0;
+
+        for (int i = 0; i < count; i++) {
+            dataSize += index.getEntrySize(keys[i], isLeaf);
+        }
+
+        modCount++;
+        setChanged(true);
+    }
+
+    void setPrevPage(long pos) {
+
+        prevPage = pos;
+
+        modCount++;
+        setChanged(true);
+    }
+
+    void setNextPage(long pos) {
+
+        nextPage = pos;
+
+        modCount++;
+        setChanged(true);
+    }
+
+    public void read(RowInputInterface in) {
+
+        setPos(in.getFilePosition());
+
+        Type[] types = index.colTypes;
+
+        isLeaf   = in.readByte() == 1;
+        count    = in.readInt();
+        prevPage = in.readLong();
+        nextPage = in.readLong();
+
+        keys     = null;
+        children = null;
+
+        setCapacity(count < 16 ? 16
+                               : count);
+
+        long firstChild = in.readLong();
+
+        if (!isLeaf) {
+            children[0] = firstChild;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Object[] key = new Object[types.length];
+
+            for (int j = 0; j < types.length; j++) {
+                key[j] = in.readData(types[j]);
+            }
+
+            keys[i]         = key;
+            rowPositions[i] = in.readLong();
+
+            if (!isLeaf) {
+                children[i + 1] = in.readLong();
+            }
+
+            dataSize += index.getEntrySize(key, isLeaf);
+        }
+
+        setChanged(false);
+    }
+
+    public int getDefaultCapacity() {
+        return count;
+    }
+
+    public int getRealSize(RowOutputInterface out) {
+        return headerSize + dataSize;
+    }
+
+    public void write(RowOutputInterface out) {
+        write(out, null);
+    }
+
+    public void write(RowOutputInterface out, LongLookup lookup) {
+
+        Type[] types = index.colTypes;
+
+        out.setStorageSize(getStorageSize());
+        out.writeByte(isLeaf ? 1
+                             : 0);
+        out.writeInt(count);
+        out.writeLong(prevPage);
+        out.writeLong(nextPage);
+        out.writeLong(isLeaf ? -1
+                             : children[0]);
+
+        for (int i = 0; i < count; i++) {
+            Object[] key = keys[i];
+
+            for (int j = 0; j < types.length; j++) {
+                out.writeData(key[j], types[j]);
+            }
+
+            out.writeLong(rowPositions[i]);
+
+            if (!isLeaf) {
+                out.writeLong(children[i + 1]);
+            }
+        }
+
+        out.writeEnd();
+    }
+}
@@ -0,0 +1,109 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.Session;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.persist.CachedObject;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.SimpleStore;
+import org.hsqldb.rowio.RowInputInterface;
+
+/**
+ * Store for the pages of an IndexBTree. The pages are kept in the cache and
+ * the table space of the row store of the table.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class PageStoreBTree extends SimpleStore {
+
+    final IndexBTree      index;
+    final PersistentStore rowStore;
+
+    PageStoreBTree(IndexBTree index, PersistentStore rowStore) {
+
+        this.index        = index;
+        this.rowStore     = rowStore;
+        this.cache        = rowStore.getCache();
+        this.spaceManager = rowStore.getSpaceManager();
+    }
+
+    /**
+     * Returns false if the row store, its cache or its table space has
+     * changed since this store was created.
+     */
+    boolean isStoreFor(PersistentStore store) {
+        return rowStore == store && cache == store.getCache()
+               && spaceManager == store.getSpaceManager();
+    }
+
+    public CachedObject get(long i) {
+        return cache.get(i, IndexBTree.pageSize, this, false);
+    }
+
+    public CachedObject get(long i, boolean keep) {
+        return cache.get(i, IndexBTree.pageSize, this, keep);
+    }
+
+    public void add(Session session, CachedObject object, boolean tx) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "PageStoreBTree");
+    }
+
+    public void add(CachedObject object, boolean keep) {
+
+        object.setStorageSize(IndexBTree.pageSize);
+
+        long pos = spaceManager.getFilePosition(IndexBTree.pageSize, false);
+
+        object.setPos(pos);
+        cache.add(object, keep);
+    }
+
+    public CachedObject get(RowInputInterface in) {
+
+        CachedObject object = new PageBTree(index, true);
+
+        object.read(in);
+        object.setStorageSize(IndexBTree.pageSize);
+
+        return object;
+    }
+
+    public CachedObject getNewInstance(int size) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "PageStoreBTree");
+    }
+}
@@ -43,6 +43,7 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 //#ifdef JAVA6
 import java.sql.Array;
@@ -62,9 +63,11 @@ import org.hsqldb.ClientConnectionHTTP;
 import org.hsqldb.HsqlDateTime;
 import org.hsqldb.HsqlException;
 import org.hsqldb.SessionInterface;
+import org.hsqldb.StatementTypes;
 import org.hsqldb.Tokens;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.StringConverter;
 import org.hsqldb.lib.StringUtil;
 import org.hsqldb.persist.HsqlProperties;
 import org.hsqldb.persist.HsqlDatabaseProperties;
@@ -3502,6 +3505,9 @@ public class JDBCConnection implements Connection {
     /** connection URL property allow_empty_batch indicates to accept executeBatch() when the batch is empty */
     boolean isEmptyBatchAllowed = false;
 
+    /** connection URL property stream_result indicates to request streamed forward-only results */
+    boolean isStreamResult = false;
+
     /** database URL property hsqldb.live_object indicates to store non-serialized object in OTHER columns */
     boolean isStoreLiveObject = false;
 
@@ -3545,6 +3551,9 @@ public class JDBCConnection implements Connection {
 
         isTLSWrapper &= isTLS;
 
+        boolean isCompress = props.isPropertyTrue(
+            HsqlDatabaseProperties.url_network_compression, false);
+
         if (user == null) {
             user = "SA";
         }
@@ -3569,12 +3578,14 @@ public class JDBCConnection implements Connection {
             } else if (DatabaseURL.S_HSQL.equals(connType)
                        || DatabaseURL.S_HSQLS.equals(connType)) {
                 sessionProxy = new ClientConnection(host, port, path,
-                        database, isTLS, isTLSWrapper, user, password, zoneSeconds);
+                        database, isTLS, isTLSWrapper, isCompress, user,
+                        password, zoneSeconds);
                 isNetConn = true;
             } else if (DatabaseURL.S_HTTP.equals(connType)
                        || DatabaseURL.S_HTTPS.equals(connType)) {
                 sessionProxy = new ClientConnectionHTTP(host, port, path,
-                        database, isTLS, isTLSWrapper, user, password, zoneSeconds);
+                        database, isTLS, isTLSWrapper, isCompress, user,
+                        password, zoneSeconds);
                 isNetConn = true;
             } else {    // alias: type not yet implemented
                 throw JDBCUtil.invalidArgument(connType);
@@ -3665,6 +3676,8 @@ public class JDBCConnection implements Connection {
             HsqlDatabaseProperties.url_get_column_name, true);
         isEmptyBatchAllowed = connProperties.isPropertyTrue(
             HsqlDatabaseProperties.url_allow_empty_batch, false);
+        isStreamResult = isNetConn && connProperties.isPropertyTrue(
+            HsqlDatabaseProperties.url_stream_result, false);
         isTranslateTTIType = clientProperties.isPropertyTrue(
             HsqlDatabaseProperties.jdbc_translate_tti_types, true);
         isStoreLiveObject = clientProperties.isPropertyTrue(
@@ -3789,6 +3802,120 @@ public class JDBCConnection implements Connection {
         }
     }
 
+    /**
+     * Sends an SQL statement that returns an update count for execution and
+     * returns without waiting for the result. <p>
+     *
+     * With a network connection, several statements can be sent in this way
+     * before reading any result, so they do not each wait for a network
+     * round trip. The server executes the statements in the order they are
+     * sent, in the same session, before any later statement executed on this
+     * connection. The get() method of the returned Future returns the update
+     * count, or throws an ExecutionException caused by the SQLException for
+     * the statement. With other connections the statement is executed before
+     * this method returns. <p>
+     *
+     * @param sql an SQL statement that returns an update count
+     * @return the Future for the update count
+     * @throws SQLException if this connection is closed or the statement
+     *  cannot be sent
+     */
+    public Future<Integer> executeUpdateAsync(String sql) throws SQLException {
+
+        checkClosed();
+
+        Result request = Result.newExecuteDirectRequest();
+
+        request.setPrepareOrExecuteProperties(
+            nativeSQL(sql), 0, 0, StatementTypes.RETURN_COUNT, 0,
+            ResultProperties.defaultPropsValue,
+            ResultConstants.RETURN_NO_GENERATED_KEYS, null, null);
+
+        return executeAsync(request);
+    }
+
+    /**
+     * Sends a PreparedStatement of this connection that returns an update
+     * count for execution with its current parameter values and returns
+     * without waiting for the result. The parameter values can be changed
+     * and the statement sent again before the result is read. See
+     * {@link #executeUpdateAsync(String)}.
+     *
+     * @param statement a PreparedStatement of this connection
+     * @return the Future for the update count
+     * @throws SQLException if this connection or the statement is closed, a
+     *  parameter is not set, or the statement cannot be sent
+     */
+    public Future<Integer> executeUpdateAsync(
+            PreparedStatement statement) throws SQLException {
+
+        checkClosed();
+
+        if (!(statement instanceof JDBCPreparedStatement)
+                || ((JDBCPreparedStatement) statement).connection != this) {
+            throw JDBCUtil.invalidArgument("statement");
+        }
+
+        return ((JDBCPreparedStatement) statement).executeAsync();
+    }
+
+    /**
+     * Loads the rows of a delimited text file on the server into a MEMORY or
+     * CACHED table with PERFORM IMPORT DATA and returns the number of rows
+     * loaded. <p>
+     *
+     * The source string has the same form as the source of a TEXT table, for
+     * example <code>"data/orders.csv;fs=|;ignore_first=true"</code>. The rows
+     * are not logged one by one; the statement ends with a CHECKPOINT. The
+     * user must have the DBA role. <p>
+     *
+     * @param tableName the name of the table as used in SQL, optionally
+     *  qualified with the schema name
+     * @param source the file name and settings of the source file
+     * @return the number of rows loaded
+     * @throws SQLException if this connection is closed, a row cannot be
+     *  added to the table, or the file cannot be read
+     */
+    public int importData(String tableName,
+                          String source) throws SQLException {
+
+        checkClosed();
+
+        if (tableName == null) {
+            throw JDBCUtil.nullArgument("tableName");
+        }
+
+        if (source == null) {
+            throw JDBCUtil.nullArgument("source");
+        }
+
+        String sql = "PERFORM IMPORT DATA INTO " + tableName + " FROM "
+                     + StringConverter.toQuotedString(source, '\'', true);
+        Statement statement = createStatement();
+
+        try {
+            return statement.executeUpdate(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    Future<Integer> executeAsync(Result request) throws SQLException {
+
+        try {
+            if (sessionProxy instanceof ClientConnection) {
+                ClientConnection client = (ClientConnection) sessionProxy;
+                long             id     = client.executeAsync(request);
+
+                return new JDBCResultFuture(client, id);
+            }
+
+            return new JDBCResultFuture(sessionProxy.execute(request));
+        } catch (HsqlException e) {
+            throw JDBCUtil.sqlException(e);
+        }
+    }
+
     /**
      * provides cross-package access to the proprietary (i.e. non-JDBC)
      * HSQLDB session interface. <P>
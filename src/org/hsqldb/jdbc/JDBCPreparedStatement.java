@@ -56,6 +56,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 //#ifdef JAVA6
 import java.sql.NClob;
@@ -3920,7 +3921,8 @@ public class JDBCPreparedStatement extends JDBCStatementBase implements Prepared
         parameterMetaData = in.parameterMetaData;
         parameterTypes    = parameterMetaData.getParameterTypes();
         parameterModes    = parameterMetaData.paramModes;
-        rsProperties      = in.rsProperties;
+        rsProperties = ResultProperties.addStreamable(in.rsProperties,
+                connection.isStreamResult);
 
         //
         int paramCount = parameterMetaData.getColumnCount();
@@ -4683,6 +4685,41 @@ public class JDBCPreparedStatement extends JDBCStatementBase implements Prepared
         }
     }
 
+    /**
+     * Sends the statement with the current parameter values without waiting
+     * for the result. Used by JDBCConnection.executeUpdateAsync().
+     */
+    synchronized Future<Integer> executeAsync() throws SQLException {
+
+        if (isClosed || connection.isClosed) {
+            checkClosed();
+        }
+
+        checkParametersSet();
+
+        if (isBatch) {
+            throw JDBCUtil.sqlExceptionSQL(ErrorCode.X_07505);
+        }
+
+        if (statementRetType != StatementTypes.RETURN_COUNT) {
+            checkStatementType(StatementTypes.RETURN_COUNT);
+        }
+
+        resultOut.setPreparedExecuteProperties(parameterValues, maxRows,
+                                               fetchSize, rsProperties,
+                                               queryTimeout);
+
+        try {
+            performPreExecute();
+
+            return connection.executeAsync(resultOut);
+        } catch (HsqlException e) {
+            throw JDBCUtil.sqlException(e);
+        } finally {
+            resultOut.clearLobResults();
+        }
+    }
+
     boolean isAnyParameterSet() {
 
         for (int i = 0; i < parameterValues.length; i++) {
@@ -0,0 +1,121 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.jdbc;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hsqldb.ClientConnection;
+import org.hsqldb.HsqlException;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.result.Result;
+
+/**
+ * The update count of a statement executed by one of the
+ * executeUpdateAsync() methods of JDBCConnection.<p>
+ *
+ * For a network connection, the result is read from the connection when
+ * get() is called, or earlier if the connection is used for another
+ * request. For other connections, the statement has already been
+ * executed.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class JDBCResultFuture implements Future<Integer> {
+
+    private final ClientConnection client;
+    private final long             requestId;
+    private Result                 result;
+
+    JDBCResultFuture(ClientConnection client, long requestId) {
+        this.client    = client;
+        this.requestId = requestId;
+    }
+
+    JDBCResultFuture(Result result) {
+        this.client    = null;
+        this.requestId = 0;
+        this.result    = result;
+    }
+
+    /**
+     * A request that has been sent cannot be cancelled.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public synchronized boolean isDone() {
+        return result != null || client.isAsyncResultRead(requestId);
+    }
+
+    /**
+     * Returns the update count. An SQLException for a failed statement is
+     * the cause of the ExecutionException.
+     */
+    public synchronized Integer get() throws ExecutionException {
+
+        if (result == null) {
+            try {
+                result = client.getAsyncResult(requestId);
+            } catch (HsqlException e) {
+                throw new ExecutionException(JDBCUtil.sqlException(e));
+            }
+
+            if (result == null) {
+                throw new ExecutionException(
+                    JDBCUtil.sqlException(ErrorCode.X_08006));
+            }
+        }
+
+        if (result.isError()) {
+            throw new ExecutionException(JDBCUtil.sqlException(result));
+        }
+
+        return Integer.valueOf(result.getUpdateCount());
+    }
+
+    /**
+     * The timeout is ignored, as the result is read from the connection,
+     * which is subject to the network timeout of the connection.
+     */
+    public Integer get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+}
@@ -356,7 +356,11 @@ public class JDBCResultSet implements ResultSet {
 
         rootWarning = null;
 
-        return navigator.next();
+        try {
+            return navigator.next();
+        } catch (HsqlException e) {
+            throw JDBCUtil.sqlException(e);
+        }
     }
 
     /**
@@ -1757,7 +1757,7 @@ public class JDBCStatement extends JDBCStatementBase implements Statement {
         resultOut             = Result.newExecuteDirectRequest();
         connection            = c;
         connectionIncarnation = connection.incarnation;
-        rsProperties          = props;
+        rsProperties = ResultProperties.addStreamable(props, c.isStreamResult);
     }
 
     /**
@@ -0,0 +1,186 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the data as a sequence of frames, each compressed with Deflate if
+ * it is larger than a threshold. Used for network connections that use
+ * compression. A frame is written for each flush() and each time the buffer
+ * is full.<p>
+ *
+ * A frame that is not compressed has an int header with the length,
+ * followed by the bytes. A compressed frame has an int header with the
+ * negated compressed length and an int with the uncompressed length,
+ * followed by the compressed bytes. Each frame is compressed separately.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class DeflaterFrameOutputStream extends OutputStream {
+
+    public static final int frameSize         = 0x10000;
+    public static final int compressThreshold = 1024;
+    static final int        headerSize        = 8;
+
+    //
+    private final OutputStream out;
+    private final Deflater     deflater;
+    private final byte[]       buffer;
+    private final byte[]       compressedBuffer;
+    private int                count;
+
+    public DeflaterFrameOutputStream(OutputStream out) {
+
+        this.out         = out;
+        deflater         = new Deflater(Deflater.BEST_SPEED);
+        buffer           = new byte[headerSize + frameSize];
+        compressedBuffer = new byte[headerSize + frameSize];
+        count            = headerSize;
+    }
+
+    public void write(int b) throws IOException {
+
+        if (count == buffer.length) {
+            writeFrame();
+        }
+
+        buffer[count++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeFrame();
+            }
+
+            int copy = Math.min(len, buffer.length - count);
+
+            System.arraycopy(b, off, buffer, count, copy);
+
+            count += copy;
+            off   += copy;
+            len   -= copy;
+        }
+    }
+
+    public void flush() throws IOException {
+
+        if (count > headerSize) {
+            writeFrame();
+        }
+
+        out.flush();
+    }
+
+    public void close() throws IOException {
+
+        try {
+            flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+
+        int length = count - headerSize;
+
+        count = headerSize;
+
+        if (length >= compressThreshold) {
+            deflater.reset();
+            deflater.setInput(buffer, headerSize, length);
+            deflater.finish();
+
+            int compressedLength = 0;
+
+            while (!deflater.finished() && compressedLength < length) {
+                compressedLength += deflater.deflate(compressedBuffer,
+                                                     headerSize
+                                                     + compressedLength,
+                                                     length
+                                                     - compressedLength);
+            }
+
+            // frames that do not shrink are written as they are
+            if (deflater.finished() && compressedLength < length) {
+                writeInt(compressedBuffer, 0, -compressedLength);
+                writeInt(compressedBuffer, 4, length);
+                out.write(compressedBuffer, 0, headerSize + compressedLength);
+
+                return;
+            }
+        }
+
+        writeInt(buffer, 4, length);
+        out.write(buffer, 4, 4 + length);
+    }
+
+    private static void writeInt(byte[] b, int offset, int v) {
+
+        b[offset]     = (byte) (v >>> 24);
+        b[offset + 1] = (byte) (v >>> 16);
+        b[offset + 2] = (byte) (v >>> 8);
+        b[offset + 3] = (byte) v;
+    }
+
+    /**
+     * Returns the data compressed in the zlib format used for the deflate
+     * content coding of HTTP.
+     */
+    public static HsqlByteArrayOutputStream deflate(
+            HsqlByteArrayOutputStream data) throws IOException {
+
+        HsqlByteArrayOutputStream out =
+            new HsqlByteArrayOutputStream(data.size() / 2 + 64);
+        Deflater             deflater = new Deflater(Deflater.BEST_SPEED);
+        DeflaterOutputStream stream   = new DeflaterOutputStream(out,
+            deflater);
+
+        try {
+            data.writeTo(stream);
+            stream.finish();
+        } finally {
+            deflater.end();
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,163 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.lib;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the frames written by a DeflaterFrameOutputStream.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class InflaterFrameInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Inflater        inflater;
+    private final byte[]          buffer;
+    private final byte[]          compressedBuffer;
+    private int                   position;
+    private int                   limit;
+
+    public InflaterFrameInputStream(InputStream in) {
+
+        this.in          = new DataInputStream(in);
+        inflater         = new Inflater();
+        buffer           = new byte[DeflaterFrameOutputStream.frameSize];
+        compressedBuffer = new byte[DeflaterFrameOutputStream.frameSize];
+    }
+
+    public int read() throws IOException {
+
+        if (position == limit) {
+            if (!readFrame()) {
+                return -1;
+            }
+        }
+
+        return buffer[position++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position == limit) {
+            if (!readFrame()) {
+                return -1;
+            }
+        }
+
+        int count = Math.min(len, limit - position);
+
+        System.arraycopy(buffer, position, b, off, count);
+
+        position += count;
+
+        return count;
+    }
+
+    /**
+     * Returns the count of bytes of the current frame not yet read.
+     */
+    public int available() {
+        return limit - position;
+    }
+
+    public void close() throws IOException {
+
+        inflater.end();
+        in.close();
+    }
+
+    private boolean readFrame() throws IOException {
+
+        int header;
+
+        try {
+            header = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+
+        position = 0;
+        limit    = 0;
+
+        if (header >= 0) {
+            if (header > buffer.length) {
+                throw new IOException("invalid frame");
+            }
+
+            in.readFully(buffer, 0, header);
+
+            limit = header;
+
+            return true;
+        }
+
+        int compressedLength = -header;
+        int length           = in.readInt();
+
+        if (compressedLength > compressedBuffer.length || length < 0
+                || length > buffer.length) {
+            throw new IOException("invalid frame");
+        }
+
+        in.readFully(compressedBuffer, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressedBuffer, 0, compressedLength);
+
+        try {
+            while (limit < length) {
+                int count = inflater.inflate(buffer, limit, length - limit);
+
+                if (count == 0) {
+                    throw new IOException("invalid frame");
+                }
+
+                limit += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("invalid frame");
+        }
+
+        return true;
+    }
+}
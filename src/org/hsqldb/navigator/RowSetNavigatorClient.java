@@ -123,6 +123,21 @@ public class RowSetNavigatorClient extends RowSetNavigator {
         throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorClient");
     }
 
+    /**
+     * The size of a streamed result is known only up to the row after the
+     * last row sent, so the next block is fetched if the current row has
+     * not been read.
+     */
+    public boolean next() {
+
+        if (!hasNext() && currentPos >= currentOffset + table.length
+                && currentPos < size) {
+            fetchBlock(currentPos);
+        }
+
+        return super.next();
+    }
+
     /**
      * Only for navigators for INSERT
      */
@@ -257,19 +272,30 @@ public class RowSetNavigatorClient extends RowSetNavigator {
     }
 
     /**
-     * baseBlockSize remains unchanged.
+     * baseBlockSize remains unchanged. The size of a streamed result grows
+     * with each block until the last row has been read.
      */
     void getBlock(int offset) {
 
         try {
-            RowSetNavigatorClient source = session.getRows(id, offset,
-                baseBlockSize);
-
-            table         = source.table;
-            currentOffset = source.currentOffset;
+            fetchBlock(offset);
         } catch (HsqlException e) {}
     }
 
+    /**
+     * Throws the exception if the block cannot be fetched, which happens
+     * when the rows of a streamed result cannot be produced.
+     */
+    private void fetchBlock(int offset) {
+
+        RowSetNavigatorClient source = session.getRows(id, offset,
+            baseBlockSize);
+
+        table         = source.table;
+        currentOffset = source.currentOffset;
+        size          = source.size;
+    }
+
     private void ensureCapacity() {
 
         if (size == table.length) {
@@ -44,10 +44,13 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HsqlArrayHeap;
 import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.result.ResultMetaData;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
 
 /**
  * Implementation of RowSetNavigator for result sets.
@@ -57,7 +60,7 @@ import org.hsqldb.rowio.RowOutputInterface;
  * @since 1.9.0
  */
 public class RowSetNavigatorData extends RowSetNavigator
-implements Comparator {
+implements Comparator<Object[]> {
 
     public static final Object[][] emptyTable = new Object[0][];
 
@@ -85,8 +88,20 @@ implements Comparator {
     Index idIndex;
 
     //
-    TreeMap        rowMap;
-    LongKeyHashMap idMap;
+    TreeMap<Object[], Object[]> rowMap;
+    LongKeyHashMap              idMap;
+
+    // open addressing table of group or distinct rows during build
+    Index    hashIndex;
+    int[]    hashSlots;
+    int[]    slotHashes;
+    int      hashCount;
+
+    // bounded heap of the first rows in ORDER BY order during build
+    HsqlArrayHeap topHeap;
+    int           topCount;
+    long          topSequence;
+    boolean       isTopOrdered;
 
     RowSetNavigatorData(Session session) {
         this.session = session;
@@ -104,7 +119,16 @@ implements Comparator {
 
         if (select.isGrouped) {
             mainIndex = select.groupIndex;
-            rowMap    = new TreeMap(this);
+
+            if (isHashable(select.groupIndex)) {
+                setHashIndex(select.groupIndex);
+            } else {
+                rowMap = new TreeMap<Object[], Object[]>(this);
+            }
+        } else if (select.isDistinctSelect && !select.isAggregated) {
+            if (isHashable(select.fullIndex)) {
+                setHashIndex(select.fullIndex);
+            }
         }
 
         if (select.idIndex != null) {
@@ -135,6 +159,8 @@ implements Comparator {
 
     public void sortFull(Session session) {
 
+        clearHashIndex();
+
         mainIndex = fullIndex;
 
         ArraySort.sort(dataTable, 0, size, this);
@@ -143,7 +169,13 @@ implements Comparator {
 
     public void sortOrder(Session session) {
 
-        if (orderIndex != null) {
+        clearHashIndex();
+
+        if (topHeap != null) {
+            setTopRows();
+        }
+
+        if (orderIndex != null && !isTopOrdered) {
             mainIndex = orderIndex;
 
             ArraySort.sort(dataTable, 0, size, this);
@@ -154,6 +186,8 @@ implements Comparator {
 
     public void sortOrderUnion(Session session, SortAndSlice sortAndSlice) {
 
+        clearHashIndex();
+
         if (sortAndSlice.index != null) {
             mainIndex = sortAndSlice.index;
 
@@ -164,6 +198,14 @@ implements Comparator {
 
     public void add(Object[] data) {
 
+        if (topHeap != null) {
+            addTopRow(data);
+
+            return;
+        }
+
+        isTopOrdered = false;
+
         ensureCapacity();
 
         dataTable[size] = data;
@@ -174,6 +216,10 @@ implements Comparator {
             rowMap.put(data, data);
         }
 
+        if (hashSlots != null) {
+            addHashRow(data, size - 1);
+        }
+
         if (idMap != null) {
             Long id = (Long) data[visibleColumnCount];
 
@@ -223,6 +269,7 @@ implements Comparator {
      */
     void insert(Object[] data) {
 
+        clearHashIndex();
         ensureCapacity();
         System.arraycopy(dataTable, currentPos, dataTable, currentPos + 1,
                          size - currentPos);
@@ -234,6 +281,9 @@ implements Comparator {
 
     public void release() {
 
+        clearHashIndex();
+
+        topHeap        = null;
         this.dataTable = emptyTable;
         this.size      = 0;
 
@@ -244,6 +294,9 @@ implements Comparator {
 
     public void clear() {
 
+        clearHashIndex();
+
+        topHeap        = null;
         this.dataTable = emptyTable;
         this.size      = 0;
 
@@ -282,6 +335,7 @@ implements Comparator {
 
     public void removeCurrent() {
 
+        clearHashIndex();
         System.arraycopy(dataTable, currentPos + 1, dataTable, currentPos,
                          size - currentPos - 1);
 
@@ -292,6 +346,11 @@ implements Comparator {
     }
 
     public void reset() {
+
+        if (topHeap != null) {
+            setTopRows();
+        }
+
         super.reset();
     }
 
@@ -610,7 +669,266 @@ implements Comparator {
             return simpleAggregateData;
         }
 
-        return (Object[]) rowMap.get(data);
+        if (hashSlots != null) {
+            return findHashRow(data);
+        }
+
+        return rowMap.get(data);
+    }
+
+    /**
+     * For SELECT DISTINCT, returns true if a row with the same visible
+     * columns has already been added. Always false when rows are not
+     * hashed.
+     */
+    public boolean hasDistinctRow(Object[] data) {
+
+        if (hashSlots == null) {
+            return false;
+        }
+
+        return findHashRow(data) != null;
+    }
+
+    /**
+     * Hashing is used only if the hash of each column value is consistent
+     * with the comparison of values of the column type.
+     */
+    static boolean isHashable(Index index) {
+
+        if (index == null || index.getColumnCount() == 0) {
+            return false;
+        }
+
+        Type[] types = index.getColumnTypes();
+
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i].typeCode) {
+
+                case Types.TINYINT :
+                case Types.SQL_SMALLINT :
+                case Types.SQL_INTEGER :
+                case Types.SQL_BIGINT :
+                case Types.SQL_NUMERIC :
+                case Types.SQL_DECIMAL :
+                case Types.SQL_REAL :
+                case Types.SQL_FLOAT :
+                case Types.SQL_DOUBLE :
+                case Types.SQL_BOOLEAN :
+                case Types.SQL_DATE :
+                case Types.SQL_TIME :
+                case Types.SQL_TIME_WITH_TIME_ZONE :
+                case Types.SQL_TIMESTAMP :
+                case Types.SQL_TIMESTAMP_WITH_TIME_ZONE :
+                    break;
+
+                case Types.SQL_CHAR :
+                case Types.SQL_VARCHAR :
+                    if (types[i].getCollation().hasCollator()) {
+                        return false;
+                    }
+                    break;
+
+                default :
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Limits the rows kept during build to the given count of rows that
+     * come first in ORDER BY order. Rows that compare equal are kept in the
+     * order they are added. The rows are moved to the data table, already
+     * sorted, on the next call to reset() or sortOrder().
+     */
+    public void setTopCount(int count) {
+
+        if (orderIndex == null || count <= 0 || rowMap != null
+                || hashSlots != null || idMap != null) {
+            return;
+        }
+
+        topCount = count;
+        topHeap  = new HsqlArrayHeap(count < 64 ? count + 1
+                                                : 64, new TopComparator());
+    }
+
+    private void addTopRow(Object[] data) {
+
+        if (topHeap.size() == topCount) {
+            TopRow last = (TopRow) topHeap.peek();
+
+            if (orderIndex.compareRow((Session) session, data, last.data)
+                    >= 0) {
+                return;
+            }
+
+            topHeap.remove();
+        }
+
+        topHeap.add(new TopRow(data, topSequence++));
+
+        size = topHeap.size();
+    }
+
+    private void setTopRows() {
+
+        HsqlArrayHeap heap  = topHeap;
+        int           count = heap.size();
+
+        topHeap   = null;
+        dataTable = new Object[count][];
+        size      = count;
+
+        for (int i = count - 1; i >= 0; i--) {
+            dataTable[i] = ((TopRow) heap.remove()).data;
+        }
+
+        mainIndex    = orderIndex;
+        isTopOrdered = true;
+    }
+
+    private void setHashIndex(Index index) {
+
+        hashIndex  = index;
+        hashSlots  = new int[64];
+        slotHashes = new int[64];
+        hashCount  = 0;
+    }
+
+    private void clearHashIndex() {
+
+        hashIndex  = null;
+        hashSlots  = null;
+        slotHashes = null;
+        hashCount  = 0;
+    }
+
+    private Object[] findHashRow(Object[] data) {
+
+        int hash = getRowHash(data);
+        int mask = hashSlots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int position = hashSlots[slot];
+
+            if (position == 0) {
+                return null;
+            }
+
+            if (slotHashes[slot] == hash) {
+                Object[] current = dataTable[position - 1];
+
+                if (hashIndex.compareRow((Session) session, current, data)
+                        == 0) {
+                    return current;
+                }
+            }
+        }
+    }
+
+    private void addHashRow(Object[] data, int position) {
+
+        if (hashCount * 2 >= hashSlots.length) {
+            int[] oldSlots  = hashSlots;
+            int[] oldHashes = slotHashes;
+
+            hashSlots  = new int[oldSlots.length * 2];
+            slotHashes = new int[oldSlots.length * 2];
+
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    putHashSlot(oldHashes[i], oldSlots[i]);
+                }
+            }
+        }
+
+        putHashSlot(getRowHash(data), position + 1);
+
+        hashCount++;
+    }
+
+    private void putHashSlot(int hash, int position) {
+
+        int mask = hashSlots.length - 1;
+        int slot = hash & mask;
+
+        while (hashSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        hashSlots[slot]  = position;
+        slotHashes[slot] = hash;
+    }
+
+    private int getRowHash(Object[] data) {
+
+        int[]  columns = hashIndex.getColumns();
+        Type[] types   = hashIndex.getColumnTypes();
+        int    hash    = 0;
+
+        for (int i = 0; i < columns.length; i++) {
+            hash = 31 * hash + getValueHash(types[i], data[columns[i]]);
+        }
+
+        // spread the bits used for the slot
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Values that compare as equal have the same hash. For character
+     * strings, case and trailing spaces are ignored.
+     */
+    private static int getValueHash(Type type, Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        switch (type.typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT : {
+                long v = ((Number) value).longValue();
+
+                return (int) (v ^ (v >>> 32));
+            }
+            case Types.SQL_NUMERIC :
+            case Types.SQL_DECIMAL :
+            case Types.SQL_REAL :
+            case Types.SQL_FLOAT :
+            case Types.SQL_DOUBLE : {
+                long v = Double.doubleToLongBits(
+                    ((Number) value).doubleValue());
+
+                return (int) (v ^ (v >>> 32));
+            }
+            case Types.SQL_CHAR :
+            case Types.SQL_VARCHAR : {
+                String s   = (String) value;
+                int    end = s.length();
+                int    h   = 0;
+
+                while (end > 0 && s.charAt(end - 1) == ' ') {
+                    end--;
+                }
+
+                for (int i = 0; i < end; i++) {
+                    char c = Character.toLowerCase(
+                        Character.toUpperCase(s.charAt(i)));
+
+                    h = 31 * h + c;
+                }
+
+                return h;
+            }
+            default :
+                return value.hashCode();
+        }
     }
 
     boolean containsRow(Object[] data) {
@@ -715,8 +1033,38 @@ implements Comparator {
         }
     }
 
-    public int compare(Object a, Object b) {
-        return mainIndex.compareRow((Session) session, (Object[]) a,
-                                    (Object[]) b);
+    public int compare(Object[] a, Object[] b) {
+        return mainIndex.compareRow((Session) session, a, b);
+    }
+
+    static class TopRow {
+
+        final Object[] data;
+        final long     sequence;
+
+        TopRow(Object[] data, long sequence) {
+            this.data     = data;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders the heap with the row that comes last in ORDER BY order, or
+     * was added last among equal rows, at the top.
+     */
+    class TopComparator implements Comparator<TopRow> {
+
+        public int compare(TopRow rowA, TopRow rowB) {
+
+            int compare = orderIndex.compareRow((Session) session, rowB.data,
+                                                rowA.data);
+
+            if (compare != 0) {
+                return compare;
+            }
+
+            return rowA.sequence > rowB.sequence ? -1
+                                                 : 1;
+        }
     }
 }
@@ -0,0 +1,543 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.navigator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hsqldb.QuerySpecification;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.SortAndSlice;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArraySort;
+import org.hsqldb.lib.FileAccess;
+import org.hsqldb.lib.FileUtil;
+import org.hsqldb.lib.HsqlArrayHeap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.result.ResultMetaData;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
+
+/**
+ * Implementation of RowSetNavigator for ORDER BY results that exceed the
+ * result memory row count of the session.<p>
+ *
+ * Rows are collected in memory up to the result memory row count, sorted
+ * and written sequentially as a run to a file in the temp directory. When
+ * the result is complete, the runs are read back together and merged in
+ * ORDER BY order. The merge is performed while the rows are navigated and
+ * is restarted only when the navigator moves back to an earlier row.<p>
+ *
+ * The navigator is used only for the top-level results of forward-only,
+ * read-only cursors. Moving back to an earlier row restarts the merge, so
+ * scrollable and updatable cursors use RowSetNavigatorDataTable instead.
+ * Only navigation and trim() are supported after sortOrder(). The other
+ * operations raise an SQL error.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class RowSetNavigatorDataSort extends RowSetNavigatorData {
+
+    private static final AtomicLong fileCount = new AtomicLong();
+
+    //
+    final Type[]     columnTypes;
+    final int        maxMemoryRowCount;
+    final String     filePath;
+    final FileAccess fileAccess;
+
+    //
+    Object[][]      runTable;
+    int             runSize;
+    HsqlArrayList   runFiles    = new HsqlArrayList();
+    HsqlArrayList   runCounts   = new HsqlArrayList();
+    RowOutputBinary rowOut      = new RowOutputBinary(256, 1);
+    boolean         isSorted;
+
+    //
+    Run[]         runs;
+    HsqlArrayHeap mergeHeap;
+    Object[]      mergeData;
+    int           mergePos = -1;
+    int           offset;
+
+    public RowSetNavigatorDataSort(Session session, QuerySpecification select,
+                                   RowSetNavigatorData navigator) {
+
+        super(session);
+
+        this.rangePosition = select.resultRangePosition;
+        visibleColumnCount = select.getColumnCount();
+        mainIndex          = select.orderIndex;
+        fullIndex          = select.fullIndex;
+        orderIndex         = select.orderIndex;
+        columnTypes        = select.resultTable.getColumnTypes();
+        maxMemoryRowCount  = session.getResultMemoryRowCount();
+        fileAccess         = FileUtil.getFileUtil();
+        filePath = session.database.logger.getTempDirectoryPath()
+                   + "/session_" + Long.toString(session.getId()) + "_sort_";
+        runTable = new Object[maxMemoryRowCount][];
+
+        navigator.reset();
+
+        while (navigator.next()) {
+            add(navigator.getCurrent());
+        }
+
+        navigator.release();
+    }
+
+    public void sortFull(Session session) {
+        throw Error.error(ErrorCode.X_0A000);
+    }
+
+    /**
+     * Sorts the rows collected in memory, which are used as the last run.
+     */
+    public void sortOrder(Session session) {
+
+        if (isSorted) {
+            reset();
+
+            return;
+        }
+
+        ArraySort.sort(runTable, 0, runSize, this);
+
+        isSorted = true;
+
+        reset();
+    }
+
+    public void sortOrderUnion(Session session, SortAndSlice sortAndSlice) {
+        throw Error.error(ErrorCode.X_0A000);
+    }
+
+    public void add(Object[] data) {
+
+        if (isSorted) {
+            throw Error.error(ErrorCode.X_24000);
+        }
+
+        if (runSize == runTable.length) {
+            writeRun();
+        }
+
+        runTable[runSize++] = data;
+
+        size++;
+    }
+
+    public void update(Object[] oldData, Object[] newData) {
+
+        // noop
+    }
+
+    public Object[] getCurrent() {
+
+        if (currentPos < 0 || currentPos >= size) {
+            return null;
+        }
+
+        return mergeData;
+    }
+
+    public Row getCurrentRow() {
+        throw Error.error(ErrorCode.X_24000);
+    }
+
+    public boolean next() {
+
+        if (!isSorted) {
+            return false;
+        }
+
+        boolean result = super.next();
+
+        if (result) {
+            seek(currentPos + offset);
+        }
+
+        return result;
+    }
+
+    public boolean absolute(int position) {
+
+        if (position < 0) {
+            position += size;
+        }
+
+        if (position < 0) {
+            beforeFirst();
+
+            return false;
+        }
+
+        if (position >= size) {
+            afterLast();
+
+            return false;
+        }
+
+        currentPos = position;
+
+        seek(position + offset);
+
+        return true;
+    }
+
+    public void removeCurrent() {
+        throw Error.error(ErrorCode.X_24000);
+    }
+
+    /**
+     * The merge position is kept so that navigation after a reset() that
+     * does not move back to an earlier row continues the same merge.
+     */
+    public void reset() {
+        currentPos = -1;
+    }
+
+    public void release() {
+
+        if (isClosed) {
+            return;
+        }
+
+        clear();
+
+        isClosed = true;
+    }
+
+    public void clear() {
+
+        closeRuns();
+
+        for (int i = 0; i < runFiles.size(); i++) {
+            fileAccess.removeElement((String) runFiles.get(i));
+        }
+
+        runFiles.clear();
+        runCounts.clear();
+
+        runTable = emptyTable;
+        runSize  = 0;
+        size     = 0;
+
+        reset();
+    }
+
+    public boolean isMemory() {
+        return false;
+    }
+
+    /**
+     * Reads the rows written by write(), which are already in order, and
+     * sorts them again into runs.
+     */
+    public void read(RowInputInterface in, ResultMetaData meta) {
+
+        id = in.readLong();
+
+        int count = in.readInt();
+
+        in.readInt();    // offset
+        in.readInt();
+
+        for (int i = 0; i < count; i++) {
+            Object[] rowData = in.readData(meta.columnTypes);
+            Object[] data    = new Object[columnTypes.length];
+
+            System.arraycopy(rowData, 0, data, 0,
+                             Math.min(rowData.length, data.length));
+            add(data);
+        }
+
+        sortOrder((Session) session);
+    }
+
+    public void write(RowOutputInterface out, ResultMetaData meta) {
+
+        reset();
+        out.writeLong(id);
+        out.writeInt(size);
+        out.writeInt(0);    // offset
+        out.writeInt(size);
+
+        while (next()) {
+            Object[] data = getCurrent();
+
+            out.writeData(meta.getExtendedColumnCount(), meta.columnTypes,
+                          data, null, null);
+        }
+
+        reset();
+    }
+
+    public void trim(int limitstart, int limitcount) {
+
+        if (limitstart >= size) {
+            clear();
+
+            return;
+        }
+
+        offset += limitstart;
+        size   -= limitstart;
+
+        if (limitcount < size) {
+            size = limitcount;
+        }
+
+        reset();
+    }
+
+    /**
+     * Sorts the rows in memory and writes them sequentially to a new file.
+     */
+    private void writeRun() {
+
+        String fileName = filePath + Long.toString(fileCount.getAndIncrement());
+        DataOutputStream dataOut = null;
+
+        ArraySort.sort(runTable, 0, runSize, this);
+
+        try {
+            dataOut = new DataOutputStream(
+                new BufferedOutputStream(
+                    fileAccess.openOutputStreamElement(fileName), 1 << 16));
+
+            runFiles.add(fileName);
+
+            for (int i = 0; i < runSize; i++) {
+                rowOut.reset();
+                rowOut.writeData(columnTypes.length, columnTypes,
+                                 runTable[i], null, null);
+                dataOut.writeInt(rowOut.size());
+                dataOut.write(rowOut.getBuffer(), 0, rowOut.size());
+
+                runTable[i] = null;
+            }
+
+            dataOut.close();
+
+            dataOut = null;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+        } finally {
+            if (dataOut != null) {
+                try {
+                    dataOut.close();
+                } catch (IOException e) {}
+            }
+        }
+
+        runCounts.add(Integer.valueOf(runSize));
+
+        runSize = 0;
+    }
+
+    /**
+     * Moves the merge to the row at the given position in the full result.
+     */
+    private void seek(int position) {
+
+        if (position < mergePos) {
+            closeRuns();
+        }
+
+        if (mergeHeap == null) {
+            openRuns();
+        }
+
+        while (mergePos < position) {
+            Run run = (Run) mergeHeap.remove();
+
+            mergeData = run.current;
+
+            mergePos++;
+
+            if (run.next()) {
+                mergeHeap.add(run);
+            }
+        }
+    }
+
+    private void openRuns() {
+
+        int count = runFiles.size();
+
+        runs      = new Run[count + 1];
+        mergeHeap = new HsqlArrayHeap(count + 1, new RunComparator());
+
+        for (int i = 0; i < count; i++) {
+            runs[i] = new Run(i, (String) runFiles.get(i),
+                              ((Integer) runCounts.get(i)).intValue());
+        }
+
+        runs[count] = new Run(count, null, runSize);
+
+        for (int i = 0; i < runs.length; i++) {
+            if (runs[i].next()) {
+                mergeHeap.add(runs[i]);
+            }
+        }
+
+        mergeData = null;
+        mergePos  = -1;
+    }
+
+    private void closeRuns() {
+
+        if (runs != null) {
+            for (int i = 0; i < runs.length; i++) {
+                if (runs[i] != null) {
+                    runs[i].close();
+                }
+            }
+        }
+
+        runs      = null;
+        mergeHeap = null;
+        mergeData = null;
+        mergePos  = -1;
+    }
+
+    /**
+     * A sorted run, read from its file or from the in-memory table.
+     */
+    class Run {
+
+        final int       number;
+        final String    fileName;
+        final int       rowCount;
+        int             rowPos;
+        DataInputStream dataIn;
+        RowInputBinary  rowIn;
+        Object[]        current;
+
+        Run(int number, String fileName, int rowCount) {
+
+            this.number   = number;
+            this.fileName = fileName;
+            this.rowCount = rowCount;
+
+            if (fileName == null) {
+                return;
+            }
+
+            try {
+                dataIn = new DataInputStream(
+                    new BufferedInputStream(
+                        fileAccess.openInputStreamElement(fileName), 1 << 16));
+                rowIn = new RowInputBinary(256);
+            } catch (IOException e) {
+                throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+            }
+        }
+
+        boolean next() {
+
+            if (rowPos == rowCount) {
+                current = null;
+
+                close();
+
+                return false;
+            }
+
+            if (fileName == null) {
+                current = runTable[rowPos++];
+
+                return true;
+            }
+
+            try {
+                int length = dataIn.readInt();
+
+                rowIn.resetBlock(0, length);
+                dataIn.readFully(rowIn.getBuffer(), 0, length);
+
+                current = rowIn.readData(columnTypes);
+
+                rowPos++;
+
+                return true;
+            } catch (IOException e) {
+                throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+            }
+        }
+
+        void close() {
+
+            if (dataIn != null) {
+                try {
+                    dataIn.close();
+                } catch (IOException e) {}
+
+                dataIn = null;
+            }
+        }
+    }
+
+    /**
+     * Orders runs by their current row, then by the order in which the
+     * runs were written.
+     */
+    class RunComparator implements Comparator<Run> {
+
+        public int compare(Run runA, Run runB) {
+
+            int compare = orderIndex.compareRow((Session) session,
+                                                runA.current, runB.current);
+
+            if (compare != 0) {
+                return compare;
+            }
+
+            return runA.number - runB.number;
+        }
+    }
+}
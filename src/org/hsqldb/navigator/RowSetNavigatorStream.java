@@ -0,0 +1,265 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.navigator;
+
+import org.hsqldb.Row;
+import org.hsqldb.SessionInterface;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.result.ResultMetaData;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowOutputInterface;
+
+/**
+ * Forward-only implementation of RowSetNavigator for a result that is
+ * produced row by row as it is read, instead of being built in full when
+ * the statement is executed. Used for read-only results of network
+ * sessions that are sent to the client in blocks.<p>
+ *
+ * One row is read ahead, therefore the size is the count of rows read so
+ * far, which includes the next row if there is one. The size is the total
+ * row count only after the last row has been read.<p>
+ *
+ * If the session needs to execute other statements before the result has
+ * been read, materialise() reads the remaining rows into memory.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public abstract class RowSetNavigatorStream extends RowSetNavigator {
+
+    Object[]      currentData;
+    Object[]      nextData;
+    boolean       isEnd;
+    HsqlArrayList rows;
+    int           rowIndex;
+
+    public RowSetNavigatorStream(SessionInterface session) {
+        this.session = session;
+    }
+
+    /**
+     * Returns the data for the next row, or null after the last row.
+     */
+    protected abstract Object[] readNextData();
+
+    /**
+     * Releases the iterators used for producing the rows.
+     */
+    protected abstract void releaseSource();
+
+    /**
+     * Reads the first row.
+     */
+    public void initialise() {
+        readNext();
+    }
+
+    /**
+     * Returns true when no row remains after the current row.
+     */
+    public boolean isFinished() {
+        return nextData == null;
+    }
+
+    /**
+     * Reads all the remaining rows into memory and releases the source.
+     */
+    public void materialise() {
+
+        if (isEnd) {
+            return;
+        }
+
+        rows     = new HsqlArrayList();
+        rowIndex = 0;
+
+        while (true) {
+            Object[] data = readNextData();
+
+            if (data == null) {
+                break;
+            }
+
+            rows.add(data);
+
+            size++;
+        }
+
+        isEnd = true;
+
+        releaseSource();
+    }
+
+    private void readNext() {
+
+        if (rows != null) {
+            if (rowIndex < rows.size()) {
+                nextData = (Object[]) rows.get(rowIndex);
+
+                rows.set(rowIndex, null);
+
+                rowIndex++;
+            } else {
+                nextData = null;
+            }
+
+            return;
+        }
+
+        if (isEnd) {
+            nextData = null;
+
+            return;
+        }
+
+        nextData = readNextData();
+
+        if (nextData == null) {
+            isEnd = true;
+
+            releaseSource();
+        } else {
+            size++;
+        }
+    }
+
+    /**
+     * Returns a block of rows starting at the given offset. Rows that the
+     * client has skipped are discarded.
+     */
+    public RowSetNavigatorClient getSlice(int offset, int count) {
+
+        if (offset <= currentPos) {
+            throw Error.runtimeError(ErrorCode.U_S0500,
+                                     "RowSetNavigatorStream");
+        }
+
+        while (currentPos + 1 < offset && next()) {}
+
+        RowSetNavigatorClient slice = new RowSetNavigatorClient(count);
+        int                   i     = 0;
+
+        for (; i < count && next(); i++) {
+            slice.table[i] = currentData;
+        }
+
+        slice.id            = id;
+        slice.size          = size;
+        slice.currentOffset = offset;
+        slice.baseBlockSize = i;
+
+        return slice;
+    }
+
+    public Object[] getCurrent() {
+        return currentData;
+    }
+
+    public Row getCurrentRow() {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public boolean next() {
+
+        if (nextData == null) {
+            currentData = null;
+
+            if (size != 0) {
+                currentPos = size;
+            }
+
+            hadNext = false;
+
+            return false;
+        }
+
+        currentData = nextData;
+
+        currentPos++;
+
+        hadNext = true;
+
+        readNext();
+
+        return true;
+    }
+
+    public void reset() {
+
+        if (currentPos != -1) {
+            throw Error.runtimeError(ErrorCode.U_S0500,
+                                     "RowSetNavigatorStream");
+        }
+    }
+
+    public void add(Object[] data) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public boolean addRow(Row row) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public void removeCurrent() {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public void clear() {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public void release() {
+
+        if (!isEnd) {
+            isEnd = true;
+
+            releaseSource();
+        }
+
+        rows        = null;
+        currentData = null;
+        nextData    = null;
+        isClosed    = true;
+    }
+
+    public void write(RowOutputInterface out, ResultMetaData meta) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+
+    public void read(RowInputInterface in, ResultMetaData meta) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "RowSetNavigatorStream");
+    }
+}
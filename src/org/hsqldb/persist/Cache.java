@@ -31,9 +31,12 @@
 
 package org.hsqldb.persist;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.ArraySort;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.ObjectComparator;
@@ -49,43 +52,63 @@ import org.hsqldb.map.BaseHashMap;
  * to DataFileCache.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.8.0
  */
 public class Cache extends BaseHashMap {
 
+    static final int      POLICY_LRU   = 0;
+    static final int      POLICY_2Q    = 1;
+    static final String[] POLICY_NAMES = {
+        "LRU", "2Q"
+    };
+
+    //
     private int                                reserveCount;
     final DataFileCache                        dataFileCache;
     private int                                capacity;         // number of Rows
     private long                               bytesCapacity;    // number of bytes
     private final CachedObjectComparator       rowComparator;
-    private final BaseHashMap.BaseHashIterator objectIterator;
-    private boolean                            updateAccess;
+    final BaseHashMap.BaseHashIterator         objectIterator;
+    boolean                                    updateAccess;
 
     //
     private CachedObject[] rowTable;
     private long           cacheBytesLength;
 
+    // statistics
+    final AtomicLong hitCount  = new AtomicLong();
+    final AtomicLong missCount = new AtomicLong();
+    long             evictionCount;
+
     // for testing
     StopWatch saveAllTimer = new StopWatch(false);
     StopWatch shadowTimer  = new StopWatch(false);
     int       saveRowCount = 0;
 
     Cache(DataFileCache dfc) {
+        this(dfc, dfc.capacity(), dfc.bytesCapacity());
+    }
 
-        super(dfc.capacity(), BaseHashMap.objectKeyOrValue,
+    /**
+     * Used for the segments of a SegmentedCache, each with a share of the
+     * capacity of the DataFileCache.
+     */
+    Cache(DataFileCache dfc, int capacity, long bytesCapacity) {
+
+        super(capacity, BaseHashMap.objectKeyOrValue,
               BaseHashMap.noKeyOrValue, true);
 
-        maxCapacity      = dfc.capacity();
-        dataFileCache    = dfc;
-        capacity         = dfc.capacity();
-        bytesCapacity    = dfc.bytesCapacity();
-        rowComparator    = new CachedObjectComparator();
-        rowTable         = new CachedObject[capacity];
-        cacheBytesLength = 0;
-        objectIterator   = new BaseHashIterator(true);
-        updateAccess     = true;
-        comparator       = rowComparator;
+        maxCapacity        = capacity;
+        dataFileCache      = dfc;
+        this.capacity      = capacity;
+        this.bytesCapacity = bytesCapacity;
+        rowComparator      = new CachedObjectComparator();
+        rowTable           = new CachedObject[capacity];
+        cacheBytesLength   = 0;
+        objectIterator     = new BaseHashIterator(true);
+        updateAccess       = true;
+        comparator         = rowComparator;
         reserveCount = dfc instanceof TextCache
                        || dfc instanceof DataFileCacheSession ? 0
                                                               : 8;
@@ -119,6 +142,76 @@ public class Cache extends BaseHashMap {
         return object;
     }
 
+    /**
+     * Returns a row if in memory cache and marks it to be kept in memory
+     * if keep is true.
+     */
+    CachedObject get(long pos, boolean keep) {
+
+        CachedObject object = get(pos);
+
+        if (object == null) {
+            missCount.incrementAndGet();
+
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+
+        if (keep) {
+            object.keepInMemory(true);
+        }
+
+        return object;
+    }
+
+    /**
+     * Records a read of a row that was found in memory without a lookup.
+     */
+    void access(CachedObject object) {
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * Returns a new Cache using the given replacement policy.
+     */
+    static Cache newCache(DataFileCache dfc, int capacity, long bytesCapacity,
+                          int policy) {
+
+        switch (policy) {
+
+            case POLICY_2Q :
+                return new Cache2Q(dfc, capacity, bytesCapacity);
+
+            default :
+                return new Cache(dfc, capacity, bytesCapacity);
+        }
+    }
+
+    String getPolicyName() {
+        return POLICY_NAMES[POLICY_LRU];
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns true if the cache is divided into segments that can be read
+     * without the DataFileCache lock.
+     */
+    boolean isSegmented() {
+        return false;
+    }
+
     /**
      * Adds a row to the cache.
      */
@@ -326,31 +419,47 @@ public class Cache extends BaseHashMap {
      * in the cache. This is ensured by prior calling keepInMemory().
      *
      */
-    private void cleanUp(boolean all) {
+    void cleanUp(boolean all) {
 
         updateAccessCounts();
 
-        int savecount    = 0;
         int removeCount  = size() / 2;
         int accessTarget = all ? accessCount + 1
                                : getAccessCountCeiling(removeCount,
                                    removeCount / 8);
-        int accessMid = all ? accessCount + 1
-                            : (accessMin + accessTarget) / 2;
+
+        cleanUpRows(accessTarget, accessTarget);
+
+        accessCount++;
+    }
+
+    /**
+     * Removes the rows that are not kept in memory and have an access count
+     * below the target for their queue, after saving changed rows. The
+     * protectedTarget applies to rows for which isProtected() is true.
+     */
+    final void cleanUpRows(int accessTarget, int protectedTarget) {
+
+        int savecount   = 0;
+        int accessFloor = accessTarget < protectedTarget ? accessTarget
+                                                         : protectedTarget;
 
         objectIterator.reset();
 
         for (; objectIterator.hasNext(); ) {
             CachedObject row = (CachedObject) objectIterator.next();
             int          currentAccessCount = objectIterator.getAccessCount();
-            boolean oldRow = currentAccessCount < accessTarget
+            int          target = isProtected(row) ? protectedTarget
+                                                   : accessTarget;
+            boolean oldRow = currentAccessCount < target
                              && !row.isKeepInMemory();
             boolean newRow = row.isNew()
                              && row.getStorageSize()
                                 >= DataFileCache.initIOBufferSize;
             boolean saveRow = row.hasChanged() && (oldRow || newRow);
 
-            objectIterator.setAccessCount(accessTarget);
+            objectIterator.setAccessCount(
+                getRemainingAccessCount(currentAccessCount, accessFloor));
 
             synchronized (row) {
                 if (saveRow) {
@@ -362,6 +471,8 @@ public class Cache extends BaseHashMap {
                     objectIterator.remove();
 
                     cacheBytesLength -= row.getStorageSize();
+
+                    evictionCount++;
                 }
             }
 
@@ -373,9 +484,23 @@ public class Cache extends BaseHashMap {
         }
 
         saveRows(savecount);
-        setAccessCountFloor(accessTarget);
+        setAccessCountFloor(accessFloor);
+    }
 
-        accessCount++;
+    /**
+     * Returns true if the row is in the protected queue of the replacement
+     * policy. All rows are in the same queue for LRU.
+     */
+    boolean isProtected(CachedObject row) {
+        return false;
+    }
+
+    /**
+     * Returns the access count of a row that remains in the cache after
+     * cleanUp(). With LRU all remaining rows are given the floor value.
+     */
+    int getRemainingAccessCount(int accessCount, int accessFloor) {
+        return accessFloor;
     }
 
     void clearUnchanged() {
@@ -391,6 +516,8 @@ public class Cache extends BaseHashMap {
                     objectIterator.remove();
 
                     cacheBytesLength -= row.getStorageSize();
+
+                    evictionCount++;
                 }
             }
         }
@@ -437,6 +564,22 @@ public class Cache extends BaseHashMap {
         saveRows(savecount);
     }
 
+    /**
+     * Adds the modified rows that are not kept in memory to the list.
+     */
+    void getChangedRows(HsqlArrayList list) {
+
+        objectIterator.reset();
+
+        for (; objectIterator.hasNext(); ) {
+            CachedObject r = (CachedObject) objectIterator.next();
+
+            if (r.hasChanged() && !r.isKeepInMemory()) {
+                list.add(r);
+            }
+        }
+    }
+
     void logSaveRowsEvent(int saveCount, long storageSize, long startTime) {
 
         long         time = saveAllTimer.elapsedTime();
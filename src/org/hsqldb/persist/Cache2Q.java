@@ -0,0 +1,201 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb.persist;
+
+import org.hsqldb.lib.ArrayCounter;
+
+/**
+ * Row cache with a simplified 2Q replacement policy.<p>
+ *
+ * A row that is added to the cache is in the probation queue. It is moved
+ * to the protected queue when it is accessed again after more than the
+ * correlation window of accesses to other rows since the row was added.
+ * Repeated accesses to a row while it is processed by one statement do not
+ * promote it. Rows read once by a large scan therefore stay in the
+ * probation queue and are removed first on clearup, while the rows that
+ * are accessed repeatedly are kept.<p>
+ *
+ * The access count field of each row holds the value of the access clock
+ * when the row was added, or PROTECTED. The clock counts all accesses,
+ * including those to rows that are found in memory without a lookup.<p>
+ *
+ * Clearup removes the least recently used rows of the protected queue
+ * while it holds more than three quarters of the cache, then the least
+ * recently used rows of the probation queue. There is no queue of the
+ * positions of removed rows as in the full 2Q algorithm.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class Cache2Q extends Cache {
+
+    static final int PROTECTED        = -1;
+    static final int minimumWindow    = 64;
+    static final int protectedDivisor = 4;
+
+    //
+    private final int correlationWindow;
+    private int       accessClock;
+
+    Cache2Q(DataFileCache dfc, int capacity, long bytesCapacity) {
+
+        super(dfc, capacity, bytesCapacity);
+
+        correlationWindow = Math.max(capacity / 16, minimumWindow);
+        updateAccess      = false;
+    }
+
+    String getPolicyName() {
+        return POLICY_NAMES[POLICY_2Q];
+    }
+
+    public CachedObject get(long pos) {
+
+        CachedObject object = super.get(pos);
+
+        if (object != null) {
+            promote(object);
+        }
+
+        return object;
+    }
+
+    void access(CachedObject object) {
+
+        super.access(object);
+        promote(object);
+    }
+
+    private void promote(CachedObject object) {
+
+        int added = object.getAccessCount();
+        int clock = (accessClock + 1) & Integer.MAX_VALUE;
+
+        accessClock = clock;
+
+        if (added == PROTECTED) {
+            return;
+        }
+
+        if (((clock - added) & Integer.MAX_VALUE) > correlationWindow) {
+            object.updateAccessCount(PROTECTED);
+        }
+    }
+
+    void put(CachedObject row) {
+
+        super.put(row);
+        row.updateAccessCount(accessClock);
+    }
+
+    void putUsingReserve(CachedObject row) {
+
+        super.putUsingReserve(row);
+        row.updateAccessCount(accessClock);
+    }
+
+    boolean isProtected(CachedObject row) {
+        return row.getAccessCount() == PROTECTED;
+    }
+
+    int getRemainingAccessCount(int accessCount, int accessFloor) {
+        return accessCount < accessFloor ? accessFloor
+                                         : accessCount;
+    }
+
+    /**
+     * Removes half the rows. Rows are taken from the protected queue while
+     * it holds more than three quarters of the cache, or if there are not
+     * enough rows in the probation queue. All unchanged rows are removed if
+     * all is true.
+     */
+    void cleanUp(boolean all) {
+
+        if (all) {
+            super.cleanUp(true);
+
+            return;
+        }
+
+        int   size            = size();
+        int   removeCount     = size / 2;
+        int[] probationCounts = new int[size];
+        int[] protectedCounts = new int[size];
+        int   probationSize   = 0;
+        int   protectedSize   = 0;
+
+        objectIterator.reset();
+
+        for (; objectIterator.hasNext(); ) {
+            CachedObject row   = (CachedObject) objectIterator.next();
+            int          count = objectIterator.getAccessCount();
+
+            if (isProtected(row)) {
+                protectedCounts[protectedSize++] = count;
+            } else {
+                probationCounts[probationSize++] = count;
+            }
+        }
+
+        int fromProtected = protectedSize - (size - size / protectedDivisor);
+
+        if (fromProtected < 0) {
+            fromProtected = 0;
+        } else if (fromProtected > removeCount) {
+            fromProtected = removeCount;
+        }
+
+        int fromProbation = Math.min(removeCount - fromProtected,
+                                     probationSize);
+
+        fromProtected = Math.min(removeCount - fromProbation, protectedSize);
+
+        int probationTarget = getQueueTarget(probationCounts, probationSize,
+                                             fromProbation);
+        int protectedTarget = getQueueTarget(protectedCounts, protectedSize,
+                                             fromProtected);
+
+        cleanUpRows(probationTarget, protectedTarget);
+
+        accessCount++;
+    }
+
+    private int getQueueTarget(int[] counts, int elements, int removeCount) {
+
+        if (removeCount == 0) {
+            return accessMin;
+        }
+
+        return ArrayCounter.rank(counts, elements, removeCount, accessMin,
+                                 accessCount, removeCount / 8);
+    }
+}
@@ -40,9 +40,11 @@ import org.hsqldb.Database;
 import org.hsqldb.HsqlException;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileArchiver;
 import org.hsqldb.lib.FileUtil;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.map.BitMap;
@@ -63,7 +65,7 @@ import org.hsqldb.Session;
  * Rewritten for 1.8.0 and 2.x
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.7.2
  */
 public class DataFileCache {
@@ -89,6 +91,7 @@ public class DataFileCache {
     public DataSpaceManager  spaceManager;
     static final int         initIOBufferSize = 4096;
     private static final int diskBlockSize    = 4096;
+    static final int         saveBatchSize    = 1024;
 
     //
     protected String   dataFileName;
@@ -132,6 +135,8 @@ public class DataFileCache {
     protected volatile long         fileFreePosition;
     protected int                   maxCacheRows;     // number of Rows
     protected long                  maxCacheBytes;    // number of bytes
+    protected int                   cacheSegments = 1;
+    protected int                   cachePolicy   = Cache.POLICY_LRU;
     protected Cache                 cache;
 
     //
@@ -146,7 +151,12 @@ public class DataFileCache {
 
         initParams(db, baseFileName, false);
 
-        cache = new Cache(this);
+        if (cacheSegments > 1) {
+            cache = new SegmentedCache(this, cacheSegments, cachePolicy);
+        } else {
+            cache = Cache.newCache(this, maxCacheRows, maxCacheBytes,
+                                   cachePolicy);
+        }
     }
 
     /**
@@ -207,6 +217,9 @@ public class DataFileCache {
         cacheReadonly = database.isFilesReadOnly();
         maxCacheRows  = database.logger.getCacheMaxRows();
         maxCacheBytes = database.logger.getCacheSize();
+        cacheSegments = SegmentedCache.getSegmentCount(
+            database.logger.getCacheSegments(), maxCacheRows);
+        cachePolicy = database.logger.getCachePolicy();
         maxDataFileSize = (long) Integer.MAX_VALUE * dataFileScale
                           * database.logger.getDataFileFactor();
 
@@ -215,6 +228,8 @@ public class DataFileCache {
             this.backupFileName = backupFileName + Logger.newFileExtension;
             this.maxCacheRows   = 1024;
             this.maxCacheBytes  = 1024 * 4096;
+            this.cacheSegments  = 1;
+            this.cachePolicy    = Cache.POLICY_LRU;
         }
     }
 
@@ -925,12 +940,30 @@ public class DataFileCache {
     public CachedObject get(CachedObject object, PersistentStore store,
                             boolean keep) {
 
-        readLock.lock();
-
         long pos;
 
+        if (cache.isSegmented()) {
+            pos = object.getPos();
+
+            if (pos < 0) {
+                return null;
+            }
+
+            object = cache.get(pos, keep);
+
+            if (object != null) {
+                return object;
+            }
+
+            return getFromFile(pos, store, keep);
+        }
+
+        readLock.lock();
+
         try {
             if (object.isInMemory()) {
+                cache.access(object);
+
                 if (keep) {
                     object.keepInMemory(true);
                 }
@@ -944,13 +977,9 @@ public class DataFileCache {
                 return null;
             }
 
-            object = cache.get(pos);
+            object = cache.get(pos, keep);
 
             if (object != null) {
-                if (keep) {
-                    object.keepInMemory(true);
-                }
-
                 return object;
             }
         } finally {
@@ -969,20 +998,10 @@ public class DataFileCache {
             return null;
         }
 
-        readLock.lock();
-
-        try {
-            object = cache.get(pos);
-
-            if (object != null) {
-                if (keep) {
-                    object.keepInMemory(true);
-                }
+        object = getCached(pos, keep);
 
-                return object;
-            }
-        } finally {
-            readLock.unlock();
+        if (object != null) {
+            return object;
         }
 
         return getFromFile(pos, size, store, keep);
@@ -996,23 +1015,32 @@ public class DataFileCache {
             return null;
         }
 
-        readLock.lock();
+        object = getCached(pos, keep);
 
-        try {
-            object = cache.get(pos);
+        if (object != null) {
+            return object;
+        }
 
-            if (object != null) {
-                if (keep) {
-                    object.keepInMemory(true);
-                }
+        return getFromFile(pos, store, keep);
+    }
 
-                return object;
-            }
+    /**
+     * Returns the object if it is in the cache. A segmented cache is
+     * accessed without the read lock.
+     */
+    private CachedObject getCached(long pos, boolean keep) {
+
+        if (cache.isSegmented()) {
+            return cache.get(pos, keep);
+        }
+
+        readLock.lock();
+
+        try {
+            return cache.get(pos, keep);
         } finally {
             readLock.unlock();
         }
-
-        return getFromFile(pos, store, keep);
     }
 
     private CachedObject getFromFile(long pos, PersistentStore store,
@@ -1246,6 +1274,81 @@ public class DataFileCache {
         }
     }
 
+    /**
+     * Writes the modified rows that are not in use in the order of their
+     * file position. The write lock is held only while each batch of rows
+     * is written and sessions can use the cache between the batches. Used
+     * before an automatic checkpoint, so that few rows remain to be written
+     * while the checkpoint blocks all sessions. Returns the number of rows
+     * written.
+     */
+    public int saveChangedRows() {
+
+        HsqlArrayList         list = new HsqlArrayList();
+        RandomAccessInterface file;
+
+        writeLock.lock();
+
+        try {
+            if (cacheReadonly || dataFile == null) {
+                return 0;
+            }
+
+            file = dataFile;
+
+            cache.getChangedRows(list);
+        } finally {
+            writeLock.unlock();
+        }
+
+        CachedObject[] rows = new CachedObject[list.size()];
+
+        list.toArray(rows);
+        ArraySort.sort(rows, 0, rows.length,
+                       new Cache.CachedObjectComparator());
+
+        int saveCount = 0;
+
+        for (int i = 0; i < rows.length; i += saveBatchSize) {
+            int limit = Math.min(i + saveBatchSize, rows.length);
+            int count = 0;
+
+            writeLock.lock();
+
+            try {
+
+                // the file has been closed or reopened by another checkpoint
+                if (dataFile != file) {
+                    break;
+                }
+
+                for (int j = i; j < limit; j++) {
+                    CachedObject row = rows[j];
+
+                    synchronized (row) {
+                        if (row.isInMemory() && row.hasChanged()
+                                && !row.isKeepInMemory()) {
+                            rows[i + count++] = row;
+                        }
+                    }
+                }
+
+                if (count > 0) {
+                    setFileModified();
+                    saveRows(rows, i, count);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            saveCount += count;
+
+            Thread.yield();
+        }
+
+        return saveCount;
+    }
+
     protected void saveRows(CachedObject[] rows, int offset, int count) {
 
         if (count == 0) {
@@ -1555,6 +1658,31 @@ public class DataFileCache {
         return maxCacheBytes;
     }
 
+    public String getCachePolicyName() {
+        return cache.getPolicyName();
+    }
+
+    /**
+     * Returns the number of reads of rows that were found in the cache.
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Returns the number of reads of rows that were not in the cache.
+     */
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * Returns the number of rows removed from the cache to make space.
+     */
+    public long getCacheEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
     public long getTotalCachedBlockSize() {
         return cache.getTotalCachedBlockSize();
     }
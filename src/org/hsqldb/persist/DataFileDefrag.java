@@ -37,6 +37,8 @@ import org.hsqldb.Table;
 import org.hsqldb.TableBase;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexBTree;
 import org.hsqldb.lib.DoubleIntIndex;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.StopWatch;
@@ -190,6 +192,15 @@ final class DataFileDefrag {
                 continue;
             }
 
+            Index index = table.getIndex(i);
+
+            if (index.getStructureType() == Index.STRUCTURE_BTREE) {
+                rootsArray[i] = ((IndexBTree) index).writeToDataFile(store,
+                        dataFileOut, pointerLookup);
+
+                continue;
+            }
+
             long pos = pointerLookup.lookup(rootsArray[i], -1);
 
             if (pos == -1) {
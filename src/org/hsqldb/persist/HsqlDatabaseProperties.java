@@ -189,6 +189,7 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String url_get_column_name   = "get_column_name";
     public static final String url_close_result      = "close_result";
     public static final String url_allow_empty_batch = "allow_empty_batch";
+    public static final String url_stream_result     = "stream_result";
 
     //
     public static final String url_storage_class_name = "storage_class_name";
@@ -198,6 +199,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String url_shutdown    = "shutdown";
     public static final String url_recover     = "recover";
     public static final String url_tls_wrapper = "tls_wrapper";
+    public static final String url_network_compression =
+        "network_compression";
 
     //
     public static final String url_crypt_key      = "crypt_key";
@@ -221,6 +224,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.cache_free_count";
     public static final String hsqldb_cache_rows = "hsqldb.cache_rows";
     public static final String hsqldb_cache_size = "hsqldb.cache_size";
+    public static final String hsqldb_cache_segments =
+        "hsqldb.cache_segments";
+    public static final String hsqldb_cache_policy = "hsqldb.cache_policy";
     public static final String hsqldb_default_table_type =
         "hsqldb.default_table_type";
     public static final String hsqldb_defrag_limit   = "hsqldb.defrag_limit";
@@ -231,15 +237,29 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String hsqldb_nio_data_file  = "hsqldb.nio_data_file";
     public static final String hsqldb_nio_max_size   = "hsqldb.nio_max_size";
     public static final String hsqldb_script_format  = "hsqldb.script_format";
+    public static final String hsqldb_log_format     = "hsqldb.log_format";
     public static final String hsqldb_temp_directory = "hsqldb.temp_directory";
     public static final String hsqldb_result_max_memory_rows =
         "hsqldb.result_max_memory_rows";
     public static final String hsqldb_write_delay = "hsqldb.write_delay";
     public static final String hsqldb_write_delay_millis =
         "hsqldb.write_delay_millis";
+    public static final String hsqldb_group_commit_wait =
+        "hsqldb.group_commit_wait";
     public static final String hsqldb_full_log_replay =
         "hsqldb.full_log_replay";
+    public static final String hsqldb_log_replay_threads =
+        "hsqldb.log_replay_threads";
+    public static final String hsqldb_script_load_threads =
+        "hsqldb.script_load_threads";
+    public static final String hsqldb_text_load_threads =
+        "hsqldb.text_load_threads";
     public static final String hsqldb_large_data  = "hsqldb.large_data";
+    public static final String hsqldb_packed_rows = "hsqldb.packed_rows";
+    public static final String hsqldb_compile_threshold =
+        "hsqldb.compile_threshold";
+    public static final String hsqldb_vector_filter =
+        "hsqldb.vector_filter";
     public static final String hsqldb_files_space = "hsqldb.files_space";
     public static final String hsqldb_digest      = "hsqldb.digest";
 
@@ -366,6 +386,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_default_table_type,
                    HsqlProperties.getMeta(hsqldb_default_table_type,
                                           SQL_PROPERTY, "MEMORY"));
+        dbMeta.put(hsqldb_cache_policy,
+                   HsqlProperties.getMeta(hsqldb_cache_policy, SQL_PROPERTY,
+                                          "LRU"));
         dbMeta.put(hsqldb_digest,
                    HsqlProperties.getMeta(hsqldb_digest, SQL_PROPERTY, "MD5"));
         dbMeta.put(sql_live_object,
@@ -479,6 +502,16 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_large_data,
                    HsqlProperties.getMeta(hsqldb_large_data, SQL_PROPERTY,
                                           false));
+        dbMeta.put(hsqldb_packed_rows,
+                   HsqlProperties.getMeta(hsqldb_packed_rows, SQL_PROPERTY,
+                                          false));
+        dbMeta.put(hsqldb_vector_filter,
+                   HsqlProperties.getMeta(hsqldb_vector_filter, SQL_PROPERTY,
+                                          false));
+        dbMeta.put(hsqldb_compile_threshold,
+                   HsqlProperties.getMeta(hsqldb_compile_threshold,
+                                          SQL_PROPERTY, 0, 0,
+                                          Integer.MAX_VALUE));
         dbMeta.put(hsqldb_files_space,
                    HsqlProperties.getMeta(hsqldb_files_space, SQL_PROPERTY, 0,
                                           new int[] {
@@ -489,6 +522,18 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_write_delay_millis,
                    HsqlProperties.getMeta(hsqldb_write_delay_millis,
                                           SQL_PROPERTY, 500, 0, 10000));
+        dbMeta.put(hsqldb_group_commit_wait,
+                   HsqlProperties.getMeta(hsqldb_group_commit_wait,
+                                          SQL_PROPERTY, 0, 0, 100000));
+        dbMeta.put(hsqldb_log_replay_threads,
+                   HsqlProperties.getMeta(hsqldb_log_replay_threads,
+                                          SQL_PROPERTY, 0, 0, 64));
+        dbMeta.put(hsqldb_script_load_threads,
+                   HsqlProperties.getMeta(hsqldb_script_load_threads,
+                                          SQL_PROPERTY, 0, 0, 64));
+        dbMeta.put(hsqldb_text_load_threads,
+                   HsqlProperties.getMeta(hsqldb_text_load_threads,
+                                          SQL_PROPERTY, 0, 0, 64));
         dbMeta.put(hsqldb_applog,
                    HsqlProperties.getMeta(hsqldb_applog, SQL_PROPERTY, 0, 0,
                                           3));
@@ -500,11 +545,21 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                                           0, new int[] {
             0, 1, 3
         }));
+        dbMeta.put(hsqldb_log_format,
+                   HsqlProperties.getMeta(hsqldb_log_format, SQL_PROPERTY, 0,
+                                          new int[] {
+            0, 1
+        }));
         dbMeta.put(hsqldb_lob_file_scale,
                    HsqlProperties.getMeta(hsqldb_lob_file_scale, SQL_PROPERTY,
                                           32, new int[] {
             1, 2, 4, 8, 16, 32
         }));
+        dbMeta.put(hsqldb_cache_segments,
+                   HsqlProperties.getMeta(hsqldb_cache_segments, SQL_PROPERTY,
+                                          1, new int[] {
+            1, 2, 4, 8, 16, 32, 64
+        }));
         dbMeta.put(hsqldb_lob_file_compressed,
                    HsqlProperties.getMeta(hsqldb_lob_file_compressed,
                                           SQL_PROPERTY, false));
@@ -49,6 +49,7 @@ import org.hsqldb.scriptio.ScriptReaderBase;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.scriptio.ScriptWriterBase;
+import org.hsqldb.scriptio.ScriptWriterBinaryLog;
 import org.hsqldb.scriptio.ScriptWriterEncode;
 import org.hsqldb.scriptio.ScriptWriterText;
 
@@ -79,12 +80,13 @@ public class Log {
     private String                 baseFileName;
     private Database               database;
     private FileAccess             fa;
-    ScriptWriterBase               dbLogWriter;
+    volatile ScriptWriterBase      dbLogWriter;
     private String                 scriptFileName;
     private String                 logFileName;
     private boolean                filesReadOnly;
     private long                   maxLogSize;
     private int                    writeDelay;
+    private int                    groupCommitWait;
     private DataFileCache          cache;
     private boolean                isModified;
 
@@ -98,11 +100,12 @@ public class Log {
 
     void initParams() {
 
-        maxLogSize     = database.logger.getLogSize() * 1024L * 1024;
-        writeDelay     = database.logger.getWriteDelay();
-        filesReadOnly  = database.isFilesReadOnly();
-        scriptFileName = baseFileName + Logger.scriptFileExtension;
-        logFileName    = baseFileName + Logger.logFileExtension;
+        maxLogSize      = database.logger.getLogSize() * 1024L * 1024;
+        writeDelay      = database.logger.getWriteDelay();
+        groupCommitWait = database.logger.getGroupCommitWait();
+        filesReadOnly   = database.isFilesReadOnly();
+        scriptFileName  = baseFileName + Logger.scriptFileExtension;
+        logFileName     = baseFileName + Logger.logFileExtension;
     }
 
     /**
@@ -631,7 +634,11 @@ public class Log {
         setModified();
     }
 
-    void writeCommitStatement(Session session) {
+    /**
+     * Returns the position the session must wait for with syncCommit(),
+     * or 0 if the commit has already been synced or no sync is required.
+     */
+    long writeCommitStatement(Session session) {
 
         try {
             dbLogWriter.writeCommitStatement(session);
@@ -644,6 +651,18 @@ public class Log {
         }
 
         setModified();
+
+        return dbLogWriter.isGroupCommit() ? dbLogWriter.getWritePosition()
+                                           : 0;
+    }
+
+    void syncCommit(long position) {
+
+        ScriptWriterBase writer = dbLogWriter;
+
+        if (writer != null) {
+            writer.syncTo(position);
+        }
     }
 
     private void setModified() {
@@ -676,15 +695,19 @@ public class Log {
         Crypto crypto = database.logger.getCrypto();
 
         try {
-            if (crypto == null) {
-                dbLogWriter = new ScriptWriterText(database, logFileName,
-                                                   false, false, false);
-            } else {
+            if (crypto != null) {
                 dbLogWriter = new ScriptWriterEncode(database, logFileName,
                                                      crypto);
+            } else if (database.logger.propLogFormat == 1) {
+                dbLogWriter = new ScriptWriterBinaryLog(database,
+                                                        logFileName);
+            } else {
+                dbLogWriter = new ScriptWriterText(database, logFileName,
+                                                   false, false, false);
             }
 
             dbLogWriter.setWriteDelay(writeDelay);
+            dbLogWriter.setGroupCommitWait(groupCommitWait);
             dbLogWriter.start();
 
             isModified = false;
@@ -38,6 +38,7 @@ import java.lang.reflect.Constructor;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.hsqldb.Database;
 import org.hsqldb.DatabaseType;
@@ -60,6 +61,8 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVL;
 import org.hsqldb.index.IndexAVLMemory;
+import org.hsqldb.index.IndexBTree;
+import org.hsqldb.index.IndexHashMemory;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileUtil;
@@ -88,7 +91,7 @@ import org.hsqldb.types.Type;
  *  storage.<p>
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 1.7.0
  */
 public class Logger implements EventLogInterface {
@@ -103,8 +106,15 @@ public class Logger implements EventLogInterface {
     //
     private Database database;
     private boolean  logsStatements;    // false indicates Log is being opened
-    private boolean  loggingEnabled;
-    private boolean  syncFile = false;
+    private volatile boolean loggingEnabled;
+    private boolean          syncFile = false;
+
+    /**
+     * Shared by sessions writing to the log, exclusive for operations that
+     * close or reopen the log.
+     */
+    private final ReentrantReadWriteLock logLock =
+        new ReentrantReadWriteLock();
 
     //
     private boolean propIsFileDatabase;
@@ -115,11 +125,17 @@ public class Logger implements EventLogInterface {
     int             propMinReuse      = 0;
     private int     propCacheMaxRows;
     private long    propCacheMaxSize;
+    private int     propCacheSegments;
+    private int     propCachePolicy;
     int             propCacheDefragLimit;
     private int     propDataFileScale;
     String          propTextSourceDefault = "";
     boolean         propTextAllowFullPath;
     private int     propWriteDelay;
+    private int     propGroupCommitWait;
+    private int     propLogReplayThreads;
+    private int     propScriptLoadThreads;
+    private int     propTextLoadThreads;
     private int     propLogSize;
     private boolean propLogData = true;
     private int     propEventLogLevel;
@@ -130,7 +146,11 @@ public class Logger implements EventLogInterface {
     int             propLobBlockSize = 32 * 1024;
     boolean         propCompressLobs;
     int             propScriptFormat = 0;
+    int             propLogFormat    = 0;
     boolean         propLargeData;
+    boolean         propPackedRows;
+    private boolean propVectorFilter;
+    private int     propCompileThreshold;
     int             propFileSpaceValue;
     long            propFileTimestamp;
 
@@ -459,6 +479,8 @@ public class Logger implements EventLogInterface {
 
         propScriptFormat = database.databaseProperties.getIntegerProperty(
             HsqlDatabaseProperties.hsqldb_script_format);
+        propLogFormat = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_log_format);
 
         boolean version18 = database.databaseProperties.isVersion18();
 
@@ -471,6 +493,31 @@ public class Logger implements EventLogInterface {
             propLargeData = true;
         }
 
+        propPackedRows = database.urlProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_packed_rows, false);
+        propVectorFilter = database.urlProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_vector_filter, false);
+        propCompileThreshold = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_compile_threshold, 0);
+
+        if (propCompileThreshold < 0) {
+            propCompileThreshold = 0;
+        }
+
+        propScriptLoadThreads = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_script_load_threads, 0);
+
+        if (propScriptLoadThreads < 0) {
+            propScriptLoadThreads = 0;
+        }
+
+        propTextLoadThreads = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_text_load_threads, 0);
+
+        if (propTextLoadThreads < 0) {
+            propTextLoadThreads = 0;
+        }
+
         if (!database.databaseProperties.isPropertyTrue(
                 HsqlDatabaseProperties.sql_pad_space, true)) {
             database.collation.setPadding(false);
@@ -628,6 +675,18 @@ public class Logger implements EventLogInterface {
         propCacheMaxSize =
             database.databaseProperties.getIntegerProperty(
                 HsqlDatabaseProperties.hsqldb_cache_size) * 1024L;
+        propCacheSegments = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_segments);
+
+        String cachePolicy = database.databaseProperties.getStringProperty(
+            HsqlDatabaseProperties.hsqldb_cache_policy);
+
+        if (Cache.POLICY_NAMES[Cache.POLICY_2Q].equalsIgnoreCase(
+                cachePolicy)) {
+            propCachePolicy = Cache.POLICY_2Q;
+        } else {
+            propCachePolicy = Cache.POLICY_LRU;
+        }
 
         setLobFileScaleNoCheck(
             database.databaseProperties.getIntegerProperty(
@@ -657,6 +716,12 @@ public class Logger implements EventLogInterface {
             propWriteDelay = 0;
         }
 
+        propGroupCommitWait = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_group_commit_wait);
+        propLogReplayThreads =
+            database.databaseProperties.getIntegerProperty(
+                HsqlDatabaseProperties.hsqldb_log_replay_threads);
+
         propLogSize = database.databaseProperties.getIntegerProperty(
             HsqlDatabaseProperties.hsqldb_log_size);
         propLogData = database.databaseProperties.isPropertyTrue(
@@ -965,56 +1030,100 @@ public class Logger implements EventLogInterface {
 
     /**
      * Records a Log entry for the specified SQL statement, on behalf of
-     * the specified Session object.
+     * the specified Session object.<p>
+     *
+     * The writeXXX() methods are not synchronized. Sessions format their
+     * records concurrently and only the append to the file is serialized.
      */
-    public synchronized void writeOtherStatement(Session session,
-            String statement) {
+    public void writeOtherStatement(Session session, String statement) {
 
-        if (loggingEnabled) {
-            log.writeOtherStatement(session, statement);
+        logLock.readLock().lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeOtherStatement(session, statement);
+            }
+        } finally {
+            logLock.readLock().unlock();
         }
     }
 
     /**
      * Used exclusively by PersistentStore objects
      */
-    public synchronized void writeInsertStatement(Session session, Row row,
-            Table table) {
+    public void writeInsertStatement(Session session, Row row, Table table) {
 
-        if (loggingEnabled) {
-            log.writeInsertStatement(session, row, table);
+        logLock.readLock().lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeInsertStatement(session, row, table);
+            }
+        } finally {
+            logLock.readLock().unlock();
         }
     }
 
     /**
      * Used exclusively by PersistentStore objects
      */
-    public synchronized void writeDeleteStatement(Session session, Table t,
-            Object[] row) {
+    public void writeDeleteStatement(Session session, Table t, Object[] row) {
 
-        if (loggingEnabled) {
-            log.writeDeleteStatement(session, t, row);
+        logLock.readLock().lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeDeleteStatement(session, t, row);
+            }
+        } finally {
+            logLock.readLock().unlock();
         }
     }
 
     /**
      * Used at transaction commit
      */
-    public synchronized void writeSequenceStatement(Session session,
-            NumberSequence s) {
+    public void writeSequenceStatement(Session session, NumberSequence s) {
 
-        if (loggingEnabled) {
-            log.writeSequenceStatement(session, s);
+        logLock.readLock().lock();
+
+        try {
+            if (loggingEnabled) {
+                log.writeSequenceStatement(session, s);
+            }
+        } finally {
+            logLock.readLock().unlock();
         }
     }
 
     /**
      * Used at transaction commit
      */
-    public synchronized void writeCommitStatement(Session session) {
+    public long writeCommitStatement(Session session) {
 
-        if (loggingEnabled) {
-            log.writeCommitStatement(session);
+        logLock.readLock().lock();
+
+        try {
+            if (loggingEnabled) {
+                return log.writeCommitStatement(session);
+            }
+        } finally {
+            logLock.readLock().unlock();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Used after transaction commit with group commit. Not synchronized, so
+     * that other sessions can write to the log while the log is synced.
+     */
+    public void syncCommit(long position) {
+
+        Log currentLog = log;
+
+        if (currentLog != null) {
+            currentLog.syncCommit(position);
         }
     }
 
@@ -1049,10 +1158,16 @@ public class Logger implements EventLogInterface {
 
         try {
             synchronized (this) {
-                checkpointInternal(session, defrag);
+                logLock.writeLock().lock();
 
-                if (lobs) {
-                    database.lobManager.deleteUnusedLobs();
+                try {
+                    checkpointInternal(session, defrag);
+
+                    if (lobs) {
+                        database.lobManager.deleteUnusedLobs();
+                    }
+                } finally {
+                    logLock.writeLock().unlock();
                 }
             }
         } finally {
@@ -1062,6 +1177,22 @@ public class Logger implements EventLogInterface {
         }
     }
 
+    /**
+     * Writes the modified rows of CACHED tables to the .data file before an
+     * automatic checkpoint. Other sessions continue while the rows are
+     * written, which reduces the time for which the checkpoint blocks them.
+     */
+    public void saveChangedRows() {
+
+        if (!logsStatements || !hasCache()) {
+            return;
+        }
+
+        int count = getCache().saveChangedRows();
+
+        logInfoEvent("Checkpoint rows saved before start: " + count);
+    }
+
     private void checkpointInternal(Session session, boolean defrag) {
 
         if (logsStatements) {
@@ -1147,6 +1278,30 @@ public class Logger implements EventLogInterface {
         return propWriteDelay;
     }
 
+    public int getGroupCommitWait() {
+        return propGroupCommitWait;
+    }
+
+    public int getLogReplayThreads() {
+        return propLogReplayThreads;
+    }
+
+    public int getScriptLoadThreads() {
+        return propScriptLoadThreads;
+    }
+
+    public int getTextLoadThreads() {
+        return propTextLoadThreads;
+    }
+
+    public int getCompileThreshold() {
+        return propCompileThreshold;
+    }
+
+    public boolean isVectorFilter() {
+        return propVectorFilter;
+    }
+
     public int getLogSize() {
         return propLogSize;
     }
@@ -1189,6 +1344,14 @@ public class Logger implements EventLogInterface {
         return propCacheMaxSize;
     }
 
+    public int getCacheSegments() {
+        return propCacheSegments;
+    }
+
+    public int getCachePolicy() {
+        return propCachePolicy;
+    }
+
     public void setCacheMinReuseSize(int value) {
         this.propMinReuse = ArrayUtil.getTwoPowerFloor(value);
     }
@@ -1446,6 +1609,9 @@ public class Logger implements EventLogInterface {
             case TableBase.SYSTEM_TABLE :
                 return new RowStoreAVLMemory((Table) table);
 
+            case TableBase.COLUMNAR_TABLE :
+                return new RowStoreColumnar((Table) table);
+
             case TableBase.TEXT_TABLE :
                 return new RowStoreAVLDiskData((Table) table);
 
@@ -1478,17 +1644,52 @@ public class Logger implements EventLogInterface {
                           boolean[] nullsLast, Type[] colTypes, boolean pk,
                           boolean unique, boolean constraint,
                           boolean forward) {
+        return newIndex(name, id, table, columns, descending, nullsLast,
+                        colTypes, pk, unique, constraint, forward,
+                        Index.STRUCTURE_AVL);
+    }
+
+    /**
+     * A B+tree index is created only for CACHED tables in a non-encrypted
+     * .data file with index columns of bounded size. A hash index is created
+     * only for MEMORY tables with index columns of supported types. An AVL
+     * index is created otherwise.
+     */
+    public Index newIndex(HsqlName name, long id, TableBase table,
+                          int[] columns, boolean[] descending,
+                          boolean[] nullsLast, Type[] colTypes, boolean pk,
+                          boolean unique, boolean constraint,
+                          boolean forward, int structure) {
 
         switch (table.getTableType()) {
 
+            case TableBase.MEMORY_TABLE :
+            case TableBase.COLUMNAR_TABLE :
+                if (structure == Index.STRUCTURE_HASH
+                        && IndexHashMemory.isSupported(colTypes)) {
+                    return new IndexHashMemory(name, id, table, columns,
+                                               descending, nullsLast,
+                                               colTypes, pk, unique,
+                                               constraint, forward);
+                }
+
+            // fall through
             case TableBase.INFO_SCHEMA_TABLE :
             case TableBase.SYSTEM_TABLE :
-            case TableBase.MEMORY_TABLE :
                 return new IndexAVLMemory(name, id, table, columns,
                                           descending, nullsLast, colTypes, pk,
                                           unique, constraint, forward);
 
             case TableBase.CACHED_TABLE :
+                if (structure == Index.STRUCTURE_BTREE && getCrypto() == null
+                        && IndexBTree.isSupported(colTypes, descending,
+                                                  nullsLast)) {
+                    return new IndexBTree(name, id, table, columns,
+                                          descending, nullsLast, colTypes,
+                                          pk, unique, constraint, forward);
+                }
+
+            // fall through
             case TableBase.CHANGE_SET_TABLE :
             case TableBase.FUNCTION_TABLE :
             case TableBase.TEXT_TABLE :
@@ -1576,6 +1777,14 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propCacheMaxSize / 1024);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_cache_segments.equals(name)) {
+            return String.valueOf(propCacheSegments);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_cache_policy.equals(name)) {
+            return Cache.POLICY_NAMES[propCachePolicy];
+        }
+
         if (HsqlDatabaseProperties.hsqldb_default_table_type.equals(name)) {
             return database.schemaManager.getDefaultTableType()
                    == TableBase.CACHED_TABLE ? Tokens.T_CACHED
@@ -1607,6 +1816,18 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propLargeData);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_packed_rows.equals(name)) {
+            return String.valueOf(propPackedRows);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_vector_filter.equals(name)) {
+            return String.valueOf(propVectorFilter);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_compile_threshold.equals(name)) {
+            return String.valueOf(propCompileThreshold);
+        }
+
         if (HsqlDatabaseProperties.hsqldb_lock_file.equals(name)) {
             return database.databaseProperties.getPropertyString(
                 HsqlDatabaseProperties.hsqldb_lock_file);
@@ -1633,6 +1854,11 @@ public class Logger implements EventLogInterface {
                 .toLowerCase();
         }
 
+        if (HsqlDatabaseProperties.hsqldb_log_format.equals(name)) {
+            return ScriptWriterBase.LIST_SCRIPT_FORMATS[propLogFormat]
+                .toLowerCase();
+        }
+
         if (HsqlDatabaseProperties.hsqldb_temp_directory.equals(name)) {
             return tempDirectoryPath;
         }
@@ -1654,6 +1880,22 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propWriteDelay);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_group_commit_wait.equals(name)) {
+            return String.valueOf(propGroupCommitWait);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_log_replay_threads.equals(name)) {
+            return String.valueOf(propLogReplayThreads);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_script_load_threads.equals(name)) {
+            return String.valueOf(propScriptLoadThreads);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_text_load_threads.equals(name)) {
+            return String.valueOf(propTextLoadThreads);
+        }
+
         if (HsqlDatabaseProperties.hsqldb_digest.equals(name)) {
             return database.granteeManager.getDigestAlgo();
         }
@@ -2220,8 +2462,14 @@ public class Logger implements EventLogInterface {
 
             try {
                 synchronized (this) {
-                    backupInternal(destPath, script, blocking, compressed,
-                                   files);
+                    logLock.writeLock().lock();
+
+                    try {
+                        backupInternal(destPath, script, blocking,
+                                       compressed, files);
+                    } finally {
+                        logLock.writeLock().unlock();
+                    }
                 }
             } finally {
                 backupState.set(stateNormal);
@@ -0,0 +1,415 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.Database;
+import org.hsqldb.HsqlException;
+import org.hsqldb.Session;
+import org.hsqldb.Statement;
+import org.hsqldb.StatementTypes;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.CountUpDownLatch;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.HsqlDeque;
+import org.hsqldb.lib.IntKeyHashMap;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.OrderedIntHashSet;
+import org.hsqldb.result.Result;
+
+/**
+ * Applies the row changes of the .log file with several worker threads
+ * while ScriptRunner reads the log. Used when the hsqldb.log_replay_threads
+ * property is larger than zero.<p>
+ *
+ * The INSERT and DELETE records of each session are kept until the COMMIT
+ * of the session is read. The rows are then passed to the workers. All the
+ * rows of a table are applied by the same worker in the order of the
+ * commits in the log, so changes to different tables are applied in
+ * parallel. Each worker uses its own session and commits after each batch.
+ * <p>
+ *
+ * Other statements are executed by ScriptRunner after the workers have
+ * applied all the committed rows. Any rows that have not been committed at
+ * that point, or rows of a transaction larger than maxPendingRows, are
+ * applied to the session of the log by ScriptRunner, as in sequential
+ * replay. Rows are passed to the workers again once all such sessions have
+ * committed.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class ParallelLogReplay {
+
+    static final int batchSize      = 256;
+    static final int maxQueueSize   = 16;
+    static final int maxPendingRows = 1 << 16;
+
+    //
+    final Database         database;
+    final IntKeyHashMap    sessionMap;
+    final Statement        action;
+    final Worker[]         workers;
+    final HashMap          tableWorkers   = new HashMap();
+    final IntKeyHashMap    pendingMap     = new IntKeyHashMap();
+    final OrderedIntHashSet directSessions = new OrderedIntHashSet();
+    final CountUpDownLatch latch          = new CountUpDownLatch();
+    int                    pendingRowCount;
+    int                    nextWorker;
+    volatile Throwable     error;
+
+    ParallelLogReplay(Database database, IntKeyHashMap sessionMap,
+                      Statement action, int threadCount) {
+
+        this.database   = database;
+        this.sessionMap = sessionMap;
+        this.action     = action;
+        workers         = new Worker[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            Session session =
+                database.getSessionManager().newSessionForLog(database);
+
+            workers[i] = new Worker(session, i);
+
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Keeps the row until the session commits. Returns false if the row
+     * must be applied directly to the session.
+     */
+    boolean addRow(int sessionId, Table table, Object[] data,
+                   boolean isDelete) {
+
+        checkError();
+
+        if (!directSessions.isEmpty()) {
+            directSessions.add(sessionId);
+
+            return false;
+        }
+
+        HsqlArrayList list = (HsqlArrayList) pendingMap.get(sessionId);
+
+        if (list == null) {
+            list = new HsqlArrayList();
+
+            pendingMap.put(sessionId, list);
+        }
+
+        list.add(new LogRow(table, data, isDelete));
+
+        pendingRowCount++;
+
+        if (pendingRowCount > maxPendingRows) {
+            applyPending();
+        }
+
+        return true;
+    }
+
+    /**
+     * Passes the rows of the session to the workers.
+     */
+    void commit(int sessionId) {
+
+        checkError();
+
+        if (directSessions.remove(sessionId)) {
+            return;
+        }
+
+        HsqlArrayList list = (HsqlArrayList) pendingMap.remove(sessionId);
+
+        if (list == null) {
+            return;
+        }
+
+        pendingRowCount -= list.size();
+
+        for (int i = 0; i < list.size(); i++) {
+            LogRow row    = (LogRow) list.get(i);
+            Worker worker = (Worker) tableWorkers.get(row.table);
+
+            if (worker == null) {
+                worker = workers[nextWorker];
+                nextWorker = (nextWorker + 1) % workers.length;
+
+                tableWorkers.put(row.table, worker);
+            }
+
+            worker.add(row);
+        }
+    }
+
+    /**
+     * Executes ALTER SEQUENCE, which is logged with each commit that uses
+     * a sequence, without a wait for the workers. The statement is executed
+     * outside the transaction manager, as its catalog lock would wait for
+     * the sessions of the workers. Returns false for other statements.
+     */
+    boolean alterSequence(Session session, Statement cs) {
+
+        if (cs.getType() != StatementTypes.ALTER_SEQUENCE) {
+            return false;
+        }
+
+        Result result = cs.execute(session);
+
+        if (result.isError()) {
+            throw result.getException();
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits until the workers have applied all the committed rows, then
+     * applies the uncommitted rows to the sessions of the log.
+     */
+    void applyPending() {
+
+        waitForWorkers();
+
+        Iterator it = pendingMap.keySet().iterator();
+
+        while (it.hasNext()) {
+            int           sessionId = it.nextInt();
+            Session       session   = (Session) sessionMap.get(sessionId);
+            HsqlArrayList list = (HsqlArrayList) pendingMap.get(sessionId);
+
+            for (int i = 0; i < list.size(); i++) {
+                LogRow row = (LogRow) list.get(i);
+
+                row.apply(session, action);
+            }
+
+            directSessions.add(sessionId);
+        }
+
+        pendingMap.clear();
+
+        pendingRowCount = 0;
+    }
+
+    void removeSession(int sessionId) {
+
+        HsqlArrayList list = (HsqlArrayList) pendingMap.remove(sessionId);
+
+        if (list != null) {
+            pendingRowCount -= list.size();
+        }
+
+        directSessions.remove(sessionId);
+    }
+
+    /**
+     * Stops the workers after they have applied the committed rows, unless
+     * a worker has failed.
+     */
+    void close() {
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].flush();
+            workers[i].stop();
+        }
+    }
+
+    private void waitForWorkers() {
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].flush();
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw Error.error(ErrorCode.GENERAL_ERROR, e);
+        }
+
+        checkError();
+    }
+
+    private void checkError() {
+
+        Throwable t = error;
+
+        if (t == null) {
+            return;
+        }
+
+        if (t instanceof HsqlException) {
+            throw (HsqlException) t;
+        }
+
+        if (t instanceof OutOfMemoryError) {
+            throw (OutOfMemoryError) t;
+        }
+
+        throw Error.error(ErrorCode.ERROR_IN_LOG_FILE, t);
+    }
+
+    static final class LogRow {
+
+        final Table    table;
+        final Object[] data;
+        final boolean  isDelete;
+
+        LogRow(Table table, Object[] data, boolean isDelete) {
+            this.table    = table;
+            this.data     = data;
+            this.isDelete = isDelete;
+        }
+
+        void apply(Session session, Statement action) {
+
+            if (isDelete) {
+                ScriptRunner.deleteRow(session, action, table, data);
+            } else {
+                ScriptRunner.insertRow(session, action, table, data);
+            }
+        }
+    }
+
+    final class Worker implements Runnable {
+
+        final Session   session;
+        final HsqlDeque queue = new HsqlDeque();
+        final Thread    thread;
+        HsqlArrayList   batch = new HsqlArrayList(batchSize);
+        boolean         isStopped;
+
+        Worker(Session session, int index) {
+
+            this.session = session;
+            thread       = new Thread(this, "HSQLDB Log Replay " + index);
+
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void add(LogRow row) {
+
+            batch.add(row);
+
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Passes the current batch to the thread, waiting if the queue is
+         * full.
+         */
+        void flush() {
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            latch.countUp();
+
+            synchronized (this) {
+                while (queue.size() >= maxQueueSize && error == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {}
+                }
+
+                queue.addLast(batch);
+                notifyAll();
+            }
+
+            batch = new HsqlArrayList(batchSize);
+        }
+
+        void stop() {
+
+            synchronized (this) {
+                isStopped = true;
+
+                notifyAll();
+            }
+
+            try {
+                thread.join();
+            } catch (InterruptedException e) {}
+        }
+
+        public void run() {
+
+            while (true) {
+                HsqlArrayList list;
+
+                synchronized (this) {
+                    while (queue.isEmpty() && !isStopped) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {}
+                    }
+
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+
+                    list = (HsqlArrayList) queue.removeFirst();
+
+                    notifyAll();
+                }
+
+                try {
+                    if (error == null) {
+                        for (int i = 0; i < list.size(); i++) {
+                            ((LogRow) list.get(i)).apply(session, action);
+                        }
+
+                        session.commit(false);
+                    }
+                } catch (Throwable t) {
+                    if (error == null) {
+                        error = t;
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        }
+    }
+}
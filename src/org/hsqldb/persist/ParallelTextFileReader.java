@@ -0,0 +1,352 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.lib.HsqlDeque;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowInputText;
+import org.hsqldb.rowio.RowInputTextQuoted;
+import org.hsqldb.types.Type;
+
+/**
+ * Reads the rows of a text file with several worker threads. Used when the
+ * hsqldb.text_load_threads property is larger than zero.<p>
+ *
+ * The wrapped reader splits the file into lines in the calling thread and
+ * the lines are passed in batches to the workers, which convert them to row
+ * data, each with its own RowInputText. The rows are returned in the order
+ * of the file, with the position, size and line number of each line, so
+ * the rows are the same as with the wrapped reader.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class ParallelTextFileReader implements TextFileReader {
+
+    static final int batchSize = 256;
+
+    //
+    final TextFileReader   reader;
+    final TextFileSettings textFileSettings;
+    final Type[]           colTypes;
+    final Worker[]         workers;
+    final int              maxPendingBatches;
+    final HsqlDeque        queue   = new HsqlDeque();
+    final HsqlDeque        pending = new HsqlDeque();
+    final ParsedRow        rowIn;
+    Batch                  batch;
+    int                    batchIndex;
+    boolean                isEnd;
+    boolean                isStopped;
+
+    ParallelTextFileReader(TextFileReader reader, TextCache cache,
+                           int threadCount) {
+
+        this.reader       = reader;
+        textFileSettings  = cache.getTextFileSettings();
+        colTypes          = cache.table.getColumnTypes();
+        rowIn             = new ParsedRow(textFileSettings);
+        workers           = new Worker[threadCount];
+        maxPendingBatches = threadCount * 4;
+
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(i);
+
+            workers[i].start();
+        }
+    }
+
+    public String getHeaderLine() {
+        return reader.getHeaderLine();
+    }
+
+    /**
+     * Returns the line number of the last row returned, or of the last line
+     * read by the wrapped reader when no row is current.
+     */
+    public long getLineNumber() {
+
+        if (batch == null) {
+            return reader.getLineNumber();
+        }
+
+        return batch.lineNumbers[batchIndex - 1];
+    }
+
+    public void readHeaderLine() {
+        reader.readHeaderLine();
+    }
+
+    public RowInputInterface readObject() {
+
+        if (batch == null || batchIndex == batch.count) {
+            batch      = null;
+            batchIndex = 0;
+
+            readBatches();
+
+            if (pending.isEmpty()) {
+                return null;
+            }
+
+            Batch next = (Batch) pending.removeFirst();
+
+            waitFor(next);
+
+            batch = next;
+        }
+
+        rowIn.setRow(batch, batchIndex++);
+
+        return rowIn;
+    }
+
+    /**
+     * Stops the workers. Tasks that have not started are discarded.
+     */
+    public void close() {
+
+        synchronized (this) {
+            isStopped = true;
+
+            notifyAll();
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+    }
+
+    /**
+     * Reads lines until the maximum number of batches is pending.
+     */
+    private void readBatches() {
+
+        while (!isEnd && pending.size() < maxPendingBatches) {
+            Batch next = null;
+
+            while (next == null || next.count < batchSize) {
+                RowInputText in = (RowInputText) reader.readObject();
+
+                if (in == null) {
+                    isEnd = true;
+
+                    break;
+                }
+
+                if (next == null) {
+                    next = new Batch();
+                }
+
+                next.add(in);
+            }
+
+            if (next != null) {
+                pending.addLast(next);
+                addTask(next);
+            }
+        }
+    }
+
+    private synchronized void addTask(Batch task) {
+
+        queue.addLast(task);
+        notifyAll();
+    }
+
+    private synchronized void waitFor(Batch task) {
+
+        while (!task.isDone) {
+            try {
+                wait();
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    private synchronized Batch takeTask() {
+
+        while (queue.isEmpty() && !isStopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {}
+        }
+
+        if (isStopped) {
+            return null;
+        }
+
+        return (Batch) queue.removeFirst();
+    }
+
+    private synchronized void setDone(Batch task) {
+
+        task.isDone = true;
+
+        notifyAll();
+    }
+
+    /**
+     * Consecutive lines of the file.
+     */
+    static final class Batch {
+
+        final String[]   lines       = new String[batchSize];
+        final long[]     positions   = new long[batchSize];
+        final int[]      sizes       = new int[batchSize];
+        final long[]     lineNumbers = new long[batchSize];
+        final Object[][] data        = new Object[batchSize][];
+        int              count;
+        int              errorIndex = -1;
+        Throwable        error;
+        boolean          isDone;
+
+        void add(RowInputText in) {
+
+            lines[count]       = in.getSource();
+            positions[count]   = in.getFilePosition();
+            sizes[count]       = in.getSize();
+            lineNumbers[count] = in.getLineNumber();
+
+            count++;
+        }
+
+        void run(RowInputText in, Type[] colTypes) {
+
+            for (int i = 0; i < count; i++) {
+                try {
+                    in.setSource(lines[i], positions[i], sizes[i]);
+
+                    data[i] = in.readData(colTypes);
+                } catch (Throwable t) {
+                    errorIndex = i;
+                    error      = t;
+
+                    break;
+                } finally {
+                    lines[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the row data converted by a worker, or throws the exception
+     * thrown by the conversion.
+     */
+    static final class ParsedRow extends RowInputText {
+
+        private Object[]  data;
+        private Throwable error;
+        private long      lineNumber;
+
+        ParsedRow(TextFileSettings textFileSettings) {
+            super(textFileSettings);
+        }
+
+        void setRow(Batch batch, int index) {
+
+            filePos    = batch.positions[index];
+            size       = batch.sizes[index];
+            lineNumber = batch.lineNumbers[index];
+            data       = batch.data[index];
+            error      = index == batch.errorIndex ? batch.error
+                                                   : null;
+
+            batch.data[index] = null;
+        }
+
+        public Object[] readData(Type[] colTypes) {
+
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+
+            if (error != null) {
+                throw (java.lang.Error) error;
+            }
+
+            return data;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+    }
+
+    final class Worker implements Runnable {
+
+        final RowInputText rowIn;
+        final Thread       thread;
+
+        Worker(int index) {
+
+            if (textFileSettings.isQuoted || textFileSettings.isAllQuoted) {
+                rowIn = new RowInputTextQuoted(textFileSettings);
+            } else {
+                rowIn = new RowInputText(textFileSettings);
+            }
+
+            thread = new Thread(this, "HSQLDB Text Load " + index);
+
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void join() {
+
+            try {
+                thread.join();
+            } catch (InterruptedException e) {}
+        }
+
+        public void run() {
+
+            while (true) {
+                Batch task = takeTask();
+
+                if (task == null) {
+                    return;
+                }
+
+                try {
+                    task.run(rowIn, colTypes);
+                } finally {
+                    setDone(task);
+                }
+            }
+        }
+    }
+}
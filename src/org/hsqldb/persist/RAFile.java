@@ -143,6 +143,17 @@ final class RAFile implements RandomAccessInterface {
         if (type == DATA_FILE_JAR) {
             return new RAFileInJar(name);
         } else if (type == DATA_FILE_TEXT) {
+            if (readonly && database.logger.propNioDataFile
+                    && database.logger.getFileAccess().isStreamElement(
+                        name)) {
+                try {
+                    return new RAFileTextNIO(database.logger, name);
+                } catch (IOException e) {
+                    database.logger.logWarningEvent("NIO text file failed",
+                                                    e);
+                }
+            }
+
             RAFile ra = new RAFile(database.logger, name, readonly, false,
                                    true);
 
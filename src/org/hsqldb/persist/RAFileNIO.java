@@ -544,7 +544,7 @@ final class RAFileNIO implements RandomAccessInterface {
      * Non-essential unmap method - see http://bugs.sun.com/view_bug.do?bug_id=4724038
      * reported by joel_turkel at users.sourceforge.net
      */
-    private void unmap(MappedByteBuffer buffer) throws IOException {
+    static void unmap(MappedByteBuffer buffer) {
 
         if (buffer == null) {
             return;
@@ -0,0 +1,201 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.hsqldb.lib.java.JavaSystem;
+
+/**
+ * Read-only access to a TEXT table source file through memory-mapped
+ * buffers. Used instead of RAFile when the source is opened read-only and
+ * the hsqldb.nio_data_file property is true.<p>
+ *
+ * The file is mapped in segments of 256MB, so files larger than 2GB can be
+ * mapped. Bytes are read from the mapped buffers without a system call or a
+ * copy into an intermediate buffer.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class RAFileTextNIO implements RandomAccessInterface {
+
+    static final int  segmentScale = 28;
+    static final long segmentSize  = 1L << segmentScale;
+    static final long segmentMask  = segmentSize - 1;
+
+    //
+    private final RandomAccessFile   file;
+    private final long               fileLength;
+    private final MappedByteBuffer[] segments;
+    private long                     position;
+
+    RAFileTextNIO(EventLogInterface logger, String name) throws IOException {
+
+        file = new RandomAccessFile(name, "r");
+
+        try {
+            FileChannel channel = file.getChannel();
+
+            fileLength = file.length();
+            segments = new MappedByteBuffer[(int) ((fileLength + segmentMask)
+                                                   >> segmentScale)];
+
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentScale;
+                long size  = Math.min(segmentSize, fileLength - start);
+
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          start, size);
+            }
+
+            logger.logDetailEvent("NIO text file open, size: "
+                                  + fileLength);
+        } catch (Throwable t) {
+            file.close();
+
+            throw JavaSystem.toIOException(t);
+        }
+    }
+
+    public long length() {
+        return fileLength;
+    }
+
+    public void seek(long newPos) throws IOException {
+
+        if (newPos > fileLength) {
+            throw new IOException("read beyond end of file");
+        }
+
+        position = newPos;
+    }
+
+    public long getFilePointer() {
+        return position;
+    }
+
+    public int read() {
+
+        if (position >= fileLength) {
+            return -1;
+        }
+
+        int value = segments[(int) (position >> segmentScale)].get(
+            (int) (position & segmentMask)) & 0xff;
+
+        position++;
+
+        return value;
+    }
+
+    public void read(byte[] b, int offset, int length) throws IOException {
+
+        if (position + length > fileLength) {
+            throw new EOFException();
+        }
+
+        while (length > 0) {
+            MappedByteBuffer segment =
+                segments[(int) (position >> segmentScale)];
+            int start = (int) (position & segmentMask);
+            int count = Math.min(length, segment.limit() - start);
+
+            segment.position(start);
+            segment.get(b, offset, count);
+
+            position += count;
+            offset   += count;
+            length   -= count;
+        }
+    }
+
+    public int readInt() throws IOException {
+
+        int ch1 = read();
+        int ch2 = read();
+        int ch3 = read();
+        int ch4 = read();
+
+        if ((ch1 | ch2 | ch3 | ch4) < 0) {
+            throw new EOFException();
+        }
+
+        return (ch1 << 24) + (ch2 << 16) + (ch3 << 8) + ch4;
+    }
+
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) + (readInt() & 0xffffffffL);
+    }
+
+    public void write(byte[] b, int offset, int length) throws IOException {
+        throw new IOException("file is read only");
+    }
+
+    public void writeInt(int i) throws IOException {
+        throw new IOException("file is read only");
+    }
+
+    public void writeLong(long i) throws IOException {
+        throw new IOException("file is read only");
+    }
+
+    public void close() throws IOException {
+
+        for (int i = 0; i < segments.length; i++) {
+            RAFileNIO.unmap(segments[i]);
+
+            segments[i] = null;
+        }
+
+        file.close();
+    }
+
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    public void synch() {}
+
+    public boolean ensureLength(long newLength) {
+        return newLength <= fileLength;
+    }
+
+    public boolean setLength(long newLength) {
+        return newLength <= fileLength;
+    }
+}
@@ -50,6 +50,9 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVL;
+import org.hsqldb.index.IndexAVL.RowKey;
+import org.hsqldb.index.IndexAVLMemory;
+import org.hsqldb.index.IndexBuilder;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.navigator.RowIterator;
@@ -478,6 +481,7 @@ public abstract class RowStoreAVL implements PersistentStore {
                 switch (table.getTableType()) {
 
                     case TableBase.MEMORY_TABLE :
+                    case TableBase.COLUMNAR_TABLE :
                     case TableBase.CACHED_TABLE :
                     case TableBase.TEXT_TABLE :
                         readLock();
@@ -532,9 +536,12 @@ public abstract class RowStoreAVL implements PersistentStore {
             oldtype = other.getTable().getColumnTypes()[colindex];
         }
 
+        IndexBuilder[] builders = getIndexBuilders(session);
+
         try {
             Table       table = (Table) this.table;
             RowIterator it    = other.rowIterator();
+            long        count = 0;
 
             while (it.next()) {
                 Row      row      = it.getCurrentRow();
@@ -562,7 +569,21 @@ public abstract class RowStoreAVL implements PersistentStore {
                 // get object without RowAction
                 Row newrow = (Row) getNewCachedObject(session, data, false);
 
-                indexRow(session, newrow);
+                if (builders == null) {
+                    indexRow(session, newrow);
+
+                    continue;
+                }
+
+                for (int i = 0; i < builders.length; i++) {
+                    builders[i].add(newrow);
+                }
+
+                count++;
+            }
+
+            if (builders != null) {
+                buildIndexes(session, builders, count);
             }
 
             if (table.isTemp()) {
@@ -598,6 +619,98 @@ public abstract class RowStoreAVL implements PersistentStore {
             }
         } catch (OutOfMemoryError e) {
             throw Error.error(ErrorCode.OUT_OF_MEMORY);
+        } finally {
+            closeIndexBuilders(builders);
+        }
+    }
+
+    /**
+     * Returns true if the rows added by moveData() can be indexed after
+     * they have all been added.
+     */
+    public boolean canBuildIndexes() {
+        return false;
+    }
+
+    /**
+     * Returns a builder for each index if the rows to be added can be
+     * indexed after they have all been added, otherwise null.
+     */
+    public IndexBuilder[] getIndexBuilders(Session session) {
+
+        if (!canBuildIndexes() || indexList.length == 0) {
+            return null;
+        }
+
+        IndexBuilder[] builders = new IndexBuilder[indexList.length];
+        int            limit    = getBuildKeyLimit(session);
+
+        for (int i = 0; i < indexList.length; i++) {
+            builders[i] = new IndexBuilder(session, this,
+                                           (IndexAVL) indexList[i], limit);
+        }
+
+        return builders;
+    }
+
+    /**
+     * Returns the number of keys of each index that are held in memory
+     * before they are sorted and written to a file. For a CACHED table, the
+     * count is the maximum number of rows in the cache, or the result
+     * memory row count of the session if it is smaller.
+     */
+    int getBuildKeyLimit(Session session) {
+
+        if (isMemory()) {
+            return Integer.MAX_VALUE - 16;
+        }
+
+        int limit   = database.logger.getCacheMaxRows();
+        int maxRows = session.getResultMemoryRowCount();
+
+        if (maxRows > 0 && maxRows < limit) {
+            limit = maxRows;
+        }
+
+        return limit;
+    }
+
+    /**
+     * Builds each index from the rows added to its builder. If a unique
+     * index has duplicate keys, all the indexes are left empty.
+     */
+    public void buildIndexes(Session session, IndexBuilder[] builders,
+                             long count) {
+
+        writeLock();
+
+        try {
+            for (int i = 0; i < indexList.length; i++) {
+                builders[i].build();
+                builders[i].close();
+            }
+
+            elementCount.set(count);
+        } catch (HsqlException e) {
+            ArrayUtil.fillArray(accessorList, null);
+
+            throw e;
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Deletes the files used by the builders
+     */
+    public static void closeIndexBuilders(IndexBuilder[] builders) {
+
+        if (builders == null) {
+            return;
+        }
+
+        for (int i = 0; i < builders.length; i++) {
+            builders[i].close();
         }
     }
 
@@ -661,6 +774,12 @@ public abstract class RowStoreAVL implements PersistentStore {
             RowIterator   it       = primaryIndex.firstRow(this);
             int           rowCount = 0;
             HsqlException error    = null;
+            RowKey[]      keys     = null;
+
+            // memory indexes are built with one sort after adding the nodes
+            if (newIndex instanceof IndexAVLMemory) {
+                keys = new RowKey[(int) elementCount.get() + 1];
+            }
 
             try {
                 while (it.next()) {
@@ -668,6 +787,18 @@ public abstract class RowStoreAVL implements PersistentStore {
 
                     ((RowAVL) row).insertNode(position);
 
+                    if (keys != null) {
+                        if (rowCount == keys.length) {
+                            keys = (RowKey[]) ArrayUtil.resizeArray(keys,
+                                    rowCount * 2);
+                        }
+
+                        keys[rowCount++] =
+                            ((IndexAVL) newIndex).getRowKey(row);
+
+                        continue;
+                    }
+
                     // count before inserting
                     rowCount++;
 
@@ -676,6 +807,11 @@ public abstract class RowStoreAVL implements PersistentStore {
 
                 it.release();
 
+                if (keys != null) {
+                    ((IndexAVLMemory) newIndex).build(session, this, keys,
+                            rowCount);
+                }
+
                 return true;
             } catch (OutOfMemoryError e) {
                 error = Error.error(ErrorCode.OUT_OF_MEMORY);
@@ -46,6 +46,7 @@ import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexBTree;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.ArrayUtil;
@@ -202,6 +203,10 @@ public class RowStoreAVLDisk extends RowStoreAVL implements PersistentStore {
         }
     }
 
+    public boolean canBuildIndexes() {
+        return elementCount.get() == 0 && subStores.length == 0;
+    }
+
     public void removeAll() {
 
         elementCount.set(0);
@@ -336,6 +341,19 @@ public class RowStoreAVLDisk extends RowStoreAVL implements PersistentStore {
 
     public CachedObject getAccessor(Index key) {
 
+        if (key.getStructureType() == Index.STRUCTURE_BTREE) {
+            CachedObject page = accessorList[key.getPosition()];
+
+            if (page == null) {
+                return null;
+            }
+
+            page = ((IndexBTree) key).getRootPage(this, page.getPos());
+            accessorList[key.getPosition()] = page;
+
+            return page;
+        }
+
         NodeAVL node = (NodeAVL) accessorList[key.getPosition()];
 
         if (node == null) {
@@ -352,6 +370,12 @@ public class RowStoreAVLDisk extends RowStoreAVL implements PersistentStore {
 
     public void setAccessor(Index key, long accessor) {
 
+        if (key.getStructureType() == Index.STRUCTURE_BTREE) {
+            setAccessor(key, ((IndexBTree) key).getRootPage(this, accessor));
+
+            return;
+        }
+
         CachedObject object = get(accessor, false);
 
         if (object != null) {
@@ -405,6 +429,18 @@ public class RowStoreAVLDisk extends RowStoreAVL implements PersistentStore {
                 new CachedObject[accessorList.length];
 
             for (int i = 0; i < accessorList.length; i++) {
+                if (indexList[i].getStructureType() == Index.STRUCTURE_BTREE) {
+                    IndexBTree index = (IndexBTree) indexList[i];
+                    long pos = index.writeToDataFile(this, cache,
+                                                     pointerLookup);
+
+                    index.releasePages(this);
+
+                    newAccessorList[i] = index.getRootPage(this, pos);
+
+                    continue;
+                }
+
                 long pos = pointerLookup.lookup(accessorList[i].getPos());
 
                 newAccessorList[i] = cache.get(pos, this, false);
@@ -39,12 +39,16 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.hsqldb.Database;
 import org.hsqldb.Row;
 import org.hsqldb.RowAVL;
+import org.hsqldb.RowAVLPacked;
 import org.hsqldb.RowAction;
 import org.hsqldb.Session;
 import org.hsqldb.Table;
+import org.hsqldb.TableBase;
 import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVLMemory;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.rowio.RowInputInterface;
 
@@ -63,6 +67,9 @@ public class RowStoreAVLMemory extends RowStoreAVL implements PersistentStore {
     Lock          readLock;
     Lock          writeLock;
 
+    /** null unless rows are packed */
+    RowAVLPacked.Layout packedLayout;
+
     public RowStoreAVLMemory(Table table) {
 
         this.database     = table.database;
@@ -72,6 +79,11 @@ public class RowStoreAVLMemory extends RowStoreAVL implements PersistentStore {
         lock              = new ReentrantReadWriteLock();
         readLock          = lock.readLock();
         writeLock         = lock.writeLock();
+
+        if (database.logger.propPackedRows
+                && table.getTableType() != TableBase.SYSTEM_TABLE) {
+            packedLayout = RowAVLPacked.newLayout(table);
+        }
     }
 
     public boolean isMemory() {
@@ -105,8 +117,15 @@ public class RowStoreAVLMemory extends RowStoreAVL implements PersistentStore {
     public CachedObject getNewCachedObject(Session session, Object object,
                                            boolean tx) {
 
-        int id  = rowIdSequence.getAndIncrement();
-        Row row = new RowAVL(table, (Object[]) object, id, this);
+        int id = rowIdSequence.getAndIncrement();
+        Row row;
+
+        if (packedLayout == null) {
+            row = new RowAVL(table, (Object[]) object, id, this);
+        } else {
+            row = new RowAVLPacked(table, (Object[]) object, id, this,
+                                   packedLayout);
+        }
 
         if (tx) {
             RowAction.addInsertAction(session, table, row);
@@ -115,6 +134,33 @@ public class RowStoreAVLMemory extends RowStoreAVL implements PersistentStore {
         return row;
     }
 
+    /**
+     * Returns true if the rows loaded from the .script file or moved by
+     * moveData() can be indexed once all of them have been created.
+     */
+    public boolean canBuildIndexes() {
+        return elementCount.get() == 0 && subStores.length == 0;
+    }
+
+    /**
+     * Adds the rows, in row id order, to an empty index. The indexes of the
+     * table can be built by different threads at the same time. Once all
+     * are built, setElementCount() is called with the row count.
+     */
+    public void buildIndex(Session session, Index index, Row[] rows,
+                           int count) {
+
+        if (index instanceof IndexAVLMemory) {
+            ((IndexAVLMemory) index).build(session, this, rows, count);
+
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            index.insert(session, this, rows[i]);
+        }
+    }
+
     public void removeAll() {
 
         destroy();
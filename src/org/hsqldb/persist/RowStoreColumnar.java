@@ -0,0 +1,186 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.ColumnarData;
+import org.hsqldb.Row;
+import org.hsqldb.RowAction;
+import org.hsqldb.RowColumnar;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.TransactionManager;
+
+/*
+ * Implementation of PersistentStore for COLUMNAR tables.<p>
+ *
+ * The values of the rows are held in a ColumnarData instance. A row is
+ * visible to columnar scans while it is linked in the indexes. Its slot is
+ * released when the row is removed for good. When all the rows are removed,
+ * a new ColumnarData replaces the old one, which remains readable through
+ * any row that is still referenced.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class RowStoreColumnar extends RowStoreAVLMemory {
+
+    ColumnarData columnarData;
+
+    public RowStoreColumnar(Table table) {
+
+        super(table);
+
+        packedLayout = null;
+        columnarData = new ColumnarData(table.getColumnTypes());
+    }
+
+    public ColumnarData getColumnarData() {
+        return columnarData;
+    }
+
+    public CachedObject getNewCachedObject(Session session, Object object,
+                                           boolean tx) {
+
+        int id = rowIdSequence.getAndIncrement();
+        Row row;
+
+        writeLock();
+
+        try {
+            row = new RowColumnar(table, (Object[]) object, id, this,
+                                  columnarData);
+        } finally {
+            writeUnlock();
+        }
+
+        if (tx) {
+            RowAction.addInsertAction(session, table, row);
+        }
+
+        return row;
+    }
+
+    public boolean canBuildIndexes() {
+        return false;
+    }
+
+    public void indexRow(Session session, Row row) {
+
+        writeLock();
+
+        try {
+            RowColumnar columnarRow = (RowColumnar) row;
+
+            columnarRow.allocateSlot();
+            super.indexRow(session, row);
+            columnarData.setRow(columnarRow.getSlot(), row);
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    public void delete(Session session, Row row) {
+
+        writeLock();
+
+        try {
+            super.delete(session, row);
+
+            int slot = ((RowColumnar) row).getSlot();
+
+            if (slot >= 0) {
+                columnarData.setRow(slot, null);
+            }
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    public void remove(CachedObject object) {
+
+        writeLock();
+
+        try {
+            ((RowColumnar) object).releaseSlot();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    public void removeAll() {
+
+        writeLock();
+
+        try {
+            super.removeAll();
+            columnarData = new ColumnarData(table.getColumnTypes());
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    public void postCommitAction(Session session, RowAction action) {
+
+        if (action.getType() == RowAction.ACTION_DELETE_FINAL
+                && !action.isDeleteComplete()) {
+            super.postCommitAction(session, action);
+            remove(action.getRow());
+        }
+    }
+
+    public void commitRow(Session session, Row row, int changeAction,
+                          int txModel) {
+
+        super.commitRow(session, row, changeAction, txModel);
+
+        // with LOCKS the row was removed from the indexes when deleted
+        if (changeAction == RowAction.ACTION_DELETE
+                && txModel == TransactionManager.LOCKS) {
+            remove(row);
+        }
+    }
+
+    public void release() {
+
+        writeLock();
+
+        try {
+            super.release();
+            columnarData = new ColumnarData(table.getColumnTypes());
+        } finally {
+            writeUnlock();
+        }
+    }
+}
@@ -50,6 +50,7 @@ import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.result.Result;
 import org.hsqldb.scriptio.ScriptReaderBase;
+import org.hsqldb.scriptio.ScriptReaderBinaryLog;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.types.Type;
@@ -59,9 +60,13 @@ import org.hsqldb.types.Type;
  *
  * If there is an error, processing stops at that line and the message is
  * logged to the application log. If memory runs out, an exception is thrown.
+ * <p>
+ *
+ * If the hsqldb.log_replay_threads property is set, the committed row
+ * changes are applied by a ParallelLogReplay.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.7.2
  */
 public class ScriptRunner {
@@ -77,11 +82,14 @@ public class ScriptRunner {
         ScriptReaderBase scr;
 
         try {
-            if (crypto == null) {
-                scr = new ScriptReaderText(database, logFilename, false);
-            } else {
+            if (crypto != null) {
                 scr = new ScriptReaderDecode(database, logFilename, crypto,
                                              true);
+            } else if (ScriptReaderBinaryLog.isBinaryLog(database,
+                    logFilename)) {
+                scr = new ScriptReaderBinaryLog(database, logFilename);
+            } else {
+                scr = new ScriptReaderText(database, logFilename, false);
             }
         } catch (Throwable e) {
 
@@ -115,10 +123,17 @@ public class ScriptRunner {
         String databaseFile = database.getCanonicalPath();
         String action       = fullReplay ? "open aborted"
                                          : "open continued";
+        int               threadCount = database.logger.getLogReplayThreads();
+        ParallelLogReplay replay      = null;
 
         dummy.setCompileTimestamp(Long.MAX_VALUE);
         database.setReferentialIntegrity(false);
 
+        if (threadCount > 0) {
+            replay = new ParallelLogReplay(database, sessionMap, dummy,
+                                           threadCount);
+        }
+
         try {
             while (scr.readLoggedStatement(current)) {
                 int sessionId = scr.getSessionNumber();
@@ -155,6 +170,14 @@ public class ScriptRunner {
                         try {
                             cs = current.compileStatement(statement);
 
+                            if (replay != null) {
+                                if (replay.alterSequence(current, cs)) {
+                                    break;
+                                }
+
+                                replay.applyPending();
+                            }
+
                             if (database.getProperties().isVersion18()) {
 
                                 // convert BIT columns in .log to BOOLEAN
@@ -192,38 +215,35 @@ public class ScriptRunner {
                         break;
 
                     case ScriptReaderBase.COMMIT_STATEMENT :
+                        if (replay != null) {
+                            replay.commit(currentId);
+                        }
+
                         current.commit(false);
                         break;
 
                     case ScriptReaderBase.INSERT_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
-
-                        Object[] data = scr.getData();
+                        Table    table = scr.getCurrentTable();
+                        Object[] data  = scr.getData();
 
-                        scr.getCurrentTable().insertNoCheckFromLog(current,
-                                data);
-                        current.endAction(Result.updateOneResult);
+                        if (replay == null
+                                || !replay.addRow(currentId, table, data,
+                                                  false)) {
+                            insertRow(current, dummy, table, data);
+                        }
 
                         break;
                     }
                     case ScriptReaderBase.DELETE_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
+                        Table    table = scr.getCurrentTable();
+                        Object[] data  = scr.getData();
 
-                        Table           table = scr.getCurrentTable();
-                        PersistentStore store = table.getRowStore(current);
-                        Object[]        data  = scr.getData();
-                        Row row = table.getDeleteRowFromLog(current, data);
-
-                        if (row != null) {
-                            current.addDeleteAction(table, store, row, null);
+                        if (replay == null
+                                || !replay.addRow(currentId, table, data,
+                                                  true)) {
+                            deleteRow(current, dummy, table, data);
                         }
 
-                        current.endAction(Result.updateOneResult);
-
                         break;
                     }
                     case ScriptReaderBase.SET_SCHEMA_STATEMENT : {
@@ -246,8 +266,16 @@ public class ScriptRunner {
                     current = null;
 
                     sessionMap.remove(currentId);
+
+                    if (replay != null) {
+                        replay.removeSession(currentId);
+                    }
                 }
             }
+
+            if (replay != null) {
+                replay.applyPending();
+            }
         } catch (HsqlException e) {
             if (e.getErrorCode() == -ErrorCode.ERROR_IN_LOG_FILE) {
                 throw e;
@@ -290,6 +318,10 @@ public class ScriptRunner {
                 throw e;
             }
         } finally {
+            if (replay != null) {
+                replay.close();
+            }
+
             if (scr != null) {
                 scr.close();
             }
@@ -298,4 +330,31 @@ public class ScriptRunner {
             database.setReferentialIntegrity(true);
         }
     }
+
+    static void insertRow(Session session, Statement action, Table table,
+                          Object[] data) {
+
+        session.sessionContext.currentStatement = action;
+
+        session.beginAction(action);
+        table.insertNoCheckFromLog(session, data);
+        session.endAction(Result.updateOneResult);
+    }
+
+    static void deleteRow(Session session, Statement action, Table table,
+                          Object[] data) {
+
+        session.sessionContext.currentStatement = action;
+
+        session.beginAction(action);
+
+        PersistentStore store = table.getRowStore(session);
+        Row             row   = table.getDeleteRowFromLog(session, data);
+
+        if (row != null) {
+            session.addDeleteAction(table, store, row, null);
+        }
+
+        session.endAction(Result.updateOneResult);
+    }
 }
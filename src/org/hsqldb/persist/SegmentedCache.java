@@ -0,0 +1,332 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb.persist;
+
+import java.util.NoSuchElementException;
+
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.IntIndex;
+import org.hsqldb.lib.Iterator;
+
+/**
+ * Row cache divided into segments by file position.<p>
+ *
+ * Each segment is a Cache with an equal share of the row count and byte
+ * capacity and its own access counts. When a segment is full, only the
+ * rows of that segment are considered for clearup.<p>
+ *
+ * A segment is locked with its own monitor. Cache hits lock only the
+ * segment for the row and do not use the DataFileCache lock. Operations
+ * that add or remove rows are also performed while the DataFileCache
+ * write lock is held.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class SegmentedCache extends Cache {
+
+    static final int minSegmentCapacity = 1024;
+
+    //
+    private final Cache[] segments;
+    private final int     segmentMask;
+
+    SegmentedCache(DataFileCache dfc, int segmentCount, int policy) {
+
+        super(dfc, 16, 0);
+
+        segments    = new Cache[segmentCount];
+        segmentMask = segmentCount - 1;
+
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = Cache.newCache(dfc, dfc.capacity() / segmentCount,
+                                         dfc.bytesCapacity() / segmentCount,
+                                         policy);
+        }
+    }
+
+    /**
+     * Returns the number of segments to use for the given count of rows,
+     * which is 1 if each segment would be too small.
+     */
+    static int getSegmentCount(int segmentCount, int capacity) {
+
+        while (segmentCount > 1
+                && capacity / segmentCount < minSegmentCapacity) {
+            segmentCount >>= 1;
+        }
+
+        return segmentCount;
+    }
+
+    boolean isSegmented() {
+        return true;
+    }
+
+    String getPolicyName() {
+        return segments[0].getPolicyName();
+    }
+
+    long getHitCount() {
+
+        long total = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            total += segments[i].getHitCount();
+        }
+
+        return total;
+    }
+
+    long getMissCount() {
+
+        long total = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            total += segments[i].getMissCount();
+        }
+
+        return total;
+    }
+
+    long getEvictionCount() {
+
+        long total = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            total += segments[i].getEvictionCount();
+        }
+
+        return total;
+    }
+
+    private Cache getSegment(long pos) {
+
+        int hash = (int) (pos ^ (pos >>> 32)) * 0x9E3779B9;
+
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    long getTotalCachedBlockSize() {
+
+        long total = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            total += segments[i].getTotalCachedBlockSize();
+        }
+
+        return total;
+    }
+
+    public CachedObject get(long pos) {
+
+        Cache segment = getSegment(pos);
+
+        synchronized (segment) {
+            return segment.get(pos);
+        }
+    }
+
+    CachedObject get(long pos, boolean keep) {
+
+        Cache segment = getSegment(pos);
+
+        synchronized (segment) {
+            return segment.get(pos, keep);
+        }
+    }
+
+    void put(CachedObject row) {
+
+        Cache segment = getSegment(row.getPos());
+
+        synchronized (segment) {
+            segment.put(row);
+        }
+    }
+
+    void putUsingReserve(CachedObject row) {
+
+        Cache segment = getSegment(row.getPos());
+
+        synchronized (segment) {
+            segment.putUsingReserve(row);
+        }
+    }
+
+    CachedObject release(long pos) {
+
+        Cache segment = getSegment(pos);
+
+        synchronized (segment) {
+            return segment.release(pos);
+        }
+    }
+
+    public void releaseRange(IntIndex list, int fileBlockItemCount) {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].releaseRange(list, fileBlockItemCount);
+            }
+        }
+    }
+
+    public void releaseRange(long startPos, long limitPos) {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].releaseRange(startPos, limitPos);
+            }
+        }
+    }
+
+    void clearUnchanged() {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].clearUnchanged();
+            }
+        }
+    }
+
+    void saveAll() {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].saveAll();
+            }
+        }
+    }
+
+    void getChangedRows(HsqlArrayList list) {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].getChangedRows(list);
+            }
+        }
+    }
+
+    void logSaveRowsEvent(int saveCount, long storageSize, long startTime) {
+
+        int count = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            count += segments[i].saveRowCount;
+        }
+
+        saveRowCount = count - saveCount;
+
+        super.logSaveRowsEvent(saveCount, storageSize, startTime);
+    }
+
+    public void clear() {
+
+        for (int i = 0; i < segments.length; i++) {
+            synchronized (segments[i]) {
+                segments[i].clear();
+            }
+        }
+    }
+
+    public int size() {
+
+        int count = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            count += segments[i].size();
+        }
+
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Iterates over the rows of all segments. Used only when no other
+     * thread accesses the cache.
+     */
+    public Iterator getIterator() {
+        return new SegmentIterator();
+    }
+
+    private class SegmentIterator implements Iterator {
+
+        int      segmentIndex = -1;
+        Iterator it;
+
+        public boolean hasNext() {
+
+            while (it == null || !it.hasNext()) {
+                if (segmentIndex + 1 == segments.length) {
+                    return false;
+                }
+
+                segmentIndex++;
+
+                it = segments[segmentIndex].getIterator();
+            }
+
+            return true;
+        }
+
+        public Object next() {
+
+            if (hasNext()) {
+                return it.next();
+            }
+
+            throw new NoSuchElementException();
+        }
+
+        public int nextInt() {
+            throw new NoSuchElementException();
+        }
+
+        public long nextLong() {
+            throw new NoSuchElementException();
+        }
+
+        public void remove() {
+            it.remove();
+        }
+
+        public void setValue(Object value) {
+            throw Error.runtimeError(ErrorCode.U_S0500, "SegmentedCache");
+        }
+    }
+}
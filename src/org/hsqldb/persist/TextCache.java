@@ -66,7 +66,7 @@ import org.hsqldb.rowio.RowOutputTextQuoted;
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.7.0
  */
 public class TextCache extends DataFileCache {
@@ -459,7 +459,15 @@ public class TextCache extends DataFileCache {
     }
 
     public TextFileReader getTextFileReader() {
-        return TextFileReader8.newTextFileReader(dataFile, textFileSettings,
-                rowIn, cacheReadonly);
+
+        TextFileReader reader = TextFileReader8.newTextFileReader(dataFile,
+            textFileSettings, rowIn, cacheReadonly);
+        int threadCount = database.logger.getTextLoadThreads();
+
+        if (threadCount > 0) {
+            reader = new ParallelTextFileReader(reader, this, threadCount);
+        }
+
+        return reader;
     }
 }
@@ -37,7 +37,7 @@ import org.hsqldb.rowio.RowInputInterface;
  * Reader interface for text files.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 2.3.4
 */
 public interface TextFileReader {
@@ -49,4 +49,6 @@ public interface TextFileReader {
     public void readHeaderLine();
 
     public RowInputInterface readObject();
+
+    public void close();
 }
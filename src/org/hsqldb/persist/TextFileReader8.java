@@ -48,7 +48,7 @@ import org.hsqldb.rowio.RowInputText;
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 2.2.7
 */
 public class TextFileReader8 implements TextFileReader {
@@ -403,6 +403,8 @@ public class TextFileReader8 implements TextFileReader {
         return ((RowInputText) rowIn).getLineNumber();
     }
 
+    public void close() {}
+
     static abstract class StringCreator {
 
         static StringCreator getStringCreator(Class cl, String encoding) {
@@ -68,6 +68,20 @@ public class TextTableStorageManager {
         return c;
     }
 
+    /**
+     *  Opens a read-only TextCache object for reading the rows of a source
+     *  file into another table. The object is not added to the list of open
+     *  caches and is closed by the caller.
+     */
+    public TextCache openTextFileReader(Table table, String source) {
+
+        TextCache c = new TextCache(table, source);
+
+        c.open(true);
+
+        return c;
+    }
+
     /**
      *  Closes the TextCache object.
      */
@@ -51,6 +51,7 @@ import org.hsqldb.lib.DataOutputStream;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RowSetNavigator;
 import org.hsqldb.navigator.RowSetNavigatorClient;
+import org.hsqldb.navigator.RowSetNavigatorStream;
 import org.hsqldb.rowio.RowInputBinary;
 import org.hsqldb.rowio.RowOutputInterface;
 import org.hsqldb.types.Charset;
@@ -150,6 +151,7 @@ public class Result {
     public int updateCount;
 
     // fetch size (in)
+    // connection options (connect)
     private int fetchSize;
 
     // secondary result
@@ -395,6 +397,11 @@ public class Result {
                 result.subString    = in.readString();
                 result.zoneString   = in.readString();
                 result.updateCount  = in.readInt();
+
+                // absent when sent by earlier versions
+                if (in.available() > 0) {
+                    result.fetchSize = in.readInt();
+                }
                 break;
 
             case ResultConstants.ERROR :
@@ -410,6 +417,10 @@ public class Result {
                 result.databaseName = in.readString();
                 result.mainString   = in.readString();
                 result.generateKeys = in.readInt();
+
+                if (in.available() > 0) {
+                    result.fetchSize = in.readInt();
+                }
                 break;
 
             case ResultConstants.UPDATECOUNT :
@@ -977,15 +988,10 @@ public class Result {
                                            Result source, int offset,
                                            int count) {
 
-        if (offset + count > source.navigator.getSize()) {
-            count = source.navigator.getSize() - offset;
-        }
-
         Result result = newResult(ResultConstants.DATAHEAD);
 
-        result.metaData = source.metaData;
-        result.navigator = new RowSetNavigatorClient(source.navigator, offset,
-                count);
+        result.metaData  = source.metaData;
+        result.navigator = newNavigatorSlice(source.navigator, offset, count);
 
         result.navigator.setId(source.navigator.getId());
         result.setSession(session);
@@ -999,20 +1005,29 @@ public class Result {
     public static Result newDataRowsResult(Result source, int offset,
                                            int count) {
 
-        if (offset + count > source.navigator.getSize()) {
-            count = source.navigator.getSize() - offset;
-        }
-
         Result result = newResult(ResultConstants.DATAROWS);
 
-        result.id       = source.id;
-        result.metaData = source.metaData;
-        result.navigator = new RowSetNavigatorClient(source.navigator, offset,
-                count);
+        result.id        = source.id;
+        result.metaData  = source.metaData;
+        result.navigator = newNavigatorSlice(source.navigator, offset, count);
 
         return result;
     }
 
+    private static RowSetNavigator newNavigatorSlice(RowSetNavigator source,
+            int offset, int count) {
+
+        if (source instanceof RowSetNavigatorStream) {
+            return ((RowSetNavigatorStream) source).getSlice(offset, count);
+        }
+
+        if (offset + count > source.getSize()) {
+            count = source.getSize() - offset;
+        }
+
+        return new RowSetNavigatorClient(source, offset, count);
+    }
+
     public static Result newDataRowsResult(RowSetNavigator navigator) {
 
         Result result = newResult(ResultConstants.DATAROWS);
@@ -1157,6 +1172,7 @@ public class Result {
                 rowOut.writeString(subString);
                 rowOut.writeString(zoneString);
                 rowOut.writeInt(updateCount);
+                rowOut.writeInt(fetchSize);
                 break;
 
             case ResultConstants.ERROR :
@@ -1172,6 +1188,7 @@ public class Result {
                 rowOut.writeString(databaseName);
                 rowOut.writeString(mainString);
                 rowOut.writeInt(generateKeys);
+                rowOut.writeInt(fetchSize);
                 break;
 
             case ResultConstants.UPDATECOUNT :
@@ -1539,6 +1556,14 @@ public class Result {
         return generateKeys;
     }
 
+    public int getConnectionOptions() {
+        return fetchSize;
+    }
+
+    public void setConnectionOptions(int options) {
+        fetchSize = options;
+    }
+
     public int getGeneratedResultType() {
         return generateKeys;
     }
@@ -732,4 +732,7 @@ public interface ResultConstants {
     int RETURN_NO_GENERATED_KEYS          = 2;     // matching java.sql.Statement constant
     int RETURN_GENERATED_KEYS_COL_NAMES   = 11;    // constant in HSQLDB only
     int RETURN_GENERATED_KEYS_COL_INDEXES = 21;    // constant in HSQLDB only
+
+    /** Options requested with CONNECT and accepted with CONNECTACKNOWLEDGE */
+    int CONNECT_OPTION_COMPRESS = 1;
 }
@@ -47,6 +47,7 @@ public class ResultProperties {
     static final int idx_updatable  = 3;
     static final int idx_sensitive  = 4;
     static final int idx_isheld     = 5;
+    static final int idx_streamable = 6;
 
     //
     public static final int defaultPropsValue   = 0;
@@ -128,6 +129,11 @@ public class ResultProperties {
                                                 : true;
     }
 
+    public static boolean isStreamable(int props) {
+        return (props & (1 << idx_streamable)) == 0 ? false
+                                                    : true;
+    }
+
     public static int addUpdatable(int props, boolean flag) {
         return flag ? props | ((1) << idx_updatable)
                     : props & (~(1 << idx_updatable));
@@ -147,4 +153,9 @@ public class ResultProperties {
         return flag ? props | ((1) << idx_isheld)
                     : props & (~(1 << idx_isheld));
     }
+
+    public static int addStreamable(int props, boolean flag) {
+        return flag ? props | ((1) << idx_streamable)
+                    : props & (~(1 << idx_streamable));
+    }
 }
@@ -160,22 +160,27 @@ public class RowInputText extends RowInputBase implements RowInputInterface {
                 start = next;
             }
 
-            s    = text.substring(start, next);
+            int end = next;
+
             next += sepLen;
 
-            int trimLength = s.trim().length();
+            // a field of white space is null, otherwise only the control
+            // characters at the end are removed
+            int first = start;
 
-            if (trimLength == 0) {
-                s = null;
-            } else if (trimLength < s.length()) {
-                trimLength = s.length() - 1;
+            while (first < end && text.charAt(first) <= ' ') {
+                first++;
+            }
 
-                while (s.charAt(trimLength) < ' ') {
-                    trimLength--;
-                }
+            if (first == end) {
+                return null;
+            }
 
-                s = s.substring(0, trimLength + 1);
+            while (text.charAt(end - 1) < ' ') {
+                end--;
             }
+
+            s = text.substring(start, end);
         } catch (Exception e) {
             String message = e.toString();
 
@@ -555,6 +560,13 @@ public class RowInputText extends RowInputBase implements RowInputInterface {
         return line;
     }
 
+    /**
+     * Returns the line set as the source.
+     */
+    public String getSource() {
+        return text;
+    }
+
     public void skippedLine() {
         line++;
     }
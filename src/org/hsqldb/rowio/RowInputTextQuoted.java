@@ -43,7 +43,7 @@ import org.hsqldb.persist.TextFileSettings;
  * case.
  *
  * @author Bob Preston (sqlbob@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 1.7.0
  */
 public class RowInputTextQuoted extends RowInputText {
@@ -89,6 +89,38 @@ public class RowInputTextQuoted extends RowInputText {
         try {
             field++;
 
+            // fast path for a field without doubled quotes
+            int close = text.indexOf(quoteChar, next + 1);
+
+            if (close > 0 && close < charLength) {
+                int after = close + 1;
+
+                if (after == charLength) {
+                    s    = text.substring(next + 1, close);
+                    next = charLength;
+
+                    return s;
+                }
+
+                if (!isEnd && text.charAt(after) != quoteChar) {
+                    int end = text.indexOf(sep, after);
+
+                    if (end < 0) {
+                        end = charLength;
+                    }
+
+                    s = text.substring(next + 1, close);
+
+                    if (end > after) {
+                        s = s.concat(text.substring(after, end));
+                    }
+
+                    next = end + sepLen;
+
+                    return s;
+                }
+            }
+
             StringBuffer sb    = new StringBuffer();
             boolean      done  = false;
             int          state = NORMAL_FIELD;
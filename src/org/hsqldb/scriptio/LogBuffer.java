@@ -0,0 +1,102 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.util.zip.CRC32;
+
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.rowio.RowOutputTextLog;
+
+/**
+ * Buffers in which a session formats its log records.<p>
+ *
+ * Each session has its own LogBuffer, so sessions format their records
+ * concurrently. A ScriptWriter only synchronizes on the file stream to
+ * append the finished bytes of a record.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public final class LogBuffer {
+
+    private RowOutputTextLog          textOut;
+    private RowOutputBinary           binaryOut;
+    private CRC32                     crc;
+    private HsqlByteArrayOutputStream byteOut;
+
+    /** the session id prefix for the text log */
+    byte[] sessionId;
+
+    /** the session id prefix as an encoded record */
+    byte[] encodedSessionId;
+
+    /** end of the SET SCHEMA statement at the start of the record */
+    int schemaEnd;
+
+    RowOutputTextLog getTextOut() {
+
+        if (textOut == null) {
+            textOut = new RowOutputTextLog();
+        }
+
+        return textOut;
+    }
+
+    RowOutputBinary getBinaryOut() {
+
+        if (binaryOut == null) {
+            binaryOut = new RowOutputBinary(256, 1);
+        }
+
+        return binaryOut;
+    }
+
+    CRC32 getCRC() {
+
+        if (crc == null) {
+            crc = new CRC32();
+        }
+
+        return crc;
+    }
+
+    HsqlByteArrayOutputStream getByteOut() {
+
+        if (byteOut == null) {
+            byteOut = new HsqlByteArrayOutputStream(256);
+        }
+
+        return byteOut;
+    }
+}
@@ -0,0 +1,469 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import org.hsqldb.Database;
+import org.hsqldb.HsqlException;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.HsqlDeque;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreAVLMemory;
+import org.hsqldb.rowio.RowInputTextLog;
+import org.hsqldb.types.Type;
+
+/**
+ * Loads the rows of the .script file with several worker threads. Used
+ * when the hsqldb.script_load_threads property is larger than zero.<p>
+ *
+ * ScriptReaderText reads the lines and passes the INSERT statements in
+ * batches to the workers, which convert them to row data, each with its own
+ * session. The rows are then created by the reading thread in the order of
+ * the file, so row ids and identity values are the same as with sequential
+ * loading.<p>
+ *
+ * The rows of MEMORY tables are not indexed as they are created. After the
+ * last line has been read, each index of these tables is built by a worker
+ * from the sorted rows, so the indexes are built in parallel. The rows of
+ * other tables are inserted as they are created.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+final class ParallelScriptLoader {
+
+    static final int batchSize = 256;
+
+    //
+    final Database      database;
+    final Session       session;
+    final Worker[]      workers;
+    final int           maxPendingBatches;
+    final HsqlDeque     queue     = new HsqlDeque();
+    final HsqlDeque     pending   = new HsqlDeque();
+    final HashMap       tableMap  = new HashMap();
+    final HsqlArrayList tableList = new HsqlArrayList();
+    Batch               batch;
+    long                failedLine;
+    boolean             isStopped;
+
+    ParallelScriptLoader(Database database, Session session,
+                         int threadCount) {
+
+        this.database     = database;
+        this.session      = session;
+        workers           = new Worker[threadCount];
+        maxPendingBatches = threadCount * 4;
+
+        for (int i = 0; i < threadCount; i++) {
+            Session workerSession =
+                database.getSessionManager().getSysSessionForScript(database);
+
+            workers[i] = new Worker(workerSession, i);
+
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Adds an INSERT statement for the table. Rows of the preceding batches
+     * that have been converted are created while the workers continue.
+     */
+    void addLine(Table table, String statement, long lineNumber) {
+
+        if (batch != null
+                && (batch.tableRows.table != table
+                    || batch.count == batchSize
+                    || batch.firstLine + batch.count != lineNumber)) {
+            flush();
+        }
+
+        if (batch == null) {
+            batch = new Batch(getTableRows(table), lineNumber);
+        }
+
+        batch.lines[batch.count++] = statement;
+    }
+
+    /**
+     * Creates the remaining rows, then builds the indexes of the tables with
+     * deferred indexing.
+     */
+    void finish() {
+
+        flush();
+
+        while (!pending.isEmpty()) {
+            apply((Batch) pending.removeFirst());
+        }
+
+        buildIndexes();
+    }
+
+    /**
+     * Stops the workers. Tasks that have not started are discarded.
+     */
+    void close() {
+
+        synchronized (this) {
+            isStopped = true;
+
+            notifyAll();
+        }
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+    }
+
+    /**
+     * Returns the line number of the row that failed, or 0.
+     */
+    long getFailedLine() {
+        return failedLine;
+    }
+
+    private TableRows getTableRows(Table table) {
+
+        TableRows tableRows = (TableRows) tableMap.get(table);
+
+        if (tableRows == null) {
+            PersistentStore store =
+                database.persistentStoreCollection.getStore(table);
+
+            tableRows = new TableRows(table, store);
+
+            tableMap.put(table, tableRows);
+            tableList.add(tableRows);
+        }
+
+        return tableRows;
+    }
+
+    private void flush() {
+
+        if (batch == null) {
+            return;
+        }
+
+        pending.addLast(batch);
+        addTask(batch);
+
+        batch = null;
+
+        while (!pending.isEmpty()) {
+            Task first = (Task) pending.getFirst();
+
+            if (pending.size() <= maxPendingBatches && !isDone(first)) {
+                break;
+            }
+
+            apply((Batch) pending.removeFirst());
+        }
+    }
+
+    private void apply(Batch current) {
+
+        waitFor(current);
+
+        for (int i = 0; i < current.count; i++) {
+            if (i == current.errorIndex) {
+                failedLine = current.firstLine + i;
+
+                throw getException(current.error);
+            }
+
+            try {
+                current.tableRows.add(session, current.data[i]);
+            } catch (HsqlException e) {
+                failedLine = current.firstLine + i;
+
+                throw e;
+            }
+        }
+    }
+
+    private void buildIndexes() {
+
+        HsqlArrayList tasks = new HsqlArrayList();
+
+        for (int i = 0; i < tableList.size(); i++) {
+            TableRows tableRows = (TableRows) tableList.get(i);
+
+            if (tableRows.rows == null || tableRows.count == 0) {
+                continue;
+            }
+
+            Index[] indexes = tableRows.table.getIndexList();
+
+            for (int j = 0; j < indexes.length; j++) {
+                Task task = new IndexTask(tableRows, indexes[j]);
+
+                tasks.add(task);
+                addTask(task);
+            }
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = (Task) tasks.get(i);
+
+            waitFor(task);
+
+            if (task.error != null) {
+                throw getException(task.error);
+            }
+        }
+
+        for (int i = 0; i < tableList.size(); i++) {
+            TableRows tableRows = (TableRows) tableList.get(i);
+
+            if (tableRows.rows != null) {
+                tableRows.store.setElementCount(null, tableRows.count,
+                                                tableRows.count);
+
+                tableRows.rows = null;
+            }
+        }
+    }
+
+    private synchronized void addTask(Task task) {
+
+        queue.addLast(task);
+        notifyAll();
+    }
+
+    private synchronized boolean isDone(Task task) {
+        return task.isDone;
+    }
+
+    private synchronized void waitFor(Task task) {
+
+        while (!task.isDone) {
+            try {
+                wait();
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    private synchronized Task takeTask() {
+
+        while (queue.isEmpty() && !isStopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {}
+        }
+
+        if (isStopped) {
+            return null;
+        }
+
+        return (Task) queue.removeFirst();
+    }
+
+    private synchronized void setDone(Task task) {
+
+        task.isDone = true;
+
+        notifyAll();
+    }
+
+    private static HsqlException getException(Throwable t) {
+
+        if (t instanceof HsqlException) {
+            return (HsqlException) t;
+        }
+
+        if (t instanceof OutOfMemoryError) {
+            throw (OutOfMemoryError) t;
+        }
+
+        return Error.error(ErrorCode.ERROR_IN_SCRIPT_FILE, t);
+    }
+
+    /**
+     * The rows of a table. The array is null if the rows are inserted as
+     * they are created.
+     */
+    static final class TableRows {
+
+        final Table           table;
+        final PersistentStore store;
+        final Type[]          colTypes;
+        Row[]                 rows;
+        int                   count;
+
+        TableRows(Table table, PersistentStore store) {
+
+            this.table = table;
+            this.store = store;
+            colTypes   = table.getColumnTypes();
+
+            if (store instanceof RowStoreAVLMemory
+                    && ((RowStoreAVLMemory) store).canBuildIndexes()) {
+                rows = new Row[64];
+            }
+        }
+
+        void add(Session session, Object[] data) {
+
+            if (rows == null) {
+                table.insertFromScript(session, store, data);
+
+                return;
+            }
+
+            table.systemUpdateIdentityValue(data);
+
+            if (count == rows.length) {
+                rows = (Row[]) ArrayUtil.resizeArray(rows, count * 2);
+            }
+
+            rows[count++] = (Row) store.getNewCachedObject(session, data,
+                    false);
+        }
+    }
+
+    abstract static class Task {
+
+        boolean   isDone;
+        Throwable error;
+
+        abstract void run(Worker worker);
+    }
+
+    /**
+     * Consecutive lines of the same table.
+     */
+    static final class Batch extends Task {
+
+        final TableRows  tableRows;
+        final long       firstLine;
+        final String[]   lines = new String[batchSize];
+        final Object[][] data  = new Object[batchSize][];
+        int              count;
+        int              errorIndex = -1;
+
+        Batch(TableRows tableRows, long firstLine) {
+            this.tableRows = tableRows;
+            this.firstLine = firstLine;
+        }
+
+        void run(Worker worker) {
+
+            RowInputTextLog rowIn = worker.rowIn;
+
+            for (int i = 0; i < count; i++) {
+                try {
+                    rowIn.setSource(worker.session, lines[i]);
+
+                    data[i] = rowIn.readData(tableRows.colTypes);
+                } catch (Throwable t) {
+                    errorIndex = i;
+                    error      = t;
+
+                    break;
+                } finally {
+                    lines[i] = null;
+                }
+            }
+        }
+    }
+
+    static final class IndexTask extends Task {
+
+        final TableRows tableRows;
+        final Index     index;
+
+        IndexTask(TableRows tableRows, Index index) {
+            this.tableRows = tableRows;
+            this.index     = index;
+        }
+
+        void run(Worker worker) {
+            ((RowStoreAVLMemory) tableRows.store).buildIndex(worker.session,
+                    index, tableRows.rows, tableRows.count);
+        }
+    }
+
+    final class Worker implements Runnable {
+
+        final Session         session;
+        final RowInputTextLog rowIn = new RowInputTextLog();
+        final Thread          thread;
+
+        Worker(Session session, int index) {
+
+            this.session = session;
+            thread       = new Thread(this, "HSQLDB Script Load " + index);
+
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void join() {
+
+            try {
+                thread.join();
+            } catch (InterruptedException e) {}
+        }
+
+        public void run() {
+
+            while (true) {
+                Task task = takeTask();
+
+                if (task == null) {
+                    return;
+                }
+
+                try {
+                    task.run(this);
+                } catch (Throwable t) {
+                    task.error = t;
+                } finally {
+                    setDone(task);
+                }
+            }
+        }
+    }
+}
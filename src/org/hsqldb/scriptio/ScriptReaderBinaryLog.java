@@ -0,0 +1,300 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb.scriptio;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.IntKeyHashMap;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Reads back a log file written by ScriptWriterBinaryLog.<p>
+ *
+ * The frames are read in the order they were written and the records in
+ * each frame are returned one by one. SESSION_ID and TABLE_DEFINITION
+ * records are applied here and are not returned. Reading stops at the end
+ * of the file, or at a frame that is incomplete or fails the checksum
+ * test, which is reported as an info event.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class ScriptReaderBinaryLog extends ScriptReaderBase {
+
+    static final int maxFrameSize = 1 << 30;
+
+    //
+    DataInputStream dataStreamIn;
+    RowInputBinary  rowIn;
+    CRC32           crc;
+    IntKeyHashMap   tables = new IntKeyHashMap();
+
+    public ScriptReaderBinaryLog(Database db,
+                                 String fileName) throws IOException {
+
+        super(db, fileName);
+
+        InputStream inputStream =
+            database.logger.getFileAccess().openInputStreamElement(fileName);
+
+        dataStreamIn = new DataInputStream(
+            new BufferedInputStream(inputStream, 1 << 14));
+        rowIn = new RowInputBinary(256);
+        crc   = new CRC32();
+
+        byte[] header = new byte[ScriptWriterBinaryLog.HEADER.length];
+
+        dataStreamIn.readFully(header);
+        rowIn.resetBlock(0, 0);
+    }
+
+    /**
+     * Returns true if the file starts with the header of a binary log.
+     */
+    public static boolean isBinaryLog(Database db, String fileName) {
+
+        InputStream inputStream = null;
+
+        try {
+            inputStream =
+                db.logger.getFileAccess().openInputStreamElement(fileName);
+
+            byte[] header = ScriptWriterBinaryLog.HEADER;
+
+            for (int i = 0; i < header.length; i++) {
+                if (inputStream.read() != header[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    protected void readDDL(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    protected void readExistingData(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    public boolean readLoggedStatement(Session session) {
+
+        while (true) {
+            if (rowIn.getPos() >= rowIn.getSize()) {
+                if (!readFrame()) {
+                    return false;
+                }
+            }
+
+            statementType = rowIn.readByte();
+            rowData       = null;
+            currentTable  = null;
+
+            switch (statementType) {
+
+                case SESSION_ID :
+                    sessionNumber = rowIn.readInt();
+                    continue;
+                case ScriptWriterBinaryLog.TABLE_DEFINITION :
+                    readTableDefinition();
+                    continue;
+                case ANY_STATEMENT :
+                    statement = rowIn.readString();
+                    break;
+
+                case SET_SCHEMA_STATEMENT :
+                    currentSchema = rowIn.readString();
+                    break;
+
+                case COMMIT_STATEMENT :
+                    break;
+
+                case INSERT_STATEMENT :
+                case DELETE_STATEMENT : {
+                    currentTable = (Table) tables.get(readVarInt());
+
+                    if (currentTable == null) {
+                        throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+                    }
+
+                    Type[] colTypes;
+
+                    if (statementType == INSERT_STATEMENT
+                            || !currentTable.hasPrimaryKey()) {
+                        colTypes = currentTable.getColumnTypes();
+                    } else {
+                        colTypes = currentTable.getPrimaryKeyTypes();
+                    }
+
+                    rowData = rowIn.readData(colTypes);
+
+                    break;
+                }
+                default :
+                    throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+            }
+
+            lineCount++;
+
+            return true;
+        }
+    }
+
+    /**
+     * Reads the next frame into the row input. Returns false at the end of
+     * the file or at an incomplete or damaged frame.
+     */
+    private boolean readFrame() {
+
+        int length;
+        int checksum;
+
+        try {
+            int b = dataStreamIn.read();
+
+            if (b == -1) {
+                return false;
+            }
+
+            length = readFrameLength(b);
+
+            if (length <= 0 || length > maxFrameSize) {
+                return endOfLog("invalid length");
+            }
+
+            checksum = dataStreamIn.readInt();
+
+            rowIn.resetBlock(0, length);
+            dataStreamIn.readFully(rowIn.getBuffer(), 0, length);
+        } catch (EOFException e) {
+            return endOfLog("incomplete record");
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+
+        crc.reset();
+        crc.update(rowIn.getBuffer(), 0, length);
+
+        if ((int) crc.getValue() != checksum) {
+            return endOfLog("checksum error");
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the rest of the variable length integer that starts with the
+     * given byte. Returns -1 if it is longer than five bytes.
+     */
+    private int readFrameLength(int b) throws IOException {
+
+        int value = b & 0x7F;
+
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 28) {
+                return -1;
+            }
+
+            b     = dataStreamIn.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+        }
+
+        return value;
+    }
+
+    /**
+     * Looks up the table for a new table number. The table exists in the
+     * database at this point of the log, as the definition is written just
+     * before the first record that uses the number.
+     */
+    private void readTableDefinition() {
+
+        int    id     = readVarInt();
+        String schema = rowIn.readString();
+        String name   = rowIn.readString();
+
+        tables.put(id, database.schemaManager.getUserTable(name, schema));
+    }
+
+    private int readVarInt() {
+
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            int b = rowIn.readByte();
+
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private boolean endOfLog(String reason) {
+
+        database.logger.logInfoEvent("binary log ends with " + reason
+                                     + " after record " + lineCount);
+
+        return false;
+    }
+
+    public void close() {
+
+        try {
+            if (dataStreamIn != null) {
+                dataStreamIn.close();
+            }
+        } catch (Exception e) {}
+    }
+}
@@ -42,6 +42,7 @@ import org.hsqldb.HsqlException;
 import org.hsqldb.Session;
 import org.hsqldb.Statement;
 import org.hsqldb.StatementTypes;
+import org.hsqldb.Table;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.LineReader;
@@ -159,11 +160,19 @@ public class ScriptReaderText extends ScriptReaderBase {
     protected void readExistingData(Session session) {
 
         try {
-            String tablename = null;
+            String tablename   = null;
+            int    threadCount = database.logger.getScriptLoadThreads();
 
             // fredt - needed for forward referencing FK constraints
             database.setReferentialIntegrity(false);
 
+            if (threadCount > 0 && database.recoveryMode == 0
+                    && !database.databaseProperties.isVersion18()) {
+                readExistingData(session, threadCount);
+
+                return;
+            }
+
             for (; isInsert || readLoggedStatement(session);
                     isInsert = false) {
                 if (statementType == SET_SCHEMA_STATEMENT) {
@@ -211,23 +220,59 @@ public class ScriptReaderText extends ScriptReaderBase {
         }
     }
 
-    public boolean readLoggedStatement(Session session) {
+    /**
+     * Passes the INSERT statements to a ParallelScriptLoader. The first
+     * statement has already been read by readDDL().
+     */
+    private void readExistingData(Session session, int threadCount) {
 
-        if (!sessionChanged) {
-            try {
-                rawStatement = dataStreamIn.readLine();
-            } catch (EOFException e) {
-                return false;
-            } catch (IOException e) {
-                throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        ParallelScriptLoader loader = new ParallelScriptLoader(database,
+            session, threadCount);
+        String tablename = null;
+        Table  table     = null;
+
+        try {
+            for (; isInsert || readScriptStatement(session);
+                    isInsert = false) {
+                if (statementType == SET_SCHEMA_STATEMENT) {
+                    session.setSchema(currentSchema);
+
+                    tablename = null;
+
+                    continue;
+                } else if (statementType == INSERT_STATEMENT) {
+                    if (!rowIn.getTableName().equals(tablename)) {
+                        tablename = rowIn.getTableName();
+
+                        String schema = session.getSchemaName(currentSchema);
+
+                        table = database.schemaManager.getUserTable(tablename,
+                                schema);
+                    }
+
+                    loader.addLine(table, statement, lineCount);
+                } else {
+                    throw Error.error(ErrorCode.ERROR_IN_SCRIPT_FILE,
+                                      statement);
+                }
             }
 
-            lineCount++;
+            loader.finish();
+        } catch (RuntimeException e) {
+            if (loader.getFailedLine() > 0) {
+                lineCount = loader.getFailedLine();
+            }
+
+            throw e;
+        } finally {
+            loader.close();
+        }
+    }
 
-            //        System.out.println(lineCount);
-            statement = StringConverter.unicodeStringToString(rawStatement);
+    public boolean readLoggedStatement(Session session) {
 
-            if (statement == null) {
+        if (!sessionChanged) {
+            if (!readLine()) {
                 return false;
             }
         }
@@ -237,6 +282,44 @@ public class ScriptReaderText extends ScriptReaderBase {
         return true;
     }
 
+    /**
+     * Reads a line and its statement type without reading the row data.
+     */
+    private boolean readScriptStatement(Session session) {
+
+        if (!readLine()) {
+            return false;
+        }
+
+        rowIn.setSource(session, statement);
+
+        statementType = rowIn.getStatementType();
+
+        if (statementType == SET_SCHEMA_STATEMENT) {
+            currentSchema = rowIn.getSchemaName();
+        }
+
+        return true;
+    }
+
+    private boolean readLine() {
+
+        try {
+            rawStatement = dataStreamIn.readLine();
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+
+        lineCount++;
+
+        //        System.out.println(lineCount);
+        statement = StringConverter.unicodeStringToString(rawStatement);
+
+        return statement != null;
+    }
+
     void processStatement(Session session) {
 
         if (statement.startsWith("/*C")) {
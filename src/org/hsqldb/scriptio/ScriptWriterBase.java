@@ -34,6 +34,7 @@ package org.hsqldb.scriptio;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
 
 import org.hsqldb.Database;
 import org.hsqldb.DatabaseManager;
@@ -82,10 +83,16 @@ import org.hsqldb.result.Result;
  * process or done as a result of the SCRIPT command. In this case, the
  * DATA block contains the CACHED table data as well.<p>
  *
- * DatabaseScriptReader and its subclasses read back the data at startup time.
+ * DatabaseScriptReader and its subclasses read back the data at startup time.<p>
+ *
+ * With group commit, the commit statement is written without a sync and the
+ * committing session calls syncTo() after it has released the transaction
+ * locks. The first session to arrive waits for the group commit interval,
+ * then syncs the log once for all the sessions that have written their
+ * commit in the meantime.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.4
+ * @version 2.3.5
  * @since 1.7.2
  */
 public abstract class ScriptWriterBase implements Runnable {
@@ -117,7 +124,10 @@ public abstract class ScriptWriterBase implements Runnable {
     static final int INSERT             = 0;
     static final int INSERT_WITH_SCHEMA = 1;
 
-    /** the last schema for last sessionId */
+    /**
+     * the session of the last record, used with the lock on fileStreamOut
+     * when logging
+     */
     Session                      currentSession;
     public static final String[] LIST_SCRIPT_FORMATS = new String[] {
         Tokens.T_TEXT, Tokens.T_BINARY, null, Tokens.T_COMPRESSED
@@ -186,6 +196,24 @@ public abstract class ScriptWriterBase implements Runnable {
 
     protected abstract void initBuffers();
 
+    /**
+     * Returns the buffer of the session. Log records are formatted in the
+     * buffer of the session without a lock and only the append to the file
+     * is synchronized.
+     */
+    LogBuffer getBuffer(Session session) {
+
+        if (session == null) {
+            return new LogBuffer();
+        }
+
+        if (session.logBuffer == null) {
+            session.logBuffer = new LogBuffer();
+        }
+
+        return session.logBuffer;
+    }
+
     /**
      *  Called internally or externally in write delay intervals.
      */
@@ -208,11 +236,15 @@ public abstract class ScriptWriterBase implements Runnable {
 
         needsSync = false;
 
+        long position = -1;
+
         synchronized (fileStreamOut) {
             try {
                 fileStreamOut.flush();
                 outDescriptor.sync();
 
+                position = byteCount;
+
                 syncCount++;
 /*
                 System.out.println(
@@ -224,6 +256,139 @@ public abstract class ScriptWriterBase implements Runnable {
                                                 e);
             }
         }
+
+        setSyncPosition(position);
+    }
+
+    /**
+     * Returns true if commit statements are written without a sync and the
+     * committing session calls syncTo() instead.
+     */
+    public boolean isGroupCommit() {
+        return writeDelay == 0 && groupCommitWait > 0;
+    }
+
+    /**
+     * Returns the position in the log after the last statement written.
+     */
+    public long getWritePosition() {
+
+        synchronized (fileStreamOut) {
+            return byteCount;
+        }
+    }
+
+    /**
+     * Returns when the log has been synced at least up to the position.
+     * Only one thread syncs the log at a time, the others wait and are
+     * released together when a sync covers their position.
+     */
+    public void syncTo(long position) {
+
+        boolean interrupted = false;
+
+        // a position written before the log was reopened
+        synchronized (fileStreamOut) {
+            if (position > byteCount) {
+                position = byteCount;
+            }
+        }
+
+        synchronized (syncMonitor) {
+            while (true) {
+                if (isClosed || syncPosition >= position) {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    return;
+                }
+
+                if (!isSyncing) {
+                    isSyncing = true;
+
+                    break;
+                }
+
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        // wait for other sessions to add their commit to this sync
+        LockSupport.parkNanos(groupCommitWait * 1000L);
+
+        long synced = -1;
+
+        try {
+            synced = groupSync();
+        } finally {
+            synchronized (syncMonitor) {
+                isSyncing = false;
+
+                if (synced > syncPosition) {
+                    syncPosition = synced;
+                }
+
+                syncMonitor.notifyAll();
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Flushes the stream with the lock, then syncs the file without the
+     * lock so that other sessions can write their statements meanwhile.
+     */
+    private long groupSync() {
+
+        FileAccess.FileSync descriptor;
+        long                position;
+
+        synchronized (fileStreamOut) {
+            if (isClosed) {
+                return Long.MAX_VALUE;
+            }
+
+            try {
+                fileStreamOut.flush();
+            } catch (IOException e) {
+                database.logger.logWarningEvent("ScriptWriter synch error: ",
+                                                e);
+
+                return -1;
+            }
+
+            descriptor = outDescriptor;
+            position   = byteCount;
+        }
+
+        try {
+            descriptor.sync();
+
+            syncCount++;
+        } catch (IOException e) {
+            database.logger.logWarningEvent("ScriptWriter synch error: ", e);
+        }
+
+        return position;
+    }
+
+    private void setSyncPosition(long position) {
+
+        synchronized (syncMonitor) {
+            if (position > syncPosition) {
+                syncPosition = position;
+            }
+
+            syncMonitor.notifyAll();
+        }
     }
 
     public void close() {
@@ -321,6 +486,7 @@ public abstract class ScriptWriterBase implements Runnable {
                 switch (t.getTableType()) {
 
                     case TableBase.MEMORY_TABLE :
+                    case TableBase.COLUMNAR_TABLE :
                         script = true;
                         break;
 
@@ -379,9 +545,6 @@ public abstract class ScriptWriterBase implements Runnable {
 
     protected abstract void writeDataTerm() throws IOException;
 
-    protected abstract void writeSessionIdAndSchema(Session session)
-    throws IOException;
-
     public abstract void writeLogStatement(Session session,
                                            String s) throws IOException;
 
@@ -406,6 +569,12 @@ public abstract class ScriptWriterBase implements Runnable {
     // long write delay for scripts : 60s
     protected volatile int writeDelay = 60000;
 
+    // group commit interval in microseconds
+    protected volatile int groupCommitWait;
+    private final Object   syncMonitor = new Object();
+    private long           syncPosition;
+    private boolean        isSyncing;
+
     public void run() {
 
         try {
@@ -445,4 +614,8 @@ public abstract class ScriptWriterBase implements Runnable {
     public int getWriteDelay() {
         return writeDelay;
     }
+
+    public void setGroupCommitWait(int micros) {
+        groupCommitWait = micros;
+    }
 }
@@ -0,0 +1,374 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb.scriptio;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.NumberSequence;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlByteArrayOutputStream;
+import org.hsqldb.lib.OrderedIntHashSet;
+import org.hsqldb.map.ValuePool;
+import org.hsqldb.rowio.RowOutputBinary;
+
+/**
+ * Writes the log in binary format. Used only for the .log file when the
+ * hsqldb.log_format property is 1 and the database is not encrypted.<p>
+ *
+ * The file starts with a header line, followed by frames. Each frame is
+ * written to the file in one synchronized step and consists of the length
+ * of the frame body as a variable length integer, the CRC32 checksum of the
+ * body and the body, which holds one or more records. Each record starts
+ * with its type.<p>
+ *
+ * The session id and the table names are not repeated in each record. A
+ * SESSION_ID record is written before the first record that follows a
+ * record of another session. The first INSERT or DELETE record for a table
+ * is preceded by a TABLE_DEFINITION record that assigns a number to the
+ * schema and table names, and later records use the number. The numbers are
+ * assigned again after each statement other than INSERT and DELETE, which
+ * may drop or alter the table. INSERT and DELETE records contain the row
+ * data in the binary format used for the .data file. Other statements are
+ * written as SQL strings.<p>
+ *
+ * ScriptReaderBinaryLog reads back the frames and stops at the first
+ * incomplete frame or checksum mismatch, which can be written when the
+ * process is terminated during a write.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class ScriptWriterBinaryLog extends ScriptWriterBase {
+
+    static final byte[] HEADER;
+    static final int    TABLE_DEFINITION = 8;
+    static final int    MAX_PREFIX_SIZE  = 9;
+
+    static {
+        try {
+            HEADER = "/*HSQLDB BINARY LOG 1*/\n".getBytes(
+                ScriptWriterText.ISO_8859_1);
+        } catch (UnsupportedEncodingException e) {
+            throw Error.runtimeError(ErrorCode.U_S0500,
+                                     "ScriptWriterBinaryLog");
+        }
+    }
+
+    //
+    private final RowOutputBinary   frameOut = new RowOutputBinary(64, 1);
+    private final CRC32             frameCRC = new CRC32();
+    private final HashMap           tableIds = new HashMap();
+    private final OrderedIntHashSet definedTableIds = new OrderedIntHashSet();
+    private int                     tableIdCount;
+
+    public ScriptWriterBinaryLog(Database db, String file) {
+
+        super(db, file, false, false, false);
+
+        try {
+            synchronized (fileStreamOut) {
+                fileStreamOut.write(HEADER);
+
+                byteCount += HEADER.length;
+            }
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR,
+                              ErrorCode.M_Message_Pair, new Object[] {
+                e.toString(), outFile
+            });
+        }
+    }
+
+    protected void initBuffers() {}
+
+    protected void writeDataTerm() throws IOException {}
+
+    /**
+     * Adds a SET SCHEMA record if the schema is not the last schema logged
+     * for the session.
+     */
+    private void writeSchema(Session session, HsqlName schema,
+                             RowOutputBinary rowOut) {
+
+        if (session == null || schema == session.loggedSchema) {
+            return;
+        }
+
+        rowOut.writeByte(ScriptReaderBase.SET_SCHEMA_STATEMENT);
+        rowOut.writeString(schema.name);
+
+        session.loggedSchema = schema;
+    }
+
+    public void writeLogStatement(Session session,
+                                  String s) throws IOException {
+
+        LogBuffer       buffer = getBuffer(session);
+        RowOutputBinary rowOut = buffer.getBinaryOut();
+
+        startFrame(rowOut);
+
+        if (session != null) {
+            writeSchema(session, session.currentSchema, rowOut);
+        }
+
+        rowOut.writeByte(ScriptReaderBase.ANY_STATEMENT);
+        rowOut.writeString(s);
+        writeFrameToFile(session, buffer, null, -1, true);
+
+        needsSync = true;
+    }
+
+    public void writeRow(Session session, Row row,
+                         Table table) throws IOException {
+
+        LogBuffer       buffer  = getBuffer(session);
+        RowOutputBinary rowOut  = buffer.getBinaryOut();
+        int             tableId = getTableId(table);
+
+        startFrame(rowOut);
+        rowOut.writeByte(ScriptReaderBase.INSERT_STATEMENT);
+        writeVarInt(rowOut, tableId);
+        rowOut.writeData(row, table.getColumnTypes());
+        writeFrameToFile(session, buffer, table, tableId, false);
+    }
+
+    public void writeOtherStatement(Session session,
+                                    String s) throws IOException {
+
+        writeLogStatement(session, s);
+
+        if (writeDelay == 0) {
+            sync();
+        }
+    }
+
+    public void writeInsertStatement(Session session, Row row,
+                                     Table table) throws IOException {
+        writeRow(session, row, table);
+    }
+
+    public void writeDeleteStatement(Session session, Table table,
+                                     Object[] data) throws IOException {
+
+        LogBuffer       buffer  = getBuffer(session);
+        RowOutputBinary rowOut  = buffer.getBinaryOut();
+        int             tableId = getTableId(table);
+
+        startFrame(rowOut);
+        rowOut.writeByte(ScriptReaderBase.DELETE_STATEMENT);
+        writeVarInt(rowOut, tableId);
+        rowOut.writeData(table.getColumnCount(), table.getColumnTypes(), data,
+                         null, table.getPrimaryKey());
+        writeFrameToFile(session, buffer, table, tableId, false);
+    }
+
+    /**
+     * The current value of the sequence is read with the lock, so the
+     * records for a sequence are in the order of the values.
+     */
+    public void writeSequenceStatement(Session session,
+                                       NumberSequence seq) throws IOException {
+
+        LogBuffer       buffer = getBuffer(session);
+        RowOutputBinary rowOut = buffer.getBinaryOut();
+
+        synchronized (fileStreamOut) {
+            StringBuffer sb = new StringBuffer(64);
+
+            sb.append("ALTER SEQUENCE ");
+            sb.append(seq.getSchemaName().statementName).append('.');
+            sb.append(seq.getName().statementName);
+            sb.append(" RESTART WITH ").append(seq.peek());
+            startFrame(rowOut);
+            rowOut.writeByte(ScriptReaderBase.ANY_STATEMENT);
+            rowOut.writeString(sb.toString());
+            writeFrameToFile(session, buffer, null, -1, false);
+        }
+
+        needsSync = true;
+    }
+
+    public void writeCommitStatement(Session session) throws IOException {
+
+        LogBuffer       buffer = getBuffer(session);
+        RowOutputBinary rowOut = buffer.getBinaryOut();
+
+        startFrame(rowOut);
+        rowOut.writeByte(ScriptReaderBase.COMMIT_STATEMENT);
+        writeFrameToFile(session, buffer, null, -1, false);
+
+        needsSync = true;
+
+        if (writeDelay == 0 && groupCommitWait == 0) {
+            sync();
+        }
+    }
+
+    /**
+     * Returns the number used for the table in this log file.
+     */
+    private int getTableId(Table table) {
+
+        synchronized (fileStreamOut) {
+            Integer id = (Integer) tableIds.get(table);
+
+            if (id == null) {
+                id = ValuePool.getInt(tableIdCount++);
+
+                tableIds.put(table, id);
+            }
+
+            return id.intValue();
+        }
+    }
+
+    /**
+     * Resets the buffer and leaves room for the frame prefix.
+     */
+    private static void startFrame(RowOutputBinary rowOut) {
+        rowOut.reset();
+        rowOut.fill(0, MAX_PREFIX_SIZE);
+    }
+
+    /**
+     * Sets the length and checksum of the frame body before the body and
+     * returns the position where the frame starts.
+     */
+    private static int endFrame(RowOutputBinary rowOut, CRC32 crc) {
+
+        byte[] data   = rowOut.getBuffer();
+        int    length = rowOut.size() - MAX_PREFIX_SIZE;
+        int    start  = MAX_PREFIX_SIZE - 4 - getVarIntSize(length);
+        int    end    = rowOut.size();
+
+        crc.reset();
+        crc.update(data, MAX_PREFIX_SIZE, length);
+        rowOut.setPosition(start);
+        writeVarInt(rowOut, length);
+        rowOut.writeInt((int) crc.getValue());
+        rowOut.setPosition(end);
+
+        return start;
+    }
+
+    static int getVarIntSize(int value) {
+
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+
+            size++;
+        }
+
+        return size;
+    }
+
+    static void writeVarInt(HsqlByteArrayOutputStream out, int value) {
+
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes the frame in the buffer. The checksum is computed before the
+     * lock is taken. Short frames for a change of session or a new table
+     * number are written before it if needed. After a statement other than
+     * INSERT and DELETE, the table numbers are cleared.
+     */
+    void writeFrameToFile(Session session, LogBuffer buffer, Table table,
+                          int tableId,
+                          boolean clearTables) throws IOException {
+
+        RowOutputBinary rowOut = buffer.getBinaryOut();
+        int             start  = endFrame(rowOut, buffer.getCRC());
+
+        synchronized (fileStreamOut) {
+            if (session != null && session != currentSession) {
+                startFrame(frameOut);
+                frameOut.writeByte(ScriptReaderBase.SESSION_ID);
+                frameOut.writeInt((int) session.getId());
+                writeFrameOut();
+
+                currentSession = session;
+            }
+
+            if (table != null && !definedTableIds.contains(tableId)) {
+                HsqlName name = table.getName();
+
+                startFrame(frameOut);
+                frameOut.writeByte(TABLE_DEFINITION);
+                writeVarInt(frameOut, tableId);
+                frameOut.writeString(name.schema.name);
+                frameOut.writeString(name.name);
+                writeFrameOut();
+                definedTableIds.add(tableId);
+            }
+
+            fileStreamOut.write(rowOut.getBuffer(), start,
+                                rowOut.size() - start);
+
+            byteCount += rowOut.size() - start;
+
+            lineCount++;
+
+            if (clearTables) {
+                tableIds.clear();
+                definedTableIds.clear();
+            }
+        }
+    }
+
+    private void writeFrameOut() throws IOException {
+
+        int start = endFrame(frameOut, frameCRC);
+
+        fileStreamOut.write(frameOut.getBuffer(), start,
+                            frameOut.size() - start);
+
+        byteCount += frameOut.size() - start;
+    }
+}
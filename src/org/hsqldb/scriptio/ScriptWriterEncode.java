@@ -37,17 +37,19 @@ import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.hsqldb.Database;
+import org.hsqldb.Session;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileUtil;
 import org.hsqldb.lib.HsqlByteArrayOutputStream;
 import org.hsqldb.persist.Crypto;
+import org.hsqldb.rowio.RowOutputTextLog;
 
 /**
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.0.1
+ * @version 2.3.5
  * @version 1.9.0
  */
 public class ScriptWriterEncode extends ScriptWriterText {
@@ -128,33 +130,83 @@ public class ScriptWriterEncode extends ScriptWriterText {
         }
     }
 
-    void writeRowOutToFile() throws IOException {
+    /**
+     * For the log, the records are encoded before the lock is taken. The
+     * SET SCHEMA statement and the session id are encoded as separate
+     * records.
+     */
+    void writeRowOutToFile(Session session,
+                           LogBuffer buffer) throws IOException {
 
-        synchronized (fileStreamOut) {
-            if (byteOut == null) {
-                fileStreamOut.write(rowOut.getBuffer(), 0, rowOut.size());
+        if (byteOut == null) {
+            super.writeRowOutToFile(session, buffer);
 
-                byteCount += rowOut.size();
+            return;
+        }
 
-                lineCount++;
+        RowOutputTextLog          rowOut    = buffer.getTextOut();
+        HsqlByteArrayOutputStream out       = buffer.getByteOut();
+        byte[]                    sessionId = null;
 
-                return;
-            }
+        if (session != null) {
+            sessionId = getEncodedSessionId(session, buffer);
+        }
+
+        out.reset();
 
-            int count = crypto.getEncodedSize(rowOut.size());
+        if (buffer.schemaEnd > 0) {
+            encodeRecord(rowOut.getBuffer(), 0, buffer.schemaEnd, out);
+        }
+
+        encodeRecord(rowOut.getBuffer(), buffer.schemaEnd,
+                     rowOut.size() - buffer.schemaEnd, out);
 
-            byteOut.ensureRoom(count + 4);
+        synchronized (fileStreamOut) {
+            if (session != null && session != currentSession) {
+                fileStreamOut.write(sessionId);
 
-            count = crypto.encode(rowOut.getBuffer(), 0, rowOut.size(),
-                                  byteOut.getBuffer(), 4);
+                byteCount += buffer.sessionId.length;
 
-            byteOut.setPosition(0);
-            byteOut.writeInt(count);
-            fileStreamOut.write(byteOut.getBuffer(), 0, count + 4);
+                currentSession = session;
+            }
+
+            fileStreamOut.write(out.getBuffer(), 0, out.size());
 
             byteCount += rowOut.size();
 
             lineCount++;
         }
     }
+
+    private byte[] getEncodedSessionId(Session session, LogBuffer buffer) {
+
+        if (buffer.encodedSessionId == null) {
+            byte[]                    id  = getSessionId(session, buffer);
+            HsqlByteArrayOutputStream out = new HsqlByteArrayOutputStream(64);
+
+            encodeRecord(id, 0, id.length, out);
+
+            buffer.encodedSessionId = out.toByteArray();
+        }
+
+        return buffer.encodedSessionId;
+    }
+
+    /**
+     * Appends the length and the encoded bytes.
+     */
+    private void encodeRecord(byte[] source, int offset, int length,
+                              HsqlByteArrayOutputStream out) {
+
+        int position = out.size();
+        int count    = crypto.getEncodedSize(length);
+
+        out.ensureRoom(count + 4);
+
+        count = crypto.encode(source, offset, length, out.getBuffer(),
+                              position + 4);
+
+        out.writeInt(count);
+        out.setPosition(position + 4 + count);
+    }
 }
@@ -65,12 +65,12 @@ import org.hsqldb.rowio.RowOutputTextLog;
  *
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.3.5
  * @since 1.7.2
  */
 public class ScriptWriterText extends ScriptWriterBase {
 
-    RowOutputTextLog           rowOut;
+    LogBuffer                  scriptBuffer;
     public static final String ISO_8859_1 = "ISO-8859-1";
 
     /** @todo - perhaps move this global into a lib utility class */
@@ -144,40 +144,36 @@ public class ScriptWriterText extends ScriptWriterBase {
     }
 
     protected void initBuffers() {
-        rowOut = new RowOutputTextLog();
+        scriptBuffer = new LogBuffer();
     }
 
     protected void writeDataTerm() throws IOException {}
 
-    protected void writeSessionIdAndSchema(Session session)
-    throws IOException {
+    /**
+     * Resets the buffer for a record. A SET SCHEMA statement is added at the
+     * start if the schema is not the last schema logged for the session.
+     */
+    RowOutputTextLog startRecord(Session session, HsqlName schema,
+                                 LogBuffer buffer) {
 
-        if (session == null) {
-            return;
-        }
+        RowOutputTextLog rowOut = buffer.getTextOut();
 
-        if (session != currentSession) {
-            rowOut.reset();
-            rowOut.write(BYTES_C_ID_INIT);
-            rowOut.writeLong(session.getId());
-            rowOut.write(BYTES_C_ID_TERM);
+        rowOut.reset();
 
-            currentSession = session;
+        if (session != null && schema != null
+                && schema != session.loggedSchema) {
+            writeSchemaStatement(rowOut, schema);
 
-            writeRowOutToFile();
+            session.loggedSchema = schema;
         }
 
-        if (schemaToLog != session.loggedSchema) {
-            rowOut.reset();
-            writeSchemaStatement(schemaToLog);
+        buffer.schemaEnd = rowOut.size();
 
-            session.loggedSchema = schemaToLog;
-
-            writeRowOutToFile();
-        }
+        return rowOut;
     }
 
-    private void writeSchemaStatement(HsqlName schema) {
+    private void writeSchemaStatement(RowOutputTextLog rowOut,
+                                      HsqlName schema) {
 
         rowOut.write(BYTES_SCHEMA);
         rowOut.writeString(schema.statementName);
@@ -186,28 +182,35 @@ public class ScriptWriterText extends ScriptWriterBase {
 
     public void writeLogStatement(Session session,
                                   String s) throws IOException {
+        writeLogStatement(session, s, scriptBuffer);
+    }
 
-        if (session != null) {
-            schemaToLog = session.currentSchema;
+    void writeLogStatement(Session session, String s,
+                           LogBuffer buffer) throws IOException {
 
-            writeSessionIdAndSchema(session);
-        }
+        HsqlName schema = session == null ? null
+                                          : session.currentSchema;
+        RowOutputTextLog rowOut = startRecord(session, schema, buffer);
 
-        rowOut.reset();
         rowOut.writeString(s);
         rowOut.write(BYTES_LINE_SEP);
-        writeRowOutToFile();
+        writeRowOutToFile(session, buffer);
 
         needsSync = true;
     }
 
     public void writeRow(Session session, Row row,
                          Table table) throws IOException {
+        writeRow(session, row, table, scriptBuffer);
+    }
 
-        schemaToLog = table.getName().schema;
+    void writeRow(Session session, Row row, Table table,
+                  LogBuffer buffer) throws IOException {
+
+        RowOutputTextLog rowOut = startRecord(session,
+                                              table.getName().schema,
+                                              buffer);
 
-        writeSessionIdAndSchema(session);
-        rowOut.reset();
         rowOut.setMode(RowOutputTextLog.MODE_INSERT);
         rowOut.write(BYTES_INSERT_INTO);
         rowOut.writeString(table.getName().statementName);
@@ -215,7 +218,7 @@ public class ScriptWriterText extends ScriptWriterBase {
         rowOut.writeData(row, table.getColumnTypes());
         rowOut.write(BYTES_TERM);
         rowOut.write(BYTES_LINE_SEP);
-        writeRowOutToFile();
+        writeRowOutToFile(session, buffer);
     }
 
     public void writeTableInit(Table t) throws IOException {
@@ -228,9 +231,14 @@ public class ScriptWriterText extends ScriptWriterBase {
             return;
         }
 
+        RowOutputTextLog rowOut = scriptBuffer.getTextOut();
+
         rowOut.reset();
-        writeSchemaStatement(t.getName().schema);
-        writeRowOutToFile();
+        writeSchemaStatement(rowOut, t.getName().schema);
+
+        scriptBuffer.schemaEnd = 0;
+
+        writeRowOutToFile(currentSession, scriptBuffer);
 
         currentSession.loggedSchema = schemaToLog;
     }
@@ -238,7 +246,7 @@ public class ScriptWriterText extends ScriptWriterBase {
     public void writeOtherStatement(Session session,
                                     String s) throws IOException {
 
-        writeLogStatement(session, s);
+        writeLogStatement(session, s, getBuffer(session));
 
         if (writeDelay == 0) {
             sync();
@@ -247,19 +255,17 @@ public class ScriptWriterText extends ScriptWriterBase {
 
     public void writeInsertStatement(Session session, Row row,
                                      Table table) throws IOException {
-
-        schemaToLog = table.getName().schema;
-
-        writeRow(session, row, table);
+        writeRow(session, row, table, getBuffer(session));
     }
 
     public void writeDeleteStatement(Session session, Table table,
                                      Object[] data) throws IOException {
 
-        schemaToLog = table.getName().schema;
+        LogBuffer        buffer = getBuffer(session);
+        RowOutputTextLog rowOut = startRecord(session,
+                                              table.getName().schema,
+                                              buffer);
 
-        writeSessionIdAndSchema(session);
-        rowOut.reset();
         rowOut.setMode(RowOutputTextLog.MODE_DELETE);
         rowOut.write(BYTES_DELETE_FROM);
         rowOut.writeString(table.getName().statementName);
@@ -267,39 +273,48 @@ public class ScriptWriterText extends ScriptWriterBase {
         rowOut.writeData(table.getColumnCount(), table.getColumnTypes(), data,
                          table.columnList, table.getPrimaryKey());
         rowOut.write(BYTES_LINE_SEP);
-        writeRowOutToFile();
+        writeRowOutToFile(session, buffer);
     }
 
+    /**
+     * The current value of the sequence is read with the lock, so the
+     * records for a sequence are in the order of the values.
+     */
     public void writeSequenceStatement(Session session,
                                        NumberSequence seq) throws IOException {
 
-        schemaToLog = seq.getName().schema;
+        LogBuffer buffer = getBuffer(session);
 
-        writeSessionIdAndSchema(session);
-        rowOut.reset();
-        rowOut.write(BYTES_SEQUENCE);
-        rowOut.writeString(seq.getSchemaName().statementName);
-        rowOut.write('.');
-        rowOut.writeString(seq.getName().statementName);
-        rowOut.write(BYTES_SEQUENCE_MID);
-        rowOut.writeLong(seq.peek());
-        rowOut.write(BYTES_LINE_SEP);
-        writeRowOutToFile();
+        synchronized (fileStreamOut) {
+            RowOutputTextLog rowOut = startRecord(session,
+                                                  seq.getName().schema,
+                                                  buffer);
+
+            rowOut.write(BYTES_SEQUENCE);
+            rowOut.writeString(seq.getSchemaName().statementName);
+            rowOut.write('.');
+            rowOut.writeString(seq.getName().statementName);
+            rowOut.write(BYTES_SEQUENCE_MID);
+            rowOut.writeLong(seq.peek());
+            rowOut.write(BYTES_LINE_SEP);
+            writeRowOutToFile(session, buffer);
+        }
 
         needsSync = true;
     }
 
     public void writeCommitStatement(Session session) throws IOException {
 
-        writeSessionIdAndSchema(session);
-        rowOut.reset();
+        LogBuffer        buffer = getBuffer(session);
+        RowOutputTextLog rowOut = startRecord(session, null, buffer);
+
         rowOut.write(BYTES_COMMIT);
         rowOut.write(BYTES_LINE_SEP);
-        writeRowOutToFile();
+        writeRowOutToFile(session, buffer);
 
         needsSync = true;
 
-        if (writeDelay == 0) {
+        if (writeDelay == 0 && groupCommitWait == 0) {
             sync();
         }
     }
@@ -311,13 +326,52 @@ public class ScriptWriterText extends ScriptWriterBase {
         }
     }
 
-    void writeRowOutToFile() throws IOException {
+    /**
+     * Returns the session id that is written before the first record of a
+     * session that follows a record of another session.
+     */
+    byte[] getSessionId(Session session, LogBuffer buffer) {
+
+        if (buffer.sessionId == null) {
+            RowOutputTextLog out = new RowOutputTextLog();
+
+            out.write(BYTES_C_ID_INIT);
+            out.writeLong(session.getId());
+            out.write(BYTES_C_ID_TERM);
+
+            buffer.sessionId = out.toByteArray();
+        }
+
+        return buffer.sessionId;
+    }
+
+    /**
+     * Appends the formatted record to the file. Only this part of writing
+     * a record is synchronized.
+     */
+    void writeRowOutToFile(Session session,
+                           LogBuffer buffer) throws IOException {
 
         if (fileStreamOut == null) {
             return;
         }
 
+        RowOutputTextLog rowOut    = buffer.getTextOut();
+        byte[]           sessionId = null;
+
+        if (session != null) {
+            sessionId = getSessionId(session, buffer);
+        }
+
         synchronized (fileStreamOut) {
+            if (session != null && session != currentSession) {
+                fileStreamOut.write(sessionId);
+
+                byteCount += sessionId.length;
+
+                currentSession = session;
+            }
+
             fileStreamOut.write(rowOut.getBuffer(), 0, rowOut.size());
 
             byteCount += rowOut.size();
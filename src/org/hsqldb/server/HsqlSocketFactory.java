@@ -34,8 +34,10 @@ package org.hsqldb.server;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 
 /**
  * Base class for producing the Socket objects used by HSQLDB.
@@ -108,6 +110,40 @@ public class HsqlSocketFactory {
         return new ServerSocket(port, 128, InetAddress.getByName(address));
     }
 
+    /**
+     * Returns the server socket of a ServerSocketChannel bound to the
+     * specified port and address. The sockets it accepts have a
+     * SocketChannel.
+     *
+     * @return the ServerSocket
+     * @param port the port to which to bind the ServerSocket
+     * @param address the address, or null for all local addresses
+     * @throws Exception if a network error occurs
+     */
+    public ServerSocket createChannelServerSocket(int port,
+            String address) throws Exception {
+
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        InetSocketAddress   socketAddress;
+
+        if (address == null) {
+            socketAddress = new InetSocketAddress(port);
+        } else {
+            socketAddress =
+                new InetSocketAddress(InetAddress.getByName(address), port);
+        }
+
+        try {
+            channel.socket().bind(socketAddress, 128);
+        } catch (Exception e) {
+            channel.close();
+
+            throw e;
+        }
+
+        return channel.socket();
+    }
+
     /**
      * If socket argument is not null, returns it. If it is null,
      * creates a socket and connects it to the specified remote host at the
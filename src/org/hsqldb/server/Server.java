@@ -277,6 +277,9 @@ public class Server implements HsqlSocketRequestHandler, Notified {
     protected HsqlSocketFactory     socketFactory;
     protected volatile ServerSocket socket;
 
+    // null unless connections are served by a selector and workers
+    volatile ServerConnectionDispatcher connectionDispatcher;
+
 //
     private Thread             serverThread;
     private Throwable          serverError;
@@ -284,6 +287,8 @@ public class Server implements HsqlSocketRequestHandler, Notified {
     private volatile boolean   isSilent;
     protected volatile boolean isRemoteOpen;
     protected boolean          isDaemon;
+    protected boolean          isNio;
+    protected int              workerThreads;
     private PrintWriter        logWriter;
     private PrintWriter        errWriter;
     private ServerAcl          acl = null;    // null means no access tests
@@ -735,7 +740,8 @@ public class Server implements HsqlSocketRequestHandler, Notified {
 
     /**
      * Assigns the specified socket to a new connection handler and
-     * starts the handler in a new Thread.
+     * starts the handler in a new Thread, or passes it to the connection
+     * dispatcher when server.nio is true.
      *
      * @param s the socket to connect
      */
@@ -764,6 +770,22 @@ public class Server implements HsqlSocketRequestHandler, Notified {
             socketFactory.configureSocket(s);
         }
 
+        ServerConnectionDispatcher dispatcher = connectionDispatcher;
+
+        if (dispatcher != null && s.getChannel() != null) {
+            ServerConnection connection = new ServerConnection(s, this);
+
+            try {
+                dispatcher.addConnection(connection);
+            } catch (Exception e) {
+                connection.signalClose();
+            }
+
+            printWithThread("handleConnection() exited");
+
+            return;
+        }
+
         if (serverProtocol == ServerConstants.SC_PROTOCOL_HSQL) {
             r   = new ServerConnection(s, this);
             ctn = ((ServerConnection) r).getConnectionThreadName();
@@ -1248,6 +1270,9 @@ public class Server implements HsqlSocketRequestHandler, Notified {
             ServerProperties.sc_key_remote_open_db);
         isDaemon =
             serverProperties.isPropertyTrue(ServerProperties.sc_key_daemon);
+        isNio = serverProperties.isPropertyTrue(ServerProperties.sc_key_nio);
+        workerThreads = serverProperties.getIntegerProperty(
+            ServerProperties.sc_key_worker_threads, 0);
 
         String aclFilepath =
             serverProperties.getProperty(ServerProperties.sc_key_acl);
@@ -2036,13 +2061,23 @@ public class Server implements HsqlSocketRequestHandler, Notified {
         address       = getAddress();
         port          = getPort();
 
+        // TLS and HTTP connections are always served by a thread each
+        boolean useChannel = isNio && !isTls()
+                             && serverProtocol
+                                == ServerConstants.SC_PROTOCOL_HSQL;
+
         if (StringUtil.isEmpty(address)
                 || ServerConstants.SC_DEFAULT_ADDRESS.equalsIgnoreCase(
                     address.trim())) {
-            socket = socketFactory.createServerSocket(port);
+            socket = useChannel
+                     ? socketFactory.createChannelServerSocket(port, null)
+                     : socketFactory.createServerSocket(port);
         } else {
             try {
-                socket = socketFactory.createServerSocket(port, address);
+                socket = useChannel
+                         ? socketFactory.createChannelServerSocket(port,
+                             address)
+                         : socketFactory.createServerSocket(port, address);
             } catch (UnknownHostException e) {
                 candidateAddrs =
                     ServerConfiguration.listLocalInetAddressNames();
@@ -2209,6 +2244,22 @@ public class Server implements HsqlSocketRequestHandler, Notified {
             return;
         }
 
+        if (socket.getChannel() != null) {
+            try {
+                connectionDispatcher = new ServerConnectionDispatcher(this,
+                        workerThreads);
+
+                connectionDispatcher.start();
+            } catch (Exception e) {
+                setServerError(e);
+                printError("run()/ServerConnectionDispatcher(): ");
+                printStackTrace(e);
+                shutdown(true);
+
+                return;
+            }
+        }
+
         // At this point, we have a valid server socket and
         // a valid hosted database set, so its OK to start
         // listening for connections.
@@ -2328,6 +2379,12 @@ public class Server implements HsqlSocketRequestHandler, Notified {
 
         print("Initiating shutdown sequence...");
         releaseServerSocket();
+
+        if (connectionDispatcher != null) {
+            connectionDispatcher.close();
+
+            connectionDispatcher = null;
+        }
         DatabaseManager.deRegisterServer(this);
 
         if (dbPath != null) {
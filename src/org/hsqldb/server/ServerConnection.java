@@ -77,6 +77,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hsqldb.ClientConnection;
@@ -88,6 +89,8 @@ import org.hsqldb.StatementTypes;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
+import org.hsqldb.lib.InflaterFrameInputStream;
 import org.hsqldb.navigator.RowSetNavigator;
 import org.hsqldb.persist.HsqlDatabaseProperties;
 import org.hsqldb.resources.ResourceBundleHandler;
@@ -118,6 +121,10 @@ import org.hsqldb.types.Type;
  *
  * ODBC support added for version 2.0.0 by Blaine Simpson.<p>
  *
+ * When the Server uses a ServerConnectionDispatcher, the run() method is
+ * called by a worker thread each time one or more messages have arrived
+ * and returns when the connection becomes idle.<p>
+ *
  * @author Blaine Simpson (unsaved@users dot sourceforge.net
  * @author Fred Toussi (fredt@users dot sourceforge.net)
  * @version 2.3.4
@@ -141,6 +148,13 @@ class ServerConnection implements Runnable {
     RowInputBinary           rowIn;
     Thread                   runnerThread;
 
+    //
+    private SocketChannel              channel;
+    private SocketChannelInputStream   channelInput;
+    private ServerConnectionDispatcher dispatcher;
+    private boolean                    isInitialised;
+    private InflaterFrameInputStream   frameInput;
+
     //
     private static AtomicInteger mCurrentThread = new AtomicInteger(0);
 
@@ -197,6 +211,13 @@ class ServerConnection implements Runnable {
         this.server = server;
         mThread     = mCurrentThread.getAndIncrement();
 
+        if (server.connectionDispatcher != null
+                && socket.getChannel() != null) {
+            channel      = socket.getChannel();
+            channelInput = new SocketChannelInputStream(channel);
+            dispatcher   = server.connectionDispatcher;
+        }
+
         synchronized (server.serverConnSet) {
             server.serverConnSet.add(this);
         }
@@ -249,9 +270,11 @@ class ServerConnection implements Runnable {
             server.serverConnSet.remove(this);
         }
 
-        try {
-            runnerThread.setContextClassLoader(null);
-        } catch (Throwable t) {}
+        if (dispatcher == null) {
+            try {
+                runnerThread.setContextClassLoader(null);
+            } catch (Throwable t) {}
+        }
     }
 
     /**
@@ -268,8 +291,13 @@ class ServerConnection implements Runnable {
         try {
             socket.setTcpNoDelay(true);
 
-            dataInput = new DataInputStream(
-                new BufferedInputStream(socket.getInputStream()));
+            if (channelInput == null) {
+                dataInput = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            } else {
+                dataInput = new DataInputStream(channelInput);
+            }
+
             dataOutput = new DataOutputStream(socket.getOutputStream());
 
             int firstInt = handshake();
@@ -356,13 +384,23 @@ class ServerConnection implements Runnable {
         resultIn.readLobResults(session, dataInput, rowIn);
         server.printRequest(mThread, resultIn);
 
-        Result resultOut = null;
+        Result  resultOut  = null;
+        boolean isCompress = false;
 
         switch (resultIn.getType()) {
 
             case ResultConstants.CONNECT : {
                 resultOut = setDatabase(resultIn);
 
+                if (session != null
+                        && (resultIn.getConnectionOptions()
+                            & ResultConstants.CONNECT_OPTION_COMPRESS) != 0) {
+                    resultOut.setConnectionOptions(
+                        ResultConstants.CONNECT_OPTION_COMPRESS);
+
+                    isCompress = true;
+                }
+
                 break;
             }
             case ResultConstants.SQLCANCEL : {
@@ -401,6 +439,14 @@ class ServerConnection implements Runnable {
         rowOut.reset(mainBuffer);
         rowIn.resetRow(mainBuffer.length);
 
+        // all later messages in both directions are compressed
+        if (isCompress) {
+            frameInput = new InflaterFrameInputStream(dataInput);
+            dataInput  = new DataInputStream(frameInput);
+            dataOutput = new DataOutputStream(
+                new DeflaterFrameOutputStream(dataOutput));
+        }
+
         if (terminate) {
             throw cleanExit;
         }
@@ -1516,43 +1562,123 @@ class ServerConnection implements Runnable {
      */
     public void run() {
 
-        int msgType;
+        if (dispatcher != null) {
+            runRequests();
+
+            return;
+        }
 
         init();
 
         if (session != null) {
-            try {
-                while (keepAlive) {
-                    msgType = dataInput.readByte();
+            receiveMessages();
+        }
 
-                    if (msgType < ResultConstants.MODE_UPPER_LIMIT) {
-                        receiveResult(msgType);
-                    } else {
-                        receiveOdbcPacket((char) msgType);
-                    }
-                }
-            } catch (CleanExit ce) {
+        close();
+    }
+
+    /**
+     * Initializes this connection on the first call, otherwise handles the
+     * messages that are in the buffer. Then returns the connection to the
+     * dispatcher, or closes it.
+     */
+    private void runRequests() {
+
+        runnerThread = Thread.currentThread();
+
+        if (isInitialised) {
+            receiveMessages();
+        } else {
+            isInitialised = true;
+
+            init();
+
+            if (session == null) {
                 keepAlive = false;
-            } catch (IOException e) {
+            }
+        }
+
+        runnerThread = null;
+
+        if (keepAlive) {
+            dispatcher.resume(this);
+        } else {
+            close();
+        }
+    }
+
+    /**
+     * Handles messages while keepAlive is true. With a dispatcher, returns
+     * when there is no whole message in the buffer.
+     */
+    private void receiveMessages() {
 
-                // fredt - is thrown when connection drops
-                server.printWithThread(mThread + ":disconnected " + user);
-            } catch (HsqlException e) {
+        int msgType;
+
+        try {
+            while (keepAlive) {
+                msgType = dataInput.readByte();
 
-                // fredt - is thrown in unforeseen circumstances
-                if (keepAlive) {
-                    server.printStackTrace(e);
+                if (msgType < ResultConstants.MODE_UPPER_LIMIT) {
+                    receiveResult(msgType);
+                } else {
+                    receiveOdbcPacket((char) msgType);
                 }
-            } catch (Throwable e) {
 
-                // fredt - is thrown in unforeseen circumstances
-                if (keepAlive) {
-                    server.printStackTrace(e);
+                if (channelInput != null && !hasMessage()) {
+                    break;
                 }
             }
+        } catch (CleanExit ce) {
+            keepAlive = false;
+        } catch (IOException e) {
+
+            // fredt - is thrown when connection drops
+            server.printWithThread(mThread + ":disconnected " + user);
+
+            keepAlive = false;
+        } catch (HsqlException e) {
+
+            // fredt - is thrown in unforeseen circumstances
+            if (keepAlive) {
+                server.printStackTrace(e);
+            }
+
+            keepAlive = false;
+        } catch (Throwable e) {
+
+            // fredt - is thrown in unforeseen circumstances
+            if (keepAlive) {
+                server.printStackTrace(e);
+            }
+
+            keepAlive = false;
         }
+    }
 
-        close();
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SocketChannelInputStream getChannelInput() {
+        return channelInput;
+    }
+
+    /**
+     * Returns true if a whole message, or a whole compressed frame, has
+     * been buffered from the channel.
+     */
+    boolean hasMessage() {
+
+        if (frameInput == null) {
+            return channelInput.hasMessage(isInitialised, false);
+        }
+
+        if (frameInput.available() > 0) {
+            return true;
+        }
+
+        return channelInput.hasMessage(isInitialised, true);
     }
 
     private Result setDatabase(Result resultIn) {
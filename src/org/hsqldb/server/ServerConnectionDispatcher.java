@@ -0,0 +1,295 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hsqldb.lib.HsqlArrayList;
+
+/**
+ * Serves the connections of a Server with a single Selector thread and a
+ * pool of worker threads, instead of a thread for each connection.<p>
+ *
+ * The selector thread waits for data on the idle connections and reads
+ * it into the buffer of each connection. When a whole message has arrived,
+ * the connection is removed from the Selector, its channel is put in
+ * blocking mode and it is passed to a worker, which executes the request
+ * and any further requests already in the buffer, then returns the
+ * connection to the selector thread.<p>
+ *
+ * The workers are virtual threads when the server.worker_threads property
+ * is 0 and the JVM supports them, otherwise a pool of platform threads of
+ * the given size.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+class ServerConnectionDispatcher implements Runnable {
+
+    static final int defaultPoolThreadsPerProcessor = 4;
+    static final int minPoolThreads                 = 16;
+
+    //
+    private final Server          server;
+    private final Selector        selector;
+    private final ExecutorService workers;
+    private final Thread          selectorThread;
+    private volatile boolean      isClosed;
+
+    // connections returned by the workers
+    private final ConcurrentLinkedQueue<ServerConnection> pendingQueue =
+        new ConcurrentLinkedQueue<ServerConnection>();
+
+    // connections ready to be passed to the workers
+    private final HsqlArrayList readyList = new HsqlArrayList();
+
+    ServerConnectionDispatcher(Server server,
+                               int workerThreads) throws IOException {
+
+        this.server    = server;
+        selector       = Selector.open();
+        workers        = newWorkers(workerThreads);
+        selectorThread = new Thread(server.serverConnectionThreadGroup,
+                                    this,
+                                    "HSQLDB Selector @"
+                                    + Integer.toString(hashCode(), 16));
+    }
+
+    private ExecutorService newWorkers(int workerThreads) {
+
+        if (workerThreads == 0) {
+            try {
+                ExecutorService service = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor",
+                               new Class<?>[0]).invoke(null, new Object[0]);
+
+                server.printWithThread("workers are virtual threads");
+
+                return service;
+            } catch (Exception e) {
+
+                // JVM without virtual threads
+                server.printWithThread("virtual threads not available: "
+                                       + e);
+            }
+
+            workerThreads = Math.max(
+                minPoolThreads,
+                Runtime.getRuntime().availableProcessors()
+                * defaultPoolThreadsPerProcessor);
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workerThreads,
+            workerThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+
+        pool.allowCoreThreadTimeOut(true);
+        server.printWithThread("workers are a pool of " + workerThreads
+                               + " threads");
+
+        return pool;
+    }
+
+    void start() {
+        selectorThread.start();
+    }
+
+    /**
+     * Starts serving a newly accepted connection. The connection is
+     * initialised by a worker once the client has sent its first message.
+     */
+    void addConnection(ServerConnection connection) throws IOException {
+
+        connection.getChannel().configureBlocking(false);
+        resume(connection);
+    }
+
+    /**
+     * Called by a worker to return a connection that is idle.
+     */
+    void resume(ServerConnection connection) {
+
+        pendingQueue.add(connection);
+        selector.wakeup();
+    }
+
+    void close() {
+
+        isClosed = true;
+
+        selector.wakeup();
+        workers.shutdown();
+    }
+
+    public void run() {
+
+        try {
+            while (!isClosed) {
+                selector.select();
+                registerPending();
+                readSelected();
+                dispatchReady();
+            }
+        } catch (Throwable t) {
+            if (!isClosed) {
+                server.printStackTrace(t);
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private void registerPending() {
+
+        while (true) {
+            ServerConnection connection = pendingQueue.poll();
+
+            if (connection == null) {
+                break;
+            }
+
+            SocketChannel channel = connection.getChannel();
+
+            try {
+                channel.configureBlocking(false);
+
+                // a message may already be in the buffer
+                if (connection.hasMessage()) {
+                    readyList.add(connection);
+
+                    continue;
+                }
+
+                channel.register(selector, SelectionKey.OP_READ,
+                                 connection);
+            } catch (ClosedChannelException e) {
+
+                // connection closed by signalClose()
+            } catch (IOException e) {
+                readyList.add(connection);
+            }
+        }
+    }
+
+    private void readSelected() {
+
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+        while (it.hasNext()) {
+            SelectionKey     key        = it.next();
+            ServerConnection connection =
+                (ServerConnection) key.attachment();
+
+            it.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            boolean isReady;
+
+            try {
+                int count = connection.getChannelInput().fill();
+
+                // at end of stream the worker closes the connection
+                isReady = count < 0
+                          || connection.hasMessage();
+            } catch (IOException e) {
+                isReady = true;
+            }
+
+            if (isReady) {
+                key.cancel();
+                readyList.add(connection);
+            }
+        }
+    }
+
+    /**
+     * Passes the ready connections to the workers. The selectNow() call
+     * deregisters the cancelled keys, so that the channels can be put in
+     * blocking mode.
+     */
+    private void dispatchReady() throws IOException {
+
+        if (readyList.isEmpty()) {
+            return;
+        }
+
+        selector.selectNow();
+
+        for (int i = 0; i < readyList.size(); i++) {
+            ServerConnection connection =
+                (ServerConnection) readyList.get(i);
+
+            try {
+                connection.getChannel().configureBlocking(true);
+                workers.execute(connection);
+            } catch (Throwable t) {
+                connection.signalClose();
+            }
+        }
+
+        readyList.clear();
+    }
+
+    private class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+
+            return new Thread(server.serverConnectionThreadGroup, r,
+                              "HSQLDB Worker @"
+                              + Integer.toString(
+                                  ServerConnectionDispatcher.this.hashCode(),
+                                  16) + '-'
+                              + count.incrementAndGet());
+        }
+    }
+}
@@ -97,6 +97,8 @@ public class ServerProperties extends HsqlProperties {
     static final String sc_key_max_databases    = "server.maxdatabases";
     static final String sc_key_acl              = "server.acl";
     static final String sc_key_daemon           = "server.daemon";
+    static final String sc_key_nio              = "server.nio";
+    static final String sc_key_worker_threads   = "server.worker_threads";
     static final String sc_key_props            = "server.props";
     static final String sc_key_system           = "system";
 
@@ -324,6 +326,9 @@ public class ServerProperties extends HsqlProperties {
                  getMeta(sc_key_max_connections, 0, 100, 1, 10000));
         meta.put(sc_key_max_databases,
                  getMeta(sc_key_max_databases, 0, 10, 1, 1000));
+        meta.put(sc_key_nio, getMeta(sc_key_nio, SERVER_PROPERTY, false));
+        meta.put(sc_key_worker_threads,
+                 getMeta(sc_key_worker_threads, 0, 0, 0, 10000));
 
         //
         prefixes.add(sc_key_database);
@@ -72,7 +72,9 @@ package org.hsqldb.server;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.zip.InflaterInputStream;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -85,6 +87,7 @@ import org.hsqldb.DatabaseURL;
 import org.hsqldb.HsqlException;
 import org.hsqldb.Session;
 import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
 import org.hsqldb.lib.HsqlByteArrayOutputStream;
 import org.hsqldb.persist.HsqlProperties;
 import org.hsqldb.result.Result;
@@ -238,7 +241,13 @@ public class Servlet extends HttpServlet {
         DataOutputStream dataOut  = null;
 
         try {
-            inStream = new DataInputStream(request.getInputStream());
+            InputStream in = request.getInputStream();
+
+            if ("deflate".equals(request.getHeader("Content-Encoding"))) {
+                in = new InflaterInputStream(in);
+            }
+
+            inStream = new DataInputStream(in);
 
             int            databaseID = inStream.readInt();
             long           sessionID  = inStream.readLong();
@@ -265,6 +274,10 @@ public class Servlet extends HttpServlet {
                                                    resultIn.getUpdateCount());
                     resultOut =
                         Result.newConnectionAcknowledgeResponse(session);
+
+                    resultOut.setConnectionOptions(
+                        resultIn.getConnectionOptions()
+                        & ResultConstants.CONNECT_OPTION_COMPRESS);
                 } catch (HsqlException e) {
                     resultOut = Result.newErrorResult(e);
                 }
@@ -308,6 +321,17 @@ public class Servlet extends HttpServlet {
             RowOutputBinary  rowOut     = new RowOutputBinary(BUFFER_SIZE, 1);
 
             resultOut.write(session, tempOutput, rowOut);
+
+            String accept = request.getHeader("Accept-Encoding");
+
+            if (accept != null && accept.indexOf("deflate") >= 0
+                    && memStream.size()
+                       >= DeflaterFrameOutputStream.compressThreshold) {
+                memStream = DeflaterFrameOutputStream.deflate(memStream);
+
+                response.setHeader("Content-Encoding", "deflate");
+            }
+
             response.setHeader("Cache-Control", "no-cache");        // DB-traffic should not be cached by proxies
             response.setContentType("application/octet-stream");
             response.setContentLength(memStream.size());
@@ -0,0 +1,234 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.hsqldb.result.ResultConstants;
+
+/**
+ * Buffered input stream over the SocketChannel of a connection served by a
+ * ServerConnectionDispatcher.<p>
+ *
+ * The dispatcher thread reads into the buffer while the channel is in
+ * non-blocking mode until a whole message has arrived. The worker thread
+ * then reads the message from the buffer, with the channel in blocking
+ * mode for any bytes that have not yet arrived.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+class SocketChannelInputStream extends InputStream {
+
+    static final int maxBufferSize = 1 << 20;
+
+    //
+    final SocketChannel channel;
+    private ByteBuffer  buffer;
+    private int         position;
+
+    SocketChannelInputStream(SocketChannel channel) {
+
+        this.channel = channel;
+        buffer       = ByteBuffer.allocate(ServerConnection.BUFFER_SIZE);
+    }
+
+    public int read() throws IOException {
+
+        if (position == buffer.position()) {
+            if (fill() < 0) {
+                return -1;
+            }
+        }
+
+        return buffer.get(position++) & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position == buffer.position()) {
+            if (fill() < 0) {
+                return -1;
+            }
+        }
+
+        int count = buffer.position() - position;
+
+        if (count > len) {
+            count = len;
+        }
+
+        System.arraycopy(buffer.array(), position, b, off, count);
+
+        position += count;
+
+        return count;
+    }
+
+    /**
+     * Returns the count of bytes in the buffer.
+     */
+    public int available() {
+        return buffer.position() - position;
+    }
+
+    /**
+     * Reads the bytes that are available from the channel into the
+     * buffer. In blocking mode, waits until at least one byte is read.
+     *
+     * @return the count of bytes read, or -1 at the end of the stream
+     */
+    int fill() throws IOException {
+
+        if (position == buffer.position()) {
+            position = 0;
+
+            buffer.clear();
+        } else if (!buffer.hasRemaining()) {
+            compact(buffer.position() - position + 1);
+        }
+
+        return channel.read(buffer);
+    }
+
+    /**
+     * Returns true if the buffer holds a whole message, or the start of a
+     * message that cannot be held in the buffer. A HyperSQL message is a
+     * mode byte and a length-prefixed body followed by at least one more
+     * byte for the LOB data or the end marker. An ODBC message has a type
+     * byte and a length-prefixed body. Before the connection is
+     * initialised, at least five bytes must have arrived. When the
+     * connection uses compression, a whole frame is required instead.
+     */
+    boolean hasMessage(boolean isInitialised, boolean isFramed) {
+
+        int count = buffer.position() - position;
+
+        if (isFramed) {
+            if (count < 4) {
+                return false;
+            }
+
+            int header = getInt(position);
+
+            return hasBytes(count, header < 0 ? 8 - header
+                                              : 4 + header);
+        }
+
+        if (count < 5) {
+            return false;
+        }
+
+        if (!isInitialised) {
+            return true;
+        }
+
+        int mode = buffer.get(position);
+
+        if (mode == ResultConstants.LARGE_OBJECT_OP) {
+            return true;
+        }
+
+        int length = getInt(position + 1);
+
+        if (length < 4) {
+            return true;
+        }
+
+        return hasBytes(count,
+                        mode >= 0 && mode < ResultConstants.MODE_UPPER_LIMIT
+                        ? length + 2
+                        : length + 1);
+    }
+
+    private int getInt(int offset) {
+
+        byte[] bytes = buffer.array();
+
+        return ((bytes[offset] & 0xff) << 24)
+               | ((bytes[offset + 1] & 0xff) << 16)
+               | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * Returns true if the count of bytes in the buffer is at least the
+     * required count, or the required count is too large to be buffered.
+     * Otherwise makes room for the required count.
+     */
+    private boolean hasBytes(int count, int required) {
+
+        if (required < 0 || required > maxBufferSize) {
+            return true;
+        }
+
+        if (count >= required) {
+            return true;
+        }
+
+        if (position + required > buffer.capacity()) {
+            compact(required);
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the unread bytes to the start of a buffer of at least the
+     * given capacity.
+     */
+    private void compact(int capacity) {
+
+        int        count     = buffer.position() - position;
+        ByteBuffer newBuffer = buffer;
+
+        if (capacity > buffer.capacity()) {
+            newBuffer = ByteBuffer.allocate(Math.max(capacity,
+                    buffer.capacity() * 2));
+        }
+
+        System.arraycopy(buffer.array(), position, newBuffer.array(), 0,
+                         count);
+        newBuffer.clear();
+        newBuffer.position(count);
+
+        buffer   = newBuffer;
+        position = 0;
+    }
+}
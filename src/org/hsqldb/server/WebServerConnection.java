@@ -44,6 +44,7 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.util.zip.InflaterInputStream;
 
 import org.hsqldb.DatabaseManager;
 import org.hsqldb.HsqlException;
@@ -52,6 +53,7 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
 import org.hsqldb.lib.HsqlByteArrayOutputStream;
 import org.hsqldb.lib.InOutUtil;
 import org.hsqldb.persist.HsqlDatabaseProperties;
@@ -275,6 +277,8 @@ class WebServerConnection implements Runnable {
     private void processPost(InputStream inStream,
                              String name) throws IOException {
 
+        boolean isDeflate;
+
         try {
 
             // In run() the first line of the requestHeader was already read into rowOut (for a POST
@@ -304,6 +308,13 @@ class WebServerConnection implements Runnable {
                 throw new Exception();
             }
 
+            if (requestHeader.indexOf("Content-Encoding: deflate") >= 0) {
+                inStream = new InflaterInputStream(inStream);
+            }
+
+            isDeflate = requestHeader.indexOf("Accept-Encoding: deflate")
+                        >= 0;
+
             //TODO: Determine presence of Keep-Alive in requestHeader and act upon it accordingly.
             // if (requestHeader.indexOf("Connection: keep-alive") >= 0) { }
         } catch (Exception e) {
@@ -313,7 +324,7 @@ class WebServerConnection implements Runnable {
         }
 
         // inStream's read-pointer will now be positioned at the beginning of the request's pay-load
-        processQuery(inStream);
+        processQuery(inStream, isDeflate);
     }
 
     /**
@@ -322,8 +333,9 @@ class WebServerConnection implements Runnable {
      *
      * @param inStream the incoming byte stream representing the HSQL protocol
      *      database query
+     * @param isDeflate the response can use the deflate content coding
      */
-    void processQuery(InputStream inStream) {
+    void processQuery(InputStream inStream, boolean isDeflate) {
 
         try {
             DataInputStream dataIn     = new DataInputStream(inStream);
@@ -355,6 +367,10 @@ class WebServerConnection implements Runnable {
                                                    resultIn.getUpdateCount());
                     resultOut =
                         Result.newConnectionAcknowledgeResponse(session);
+
+                    resultOut.setConnectionOptions(
+                        resultIn.getConnectionOptions()
+                        & ResultConstants.CONNECT_OPTION_COMPRESS);
                 } catch (HsqlException e) {
                     resultOut = Result.newErrorResult(e);
                 } catch (RuntimeException e) {
@@ -402,6 +418,15 @@ class WebServerConnection implements Runnable {
 
             resultOut.write(session, tempOutput, rowOut);
 
+            boolean isCompressed = isDeflate
+                                   && memStream.size()
+                                      >= DeflaterFrameOutputStream
+                                          .compressThreshold;
+
+            if (isCompressed) {
+                memStream = DeflaterFrameOutputStream.deflate(memStream);
+            }
+
             DataOutputStream dataOut =
                 new DataOutputStream(socket.getOutputStream());
 
@@ -410,6 +435,13 @@ class WebServerConnection implements Runnable {
                                     "application/octet-stream",
                                     memStream.size());
 
+            if (isCompressed) {
+
+                // the header ends with a blank line
+                header = header.substring(0, header.length() - 2)
+                         + "Content-Encoding: deflate\r\n\r\n";
+            }
+
             dataOut.write(header.getBytes(ENCODING));
 
             // Write actual pay-load to response
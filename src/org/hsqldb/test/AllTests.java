@@ -57,10 +57,15 @@ public class AllTests extends TestCase {
         suite.addTestSuite(org.hsqldb.test.TestLobs.class);
         suite.addTestSuite(org.hsqldb.test.TestMerge.class);
         suite.addTestSuite(org.hsqldb.test.TestMultiInsert.class);
+        suite.addTestSuite(org.hsqldb.test.TestPackedRows.class);
+        suite.addTestSuite(org.hsqldb.test.TestVectorFilter.class);
+        suite.addTestSuite(org.hsqldb.test.TestCompiledExpressions.class);
         suite.addTestSuite(org.hsqldb.test.TestSql.class);
         suite.addTestSuite(org.hsqldb.test.TestStoredProcedure.class);
+        suite.addTestSuite(org.hsqldb.test.TestStreamedResults.class);
         suite.addTestSuite(org.hsqldb.test.TestTextTable.class);
         suite.addTestSuite(org.hsqldb.test.TestTextTables.class);
+        suite.addTestSuite(org.hsqldb.test.TestTextTableLoad.class);
         suite.addTestSuite(org.hsqldb.test.TestViewAsterisks.class);
         suite.addTestSuite(org.hsqldb.test.TestUpdatableResults.class);
         suite.addTestSuite(org.hsqldb.test.TestUpdatableResultSets.class);
@@ -68,6 +73,10 @@ public class AllTests extends TestCase {
 
         // Suites that extend TestCase
         suite.addTestSuite(org.hsqldb.test.TestJDBCSavepoints.class);
+        suite.addTestSuite(org.hsqldb.test.TestServerNio.class);
+        suite.addTestSuite(org.hsqldb.test.TestNetworkCompression.class);
+        suite.addTestSuite(org.hsqldb.test.TestParallelScriptLoad.class);
+        suite.addTestSuite(org.hsqldb.test.TestLogRecovery.class);
         suite.addTestSuite(org.hsqldb.test.TestPreparedStatements.class);
         suite.addTestSuite(org.hsqldb.test.TestPreparedSubQueries.class);
         suite.addTestSuite(org.hsqldb.test.TestSubselect.class);
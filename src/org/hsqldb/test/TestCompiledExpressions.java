@@ -0,0 +1,346 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compares the results of statements with compiled expressions, enabled
+ * with hsqldb.compile_threshold, with the results of the same statements on
+ * a database that interprets the expressions. Covers NULL values, CASE
+ * expressions, parameters, the exceptions raised by the expressions and
+ * statements executed by several sessions when they are compiled.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestCompiledExpressions extends TestBase {
+
+    Connection compiled;
+    Connection interpreted;
+
+    static final String[] queries = {
+        "SELECT ID, I + SI, BI * 2, D / 3, -I FROM T WHERE I > 100 ORDER BY ID",
+        "SELECT ID FROM T WHERE TI = 3 OR SI < -900 ORDER BY ID",
+        "SELECT ID FROM T WHERE NOT (I >= 500) AND BI IS NOT NULL ORDER BY ID",
+        "SELECT ID, I IS NULL, SI - TI FROM T WHERE I IS NULL OR BI IS NULL"
+        + " ORDER BY ID",
+        "SELECT ID, DEC + NUM, DEC * 2 FROM T WHERE DEC = NUM OR DEC > 1990"
+        + " ORDER BY ID",
+        "SELECT ID, R * 2, D - I FROM T WHERE R * 2 > I AND D <> I ORDER BY ID",
+        "SELECT ID, I * 1000000, BI * BI FROM T WHERE I * 1000000 > 2000000000"
+        + " ORDER BY ID",
+        "SELECT ID FROM T WHERE I > NULL OR TI IS NULL ORDER BY ID",
+        "SELECT ID, CASE WHEN I > 1000 THEN I - 1000 WHEN I IS NULL THEN -1"
+        + " ELSE SI END FROM T WHERE CASE WHEN TI < 0 THEN TI + 64 ELSE TI"
+        + " END > 30 ORDER BY ID",
+        "SELECT ID, CASE WHEN TI = 0 THEN NULL ELSE I / TI END FROM T"
+        + " WHERE TI <> 0 AND I / TI > 10 ORDER BY ID",
+        "SELECT ID, COALESCE(I, SI) + 1 FROM T WHERE I + 0 > 2990 OR V LIKE"
+        + " 'v29%' ORDER BY ID",
+        "SELECT COUNT(*), SUM(I + SI), MAX(D * 2) FROM T WHERE SI + TI > 0",
+        "SELECT A.ID, B.ID FROM T A, T B WHERE A.ID < 20 AND B.I = A.I + 1"
+        + " AND B.SI > A.SI ORDER BY A.ID, B.ID",
+    };
+
+    static final String[] errorQueries = {
+        "SELECT ID FROM T WHERE I / (SI - SI) > 0",
+        "SELECT ID, I / TI FROM T",
+        "SELECT ID FROM T WHERE I IS NULL OR I / (TI - TI) > 0",
+        "SELECT ID, CASE WHEN I > 0 THEN I / (SI - SI) END FROM T",
+        "SELECT ID FROM T WHERE I > 0 AND CAST(V AS INT) > 0",
+    };
+
+    public TestCompiledExpressions(String name) {
+        super(name, "jdbc:hsqldb:mem:testcompiled;hsqldb.compile_threshold=1",
+              false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        compiled    = newConnection();
+        interpreted = DriverManager.getConnection(
+            "jdbc:hsqldb:mem:testinterpreted", "SA", "");
+
+        createTable(compiled);
+        createTable(interpreted);
+    }
+
+    protected void tearDown() {
+
+        try {
+            compiled.createStatement().execute("SHUTDOWN");
+            interpreted.createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    private static void createTable(Connection c) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, TI TINYINT,"
+                   + " SI SMALLINT, I INT, BI BIGINT, DEC DECIMAL(8),"
+                   + " NUM NUMERIC(20), R REAL, D DOUBLE, V VARCHAR(20))");
+
+        PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO T VALUES ?, ?, ?, ?, ?, ?, ?, ?, ?, ?");
+
+        for (int i = 0; i < 3000; i++) {
+            ps.setInt(1, i);
+            setValue(ps, 2, i, 5, Integer.valueOf(i % 128 - 64));
+            setValue(ps, 3, i, 6, Integer.valueOf(i - 1000));
+            setValue(ps, 4, i, 7, Integer.valueOf(i * 7 % 3000));
+            setValue(ps, 5, i, 8, Long.valueOf(4000000000L + i * 3));
+            setValue(ps, 6, i, 9, Integer.valueOf(i % 2000));
+            setValue(ps, 7, i, 10, Long.valueOf(i % 2000));
+            setValue(ps, 8, i, 11, Double.valueOf(i / 4.0));
+            setValue(ps, 9, i, 12, Double.valueOf(i / 3.0 - 20));
+            setValue(ps, 10, i, 13, "v" + i);
+            ps.executeUpdate();
+        }
+
+        ps.close();
+    }
+
+    private static void setValue(PreparedStatement ps, int column, int row,
+                                 int nullEvery,
+                                 Object value) throws SQLException {
+
+        if (row % nullEvery == 0) {
+            ps.setObject(column, null);
+        } else {
+            ps.setObject(column, value);
+        }
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+
+        int          columns = rs.getMetaData().getColumnCount();
+        StringBuffer sb      = new StringBuffer();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    /**
+     * Executes the statement twice, so that the second execution uses
+     * the compiled expressions, and returns the result of the second.
+     */
+    private static String getResult(Connection c, String sql,
+                                    Object[] params) throws SQLException {
+
+        PreparedStatement ps     = c.prepareStatement(sql);
+        String            result = null;
+
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            result = getResult(ps.executeQuery());
+        }
+
+        ps.close();
+
+        return result;
+    }
+
+    public void testExpressions() throws SQLException {
+
+        for (int i = 0; i < queries.length; i++) {
+            String result = getResult(interpreted, queries[i], new Object[0]);
+
+            assertEquals(queries[i], result,
+                         getResult(compiled, queries[i], new Object[0]));
+        }
+    }
+
+    public void testUpdates() throws SQLException {
+
+        String[] updates = {
+            "UPDATE T SET I = NULL, D = -D WHERE MOD(ID, 11) = 3",
+            "UPDATE T SET SI = SI + 1 WHERE SI * 2 > 1000 OR TI IS NULL",
+            "UPDATE T SET BI = CASE WHEN BI > 4000005000 THEN NULL ELSE BI + 1"
+            + " END WHERE I - SI > 100",
+            "DELETE FROM T WHERE I - SI > 2000 AND BI IS NOT NULL",
+        };
+
+        for (int i = 0; i < updates.length; i++) {
+            PreparedStatement ps1 = interpreted.prepareStatement(updates[i]);
+            PreparedStatement ps2 = compiled.prepareStatement(updates[i]);
+
+            assertEquals(updates[i], ps1.executeUpdate(), ps2.executeUpdate());
+            assertEquals(updates[i], ps1.executeUpdate(), ps2.executeUpdate());
+            ps1.close();
+            ps2.close();
+        }
+
+        testExpressions();
+    }
+
+    public void testParameters() throws SQLException {
+
+        String sql =
+            "SELECT ID, I + ? FROM T WHERE I > ? AND D < ? + SI ORDER BY ID";
+        Object[][] params = {
+            {
+                Integer.valueOf(1), Integer.valueOf(100), Double.valueOf(500)
+            }, {
+                null, null, Double.valueOf(500)
+            }, {
+                Integer.valueOf(-1), Integer.valueOf(-1), null
+            }, {
+                Integer.valueOf(Integer.MAX_VALUE), Integer.valueOf(2900),
+                Double.valueOf(3000)
+            },
+        };
+
+        for (int i = 0; i < params.length; i++) {
+            assertEquals(getResult(interpreted, sql, params[i]),
+                         getResult(compiled, sql, params[i]));
+        }
+    }
+
+    /**
+     * The expressions that raise an exception for some rows raise the same
+     * exception with both evaluations.
+     */
+    public void testErrors() throws SQLException {
+
+        for (int i = 0; i < errorQueries.length; i++) {
+            String sql = errorQueries[i];
+            int    code;
+
+            try {
+                getResult(interpreted, sql, new Object[0]);
+                fail(sql);
+
+                return;
+            } catch (SQLException e) {
+                code = e.getErrorCode();
+            }
+
+            try {
+                getResult(compiled, sql, new Object[0]);
+                fail(sql);
+            } catch (SQLException e) {
+                assertEquals(sql, code, e.getErrorCode());
+            }
+        }
+    }
+
+    /**
+     * Several sessions execute the same statement while it is compiled.
+     */
+    public void testSessions() throws Exception {
+
+        final String sql =
+            "SELECT ID, I * 2 + SI FROM T WHERE I - SI > ? ORDER BY ID";
+        final String expected = getResult(interpreted, sql, new Object[]{
+            Integer.valueOf(500) });
+        final String[]    results = new String[4];
+        final Throwable[] errors  = new Throwable[results.length];
+        Thread[]          threads = new Thread[results.length];
+        String            url     = "jdbc:hsqldb:mem:testsessions"
+                                    + ";hsqldb.compile_threshold=20";
+
+        createTable(DriverManager.getConnection(url, "SA", ""));
+
+        for (int i = 0; i < threads.length; i++) {
+            final int        index = i;
+            final Connection c     = DriverManager.getConnection(url, "SA",
+                "");
+
+            threads[i] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        PreparedStatement ps = c.prepareStatement(sql);
+
+                        ps.setInt(1, 500);
+
+                        for (int j = 0; j < 25; j++) {
+                            String result = getResult(ps.executeQuery());
+
+                            if (!expected.equals(result)) {
+                                results[index] = result;
+
+                                break;
+                            }
+
+                            results[index] = result;
+                        }
+
+                        c.close();
+                    } catch (Throwable t) {
+                        errors[index] = t;
+                    }
+                }
+            };
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(60000);
+            assertNull(errors[i]);
+            assertEquals(expected, results[i]);
+        }
+
+        DriverManager.getConnection(url, "SA", "").createStatement().execute(
+            "SHUTDOWN");
+    }
+}
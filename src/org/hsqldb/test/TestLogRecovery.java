@@ -0,0 +1,387 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.InOutUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests recovery from the .log file written by several sessions that
+ * commit concurrently. The database files are copied while the sessions
+ * are committing, which leaves the copy in the state of a crash, possibly
+ * with an incomplete last record. The copy is opened and each committed
+ * transaction must be present in full and each uncommitted one absent.
+ * Text, binary and encrypted logs are tested.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestLogRecovery extends TestCase {
+
+    static final String dirPath     = "/hsql/testlogrecovery/";
+    static final int    threadCount = 6;
+    static final int    copyCount   = 3;
+
+    //
+    String             props;
+    AtomicIntegerArray committed;
+    volatile boolean   stop;
+    volatile Throwable error;
+
+    public TestLogRecovery(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        deleteDatabases();
+    }
+
+    protected void tearDown() {
+        deleteDatabases();
+    }
+
+    void deleteDatabases() {
+
+        TestUtil.deleteDatabase(dirPath + "test");
+
+        for (int i = 0; i < copyCount; i++) {
+            TestUtil.deleteDatabase(dirPath + "copy" + i + "/test");
+        }
+    }
+
+    Connection newConnection(String path) throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + dirPath
+                                           + path + props, "sa", "");
+    }
+
+    public void testTextLog() throws Exception {
+
+        props = "";
+
+        runSessions();
+    }
+
+    public void testBinaryLog() throws Exception {
+
+        props = ";hsqldb.log_format=1";
+
+        runSessions();
+    }
+
+    public void testEncryptedLog() throws Exception {
+
+        props = ";crypt_key=604a6105889da65326bf35790a923932;crypt_type=AES";
+
+        runSessions();
+    }
+
+    void runSessions() throws Exception {
+
+        Connection c  = newConnection("test");
+        Statement  st = c.createStatement();
+
+        st.execute("SET FILES WRITE DELAY FALSE");
+
+        for (int i = 0; i < 2; i++) {
+            st.execute("CREATE SCHEMA S" + i);
+            st.execute("SET SCHEMA S" + i);
+            st.execute("CREATE SEQUENCE SEQ START WITH " + i * 1000000);
+            st.execute("CREATE TABLE T (TID INT, SEQ INT, K INT, M INT,"
+                       + " V BIGINT, PRIMARY KEY (TID, SEQ, K))");
+            st.execute("CREATE TABLE C (TID INT PRIMARY KEY, N INT)");
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            st.execute("INSERT INTO S" + i % 2 + ".C VALUES " + i + ", 0");
+        }
+
+        st.execute("SET SCHEMA PUBLIC");
+
+        committed = new AtomicIntegerArray(threadCount);
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new SessionThread(i);
+
+            threads[i].start();
+        }
+
+        int[][] copied = new int[copyCount][];
+
+        for (int i = 0; i < copyCount; i++) {
+            waitForCommits((i + 1) * 300);
+
+            copied[i] = getCommitted();
+
+            copyFiles(dirPath + "copy" + i + "/");
+        }
+
+        stop = true;
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        assertNull(error);
+        st.execute("SHUTDOWN");
+
+        for (int i = 0; i < copyCount; i++) {
+            checkDatabase("copy" + i + "/test", copied[i], false);
+        }
+
+        checkDatabase("test", getCommitted(), true);
+    }
+
+    void waitForCommits(int count) throws InterruptedException {
+
+        while (error == null) {
+            int total = 0;
+
+            for (int i = 0; i < threadCount; i++) {
+                total += committed.get(i);
+            }
+
+            if (total >= count) {
+                return;
+            }
+
+            Thread.sleep(10);
+        }
+    }
+
+    int[] getCommitted() {
+
+        int[] values = new int[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            values[i] = committed.get(i);
+        }
+
+        return values;
+    }
+
+    /**
+     * Copies the files of the open database. The .script file does not
+     * change without a checkpoint and the .log file is only appended to.
+     */
+    void copyFiles(String targetDir) throws Exception {
+
+        String[] suffixes = new String[] {
+            ".properties", ".script", ".log"
+        };
+
+        new File(targetDir).mkdirs();
+
+        for (int i = 0; i < suffixes.length; i++) {
+            InputStream  in  = new FileInputStream(dirPath + "test"
+                                                   + suffixes[i]);
+            OutputStream out = new FileOutputStream(targetDir + "test"
+                                                    + suffixes[i]);
+
+            InOutUtil.copy(in, out);
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Checks that the database has the rows of all the transactions of each
+     * session up to its recovered counter, and that the counter includes
+     * all transactions known to be committed.
+     */
+    void checkDatabase(String path, int[] minCommitted,
+                       boolean isExact) throws SQLException {
+
+        Connection c  = newConnection(path);
+        Statement  st = c.createStatement();
+
+        for (int t = 0; t < threadCount; t++) {
+            String schema = "S" + t % 2;
+            ResultSet rs = st.executeQuery("SELECT N FROM " + schema
+                                           + ".C WHERE TID = " + t);
+
+            rs.next();
+
+            int count = rs.getInt(1);
+
+            if (isExact) {
+                assertEquals(minCommitted[t], count);
+            } else {
+                assertTrue(count >= minCommitted[t]);
+            }
+
+            HsqlArrayList expected = getExpectedRows(count);
+
+            rs = st.executeQuery("SELECT SEQ, K, M FROM " + schema
+                                 + ".T WHERE TID = " + t
+                                 + " ORDER BY SEQ, K");
+
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(rs.next());
+                assertEquals(expected.get(i),
+                             rs.getInt(1) + "," + rs.getInt(2) + ","
+                             + rs.getInt(3));
+            }
+
+            assertFalse(rs.next());
+        }
+
+        // sequence values used by committed rows are not returned again
+        for (int i = 0; i < 2; i++) {
+            ResultSet rs = st.executeQuery(
+                "SELECT COUNT(V), COUNT(DISTINCT V), MAX(V) FROM S" + i
+                + ".T");
+
+            rs.next();
+            assertEquals(rs.getInt(1), rs.getInt(2));
+
+            long max = rs.getLong(3);
+
+            rs = st.executeQuery("CALL NEXT VALUE FOR S" + i + ".SEQ");
+
+            rs.next();
+            assertTrue(rs.getLong(1) > max);
+        }
+
+        st.execute("SHUTDOWN");
+    }
+
+    /**
+     * Returns the rows of one session after its first count transactions,
+     * in the form SEQ,K,M.
+     */
+    static HsqlArrayList getExpectedRows(int count) {
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        for (int seq = 1; seq <= count; seq++) {
+            boolean isDeleted = seq + 3 <= count && (seq + 3) % 5 == 0;
+            int     m         = seq + 1 <= count && (seq + 1) % 7 == 0 ? 10
+                                                                       : 0;
+
+            if (isDeleted) {
+                continue;
+            }
+
+            for (int k = 0; k < 2; k++) {
+                list.add(seq + "," + k + "," + m);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Each transaction inserts two rows, updates the session counter and
+     * may delete or update rows of earlier transactions.
+     */
+    class SessionThread extends Thread {
+
+        int tid;
+
+        SessionThread(int tid) {
+            this.tid = tid;
+        }
+
+        public void run() {
+
+            try {
+                Connection c = newConnection("test");
+
+                c.setAutoCommit(false);
+                c.createStatement().execute("SET SCHEMA S" + tid % 2);
+
+                PreparedStatement insert = c.prepareStatement(
+                    "INSERT INTO T VALUES (?, ?, 0, 0, NEXT VALUE FOR SEQ),"
+                    + " (?, ?, 1, 0, NEXT VALUE FOR SEQ)");
+                PreparedStatement counter =
+                    c.prepareStatement("UPDATE C SET N = ? WHERE TID = ?");
+                PreparedStatement delete = c.prepareStatement(
+                    "DELETE FROM T WHERE TID = ? AND SEQ = ?");
+                PreparedStatement update = c.prepareStatement(
+                    "UPDATE T SET M = M + 10 WHERE TID = ? AND SEQ = ?");
+
+                for (int seq = 1; !stop; seq++) {
+                    insert.setInt(1, tid);
+                    insert.setInt(2, seq);
+                    insert.setInt(3, tid);
+                    insert.setInt(4, seq);
+                    insert.executeUpdate();
+                    counter.setInt(1, seq);
+                    counter.setInt(2, tid);
+                    counter.executeUpdate();
+
+                    if (seq % 5 == 0) {
+                        delete.setInt(1, tid);
+                        delete.setInt(2, seq - 3);
+                        delete.executeUpdate();
+                    }
+
+                    if (seq % 7 == 0) {
+                        update.setInt(1, tid);
+                        update.setInt(2, seq - 1);
+                        update.executeUpdate();
+                    }
+
+                    c.commit();
+                    committed.set(tid, seq);
+                }
+
+                c.close();
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+    }
+}
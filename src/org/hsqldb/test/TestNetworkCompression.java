@@ -0,0 +1,337 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.hsqldb.ClientConnection;
+import org.hsqldb.Database;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.lib.DeflaterFrameOutputStream;
+import org.hsqldb.server.Server;
+import org.hsqldb.server.WebServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests connections with network_compression=true over HSQL, HSQL with
+ * server.nio=true and HTTP. Large LOBs and results, both compressible and
+ * random, are written and read back and compared with the same data read
+ * over an uncompressed connection.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestNetworkCompression extends TestCase {
+
+    static final int threshold = DeflaterFrameOutputStream.compressThreshold;
+
+    //
+    String serverProps =
+        "database.0=mem:test;dbname.0=;silent=true;trace=false";
+    String url;
+    Server server;
+    Random random = new Random(0);
+
+    public TestNetworkCompression(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+    }
+
+    protected void tearDown() {
+
+        if (server != null) {
+            server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+
+            server = null;
+        }
+    }
+
+    void startServer(boolean isHTTP, String props) throws Exception {
+
+        server = isHTTP ? new WebServer()
+                        : new Server();
+
+        server.setLogWriter(null);
+        server.setErrWriter(null);
+        server.putPropertiesFromString(serverProps + props);
+
+        if (isHTTP) {
+            server.setPort(8085);
+
+            url = "jdbc:hsqldb:http://localhost:8085/";
+        } else {
+            url = "jdbc:hsqldb:hsql://localhost/";
+        }
+
+        server.start();
+    }
+
+    Connection newConnection(boolean compress) throws SQLException {
+
+        Connection c = DriverManager.getConnection(url
+            + ";network_compression=" + compress, "sa", "");
+        ClientConnection client =
+            (ClientConnection) ((JDBCConnection) c).getSession();
+
+        assertEquals(compress, client.isCompressed());
+
+        return c;
+    }
+
+    public void testCompressedHSQL() throws Exception {
+        startServer(false, "");
+        roundTrip();
+    }
+
+    public void testCompressedNio() throws Exception {
+        startServer(false, ";nio=true;worker_threads=2");
+        roundTrip();
+    }
+
+    public void testCompressedHTTP() throws Exception {
+        startServer(true, "");
+        roundTrip();
+    }
+
+    /**
+     * Writes over a compressed connection, then reads over a compressed
+     * and an uncompressed connection and compares both with the data.
+     */
+    void roundTrip() throws Exception {
+
+        Connection compressed   = newConnection(true);
+        Connection uncompressed = newConnection(false);
+        Statement  st           = compressed.createStatement();
+
+        st.execute("CREATE TABLE TL (ID INT PRIMARY KEY, C CLOB(10M),"
+                   + " B BLOB(10M))");
+        st.execute("CREATE TABLE TV (ID INT PRIMARY KEY, V VARCHAR(4000))");
+
+        String[] clobs = new String[] {
+            repeat("compressible text ", 200000), randomString(300000), "",
+            randomString(threshold - 1), randomString(threshold),
+            randomString(threshold + 1)
+        };
+        byte[][] blobs = new byte[][] {
+            new byte[1024 * 1024], randomBytes(1024 * 1024), new byte[0],
+            randomBytes(threshold - 1), randomBytes(threshold),
+            randomBytes(threshold + 1)
+        };
+        PreparedStatement ps =
+            compressed.prepareStatement("INSERT INTO TL VALUES ?, ?, ?");
+
+        for (int i = 0; i < clobs.length; i++) {
+            ps.setInt(1, i);
+
+            if (i % 2 == 0) {
+                ps.setString(2, clobs[i]);
+            } else {
+                ps.setCharacterStream(2, new StringReader(clobs[i]),
+                                      clobs[i].length());
+            }
+
+            ps.setBytes(3, blobs[i]);
+            ps.executeUpdate();
+        }
+
+        ps.setInt(1, clobs.length);
+        ps.setNull(2, java.sql.Types.CLOB);
+        ps.setNull(3, java.sql.Types.BLOB);
+        ps.executeUpdate();
+        ps.close();
+        checkLobs(compressed, clobs, blobs);
+        checkLobs(uncompressed, clobs, blobs);
+
+        String[] values = new String[20000];
+
+        ps = compressed.prepareStatement("INSERT INTO TV VALUES ?, ?");
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 3 == 0 ? randomString(i % 200)
+                                   : repeat("v" + i, i % 50);
+
+            ps.setInt(1, i);
+            ps.setString(2, values[i]);
+            ps.addBatch();
+
+            if (i % 1000 == 999) {
+                ps.executeBatch();
+            }
+        }
+
+        ps.close();
+        checkRows(compressed, values, 0);
+        checkRows(compressed, values, 500);
+        checkRows(uncompressed, values, 500);
+
+        // small messages after the large ones
+        ResultSet rs = compressed.createStatement().executeQuery(
+            "SELECT COUNT(*) FROM TV");
+
+        rs.next();
+        assertEquals(values.length, rs.getInt(1));
+        compressed.close();
+        uncompressed.close();
+    }
+
+    void checkLobs(Connection c, String[] clobs,
+                   byte[][] blobs) throws Exception {
+
+        Statement st = c.createStatement();
+        ResultSet rs = st.executeQuery("SELECT * FROM TL ORDER BY ID");
+
+        for (int i = 0; i < clobs.length; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+
+            Clob clob = rs.getClob(2);
+
+            assertEquals(clobs[i].length(), clob.length());
+            assertEquals(clobs[i], readAll(clob.getCharacterStream()));
+
+            Blob blob = rs.getBlob(3);
+
+            assertEquals(blobs[i].length, blob.length());
+            assertTrue(Arrays.equals(blobs[i],
+                                     blob.getBytes(1, blobs[i].length)));
+        }
+
+        assertTrue(rs.next());
+        assertNull(rs.getClob(2));
+        assertNull(rs.getBlob(3));
+        assertFalse(rs.next());
+        rs.close();
+
+        // substring and position requests over the same connection
+        rs = st.executeQuery(
+            "SELECT SUBSTRING(C FROM 100001 FOR 18), OCTET_LENGTH(B)"
+            + " FROM TL WHERE ID = 0");
+
+        rs.next();
+        assertEquals(clobs[0].substring(100000, 100018), rs.getString(1));
+        assertEquals(blobs[0].length, rs.getLong(2));
+        rs.close();
+        st.close();
+    }
+
+    void checkRows(Connection c, String[] values,
+                   int fetchSize) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.setFetchSize(fetchSize);
+
+        ResultSet rs    = st.executeQuery("SELECT * FROM TV ORDER BY ID");
+        int       count = 0;
+
+        while (rs.next()) {
+            assertEquals(count, rs.getInt(1));
+            assertEquals(values[count], rs.getString(2));
+
+            count++;
+        }
+
+        assertEquals(values.length, count);
+        st.close();
+    }
+
+    String randomString(int length) {
+
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (0x20 + random.nextInt(0x3000));
+        }
+
+        return new String(chars);
+    }
+
+    byte[] randomBytes(int length) {
+
+        byte[] bytes = new byte[length];
+
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    static String repeat(String s, int count) {
+
+        StringBuilder sb = new StringBuilder(s.length() * count);
+
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+
+        return sb.toString();
+    }
+
+    static String readAll(Reader reader) throws Exception {
+
+        StringBuilder sb     = new StringBuilder();
+        char[]        buffer = new char[4096];
+
+        while (true) {
+            int count = reader.read(buffer);
+
+            if (count < 0) {
+                break;
+            }
+
+            sb.append(buffer, 0, count);
+        }
+
+        reader.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,247 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compares the results of queries on MEMORY tables with packed rows,
+ * enabled with hsqldb.packed_rows, with the same queries on a database
+ * without packed rows. Covers each packed column type, NULL values, updates
+ * and the rows created when the database is reopened.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestPackedRows extends TestBase {
+
+    private static String dbPath = "/hsql/testpacked/packed";
+
+    //
+    Connection packed;
+    Connection plain;
+
+    static final String[] queries = {
+        "SELECT * FROM T ORDER BY ID",
+        "SELECT * FROM T WHERE TI > 10 ORDER BY ID",
+        "SELECT * FROM T WHERE SI BETWEEN -100 AND 100 ORDER BY ID",
+        "SELECT ID, I FROM T WHERE I >= 100 ORDER BY I, ID",
+        "SELECT ID, I FROM T WHERE I < 50 ORDER BY I DESC, ID",
+        "SELECT ID, BI FROM T WHERE BI > 4000000000 ORDER BY BI, ID",
+        "SELECT ID, BI FROM T WHERE BI = 4000000100",
+        "SELECT ID, R, D FROM T WHERE D < 10.5 ORDER BY D, ID",
+        "SELECT ID FROM T WHERE B AND D > 20 ORDER BY ID",
+        "SELECT ID FROM T WHERE B = FALSE ORDER BY ID",
+        "SELECT ID, DT FROM T WHERE DT > DATE '2016-01-10' ORDER BY DT, ID",
+        "SELECT ID, TS FROM T WHERE TS <= TIMESTAMP '2016-01-20 10:00:00.5'"
+        + " ORDER BY TS, ID",
+        "SELECT ID, TSZ FROM T WHERE TSZ > TIMESTAMP '2016-01-05 00:00:00+02:00'"
+        + " ORDER BY ID",
+        "SELECT COUNT(*), COUNT(TI), COUNT(SI), COUNT(I), COUNT(BI), COUNT(R),"
+        + " COUNT(D), COUNT(B), COUNT(DT), COUNT(TS), COUNT(TSZ), COUNT(V) FROM T",
+        "SELECT ID FROM T WHERE I IS NULL ORDER BY ID",
+        "SELECT ID FROM T WHERE TS IS NULL ORDER BY ID",
+        "SELECT I, COUNT(*), SUM(BI), MAX(TS) FROM T GROUP BY I ORDER BY I",
+        "SELECT A.ID, B.ID FROM T A JOIN T B ON A.I = B.I AND A.ID < B.ID"
+        + " ORDER BY A.ID, B.ID",
+    };
+
+    public TestPackedRows(String name) {
+
+        super(name, "jdbc:hsqldb:file:" + dbPath + ";hsqldb.packed_rows=true",
+              false, false);
+
+        TestUtil.deleteDatabase(dbPath);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        packed = newConnection();
+        plain = DriverManager.getConnection("jdbc:hsqldb:mem:testunpacked",
+                                            "SA", "");
+
+        createTable(packed);
+        createTable(plain);
+    }
+
+    protected void tearDown() {
+
+        try {
+            packed.createStatement().execute("SHUTDOWN");
+            plain.createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        TestUtil.deleteDatabase(dbPath);
+        super.tearDown();
+    }
+
+    private static void createTable(Connection c) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, TI TINYINT,"
+                   + " SI SMALLINT, I INT, BI BIGINT, R REAL, D DOUBLE,"
+                   + " B BOOLEAN, DT DATE, TS TIMESTAMP(3),"
+                   + " TSZ TIMESTAMP WITH TIME ZONE, V VARCHAR(20))");
+        st.execute("CREATE INDEX T_I ON T(I)");
+        st.execute("CREATE INDEX T_BI ON T(BI)");
+        st.execute("CREATE INDEX T_D ON T(B, D)");
+        st.execute("CREATE INDEX T_DT ON T(DT)");
+        st.execute("CREATE INDEX T_TS ON T(TS)");
+
+        PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO T VALUES ?, ?, ?, ?, ?, ?, ?, ?,"
+            + " DATE '2016-01-01' + ? DAY,"
+            + " TIMESTAMP '2016-01-01 10:00:00.5' + ? DAY,"
+            + " TIMESTAMP '2016-01-01 10:00:00+02:00' + ? HOUR, ?");
+
+        for (int i = 0; i < 300; i++) {
+            ps.setInt(1, i);
+            setValue(ps, 2, i, 5, Integer.valueOf(i % 128 - 64));
+            setValue(ps, 3, i, 6, Integer.valueOf(i * 7 - 1000));
+            setValue(ps, 4, i, 7, Integer.valueOf(i % 150));
+            setValue(ps, 5, i, 8, Long.valueOf(4000000000L + i));
+            setValue(ps, 6, i, 9, Double.valueOf(i / 4.0));
+            setValue(ps, 7, i, 10, Double.valueOf(i / 3.0 - 20));
+            setValue(ps, 8, i, 11, Boolean.valueOf(i % 2 == 0));
+            setValue(ps, 9, i, 12, Integer.valueOf(i % 40));
+            setValue(ps, 10, i, 13, Integer.valueOf(i % 30));
+            setValue(ps, 11, i, 14, Integer.valueOf(i * 5));
+            setValue(ps, 12, i, 15, "v" + i);
+            ps.executeUpdate();
+        }
+
+        ps.close();
+    }
+
+    private static void setValue(PreparedStatement ps, int column, int row,
+                                 int nullEvery,
+                                 Object value) throws SQLException {
+
+        if (row % nullEvery == 0) {
+            ps.setObject(column, null);
+        } else {
+            ps.setObject(column, value);
+        }
+    }
+
+    private void compareResults() throws SQLException {
+
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(queries[i], getResult(plain, queries[i]),
+                         getResult(packed, queries[i]));
+        }
+    }
+
+    private static String getResult(Connection c,
+                                    String sql) throws SQLException {
+
+        ResultSet    rs      = c.createStatement().executeQuery(sql);
+        int          columns = rs.getMetaData().getColumnCount();
+        StringBuffer sb      = new StringBuffer();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    private void executeBoth(String sql) throws SQLException {
+
+        assertEquals(sql, plain.createStatement().executeUpdate(sql),
+                     packed.createStatement().executeUpdate(sql));
+    }
+
+    public void testTypesAndNulls() throws SQLException {
+        compareResults();
+    }
+
+    public void testUpdates() throws SQLException {
+
+        executeBoth("UPDATE T SET I = I + 1, TS = NULL WHERE MOD(ID, 3) = 0");
+        executeBoth("UPDATE T SET BI = NULL, B = NOT B, DT = NULL"
+                    + " WHERE MOD(ID, 4) = 1");
+        executeBoth("UPDATE T SET TI = 1, SI = 2, R = 1.5, D = -1.25,"
+                    + " TSZ = TIMESTAMP '2016-01-09 00:00:00-05:00'"
+                    + " WHERE I IS NULL");
+        executeBoth("DELETE FROM T WHERE MOD(ID, 7) = 2");
+        executeBoth("INSERT INTO T (ID, I, BI) VALUES 1000, NULL, 4000000100");
+        compareResults();
+    }
+
+    public void testRestart() throws SQLException {
+
+        executeBoth("UPDATE T SET I = NULL, V = 'u' WHERE MOD(ID, 11) = 3");
+        packed.createStatement().execute("SHUTDOWN");
+
+        packed = newConnection();
+
+        compareResults();
+    }
+
+    /**
+     * A type error raised while reading a packed column.
+     */
+    public void testErrors() throws SQLException {
+
+        String sql = "SELECT ID, 10 / (TI - TI) FROM T WHERE TI IS NOT NULL";
+
+        try {
+            getResult(packed, sql);
+            fail();
+        } catch (SQLException e) {
+            try {
+                getResult(plain, sql);
+                fail();
+            } catch (SQLException e2) {
+                assertEquals(e2.getErrorCode(), e.getErrorCode());
+            }
+        }
+    }
+}
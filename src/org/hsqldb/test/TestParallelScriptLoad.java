@@ -0,0 +1,354 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hsqldb.lib.HsqlArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that a database opened with hsqldb.script_load_threads larger than
+ * zero has the same contents and behaviour as the database opened with the
+ * sequential load. The database has several schemas, foreign keys across
+ * schemas and within a table, sequences, identity columns and MEMORY,
+ * CACHED and COLUMNAR tables.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestParallelScriptLoad extends TestCase {
+
+    static final String filePath = "/hsql/testscriptload/test";
+    static final String url      = "jdbc:hsqldb:file:" + filePath;
+
+    //
+    static final String[] queries = {
+        "SCRIPT",
+        "SELECT * FROM S1.PARENT ORDER BY NAME DESC",
+        "SELECT * FROM S1.PARENT WHERE NAME > 'p5' ORDER BY NAME",
+        "SELECT * FROM S1.CHILD WHERE PID BETWEEN 100 AND 200"
+        + " ORDER BY PID, ID",
+        "SELECT * FROM S1.CHILD ORDER BY ID",
+        "SELECT * FROM S2.ITEM WHERE CODE < 'i1' ORDER BY CODE DESC",
+        "SELECT * FROM S2.ITEM ORDER BY PARENT_ID, CHILD_ID, ID",
+        "SELECT * FROM S2.NODE ORDER BY UP, ID",
+        "SELECT * FROM PUBLIC.CACHED_T ORDER BY ID",
+        "SELECT * FROM PUBLIC.COLUMNAR_T ORDER BY ID",
+        "SELECT SEQUENCE_SCHEMA, SEQUENCE_NAME, NEXT_VALUE"
+        + " FROM INFORMATION_SCHEMA.SYSTEM_SEQUENCES"
+        + " ORDER BY SEQUENCE_SCHEMA, SEQUENCE_NAME",
+    };
+
+    public TestParallelScriptLoad(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        TestUtil.deleteDatabase(filePath);
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filePath);
+    }
+
+    Connection newConnection(int threads) throws SQLException {
+        return DriverManager.getConnection(url
+                                           + ";hsqldb.script_load_threads="
+                                           + threads, "sa", "");
+    }
+
+    void createDatabase() throws SQLException {
+
+        Connection c  = newConnection(0);
+        Statement  st = c.createStatement();
+
+        st.execute("CREATE SCHEMA S1");
+        st.execute("CREATE SCHEMA S2");
+        st.execute("CREATE SEQUENCE S1.SEQ START WITH 100 INCREMENT BY 3");
+        st.execute("CREATE SEQUENCE S2.SEQ AS BIGINT START WITH -5");
+        st.execute("CREATE TABLE S1.PARENT (ID INT PRIMARY KEY,"
+                   + " NAME VARCHAR(20) UNIQUE, CREATED TIMESTAMP)");
+        st.execute("CREATE INDEX S1.PARENT_DESC ON S1.PARENT (NAME DESC)");
+        st.execute("CREATE TABLE S1.CHILD (ID INT GENERATED BY DEFAULT"
+                   + " AS IDENTITY (START WITH 10) PRIMARY KEY,"
+                   + " PID INT NOT NULL REFERENCES S1.PARENT (ID)"
+                   + " ON DELETE CASCADE, V DECIMAL(12,3),"
+                   + " NOTE VARCHAR(100))");
+        st.execute("CREATE TABLE S2.ITEM (ID BIGINT PRIMARY KEY,"
+                   + " PARENT_ID INT REFERENCES S1.PARENT (ID)"
+                   + " ON DELETE SET NULL, CHILD_ID INT,"
+                   + " CODE CHAR(4), DATA VARBINARY(16),"
+                   + " UNIQUE (PARENT_ID, CHILD_ID),"
+                   + " FOREIGN KEY (CHILD_ID) REFERENCES S1.CHILD (ID)"
+                   + " ON DELETE SET NULL)");
+        st.execute("CREATE INDEX S2.ITEM_CODE ON S2.ITEM (CODE DESC, ID)");
+        st.execute("CREATE TABLE S2.NODE (ID INT PRIMARY KEY, UP INT,"
+                   + " FOREIGN KEY (UP) REFERENCES S2.NODE (ID)"
+                   + " ON DELETE CASCADE)");
+        st.execute("CREATE CACHED TABLE PUBLIC.CACHED_T (ID INT PRIMARY KEY,"
+                   + " PID INT REFERENCES S1.PARENT (ID) ON DELETE CASCADE,"
+                   + " V VARCHAR(20))");
+        st.execute("CREATE COLUMNAR TABLE PUBLIC.COLUMNAR_T"
+                   + " (ID INT PRIMARY KEY, N BIGINT, D DOUBLE,"
+                   + " S VARCHAR(10))");
+
+        PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO S1.PARENT VALUES ?, ?,"
+            + " TIMESTAMP '2010-01-01 00:00:00'"
+            + " + CAST(? AS INTERVAL SECOND(9))");
+
+        for (int i = 0; i < 3000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, i % 97 == 0 ? null
+                                        : "p" + i);
+            ps.setInt(3, i * 61);
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+        ps.close();
+
+        ps = c.prepareStatement("INSERT INTO S1.CHILD (PID, V, NOTE)"
+                                + " VALUES ?, ?, ?");
+
+        for (int i = 0; i < 9000; i++) {
+            ps.setInt(1, (i * 7) % 3000);
+            ps.setBigDecimal(2, i % 13 == 0 ? null
+                                            : new java.math.BigDecimal(i)
+                                                .movePointLeft(3));
+            ps.setString(3, i % 5 == 0 ? "it's a 'quoted' note " + i
+                                       : "note\n" + i);
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+        ps.close();
+        st.execute("DELETE FROM S1.CHILD WHERE MOD(ID, 11) = 0");
+
+        ps = c.prepareStatement(
+            "INSERT INTO S2.ITEM VALUES NEXT VALUE FOR S2.SEQ, ?, ?, ?, ?");
+
+        for (int i = 0; i < 5000; i++) {
+
+            // child ids that are multiples of 11 were deleted
+            boolean noChild = i % 4 == 0 || (i + 10) % 11 == 0;
+
+            ps.setObject(1, i % 9 == 0 ? null
+                                       : Integer.valueOf(i % 3000));
+            ps.setObject(2, noChild ? null
+                                    : Integer.valueOf(i + 10));
+            ps.setString(3, "i" + (i % 300));
+            ps.setBytes(4, new byte[] {
+                (byte) i, (byte) (i >> 8), 0, -1
+            });
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+        ps.close();
+
+        ps = c.prepareStatement("INSERT INTO S2.NODE VALUES ?, ?");
+
+        for (int i = 0; i < 4000; i++) {
+            ps.setInt(1, i);
+            ps.setObject(2, i == 0 ? null
+                                   : Integer.valueOf(i / 2));
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+        ps.close();
+        st.execute("INSERT INTO PUBLIC.CACHED_T SELECT ID, ID, NAME"
+                   + " FROM S1.PARENT");
+        st.execute("INSERT INTO PUBLIC.COLUMNAR_T SELECT ID, ID * 1000,"
+                   + " ID / 7E0, 's' || MOD(ID, 30) FROM S1.PARENT");
+
+        for (int i = 0; i < 5; i++) {
+            st.execute("CALL NEXT VALUE FOR S1.SEQ");
+        }
+
+        st.execute("SHUTDOWN");
+        c.close();
+    }
+
+    static HsqlArrayList getContents(Connection c) throws SQLException {
+
+        HsqlArrayList list = new HsqlArrayList();
+        Statement     st   = c.createStatement();
+
+        for (int i = 0; i < queries.length; i++) {
+            ResultSet         rs    = st.executeQuery(queries[i]);
+            ResultSetMetaData meta  = rs.getMetaData();
+            int               count = meta.getColumnCount();
+
+            list.add(queries[i]);
+
+            while (rs.next()) {
+                StringBuilder sb = new StringBuilder();
+
+                for (int j = 1; j <= count; j++) {
+                    sb.append(rs.getString(j)).append('|');
+                }
+
+                // differs between databases created in turn
+                if (sb.indexOf("SET DATABASE UNIQUE NAME") == 0) {
+                    continue;
+                }
+
+                list.add(sb.toString());
+            }
+
+            rs.close();
+        }
+
+        st.close();
+
+        return list;
+    }
+
+    /**
+     * Applies the same changes to the open database and returns the results
+     * and errors.
+     */
+    static HsqlArrayList applyChanges(Connection c) throws SQLException {
+
+        HsqlArrayList list = new HsqlArrayList();
+        Statement     st   = c.createStatement();
+        String[]      statements = {
+            "INSERT INTO S1.CHILD (PID, V) VALUES 5, 1.5",
+            "INSERT INTO S1.CHILD (PID, V) VALUES 5000, 1.5",
+            "INSERT INTO S1.PARENT VALUES 3000, 'p1', NULL",
+            "INSERT INTO S1.PARENT VALUES 5, 'p5x', NULL",
+            "INSERT INTO S2.ITEM VALUES NEXT VALUE FOR S2.SEQ, 1, 12,"
+            + " 'x', NULL",
+            "INSERT INTO S2.ITEM VALUES NEXT VALUE FOR S2.SEQ, 1, NULL,"
+            + " 'y', NULL",
+            "INSERT INTO S2.NODE VALUES 5000, 4500",
+            "INSERT INTO PUBLIC.CACHED_T VALUES 5000, 5000, 'x'",
+            "UPDATE S1.PARENT SET NAME = 'p8' WHERE ID = 9",
+            "DELETE FROM S1.PARENT WHERE ID < 500 AND MOD(ID, 3) = 0",
+            "DELETE FROM S1.PARENT WHERE ID = 1",
+            "DELETE FROM S2.NODE WHERE ID = 2",
+            "DELETE FROM S1.CHILD WHERE ID IN (SELECT CHILD_ID FROM S2.ITEM)",
+            "DELETE FROM PUBLIC.COLUMNAR_T WHERE S = 's3'",
+            "CALL NEXT VALUE FOR S1.SEQ",
+        };
+
+        for (int i = 0; i < statements.length; i++) {
+            try {
+                if (st.execute(statements[i])) {
+                    ResultSet rs = st.getResultSet();
+
+                    rs.next();
+                    list.add(rs.getString(1));
+                } else {
+                    list.add(String.valueOf(st.getUpdateCount()));
+                }
+            } catch (SQLException e) {
+                list.add(e.getSQLState() + " " + e.getErrorCode());
+            }
+        }
+
+        st.close();
+
+        return list;
+    }
+
+    void assertSameContents(HsqlArrayList expected, HsqlArrayList actual) {
+
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    public void testParallelLoad() throws Exception {
+
+        createDatabase();
+
+        Connection    c          = newConnection(0);
+        HsqlArrayList sequential = getContents(c);
+
+        c.createStatement().execute("SHUTDOWN");
+
+        for (int threads = 1; threads <= 4; threads += 3) {
+            c = newConnection(threads);
+
+            assertSameContents(sequential, getContents(c));
+            c.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    /**
+     * The same changes made after a sequential and a parallel load give the
+     * same results, errors and contents, and the parallel load of the
+     * changed database matches again.
+     */
+    public void testChangesAfterLoad() throws Exception {
+
+        createDatabase();
+
+        Connection    c               = newConnection(0);
+        HsqlArrayList sequentialCalls = applyChanges(c);
+        HsqlArrayList sequential      = getContents(c);
+
+        c.createStatement().execute("SHUTDOWN IMMEDIATELY");
+        TestUtil.deleteDatabase(filePath);
+        createDatabase();
+
+        c = newConnection(4);
+
+        assertSameContents(sequentialCalls, applyChanges(c));
+        assertSameContents(sequential, getContents(c));
+        c.createStatement().execute("SHUTDOWN");
+
+        c = newConnection(4);
+
+        assertSameContents(sequential, getContents(c));
+        c.createStatement().execute("SHUTDOWN");
+    }
+}
@@ -0,0 +1,246 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+import org.hsqldb.Database;
+import org.hsqldb.server.Server;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests a Server with server.nio=true and a small pool of worker threads.
+ * Many idle connections are kept open while other connections execute
+ * queries, and the idle connections are then used in turn.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestServerNio extends TestCase {
+
+    static final int idleCount   = 64;
+    static final int workerCount = 4;
+
+    //
+    String serverProps =
+        "database.0=mem:test;dbname.0=;silent=true;trace=false;nio=true"
+        + ";maxconnections=" + (idleCount + 10) + ";worker_threads="
+        + workerCount;
+    String       url = "jdbc:hsqldb:hsql://localhost";
+    Server       server;
+    Connection[] idle;
+
+    public TestServerNio(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        server = new Server();
+
+        server.setLogWriter(null);
+        server.setErrWriter(null);
+        server.putPropertiesFromString(serverProps);
+        server.start();
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+
+        Connection c  = newConnection();
+        Statement  st = c.createStatement();
+
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY, V VARCHAR(20))");
+
+        PreparedStatement ps = c.prepareStatement("INSERT INTO T VALUES ?, ?");
+
+        for (int i = 0; i < 1000; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "v" + i);
+            ps.executeUpdate();
+        }
+
+        c.close();
+
+        idle = new Connection[idleCount];
+
+        for (int i = 0; i < idleCount; i++) {
+            idle[i] = newConnection();
+        }
+    }
+
+    protected void tearDown() {
+
+        for (int i = 0; i < idle.length; i++) {
+            try {
+                if (idle[i] != null) {
+                    idle[i].close();
+                }
+            } catch (SQLException e) {}
+        }
+
+        server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+    }
+
+    Connection newConnection() throws SQLException {
+        return DriverManager.getConnection(url, "SA", "");
+    }
+
+    /**
+     * Counts the live threads with a name that starts with the prefix.
+     */
+    static int countThreads(String prefix) {
+
+        Iterator it    = Thread.getAllStackTraces().keySet().iterator();
+        int      count = 0;
+
+        while (it.hasNext()) {
+            Thread thread = (Thread) it.next();
+
+            if (thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    static int getCount(Connection c, int id) throws SQLException {
+
+        PreparedStatement ps = c.prepareStatement(
+            "SELECT COUNT(*) FROM T WHERE ID >= ?");
+
+        ps.setInt(1, id);
+
+        ResultSet rs = ps.executeQuery();
+
+        rs.next();
+
+        int count = rs.getInt(1);
+
+        ps.close();
+
+        return count;
+    }
+
+    /**
+     * The idle connections do not hold a thread each.
+     */
+    public void testIdleConnections() throws Exception {
+
+        assertEquals(0, countThreads("HSQLDB Connection @"));
+        assertTrue(countThreads("HSQLDB Worker @") <= workerCount);
+    }
+
+    /**
+     * Queries on other connections run while the idle connections are open.
+     */
+    public void testActiveConnections() throws Exception {
+
+        final int[]       counts  = new int[8];
+        final Throwable[] errors  = new Throwable[counts.length];
+        Thread[]          threads = new Thread[counts.length];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+
+            threads[i] = new Thread() {
+
+                public void run() {
+
+                    try {
+                        Connection c = newConnection();
+
+                        for (int j = 0; j < 50; j++) {
+                            counts[index] += getCount(c, j * 10);
+                        }
+
+                        c.close();
+                    } catch (Throwable t) {
+                        errors[index] = t;
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(60000);
+            assertNull(errors[i]);
+
+            // sum of 1000 - 10 * j for j from 0 to 49
+            assertEquals(37750, counts[i]);
+        }
+    }
+
+    /**
+     * Each idle connection executes statements after a period of
+     * inactivity, including an update and an error.
+     */
+    public void testIdleConnectionsResume() throws Exception {
+
+        for (int i = 0; i < idle.length; i++) {
+            assertEquals(1000 - i, getCount(idle[i], i));
+        }
+
+        for (int i = 0; i < idle.length; i++) {
+            Statement st = idle[i].createStatement();
+
+            assertEquals(1, st.executeUpdate("UPDATE T SET V = 'u' || " + i
+                                             + " WHERE ID = " + i));
+
+            try {
+                st.execute("INSERT INTO T VALUES " + i + ", 'x'");
+                fail();
+            } catch (SQLException e) {}
+
+            st.close();
+        }
+
+        ResultSet rs = idle[0].createStatement().executeQuery(
+            "SELECT COUNT(*) FROM T WHERE V LIKE 'u%'");
+
+        rs.next();
+        assertEquals(idleCount, rs.getInt(1));
+        assertEquals(0, countThreads("HSQLDB Connection @"));
+    }
+}
@@ -0,0 +1,365 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.hsqldb.ClientConnection;
+import org.hsqldb.StatementTypes;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.result.Result;
+import org.hsqldb.result.ResultConstants;
+import org.hsqldb.result.ResultProperties;
+
+/**
+ * Tests results that are streamed to a network client in blocks, and
+ * statements that a network client sends without waiting for the result.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestStreamedResults extends TestBase {
+
+    Connection connection;
+    Statement  statement;
+
+    public TestStreamedResults(String name) {
+        super(name, "jdbc:hsqldb:hsql://localhost/test;stream_result=true",
+              true, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        connection = newConnection();
+        statement  = connection.createStatement();
+
+        statement.execute("DROP TABLE T IF EXISTS");
+        statement.execute("CREATE TABLE T (ID INT PRIMARY KEY, V INT)");
+
+        PreparedStatement ps =
+            connection.prepareStatement("INSERT INTO T VALUES ?, ?");
+
+        for (int i = 0; i < 5000; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i == 2500 ? 0
+                                   : 1);
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+        ps.close();
+    }
+
+    protected void tearDown() {
+
+        try {
+            connection.close();
+        } catch (Exception e) {}
+
+        super.tearDown();
+    }
+
+    public void testStreamedRows() throws SQLException {
+
+        statement.setFetchSize(100);
+
+        ResultSet rs    = statement.executeQuery("SELECT ID, V FROM T");
+        int       count = 0;
+
+        while (rs.next()) {
+            assertEquals(count, rs.getInt(1));
+
+            count++;
+        }
+
+        assertEquals(5000, count);
+    }
+
+    /**
+     * An error in a block after the first is returned to the client and
+     * the connection remains usable.
+     */
+    public void testErrorInLaterBlock() throws SQLException {
+
+        statement.setFetchSize(100);
+
+        ResultSet rs    = statement.executeQuery("SELECT ID, 10 / V FROM T");
+        int       count = 0;
+
+        try {
+            while (rs.next()) {
+                count++;
+            }
+
+            fail("no exception for division by zero");
+        } catch (SQLException e) {
+            assertTrue(count > 100 && count <= 2500);
+        }
+
+        rs = statement.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(5000, rs.getInt(1));
+    }
+
+    /**
+     * An error while the remaining rows are read before another statement
+     * is returned for that statement, and the transaction is rolled back.
+     */
+    public void testErrorBeforeNextStatement() throws SQLException {
+
+        statement.setFetchSize(100);
+
+        ResultSet rs = statement.executeQuery("SELECT ID, 10 / V FROM T");
+
+        assertTrue(rs.next());
+
+        Statement other = connection.createStatement();
+
+        try {
+            other.executeQuery("VALUES 1");
+            fail("no exception for division by zero");
+        } catch (SQLException e) {}
+
+        rs = other.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(5000, rs.getInt(1));
+    }
+
+    public void testErrorInTransaction() throws SQLException {
+
+        connection.setAutoCommit(false);
+        statement.execute("INSERT INTO T VALUES 10000, 1");
+        statement.setFetchSize(100);
+
+        ResultSet rs = statement.executeQuery("SELECT ID, 10 / V FROM T");
+
+        try {
+            while (rs.next()) {}
+
+            fail("no exception for division by zero");
+        } catch (SQLException e) {}
+
+        connection.rollback();
+
+        rs = statement.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(5000, rs.getInt(1));
+    }
+
+    private int getSum() throws SQLException {
+
+        ResultSet rs = connection.createStatement().executeQuery(
+            "SELECT SUM(V) FROM T");
+
+        rs.next();
+
+        return rs.getInt(1);
+    }
+
+    /**
+     * More statements than fit in the socket buffers are sent before their
+     * results are read.
+     */
+    public void testUpdateAsync() throws Exception {
+
+        JDBCConnection c       = (JDBCConnection) connection;
+        Future[]       futures = new Future[2000];
+
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = c.executeUpdateAsync(
+                "UPDATE T SET V = V + 1 WHERE ID = " + (i * 2));
+        }
+
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals(Integer.valueOf(1), futures[i].get());
+            assertTrue(futures[i].isDone());
+        }
+
+        assertEquals(4999 + 2000, getSum());
+    }
+
+    public void testPreparedUpdateAsync() throws Exception {
+
+        JDBCConnection    c       = (JDBCConnection) connection;
+        PreparedStatement ps      = c.prepareStatement(
+            "INSERT INTO T VALUES ?, ?");
+        Future[]          futures = new Future[500];
+
+        for (int i = 0; i < futures.length; i++) {
+            ps.setInt(1, 10000 + i);
+            ps.setInt(2, 2);
+
+            futures[i] = c.executeUpdateAsync(ps);
+        }
+
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals(Integer.valueOf(1), futures[i].get());
+        }
+
+        assertEquals(4999 + 1000, getSum());
+
+        ps = c.prepareStatement("SELECT * FROM T WHERE ID = ?");
+
+        ps.setInt(1, 0);
+
+        try {
+            c.executeUpdateAsync(ps);
+            fail("no exception for a query");
+        } catch (SQLException e) {}
+    }
+
+    /**
+     * A failed statement reports its error through its Future, and the
+     * statements sent before and after it are executed.
+     */
+    public void testUpdateAsyncErrors() throws Exception {
+
+        JDBCConnection c    = (JDBCConnection) connection;
+        int            code = 0;
+
+        try {
+            statement.executeUpdate("UPDATE T SET V = 10 / V WHERE ID = 2500");
+            fail("no exception for division by zero");
+        } catch (SQLException e) {
+            code = e.getErrorCode();
+        }
+
+        Future first = c.executeUpdateAsync(
+            "UPDATE T SET V = 5 WHERE ID = 1");
+        Future failed = c.executeUpdateAsync(
+            "UPDATE T SET V = 10 / V WHERE ID = 2500");
+        Future invalid = c.executeUpdateAsync("UPDATE NOTABLE SET V = 1");
+        Future last = c.executeUpdateAsync(
+            "UPDATE T SET V = 7 WHERE ID = 2");
+
+        assertEquals(Integer.valueOf(1), last.get());
+        assertEquals(Integer.valueOf(1), first.get());
+
+        try {
+            failed.get();
+            fail("no exception for division by zero");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+            assertEquals(code, ((SQLException) e.getCause()).getErrorCode());
+        }
+
+        try {
+            invalid.get();
+            fail("no exception for a missing table");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+
+        assertEquals(4999 + 4 + 6, getSum());
+    }
+
+    /**
+     * A statement executed while results are pending is executed after the
+     * statements sent before it, and the pending results are kept.
+     */
+    public void testUpdateAsyncThenExecute() throws Exception {
+
+        JDBCConnection c = (JDBCConnection) connection;
+
+        connection.setAutoCommit(false);
+
+        Future delete = c.executeUpdateAsync(
+            "DELETE FROM T WHERE ID < 100");
+        Future update = c.executeUpdateAsync(
+            "UPDATE T SET V = 3 WHERE ID = 100");
+
+        assertEquals(4899 + 2, getSum());
+        assertEquals(Integer.valueOf(1), update.get());
+        assertEquals(Integer.valueOf(100), delete.get());
+        connection.rollback();
+        assertEquals(4999, getSum());
+    }
+
+    /**
+     * The requests are sent directly with the ClientConnection of the
+     * JDBCConnection.
+     */
+    public void testClientConnectionAsync() throws Exception {
+
+        ClientConnection client =
+            (ClientConnection) ((JDBCConnection) connection).getSession();
+        String[] sql = {
+            "UPDATE T SET V = 2 WHERE ID < 10", "UPDATE T SET V = 1 / 0",
+            "DELETE FROM T WHERE ID >= 4000"
+        };
+        long[] ids = new long[sql.length];
+
+        for (int i = 0; i < sql.length; i++) {
+            Result request = Result.newExecuteDirectRequest();
+
+            request.setPrepareOrExecuteProperties(
+                sql[i], 0, 0, StatementTypes.RETURN_COUNT, 0,
+                ResultProperties.defaultPropsValue,
+                ResultConstants.RETURN_NO_GENERATED_KEYS, null, null);
+
+            ids[i] = client.executeAsync(request);
+        }
+
+        for (int i = 1; i < ids.length; i++) {
+            assertEquals(ids[i - 1] + 1, ids[i]);
+        }
+
+        Result result = client.getAsyncResult(ids[2]);
+
+        assertTrue(client.isAsyncResultRead(ids[0]));
+        assertTrue(client.isAsyncResultRead(ids[1]));
+        assertEquals(1000, result.getUpdateCount());
+
+        result = client.getAsyncResult(ids[1]);
+
+        assertTrue(result.isError());
+        assertEquals(ResultConstants.ERROR, result.mode);
+
+        result = client.getAsyncResult(ids[0]);
+
+        assertEquals(10, result.getUpdateCount());
+        assertNull(client.getAsyncResult(ids[0]));
+        assertEquals(4999 + 10 - 1000, getSum());
+    }
+}
@@ -0,0 +1,482 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.hsqldb.HsqlDateTime;
+import org.hsqldb.lib.HsqlArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the reading of TEXT table sources with and without memory mapped
+ * files (hsqldb.nio_data_file) and worker threads
+ * (hsqldb.text_load_threads), for writable and read-only sources. The
+ * sources have quoted fields with separators, quotes and line breaks and
+ * dates on both sides of the Gregorian calendar change in 1582.<p>
+ *
+ * Also compares the conversion of date and timestamp strings in
+ * HsqlDateTime with the date formats it falls back to.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestTextTableLoad extends TestCase {
+
+    static final String filePath = "/hsql/testtextload/";
+    static final int    rowCount = 5000;
+
+    //
+    static final String[] dates = {
+        "0001-01-01", "1000-02-29", "1582-10-04", "1582-10-15",
+        "1582-12-31", "1583-01-01", "1600-02-29", "1899-12-31",
+        "1900-02-28", "1900-03-01", "1969-12-31", "1970-01-01",
+        "2000-02-29", "2016-12-31", "2100-02-28", "2400-02-29",
+        "9999-12-31",
+    };
+    static final String[] times = {
+        "00:00:00", "00:00:01", "12:34:56", "23:59:59",
+    };
+    static final String[] names = {
+        "plain", "with, separator", "with \"quotes\"", "\"", "line\nbreak",
+        "lines\r\nwith\r\nbreaks, and \"quotes\"", " spaces ", "",
+    };
+
+    //
+    static final SimpleDateFormat dateFormat =
+        newFormat("yyyy-MM-dd");
+    static final SimpleDateFormat timestampFormat =
+        newFormat("yyyy-MM-dd HH:mm:ss");
+    static final Calendar calendarGMT =
+        new GregorianCalendar(TimeZone.getTimeZone("GMT"), Locale.UK);
+
+    public TestTextTableLoad(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+        deleteDatabaseAndSources();
+        new File(filePath).mkdirs();
+    }
+
+    protected void tearDown() {
+        deleteDatabaseAndSources();
+    }
+
+    void deleteDatabaseAndSources() {
+
+        TestUtil.deleteDatabase(filePath + "test");
+        TestUtil.delete(filePath + "source.csv");
+        TestUtil.delete(filePath + "error.csv");
+    }
+
+    static SimpleDateFormat newFormat(String pattern) {
+
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+
+        format.setCalendar(
+            new GregorianCalendar(TimeZone.getTimeZone("GMT"), Locale.UK));
+        format.setLenient(false);
+
+        return format;
+    }
+
+    Connection newConnection(boolean isNio,
+                             int threads) throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + filePath
+                                           + "test;hsqldb.nio_data_file="
+                                           + isNio
+                                           + ";hsqldb.text_load_threads="
+                                           + threads, "sa", "");
+    }
+
+    static String quote(String s) {
+
+        StringBuilder sb = new StringBuilder("\"");
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c == '"') {
+                sb.append('"');
+            }
+
+            sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }
+
+    static String getName(int id) {
+        return id % 11 == 10 ? null
+                             : names[id % names.length] + id;
+    }
+
+    static String getDate(int id) {
+        return id % 13 == 12 ? null
+                             : dates[id % dates.length];
+    }
+
+    static String getTimestamp(int id) {
+        return id % 17 == 16 ? null
+                             : dates[(id / 3) % dates.length] + " "
+                               + times[id % times.length];
+    }
+
+    /**
+     * Writes the source with the rows in descending ID order. NULL values
+     * are empty fields, while empty strings are quoted.
+     */
+    static void writeSource(String fileName,
+                            String badDateLine) throws Exception {
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(filePath
+            + fileName), "UTF-8");
+
+        for (int id = rowCount - 1; id >= 0; id--) {
+            String name      = getName(id);
+            String date      = getDate(id);
+            String timestamp = getTimestamp(id);
+
+            if (name == null) {
+                name = "";
+            } else {
+                name = quote(name);
+            }
+
+            if (date == null) {
+                date = "";
+            }
+
+            if (timestamp == null) {
+                timestamp = "";
+            }
+
+            writer.write(id + "," + name + "," + date + "," + timestamp
+                         + "\n");
+
+            if (badDateLine != null && id == rowCount / 2) {
+                writer.write(badDateLine + "\n");
+            }
+        }
+
+        writer.close();
+    }
+
+    static HsqlArrayList getExpectedRows() throws Exception {
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        for (int id = 0; id < rowCount; id++) {
+            String date            = getDate(id);
+            String timestamp       = getTimestamp(id);
+            Long   dateMillis      = null;
+            Long   timestampMillis = null;
+
+            if (date != null) {
+                dateMillis = Long.valueOf(dateFormat.parse(date).getTime());
+            }
+
+            if (timestamp != null) {
+                timestampMillis =
+                    Long.valueOf(timestampFormat.parse(timestamp).getTime());
+            }
+
+            list.add(id + "|" + getName(id) + "|" + dateMillis + "|"
+                     + timestampMillis);
+        }
+
+        return list;
+    }
+
+    static HsqlArrayList getRows(Statement st,
+                                 String query) throws SQLException {
+
+        HsqlArrayList list = new HsqlArrayList();
+        ResultSet     rs   = st.executeQuery(query);
+
+        while (rs.next()) {
+            java.sql.Date      d               = rs.getDate(3, calendarGMT);
+            java.sql.Timestamp ts              = rs.getTimestamp(4,
+                calendarGMT);
+            Long               dateMillis      = null;
+            Long               timestampMillis = null;
+
+            if (d != null) {
+                dateMillis = Long.valueOf(d.getTime());
+            }
+
+            if (ts != null) {
+                timestampMillis = Long.valueOf(ts.getTime());
+            }
+
+            list.add(rs.getInt(1) + "|" + rs.getString(2) + "|" + dateMillis
+                     + "|" + timestampMillis);
+        }
+
+        rs.close();
+
+        return list;
+    }
+
+    void checkRows(Statement st, HsqlArrayList expected) throws SQLException {
+
+        // rows in index order, with re-reads from the source as the cache
+        // holds fewer rows than the table
+        HsqlArrayList rows = getRows(st, "SELECT * FROM T ORDER BY ID");
+
+        assertEquals(expected.size(), rows.size());
+
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(expected.get(i), rows.get(i));
+        }
+
+        // full scan with a condition on a converted field
+        rows = getRows(st, "SELECT * FROM T WHERE D = DATE '1583-01-01'");
+
+        int count = 0;
+
+        for (int id = 0; id < rowCount; id++) {
+            if ("1583-01-01".equals(getDate(id))) {
+                assertEquals(expected.get(id), rows.get(count));
+
+                count++;
+            }
+        }
+
+        assertEquals(count, rows.size());
+
+        for (int id = 7; id < rowCount; id += 997) {
+            rows = getRows(st, "SELECT * FROM T WHERE ID = " + id);
+
+            assertEquals(1, rows.size());
+            assertEquals(expected.get(id), rows.get(0));
+        }
+
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+    }
+
+    void checkSource(boolean isNio, int threads,
+                     boolean isReadOnly) throws Exception {
+
+        HsqlArrayList expected = getExpectedRows();
+        Connection    c        = newConnection(isNio, threads);
+        Statement     st       = c.createStatement();
+
+        st.execute("CREATE TEXT TABLE T (ID INT PRIMARY KEY,"
+                   + " NAME VARCHAR(100), D DATE, TS TIMESTAMP)");
+        st.execute("SET TABLE T SOURCE 'source.csv;encoding=UTF-8;"
+                   + "cache_rows=100'" + (isReadOnly ? " DESC"
+                                                     : ""));
+        checkRows(st, expected);
+
+        try {
+            st.execute("DELETE FROM T WHERE ID = 0");
+            assertFalse(isReadOnly);
+            st.execute("INSERT INTO T VALUES 0, 'plain0', DATE '"
+                       + dates[0] + "', TIMESTAMP '" + dates[0] + " "
+                       + times[0] + "'");
+        } catch (SQLException e) {
+            assertTrue(isReadOnly);
+        }
+
+        st.execute("SHUTDOWN");
+
+        // the source is read again when the database is opened, with the
+        // row for ID 0 in the same last position when it was reinserted
+        c  = newConnection(isNio, threads);
+        st = c.createStatement();
+
+        checkRows(st, expected);
+        st.execute("DROP TABLE T");
+        st.execute("SHUTDOWN");
+        TestUtil.deleteDatabase(filePath + "test");
+    }
+
+    public void testSources() throws Exception {
+
+        writeSource("source.csv", null);
+
+        for (int threads = 0; threads <= 4; threads += 4) {
+            checkSource(false, threads, true);
+            checkSource(true, threads, true);
+            checkSource(true, threads, false);
+
+            // the deleted row has left an empty line
+            writeSource("source.csv", null);
+        }
+    }
+
+    /**
+     * An invalid date reports the same error with or without worker
+     * threads.
+     */
+    public void testErrorLine() throws Exception {
+
+        writeSource("error.csv", "-1,\"x\",1582-10-10 x,");
+
+        String message = null;
+
+        for (int threads = 0; threads <= 4; threads += 2) {
+            Connection c  = newConnection(true, threads);
+            Statement  st = c.createStatement();
+
+            st.execute("CREATE TEXT TABLE T (ID INT PRIMARY KEY,"
+                       + " NAME VARCHAR(100), D DATE, TS TIMESTAMP)");
+
+            try {
+                st.execute(
+                    "SET TABLE T SOURCE 'error.csv;encoding=UTF-8' DESC");
+                fail("no error for invalid date");
+            } catch (SQLException e) {
+                if (message == null) {
+                    message = e.getMessage();
+                } else {
+                    assertEquals(message, e.getMessage());
+                }
+            }
+
+            st.execute("SHUTDOWN");
+            TestUtil.deleteDatabase(filePath + "test");
+        }
+
+        assertTrue(message, message.indexOf(String.valueOf(
+            rowCount / 2 + 1)) >= 0);
+    }
+
+    /**
+     * HsqlDateTime computes yyyy-MM-dd and yyyy-MM-dd HH:mm:ss values after
+     * 1582 directly. The results must match the date formats for valid
+     * and invalid values, across the change to the Gregorian calendar.
+     */
+    public void testDateConversion() throws Exception {
+
+        for (int year = 1500; year <= 2500; year++) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    String s = pad(year, 4) + "-" + pad(month, 2) + "-"
+                               + pad(day, 2);
+
+                    checkDate(s, false);
+
+                    if (day == 1 || day == 28 || day == 31) {
+                        for (int i = 0; i < times.length; i++) {
+                            checkDate(s + " " + times[i], true);
+                        }
+                    }
+                }
+            }
+        }
+
+        String[] values = {
+            "1583-01-01 24:00:00", "1583-01-01 23:60:00",
+            "1583-01-01 23:59:60", "1583-01-01T00:00:00",
+            "1583-01-01 0:00:00", "1583-1-01", "1583/01/01", "+583-01-01",
+            "1583-01-0a", "15830-01-01", "1583-01-01 ", " 1583-01-01",
+        };
+
+        for (int i = 0; i < values.length; i++) {
+            checkDate(values[i], values[i].length() > 11);
+        }
+
+        // Gregorian calendar starts after 1582-10-04
+        assertEquals(86400,
+                     HsqlDateTime.getDateSeconds("1582-10-15")
+                     - HsqlDateTime.getDateSeconds("1582-10-04"));
+        assertEquals(86400,
+                     HsqlDateTime.getDateSeconds("1583-01-01")
+                     - HsqlDateTime.getDateSeconds("1582-12-31"));
+        assertEquals(1,
+                     HsqlDateTime.getTimestampSeconds("1583-01-01 00:00:00")
+                     - HsqlDateTime.getTimestampSeconds(
+                         "1582-12-31 23:59:59"));
+        assertEquals(0, HsqlDateTime.getDateSeconds("1970-01-01"));
+    }
+
+    static String pad(int value, int length) {
+
+        String s = String.valueOf(value);
+
+        while (s.length() < length) {
+            s = "0" + s;
+        }
+
+        return s;
+    }
+
+    static void checkDate(String s, boolean hasTime) {
+
+        Long expected;
+        Long actual;
+
+        try {
+            SimpleDateFormat format = hasTime ? timestampFormat
+                                              : dateFormat;
+
+            expected = Long.valueOf(format.parse(s).getTime() / 1000);
+        } catch (Exception e) {
+            expected = null;
+        }
+
+        try {
+            actual = Long.valueOf(hasTime ? HsqlDateTime.getTimestampSeconds(s)
+                                          : HsqlDateTime.getDateSeconds(s));
+        } catch (Exception e) {
+            actual = null;
+        }
+
+        assertEquals(s, expected, actual);
+    }
+}
@@ -298,4 +298,107 @@ public class TestUpdatableResultSets extends TestBase {
             e.printStackTrace();
         }
     }
+
+    /**
+     * ORDER BY results larger than the result memory row count, read
+     * in-process with forward-only and scrollable cursors. The rows are
+     * sorted in files in the temp directory of the file database.
+     */
+    public void testScrollableLargeOrderBy() throws SQLException {
+
+        String     path = "/hsql/testscrollsort/test";
+        Connection c;
+
+        TestUtil.deleteDatabase(path);
+
+        c = DriverManager.getConnection("jdbc:hsqldb:file:" + path, "SA",
+                                        "");
+
+        try {
+            checkLargeOrderBy(c);
+        } finally {
+            c.createStatement().execute("SHUTDOWN");
+            TestUtil.deleteDatabase(path);
+        }
+    }
+
+    private void checkLargeOrderBy(Connection c) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.execute("drop table t2 if exists");
+        st.execute("create table t2 (i int primary key, c varchar(10))");
+        st.execute("set session result memory rows 10");
+
+        PreparedStatement ps =
+            c.prepareStatement("insert into t2 values(?,?)");
+
+        for (int i = 0; i < 200; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, "c" + (i * 37 % 200));
+            ps.execute();
+        }
+
+        String select = "select i, c from t2 order by mod(i, 7), i desc";
+        int[]  ids    = new int[200];
+        int    count  = 0;
+
+        st = c.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                               ResultSet.CONCUR_READ_ONLY);
+
+        st.setFetchSize(10);
+
+        ResultSet rs = st.executeQuery(select);
+
+        while (rs.next()) {
+            ids[count++] = rs.getInt(1);
+        }
+
+        rs.close();
+        assertEquals(200, count);
+
+        for (int i = 1; i < count; i++) {
+            int a = ids[i - 1];
+            int b = ids[i];
+
+            assertTrue(a % 7 < b % 7 || (a % 7 == b % 7 && a > b));
+        }
+
+        st = c.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE,
+                               ResultSet.CONCUR_READ_ONLY);
+        rs = st.executeQuery(select);
+
+        rs.afterLast();
+
+        for (int i = count - 1; i >= 0; i--) {
+            assertTrue(rs.previous());
+            assertEquals(ids[i], rs.getInt(1));
+        }
+
+        assertFalse(rs.previous());
+
+        for (int i = 0; i < count; i += 17) {
+            assertTrue(rs.absolute(count - i));
+            assertEquals(ids[count - i - 1], rs.getInt(1));
+            assertTrue(rs.relative(-3));
+            assertEquals(ids[count - i - 4], rs.getInt(1));
+        }
+
+        rs.close();
+
+        // ORDER BY results are read-only, but are requested as updatable
+        st = c.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE,
+                               ResultSet.CONCUR_UPDATABLE);
+        rs = st.executeQuery(select);
+
+        assertTrue(rs.last());
+
+        for (int i = count - 1; i >= 0; i--) {
+            assertEquals(ids[i], rs.getInt(1));
+            assertEquals(i > 0, rs.previous());
+        }
+
+        rs.close();
+        c.createStatement().execute("set session result memory rows 0");
+    }
 }
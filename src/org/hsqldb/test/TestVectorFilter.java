@@ -0,0 +1,283 @@
+/* Copyright (c) 2001-2016, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compares the results of full scan conditions evaluated in blocks of rows,
+ * enabled with hsqldb.vector_filter, with the results of the same queries on
+ * a database that evaluates them one row at a time. Covers NULL values,
+ * parameters, outer columns and the exceptions raised by the conditions.
+ *
+ * @author Fred Toussi (fredt@users dot sourceforge.net)
+ * @version 2.3.5
+ * @since 2.3.5
+ */
+public class TestVectorFilter extends TestBase {
+
+    Connection vector;
+    Connection scalar;
+
+    static final String[] queries = {
+        "SELECT ID FROM T WHERE I > 1000 ORDER BY ID",
+        "SELECT ID FROM T WHERE TI = 3 OR SI < -900 ORDER BY ID",
+        "SELECT ID FROM T WHERE NOT (I >= 500) ORDER BY ID",
+        "SELECT ID FROM T WHERE I IS NULL OR BI IS NULL ORDER BY ID",
+        "SELECT ID FROM T WHERE I IS NOT NULL AND NOT (TI <> 5) ORDER BY ID",
+        "SELECT ID FROM T WHERE I * 2 + SI > BI - 4000000000 ORDER BY ID",
+        "SELECT ID FROM T WHERE (I - SI) / 3 > 100 AND D < 0.5E0 ORDER BY ID",
+        "SELECT ID FROM T WHERE -I < -2000 ORDER BY ID",
+        "SELECT ID FROM T WHERE DEC + 1 > 1500 ORDER BY ID",
+        "SELECT ID FROM T WHERE NUM * 3 <= 99999999999 ORDER BY ID",
+        "SELECT ID FROM T WHERE DEC = NUM ORDER BY ID",
+        "SELECT ID FROM T WHERE R * 2 > I ORDER BY ID",
+        "SELECT ID FROM T WHERE D <> I ORDER BY ID",
+        "SELECT ID FROM T WHERE BI > 4000000000 + I ORDER BY ID",
+        "SELECT ID FROM T WHERE I > NULL ORDER BY ID",
+        "SELECT ID FROM T WHERE I * 1000000 > 2000000000 ORDER BY ID",
+        "SELECT ID FROM T WHERE BI * BI > 16000000000000000000 ORDER BY ID",
+        "SELECT ID FROM T WHERE NOT (I > 100 AND TI < 0) ORDER BY ID",
+        "SELECT ID FROM T WHERE TI <> 0 AND I / TI > 10 ORDER BY ID",
+        "SELECT ID FROM T WHERE I > 100 AND V LIKE 'v1%' ORDER BY ID",
+        "SELECT COUNT(*), SUM(I), MAX(D) FROM T WHERE SI + TI > 0",
+        "SELECT A.ID, B.ID FROM T A, T B WHERE A.ID < 20 AND B.I = A.I + 1"
+        + " AND B.SI > A.SI ORDER BY A.ID, B.ID",
+        "SELECT ID FROM T A WHERE EXISTS (SELECT * FROM T B WHERE B.I ="
+        + " A.TI * 10 AND B.D > A.D) ORDER BY ID",
+    };
+
+    static final String[] errorQueries = {
+        "SELECT ID FROM T WHERE I / (SI - SI) > 0",
+        "SELECT ID FROM T WHERE I / TI > 10",
+        "SELECT ID FROM T WHERE I > 0 AND CAST(V AS INT) > 0",
+        "SELECT ID FROM T WHERE I IS NULL OR I / (TI - TI) > 0",
+    };
+
+    public TestVectorFilter(String name) {
+        super(name, "jdbc:hsqldb:mem:testvector;hsqldb.vector_filter=true",
+              false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        vector = newConnection();
+        scalar = DriverManager.getConnection("jdbc:hsqldb:mem:testscalar",
+                                             "SA", "");
+
+        createTable(vector);
+        createTable(scalar);
+    }
+
+    protected void tearDown() {
+
+        try {
+            vector.createStatement().execute("SHUTDOWN");
+            scalar.createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    private static void createTable(Connection c) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, TI TINYINT,"
+                   + " SI SMALLINT, I INT, BI BIGINT, DEC DECIMAL(8),"
+                   + " NUM NUMERIC(20), R REAL, D DOUBLE, V VARCHAR(20))");
+
+        PreparedStatement ps = c.prepareStatement(
+            "INSERT INTO T VALUES ?, ?, ?, ?, ?, ?, ?, ?, ?, ?");
+
+        for (int i = 0; i < 3000; i++) {
+            ps.setInt(1, i);
+            setValue(ps, 2, i, 5, Integer.valueOf(i % 128 - 64));
+            setValue(ps, 3, i, 6, Integer.valueOf(i - 1000));
+            setValue(ps, 4, i, 7, Integer.valueOf(i * 7 % 3000));
+            setValue(ps, 5, i, 8, Long.valueOf(4000000000L + i * 3));
+            setValue(ps, 6, i, 9, Integer.valueOf(i % 2000));
+            setValue(ps, 7, i, 10, Long.valueOf(i * 11111111L));
+            setValue(ps, 8, i, 11, Double.valueOf(i / 4.0));
+            setValue(ps, 9, i, 12, Double.valueOf(i / 3.0 - 20));
+            setValue(ps, 10, i, 13, "v" + i);
+            ps.executeUpdate();
+        }
+
+        ps.close();
+    }
+
+    private static void setValue(PreparedStatement ps, int column, int row,
+                                 int nullEvery,
+                                 Object value) throws SQLException {
+
+        if (row % nullEvery == 0) {
+            ps.setObject(column, null);
+        } else {
+            ps.setObject(column, value);
+        }
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+
+        int          columns = rs.getMetaData().getColumnCount();
+        StringBuffer sb      = new StringBuffer();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    private static String getResult(Connection c,
+                                    String sql) throws SQLException {
+        return getResult(c.createStatement().executeQuery(sql));
+    }
+
+    private static String getResult(Connection c, String sql,
+                                    Object[] params) throws SQLException {
+
+        PreparedStatement ps = c.prepareStatement(sql);
+
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+
+        String result = getResult(ps.executeQuery());
+
+        ps.close();
+
+        return result;
+    }
+
+    public void testProperty() throws SQLException {
+
+        String sql = "SELECT PROPERTY_VALUE FROM"
+                     + " INFORMATION_SCHEMA.SYSTEM_PROPERTIES"
+                     + " WHERE PROPERTY_NAME = 'hsqldb.vector_filter'";
+
+        assertEquals("true,\n", getResult(vector, sql));
+        assertEquals("false,\n", getResult(scalar, sql));
+    }
+
+    public void testConditions() throws SQLException {
+
+        for (int i = 0; i < queries.length; i++) {
+            String result = getResult(scalar, queries[i]);
+
+            assertEquals(queries[i], result, getResult(vector, queries[i]));
+        }
+    }
+
+    public void testUpdates() throws SQLException {
+
+        String[] updates = {
+            "UPDATE T SET I = NULL, D = -D WHERE MOD(ID, 11) = 3",
+            "UPDATE T SET SI = SI + 1 WHERE SI * 2 > 1000 OR TI IS NULL",
+            "DELETE FROM T WHERE I - SI > 2000 AND BI IS NOT NULL",
+        };
+
+        for (int i = 0; i < updates.length; i++) {
+            int count = scalar.createStatement().executeUpdate(updates[i]);
+
+            assertEquals(updates[i], count,
+                         vector.createStatement().executeUpdate(updates[i]));
+        }
+
+        testConditions();
+    }
+
+    public void testParameters() throws SQLException {
+
+        String sql = "SELECT ID FROM T WHERE I > ? AND D < ? + SI ORDER BY ID";
+        Object[][] params = {
+            {
+                Integer.valueOf(100), Double.valueOf(500)
+            }, {
+                null, Double.valueOf(500)
+            }, {
+                Integer.valueOf(-1), null
+            }, {
+                Integer.valueOf(2900), Double.valueOf(3000)
+            },
+        };
+
+        for (int i = 0; i < params.length; i++) {
+            assertEquals(getResult(scalar, sql, params[i]),
+                         getResult(vector, sql, params[i]));
+        }
+    }
+
+    /**
+     * The conditions that raise an exception for some rows raise the same
+     * exception with both evaluations.
+     */
+    public void testErrors() throws SQLException {
+
+        for (int i = 0; i < errorQueries.length; i++) {
+            String sql = errorQueries[i];
+            int    code;
+
+            try {
+                getResult(scalar, sql);
+                fail(sql);
+
+                return;
+            } catch (SQLException e) {
+                code = e.getErrorCode();
+            }
+
+            try {
+                getResult(vector, sql);
+                fail(sql);
+            } catch (SQLException e) {
+                assertEquals(sql, code, e.getErrorCode());
+            }
+        }
+    }
+}
@@ -414,6 +414,13 @@ public class Collation implements SchemaObject {
         return isUpperCaseCompare;
     }
 
+    /**
+     * true if comparison uses a language specific Collator
+     */
+    public boolean hasCollator() {
+        return collator != null;
+    }
+
     public boolean isCaseSensitive() {
 
         // add support for case-sensitive language collations